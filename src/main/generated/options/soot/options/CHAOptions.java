@@ -69,4 +69,18 @@ public class CHAOptions {
         return soot.PhaseOptions.getBoolean(options, "apponly");
     }
 
+    /**
+     * Parallel --
+     * Build the call graph on multiple threads.
+     *
+     * Setting this option to true causes Soot to retrieve the bodies 
+     * of reachable methods and to resolve their virtual call sites on 
+     * multiple threads. The edges are still added to the call graph in 
+     * a deterministic order, so the resulting call graph is the same 
+     * as without this option.
+     */
+    public boolean parallel() {
+        return soot.PhaseOptions.getBoolean(options, "parallel");
+    }
+
 }
@@ -86,6 +86,19 @@ public class LockAllocator {
         return soot.PhaseOptions.getBoolean(options, "do-tlo");
     }
 
+    /**
+     * Indexed Interference --
+     * Only compare critical sections that share a location.
+     *
+     * Index the read and write sets of the critical sections by the
+     * globals and fields they access, and only test pairs of critical
+     * sections that share one of them for interference. The tests run
+     * in parallel. The resulting lock allocation is the same.
+     */
+    public boolean indexed_interference() {
+        return soot.PhaseOptions.getBoolean(options, "indexed-interference");
+    }
+
     /**
      * Print Topological Graph --
      * Print topological graph of transactions.
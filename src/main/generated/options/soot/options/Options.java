@@ -51,6 +51,7 @@ public class Options extends OptionsBase {
     public static final int src_prec_apk = 5;
     public static final int src_prec_apk_class_jimple = 6;
     public static final int src_prec_apk_c_j = 6;
+    public static final int src_prec_binary_jimple = 7;
     public static final int output_format_J = 1;
     public static final int output_format_jimple = 1;
     public static final int output_format_j = 2;
@@ -81,6 +82,7 @@ public class Options extends OptionsBase {
     public static final int output_format_template = 16;
     public static final int output_format_a = 17;
     public static final int output_format_asm = 17;
+    public static final int output_format_binary_jimple = 18;
     public static final int java_version_default = 1;
     public static final int java_version_1_1 = 2;
     public static final int java_version_1 = 2;
@@ -206,6 +208,22 @@ public class Options extends OptionsBase {
                     || option.equals("validate")
             )
                 validate = true;
+            else if (false
+                || option.equals("validate-sample")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if(validate_sample == -1)
+                    validate_sample = Integer.valueOf(value);
+                else {
+                    G.v().out.println("Duplicate values " + validate_sample + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
             else if (false
                     || option.equals("debug")
             )
@@ -392,6 +410,15 @@ public class Options extends OptionsBase {
                     }
                     src_prec = src_prec_apk_c_j;
                 }
+                else if (false
+                        || value.equals("binary-jimple")
+                ) {
+                    if (src_prec != 0 && src_prec != src_prec_binary_jimple) {
+                        G.v().out.println("Multiple values given for option " + option);
+                        return false;
+                    }
+                    src_prec = src_prec_binary_jimple;
+                }
                 else {
                     G.v().out.println(String.format("Invalid value %s given for option -%s", option, value));
                     return false;
@@ -437,6 +464,10 @@ public class Options extends OptionsBase {
                     || option.equals("permissive-resolving")
             )
                 permissive_resolving = true;
+            else if (false
+                    || option.equals("streaming-jimple-parser")
+            )
+                streaming_jimple_parser = true;
             else if (false
                     || option.equals("no-drop-bodies-after-load")
             )
@@ -636,6 +667,15 @@ public class Options extends OptionsBase {
                     }
                     output_format = output_format_asm;
                 }
+                else if (false
+                        || value.equals("binary-jimple")
+                ) {
+                    if (output_format != 0 && output_format != output_format_binary_jimple) {
+                        G.v().out.println("Multiple values given for option " + option);
+                        return false;
+                    }
+                    output_format = output_format_binary_jimple;
+                }
                 else {
                     G.v().out.println(String.format("Invalid value %s given for option -%s", option, value));
                     return false;
@@ -806,6 +846,10 @@ public class Options extends OptionsBase {
                     || option.equals("force-overwrite")
             )
                 force_overwrite = true;
+            else if (false
+                    || option.equals("parallel-dex")
+            )
+                parallel_dex = true;
             else if (false
                     || option.equals("plugin")
             ) {
@@ -1096,6 +1140,22 @@ public class Options extends OptionsBase {
                     || option.equals("ignore-resolution-errors")
             )
                 ignore_resolution_errors = true;
+            else if (false
+                    || option.equals("incremental-state")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if (incremental_state.isEmpty())
+                    incremental_state = value;
+                else {
+                    G.v().out.println("Duplicate values " + incremental_state + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
             else if (false
                     || option.equals("i")
                     || option.equals("include")
@@ -1331,6 +1391,10 @@ public class Options extends OptionsBase {
     private boolean validate = false;
     public void set_validate(boolean setting) { validate = setting; }
 
+    public int validate_sample() { return validate_sample; }
+    public void set_validate_sample(int setting) { validate_sample = setting; }
+    private int validate_sample = -1;
+
     public boolean debug() { return debug; }
     private boolean debug = false;
     public void set_debug(boolean setting) { debug = setting; }
@@ -1424,6 +1488,10 @@ public class Options extends OptionsBase {
     private boolean permissive_resolving = false;
     public void set_permissive_resolving(boolean setting) { permissive_resolving = setting; }
 
+    public boolean streaming_jimple_parser() { return streaming_jimple_parser; }
+    private boolean streaming_jimple_parser = false;
+    public void set_streaming_jimple_parser(boolean setting) { streaming_jimple_parser = setting; }
+
     public boolean drop_bodies_after_load() { return drop_bodies_after_load; }
     private boolean drop_bodies_after_load = true;
     public void set_drop_bodies_after_load(boolean setting) { drop_bodies_after_load = setting; }
@@ -1489,6 +1557,10 @@ public class Options extends OptionsBase {
     private boolean force_overwrite = false;
     public void set_force_overwrite(boolean setting) { force_overwrite = setting; }
 
+    public boolean parallel_dex() { return parallel_dex; }
+    private boolean parallel_dex = false;
+    public void set_parallel_dex(boolean setting) { parallel_dex = setting; }
+
     public List<String> plugin() {
         return plugin == null ? Collections.emptyList() : plugin;
     }
@@ -1539,6 +1611,10 @@ public class Options extends OptionsBase {
     private boolean ignore_resolution_errors = false;
     public void set_ignore_resolution_errors(boolean setting) { ignore_resolution_errors = setting; }
 
+    public String incremental_state() { return incremental_state; }
+    public void set_incremental_state(String setting) { incremental_state = setting; }
+    private String incremental_state = "";
+
     public List<String> include() {
         return include == null ? Collections.emptyList() : include;
     }
@@ -1614,6 +1690,7 @@ public class Options extends OptionsBase {
                 + padOpt("-ws, -whole-shimple", "Run in whole-shimple mode")
                 + padOpt("-fly, -on-the-fly", "Run in on-the-fly mode")
                 + padOpt("-validate", "Run internal validation on bodies")
+                + padOpt("-validate-sample ARG", "Fully validate only ARG percent of the bodies")
                 + padOpt("-debug", "Print various Soot debugging info")
                 + padOpt("-debug-resolver", "Print debugging info from SootResolver")
                 + padOpt("-ignore-resolving-levels", "Ignore mismatching resolving levels")
@@ -1635,6 +1712,7 @@ public class Options extends OptionsBase {
                     + padVal("java", "Favour Java files as Soot source")
                     + padVal("apk", "Favour APK files as Soot source")
                     + padVal("apk-class-jimple apk-c-j", "Favour APK files as Soot source, disregard Java files")
+                    + padVal("binary-jimple", "Favour binary Jimple files as Soot source")
                 + padOpt("-full-resolver", "Force transitive resolving of referenced classes")
                 + padOpt("-allow-phantom-refs", "Allow unresolved classes; may cause errors")
                 + padOpt("-no-bodies-for-excluded", "Do not load bodies for excluded classes")
@@ -1642,6 +1720,7 @@ public class Options extends OptionsBase {
                 + padOpt("-main-class ARG", "Sets the main class for whole-program analysis.")
                 + padOpt("-polyglot", "Use Java 1.4 Polyglot frontend instead of JastAdd")
                 + padOpt("-permissive-resolving", "Use alternative sources when classes cannot be found using the normal resolving strategy")
+                + padOpt("-streaming-jimple-parser", "Read .jimple files with the streaming parser instead of the SableCC parser")
                 + padOpt("-drop-bodies-after-load", "Drop the method source after it has served its purpose of loading the method body")
                 + "\nOutput Options:\n"
                 + padOpt("-d ARG -output-dir ARG", "Store output files in ARG")
@@ -1663,6 +1742,7 @@ public class Options extends OptionsBase {
                     + padVal("d dava", "Produce dava-decompiled .java files")
                     + padVal("t template", "Produce .java files with Jimple templates.")
                     + padVal("a asm", "Produce .asm files as textual bytecode representation generated with the ASM back end.")
+                    + padVal("binary-jimple", "Produce .bjimple files")
                 + padOpt("-java-version ARG", "Force Java version of bytecode generated by Soot.")
                     + padVal("default", "Let Soot determine Java version of generated bytecode.")
                     + padVal("1.1 1", "Force Java 1.1 as output version.")
@@ -1683,6 +1763,7 @@ public class Options extends OptionsBase {
                 + padOpt("-show-exception-dests", "Include exception destination edges as well as CFG edges in dumped CFGs")
                 + padOpt("-gzip", "GZip IR output files")
                 + padOpt("-force-overwrite", "Force Overwrite Output Files")
+                + padOpt("-parallel-dex", "Generate dex code for multiple classes concurrently")
                 + "\nProcessing Options:\n"
                 + padOpt("-plugin ARG", "Load all plugins found in ARG")
                 + padOpt("-wrong-staticness ARG", "Ignores or fixes errors due to wrong staticness")
@@ -1711,6 +1792,7 @@ public class Options extends OptionsBase {
                 + padOpt("-omit-excepting-unit-edges", "Omit CFG edges to handlers from excepting units which lack side effects")
                 + padOpt("-trim-cfgs", "Trim unrealizable exceptional edges from CFGs")
                 + padOpt("-ire, -ignore-resolution-errors", "Does not throw an exception when a program references an undeclared field or method.")
+                + padOpt("-incremental-state ARG", "Only process classes affected by changes since the run that wrote ARG")
                 + "\nApplication Mode Options:\n"
                 + padOpt("-i ARG -include ARG", "Include classes in ARG as application classes")
                 + padOpt("-x ARG -exclude ARG", "Exclude classes in ARG from application classes")
@@ -2094,7 +2176,8 @@ public class Options extends OptionsBase {
                     + "\n\nRecognized options (with default values):\n"
                     + padOpt("enabled (true)", "")
                     + padOpt("verbose (false)", "Print statistics about the resulting call graph")
-                    + padOpt("apponly (false)", "Consider only application classes");
+                    + padOpt("apponly (false)", "Consider only application classes")
+                    + padOpt("parallel (false)", "Build the call graph on multiple threads");
 
         if (phaseName.equals("cg.spark"))
             return "Phase " + phaseName + ":\n"
@@ -2133,6 +2216,7 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("compressed", "Compressed bitmap representation shared between equal sets")
                         + padVal("double (default)", "Double set representation for incremental propagation")
                     + padOpt("double-set-old", "Select implementation of points-to set for old part of double set")
                         + padVal("hash", "Use Java HashSet")
@@ -2141,6 +2225,7 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("compressed", "Compressed bitmap representation shared between equal sets")
                     + padOpt("double-set-new", "Select implementation of points-to set for new part of double set")
                         + padVal("hash", "Use Java HashSet")
                         + padVal("bit", "Bit vector")
@@ -2148,6 +2233,7 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("compressed", "Compressed bitmap representation shared between equal sets")
                     + padOpt("dump-html (false)", "Dump pointer assignment graph to HTML for debugging")
                     + padOpt("dump-pag (false)", "Dump pointer assignment graph for other solvers")
                     + padOpt("dump-solution (false)", "Dump final solution for comparison with other solvers")
@@ -2176,7 +2262,9 @@ public class Options extends OptionsBase {
                     + padOpt("geom-frac-base (40)", "Fractional parameter for precision/performance trade-off")
                     + padOpt("geom-blocking (true)", "Enable blocking strategy for recursive calls")
                     + padOpt("geom-runs (1)", "Iterations of analysis")
-                    + padOpt("geom-app-only (true)", "Processing pointers that impact pointers in application code only");
+                    + padOpt("geom-app-only (true)", "Processing pointers that impact pointers in application code only")
+                    + padOpt("geom-threads (1)", "Number of threads for solving the constraints")
+                    + padOpt("geom-spill-budget (0)", "Number of figures kept on the heap, 0 for no limit");
 
         if (phaseName.equals("cg.paddle"))
             return "Phase " + phaseName + ":\n"
@@ -2305,6 +2393,7 @@ public class Options extends OptionsBase {
                     + padOpt("open-nesting (true)", "Use an open nesting model")
                     + padOpt("do-mhp (true)", "Perform a May-Happen-in-Parallel analysis")
                     + padOpt("do-tlo (true)", "Perform a Local-Objects analysis")
+                    + padOpt("indexed-interference (false)", "Only compare critical sections that share a location")
                     + padOpt("print-graph (false)", "Print topological graph of transactions")
                     + padOpt("print-table (false)", "Print table of transactions")
                     + padOpt("print-debug (false)", "Print debugging info");
@@ -2397,6 +2486,7 @@ public class Options extends OptionsBase {
                     + padOpt("dump-intra (false)", "")
                     + padOpt("print (true)", "")
                     + padOpt("annotate (true)", "Marks pure methods with a purity bytecode attribute")
+                    + padOpt("parallel (false)", "Analyse independent methods on multiple threads")
                     + padOpt("verbose (false)", "");
 
         if (phaseName.equals("shimple"))
@@ -2407,7 +2497,8 @@ public class Options extends OptionsBase {
                     + padOpt("node-elim-opt (true)", "Node elimination optimizations")
                     + padOpt("standard-local-names (false)", "Uses naming scheme of the Local Name Standardizer.")
                     + padOpt("extended (false)", "Compute extended SSA (SSI) form.")
-                    + padOpt("debug (false)", "Enables debugging output, if any.");
+                    + padOpt("debug (false)", "Enables debugging output, if any.")
+                    + padOpt("semi-pruned (false)", "Only place Phi nodes for locals live across blocks.");
 
         if (phaseName.equals("stp"))
             return "Phase " + phaseName + ":\n"
@@ -2704,7 +2795,9 @@ public class Options extends OptionsBase {
                     + padOpt("sl (true)", "")
                     + padOpt("sl2 (false)", "")
                     + padOpt("sll (true)", "")
-                    + padOpt("sll2 (false)", "");
+                    + padOpt("sll2 (false)", "")
+                    + padOpt("fast (false)", "Avoid redundant work on large methods")
+                    + padOpt("time-budget (0)", "Milliseconds to spend on a single method");
 
         if (phaseName.equals("bb.sco"))
             return "Phase " + phaseName + ":\n"
@@ -3006,7 +3099,8 @@ public class Options extends OptionsBase {
             return String.join(" ", 
                     "enabled",
                     "verbose",
-                    "apponly"
+                    "apponly",
+                    "parallel"
             );
 
         if (phaseName.equals("cg.spark"))
@@ -3057,7 +3151,9 @@ public class Options extends OptionsBase {
                     "geom-frac-base",
                     "geom-blocking",
                     "geom-runs",
-                    "geom-app-only"
+                    "geom-app-only",
+                    "geom-threads",
+                    "geom-spill-budget"
             );
 
         if (phaseName.equals("cg.paddle"))
@@ -3127,6 +3223,7 @@ public class Options extends OptionsBase {
                     "open-nesting",
                     "do-mhp",
                     "do-tlo",
+                    "indexed-interference",
                     "print-graph",
                     "print-table",
                     "print-debug"
@@ -3202,6 +3299,7 @@ public class Options extends OptionsBase {
                     "dump-intra",
                     "print",
                     "annotate",
+                    "parallel",
                     "verbose"
             );
 
@@ -3211,7 +3309,8 @@ public class Options extends OptionsBase {
                     "node-elim-opt",
                     "standard-local-names",
                     "extended",
-                    "debug"
+                    "debug",
+                    "semi-pruned"
             );
 
         if (phaseName.equals("stp"))
@@ -3460,7 +3559,9 @@ public class Options extends OptionsBase {
                     "sl",
                     "sl2",
                     "sll",
-                    "sll2"
+                    "sll2",
+                    "fast",
+                    "time-budget"
             );
 
         if (phaseName.equals("bb.sco"))
@@ -3715,7 +3816,8 @@ public class Options extends OptionsBase {
             return ""
                     + "enabled:true "
                     + "verbose:false "
-                    + "apponly:false ";
+                    + "apponly:false "
+                    + "parallel:false ";
 
         if (phaseName.equals("cg.spark"))
             return ""
@@ -3767,7 +3869,9 @@ public class Options extends OptionsBase {
                     + "geom-frac-base:40 "
                     + "geom-blocking:true "
                     + "geom-runs:1 "
-                    + "geom-app-only:true ";
+                    + "geom-app-only:true "
+                    + "geom-threads:1 "
+                    + "geom-spill-budget:0 ";
 
         if (phaseName.equals("cg.paddle"))
             return ""
@@ -3830,6 +3934,7 @@ public class Options extends OptionsBase {
                     + "open-nesting:true "
                     + "do-mhp:true "
                     + "do-tlo:true "
+                    + "indexed-interference:false "
                     + "print-graph:false "
                     + "print-table:false "
                     + "print-debug:false ";
@@ -3893,6 +3998,7 @@ public class Options extends OptionsBase {
                     + "dump-intra:false "
                     + "print:true "
                     + "annotate:true "
+                    + "parallel:false "
                     + "verbose:false ";
 
         if (phaseName.equals("shimple"))
@@ -3901,7 +4007,8 @@ public class Options extends OptionsBase {
                     + "node-elim-opt:true "
                     + "standard-local-names:false "
                     + "extended:false "
-                    + "debug:false ";
+                    + "debug:false "
+                    + "semi-pruned:false ";
 
         if (phaseName.equals("stp"))
             return ""
@@ -4107,7 +4214,9 @@ public class Options extends OptionsBase {
                     + "sl:true "
                     + "sl2:false "
                     + "sll:true "
-                    + "sll2:false ";
+                    + "sll2:false "
+                    + "fast:false "
+                    + "time-budget:0 ";
 
         if (phaseName.equals("bb.sco"))
             return ""
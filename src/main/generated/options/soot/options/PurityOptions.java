@@ -80,6 +80,20 @@ public class PurityOptions {
         return soot.PhaseOptions.getBoolean(options, "annotate");
     }
 
+    /**
+     * Parallel --
+     * Analyse independent methods on multiple threads.
+     *
+     * Setting this option to true causes Soot to condense the call 
+     * graph into strongly connected components and to analyse all 
+     * components whose callees have already been summarized 
+     * concurrently. The method summaries are the same as without this 
+     * option.
+     */
+    public boolean parallel() {
+        return soot.PhaseOptions.getBoolean(options, "parallel");
+    }
+
     /**
      * Be (quite) verbose
      */
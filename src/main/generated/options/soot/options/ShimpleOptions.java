@@ -90,4 +90,17 @@ public class ShimpleOptions {
         return soot.PhaseOptions.getBoolean(options, "debug");
     }
 
+    /**
+     * Semi-Pruned Phi Placement --
+     * Only place Phi nodes for locals live across blocks.
+     *
+     * If enabled, Phi nodes are only inserted for locals that are used 
+     * in some block before being defined there. Locals that never live 
+     * across a block boundary do not need Phi nodes, which keeps 
+     * Shimple bodies of large methods considerably smaller.
+     */
+    public boolean semi_pruned() {
+        return soot.PhaseOptions.getBoolean(options, "semi-pruned");
+    }
+
 }
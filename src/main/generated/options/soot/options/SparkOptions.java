@@ -470,6 +470,36 @@ public class SparkOptions {
         return soot.PhaseOptions.getBoolean(options, "geom-app-only");
     }
 
+    /**
+     * Solver threads --
+     * Number of threads for solving the constraints.
+     *
+     * When this option is greater than 1, geomPTA partitions the 
+     * pointers into groups that do not exchange points-to information, 
+     * i.e. pointers connected by assignments and pointers accessing the 
+     * same field end up in one group, and solves the groups 
+     * concurrently with the given number of threads.
+     */
+    public int geom_threads() {
+        return soot.PhaseOptions.getInt(options, "geom-threads");
+    }
+
+    /**
+     * Figure spill budget --
+     * Number of figures kept on the heap, 0 for no limit.
+     *
+     * When this option is greater than 0, geomPTA keeps at most about 
+     * this many geometric figures on the heap. The figures of the least 
+     * recently used pointers are spilled to a memory-mapped temporary 
+     * file and paged back in when the pointers are accessed again. 
+     * Unlike the fractional parameter, this does not reduce the 
+     * precision. Only the Geom encoding and the sequential solver 
+     * support spilling.
+     */
+    public int geom_spill_budget() {
+        return soot.PhaseOptions.getInt(options, "geom-spill-budget");
+    }
+
     /**
      * Maximal traversal --
      * Make the analysis traverse at most this number of nodes per 
@@ -598,7 +628,8 @@ public class SparkOptions {
     public static final int set_impl_array = 4;
     public static final int set_impl_heintze = 5;
     public static final int set_impl_sharedlist = 6;
-    public static final int set_impl_double = 7;
+    public static final int set_impl_compressed = 7;
+    public static final int set_impl_double = 8;
 
     /**
      * Set Implementation --
@@ -623,6 +654,8 @@ public class SparkOptions {
             return set_impl_heintze;
         if (s.equalsIgnoreCase("sharedlist"))
             return set_impl_sharedlist;
+        if (s.equalsIgnoreCase("compressed"))
+            return set_impl_compressed;
         if (s.equalsIgnoreCase("double"))
             return set_impl_double;
 
@@ -635,6 +668,7 @@ public class SparkOptions {
     public static final int double_set_old_array = 4;
     public static final int double_set_old_heintze = 5;
     public static final int double_set_old_sharedlist = 6;
+    public static final int double_set_old_compressed = 7;
 
     /**
      * Double Set Old --
@@ -662,6 +696,8 @@ public class SparkOptions {
             return double_set_old_heintze;
         if (s.equalsIgnoreCase("sharedlist"))
             return double_set_old_sharedlist;
+        if (s.equalsIgnoreCase("compressed"))
+            return double_set_old_compressed;
 
         throw new RuntimeException(String.format("Invalid value %s of phase option double-set-old", s));
     }
@@ -672,6 +708,7 @@ public class SparkOptions {
     public static final int double_set_new_array = 4;
     public static final int double_set_new_heintze = 5;
     public static final int double_set_new_sharedlist = 6;
+    public static final int double_set_new_compressed = 7;
 
     /**
      * Double Set New --
@@ -699,6 +736,8 @@ public class SparkOptions {
             return double_set_new_heintze;
         if (s.equalsIgnoreCase("sharedlist"))
             return double_set_new_sharedlist;
+        if (s.equalsIgnoreCase("compressed"))
+            return double_set_new_compressed;
 
         throw new RuntimeException(String.format("Invalid value %s of phase option double-set-new", s));
     }
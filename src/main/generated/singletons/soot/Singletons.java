@@ -1630,6 +1630,20 @@ public class Singletons {
     	instance_soot_EntryPoints = null;
     }
 
+    private soot.IncrementalState instance_soot_IncrementalState;
+    public soot.IncrementalState soot_IncrementalState() {
+        if (instance_soot_IncrementalState == null) {
+	       	synchronized (this) {
+		        if (instance_soot_IncrementalState == null)
+	        		instance_soot_IncrementalState = new soot.IncrementalState(g);
+	       	}
+       	}
+        return instance_soot_IncrementalState;
+    }
+    protected void release_soot_IncrementalState() {
+    	instance_soot_IncrementalState = null;
+    }
+
     private soot.jimple.toolkits.annotation.callgraph.CallGraphTagger instance_soot_jimple_toolkits_annotation_callgraph_CallGraphTagger;
     public soot.jimple.toolkits.annotation.callgraph.CallGraphTagger soot_jimple_toolkits_annotation_callgraph_CallGraphTagger() {
         if (instance_soot_jimple_toolkits_annotation_callgraph_CallGraphTagger == null) {
@@ -2092,6 +2106,20 @@ public class Singletons {
     	instance_soot_jimple_spark_sets_AllSharedHybridNodes = null;
     }
 
+    private soot.jimple.spark.sets.AllSharedCompressedBitmaps instance_soot_jimple_spark_sets_AllSharedCompressedBitmaps;
+    public soot.jimple.spark.sets.AllSharedCompressedBitmaps soot_jimple_spark_sets_AllSharedCompressedBitmaps() {
+        if (instance_soot_jimple_spark_sets_AllSharedCompressedBitmaps == null) {
+	       	synchronized (this) {
+		        if (instance_soot_jimple_spark_sets_AllSharedCompressedBitmaps == null)
+	        		instance_soot_jimple_spark_sets_AllSharedCompressedBitmaps = new soot.jimple.spark.sets.AllSharedCompressedBitmaps(g);
+	       	}
+       	}
+        return instance_soot_jimple_spark_sets_AllSharedCompressedBitmaps;
+    }
+    protected void release_soot_jimple_spark_sets_AllSharedCompressedBitmaps() {
+    	instance_soot_jimple_spark_sets_AllSharedCompressedBitmaps = null;
+    }
+
     private soot.jimple.toolkits.thread.synchronization.LockAllocator instance_soot_jimple_toolkits_thread_synchronization_LockAllocator;
     public soot.jimple.toolkits.thread.synchronization.LockAllocator soot_jimple_toolkits_thread_synchronization_LockAllocator() {
         if (instance_soot_jimple_toolkits_thread_synchronization_LockAllocator == null) {
@@ -2302,6 +2330,20 @@ public class Singletons {
     	instance_soot_jimple_toolkits_typing_fast_BottomType = null;
     }
 
+    private soot.jimple.toolkits.typing.fast.HierarchyCache instance_soot_jimple_toolkits_typing_fast_HierarchyCache;
+    public soot.jimple.toolkits.typing.fast.HierarchyCache soot_jimple_toolkits_typing_fast_HierarchyCache() {
+        if (instance_soot_jimple_toolkits_typing_fast_HierarchyCache == null) {
+	       	synchronized (this) {
+		        if (instance_soot_jimple_toolkits_typing_fast_HierarchyCache == null)
+	        		instance_soot_jimple_toolkits_typing_fast_HierarchyCache = new soot.jimple.toolkits.typing.fast.HierarchyCache(g);
+	       	}
+       	}
+        return instance_soot_jimple_toolkits_typing_fast_HierarchyCache;
+    }
+    protected void release_soot_jimple_toolkits_typing_fast_HierarchyCache() {
+    	instance_soot_jimple_toolkits_typing_fast_HierarchyCache = null;
+    }
+
     private soot.dexpler.TrapMinimizer instance_soot_dexpler_TrapMinimizer;
     public soot.dexpler.TrapMinimizer soot_dexpler_TrapMinimizer() {
         if (instance_soot_dexpler_TrapMinimizer == null) {
@@ -0,0 +1,45 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * A class provider that looks for binary Jimple files, as written by the <tt>binary-jimple</tt> output format.
+ */
+public class BinaryJimpleClassProvider implements ClassProvider {
+
+  public static final String EXTENSION = ".bjimple";
+
+  /**
+   * Look for the specified class. Return a ClassSource for it if found, or null if it was not found.
+   */
+  public ClassSource find(String className) {
+    FoundFile file = SourceLocator.v().lookupInClassPath(className + EXTENSION);
+    if (file == null) {
+      file = SourceLocator.v().lookupInClassPath(className.replace('.', '/') + EXTENSION);
+      if (file == null) {
+        return null;
+      }
+    }
+    return new BinaryJimpleClassSource(className, file);
+  }
+}
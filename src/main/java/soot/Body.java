@@ -39,13 +39,13 @@ import org.slf4j.LoggerFactory;
 import soot.jimple.IdentityStmt;
 import soot.jimple.ParameterRef;
 import soot.jimple.ThisRef;
-import soot.options.Options;
 import soot.tagkit.AbstractHost;
 import soot.tagkit.CodeAttribute;
 import soot.tagkit.Tag;
 import soot.util.Chain;
 import soot.util.EscapedWriter;
 import soot.util.HashChain;
+import soot.validation.BodyValidationContext;
 import soot.validation.BodyValidator;
 import soot.validation.CheckEscapingValidator;
 import soot.validation.CheckInitValidator;
@@ -245,12 +245,18 @@ public abstract class Body extends AbstractHost implements Serializable {
    *          the list of validation errors
    */
   public void validate(List<ValidationException> exceptionList) {
-    final boolean runAllValidators = Options.v().debug() || Options.v().validate();
-    for (BodyValidator validator : getValidators()) {
-      if (!validator.isBasicValidator() && !runAllValidators) {
-        continue;
+    // Share the graphs and value boxes between all validators
+    final BodyValidationContext context = BodyValidationContext.open(this);
+    try {
+      final boolean runAllValidators = context.runAllValidators();
+      for (BodyValidator validator : getValidators()) {
+        if (!validator.isBasicValidator() && !runAllValidators) {
+          continue;
+        }
+        validator.validate(this, exceptionList);
       }
-      validator.validate(this, exceptionList);
+    } finally {
+      context.close();
     }
   }
 
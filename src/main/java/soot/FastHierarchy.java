@@ -179,13 +179,15 @@ public class FastHierarchy {
   public Set<SootClass> getAllImplementersOfInterface(SootClass parent) {
     parent.checkLevel(SootClass.HIERARCHY);
     if (!interfaceToAllImplementers.containsKey(parent)) {
+      // Collect the implementers first and publish them with a single putAll(), so that concurrent callers never see a
+      // partial set
+      Set<SootClass> implementers = new HashSet<SootClass>(interfaceToImplementers.get(parent));
       for (SootClass subinterface : getAllSubinterfaces(parent)) {
-        if (subinterface == parent) {
-          continue;
+        if (subinterface != parent) {
+          implementers.addAll(getAllImplementersOfInterface(subinterface));
         }
-        interfaceToAllImplementers.putAll(parent, getAllImplementersOfInterface(subinterface));
       }
-      interfaceToAllImplementers.putAll(parent, interfaceToImplementers.get(parent));
+      interfaceToAllImplementers.putAll(parent, implementers);
     }
     return interfaceToAllImplementers.get(parent);
   }
@@ -203,10 +205,13 @@ public class FastHierarchy {
       return Collections.<SootClass>emptySet();
     }
     if (!interfaceToAllSubinterfaces.containsKey(parent)) {
-      interfaceToAllSubinterfaces.put(parent, parent);
+      // As above, publish the complete set at once
+      Set<SootClass> subinterfaces = new HashSet<SootClass>();
+      subinterfaces.add(parent);
       for (SootClass si : interfaceToSubinterfaces.get(parent)) {
-        interfaceToAllSubinterfaces.putAll(parent, getAllSubinterfaces(si));
+        subinterfaces.addAll(getAllSubinterfaces(si));
       }
+      interfaceToAllSubinterfaces.putAll(parent, subinterfaces);
     }
     return interfaceToAllSubinterfaces.get(parent);
   }
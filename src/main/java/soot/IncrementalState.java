@@ -0,0 +1,414 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 2003 Ondrej Lhotak
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.jimple.FieldRef;
+import soot.jimple.InvokeExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+/**
+ * State for incremental re-analysis, see the incremental-state option.
+ *
+ * <p>
+ * After the output has been written, the content hashes of the input files of all application classes are persisted
+ * together with the dependencies between application classes: the superclass, the interfaces, the outer class, the classes
+ * whose methods, fields and constructors are referenced from the method bodies, and the classes of the call targets in the
+ * call graph. On the next run, the classes whose input has changed, that have been added or removed, and all classes that
+ * transitively depend on them are affected. The whole-program packs still run on the entire program, but the body packs
+ * and the output are restricted to the affected classes and to classes whose output file is missing.
+ * </p>
+ *
+ * <p>
+ * Library classes are assumed not to change between runs, and both runs must use the same options. Incremental processing
+ * is not possible if all classes are written into one output file, i.e., for dex, Dava and jar output.
+ * </p>
+ */
+public class IncrementalState {
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalState.class);
+
+  private static final String HEADER = "# soot incremental state";
+
+  /** version of the format of the state file, to be increased whenever the format or its meaning changes */
+  private static final int FORMAT_VERSION = 2;
+
+  /** content hashes of the input files of the application classes, from the state file */
+  private final Map<String, String> oldHashes = new HashMap<String, String>();
+
+  /** dependencies of the application classes, from the state file */
+  private final Map<String, Set<String>> oldDependencies = new HashMap<String, Set<String>>();
+
+  /** content hashes of the input files of the application classes in this run */
+  private final Map<String, String> hashes = new HashMap<String, String>();
+
+  /** the classes that need to be processed in this run, or null for all classes */
+  private Set<String> affected = null;
+
+  /** whether the packs have been run on the classes of this run, so that the state can be saved */
+  private boolean completed = false;
+
+  public IncrementalState(Singletons.Global g) {
+  }
+
+  public static IncrementalState v() {
+    return G.v().soot_IncrementalState();
+  }
+
+  /**
+   * Checks whether a file for the incremental state has been configured
+   */
+  public boolean isEnabled() {
+    return !Options.v().incremental_state().isEmpty();
+  }
+
+  /**
+   * Reads the state of the previous run and determines the classes affected by the changes since then. Must be called after
+   * the whole-program packs, so that the dependencies through the new call graph are considered as well.
+   */
+  public void computeAffectedClasses() {
+    affected = null;
+    completed = false;
+    hashes.clear();
+    for (SootClass c : Scene.v().getApplicationClasses()) {
+      String hash = hashInput(c.getName());
+      if (hash != null) {
+        hashes.put(c.getName(), hash);
+      }
+    }
+
+    final int format = Options.v().output_format();
+    if (Options.v().output_jar() || format == Options.output_format_dex || format == Options.output_format_force_dex
+        || format == Options.output_format_dava) {
+      logger.warn("Incremental processing is not supported for the chosen output, processing all classes");
+      return;
+    }
+    File stateFile = new File(Options.v().incremental_state());
+    if (!stateFile.exists()) {
+      logger.info("No incremental state found in " + stateFile + ", processing all classes");
+      return;
+    }
+    if (!readState(stateFile)) {
+      return;
+    }
+
+    // classes that have changed, have been added, or have been removed
+    Set<String> changed = new HashSet<String>();
+    for (SootClass c : Scene.v().getApplicationClasses()) {
+      String hash = hashes.get(c.getName());
+      if (hash == null || !hash.equals(oldHashes.get(c.getName()))) {
+        changed.add(c.getName());
+      }
+    }
+    for (String name : oldHashes.keySet()) {
+      if (!hashes.containsKey(name)) {
+        changed.add(name);
+      }
+    }
+
+    // Invert the old and the current dependencies
+    Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+    for (Map.Entry<String, Set<String>> e : oldDependencies.entrySet()) {
+      for (String dependency : e.getValue()) {
+        addDependent(dependents, dependency, e.getKey());
+      }
+    }
+    for (SootClass c : Scene.v().getApplicationClasses()) {
+      for (String dependency : computeDependencies(c, false)) {
+        addDependent(dependents, dependency, c.getName());
+      }
+    }
+
+    affected = new HashSet<String>();
+    Deque<String> worklist = new ArrayDeque<String>(changed);
+    while (!worklist.isEmpty()) {
+      String name = worklist.removeFirst();
+      if (affected.add(name)) {
+        Set<String> ds = dependents.get(name);
+        if (ds != null) {
+          worklist.addAll(ds);
+        }
+      }
+    }
+
+    // classes whose output has been deleted in the meantime
+    if (format != Options.output_format_none) {
+      for (SootClass c : Scene.v().getApplicationClasses()) {
+        if (!affected.contains(c.getName()) && !new File(SourceLocator.v().getFileNameFor(c, format)).exists()) {
+          affected.add(c.getName());
+        }
+      }
+    }
+
+    logger.info(changed.size() + " classes changed, processing " + affected.size() + " of "
+        + Scene.v().getApplicationClasses().size() + " application classes");
+  }
+
+  private static void addDependent(Map<String, Set<String>> dependents, String dependency, String dependent) {
+    Set<String> ds = dependents.get(dependency);
+    if (ds == null) {
+      ds = new HashSet<String>();
+      dependents.put(dependency, ds);
+    }
+    ds.add(dependent);
+  }
+
+  /**
+   * Checks whether the given class needs to be processed in this run
+   */
+  public boolean isAffected(SootClass c) {
+    return affected == null || affected.contains(c.getName());
+  }
+
+  /**
+   * Filters the given classes down to those that need to be processed in this run
+   */
+  public Iterator<SootClass> affectedClasses(final Iterator<SootClass> classes) {
+    if (affected == null) {
+      return classes;
+    }
+    return new Iterator<SootClass>() {
+      private SootClass next = advance();
+
+      private SootClass advance() {
+        while (classes.hasNext()) {
+          SootClass c = classes.next();
+          if (isAffected(c)) {
+            return c;
+          }
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public SootClass next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        SootClass c = next;
+        next = advance();
+        return c;
+      }
+    };
+  }
+
+  /**
+   * Marks the packs as having been run on the affected classes, after which the state of this run can be saved
+   */
+  public void markCompleted() {
+    completed = true;
+  }
+
+  /**
+   * Writes the state of this run for the next one. Must be called while the bodies of the processed classes are still
+   * available. Does nothing if the packs have not been run, as the state would not reflect the output of this run then.
+   */
+  public void save() {
+    if (!completed) {
+      logger.warn("The packs have not been run, not saving the incremental state");
+      return;
+    }
+    Map<String, Set<String>> dependencies = new TreeMap<String, Set<String>>();
+    for (SootClass c : Scene.v().getApplicationClasses()) {
+      Set<String> ds = new TreeSet<String>(computeDependencies(c, true));
+      if (!isAffected(c)) {
+        // the bodies of this class have not been loaded, but they are the
+        // same as in the previous run
+        Set<String> old = oldDependencies.get(c.getName());
+        if (old != null) {
+          ds.addAll(old);
+        }
+      }
+      dependencies.put(c.getName(), ds);
+    }
+
+    File stateFile = new File(Options.v().incremental_state());
+    try (PrintWriter out
+        = new PrintWriter(new OutputStreamWriter(new FileOutputStream(stateFile), StandardCharsets.UTF_8))) {
+      out.println(HEADER + " v" + FORMAT_VERSION);
+      for (String name : new TreeSet<String>(hashes.keySet())) {
+        out.println("C " + name + " " + hashes.get(name));
+      }
+      for (Map.Entry<String, Set<String>> e : dependencies.entrySet()) {
+        for (String dependency : e.getValue()) {
+          out.println("D " + e.getKey() + " " + dependency);
+        }
+      }
+    } catch (IOException e) {
+      throw new CompilationDeathException("Cannot write incremental state to " + stateFile + ": " + e.getMessage());
+    }
+  }
+
+  private boolean readState(File stateFile) {
+    oldHashes.clear();
+    oldDependencies.clear();
+    try (BufferedReader in
+        = new BufferedReader(new InputStreamReader(new FileInputStream(stateFile), StandardCharsets.UTF_8))) {
+      String line = in.readLine();
+      if (line == null || !line.startsWith(HEADER)) {
+        logger.warn(stateFile + " is not an incremental state file, processing all classes");
+        return false;
+      }
+      if (!line.equals(HEADER + " v" + FORMAT_VERSION)) {
+        logger.warn(stateFile + " has been written in an unsupported format, processing all classes");
+        return false;
+      }
+      while ((line = in.readLine()) != null) {
+        String[] parts = line.split(" ");
+        if (parts.length != 3) {
+          continue;
+        }
+        if (parts[0].equals("C")) {
+          oldHashes.put(parts[1], parts[2]);
+        } else if (parts[0].equals("D")) {
+          Set<String> ds = oldDependencies.get(parts[1]);
+          if (ds == null) {
+            ds = new HashSet<String>();
+            oldDependencies.put(parts[1], ds);
+          }
+          ds.add(parts[2]);
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      logger.warn("Cannot read incremental state from " + stateFile + ", processing all classes: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Computes the application classes the given class depends on
+   *
+   * @param withBodies
+   *          whether to include the classes referenced from the bodies that are currently loaded
+   */
+  private Set<String> computeDependencies(SootClass c, boolean withBodies) {
+    Set<SootClass> ds = new HashSet<SootClass>();
+    if (c.hasSuperclass()) {
+      ds.add(c.getSuperclass());
+    }
+    ds.addAll(c.getInterfaces());
+    if (c.hasOuterClass()) {
+      ds.add(c.getOuterClass());
+    }
+
+    CallGraph cg = Scene.v().hasCallGraph() ? Scene.v().getCallGraph() : null;
+    for (SootMethod m : c.getMethods()) {
+      if (cg != null) {
+        for (Iterator<Edge> it = cg.edgesOutOf(m); it.hasNext();) {
+          ds.add(it.next().tgt().getDeclaringClass());
+        }
+      }
+      if (withBodies && m.hasActiveBody()) {
+        for (Unit u : m.getActiveBody().getUnits()) {
+          for (ValueBox vb : u.getUseAndDefBoxes()) {
+            Value v = vb.getValue();
+            if (v instanceof InvokeExpr) {
+              ds.add(((InvokeExpr) v).getMethodRef().declaringClass());
+            } else if (v instanceof FieldRef) {
+              ds.add(((FieldRef) v).getFieldRef().declaringClass());
+            } else if (v instanceof NewExpr) {
+              ds.add(((NewExpr) v).getBaseType().getSootClass());
+            }
+          }
+        }
+      }
+    }
+
+    Set<String> names = new HashSet<String>();
+    for (SootClass d : ds) {
+      if (d != c && d.isApplicationClass()) {
+        names.add(d.getName());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Computes a hash of the class or Jimple file of the given class
+   *
+   * @return the hash, or null if there is no such file
+   */
+  private static String hashInput(String className) {
+    String base = className.replace('.', '/');
+    FoundFile file = SourceLocator.v().lookupInClassPath(base + ".class");
+    if (file == null) {
+      file = SourceLocator.v().lookupInClassPath(base + ".jimple");
+    }
+    if (file == null) {
+      return null;
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      try (InputStream in = file.inputStream()) {
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+          digest.update(buffer, 0, len);
+        }
+      }
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (IOException | NoSuchAlgorithmException e) {
+      logger.warn("Cannot hash " + file.getFilePath() + ": " + e.getMessage());
+      return null;
+    } finally {
+      file.silentClose();
+    }
+  }
+}
@@ -60,7 +60,8 @@ public class JimpleClassSource extends ClassSource {
     try {
       // Parse jimple file
       classFile = foundFile.inputStream();
-      soot.jimple.parser.JimpleAST jimpAST = new soot.jimple.parser.JimpleAST(classFile);
+      soot.jimple.parser.JimpleAST jimpAST = Options.v().streaming_jimple_parser()
+          ? new soot.jimple.parser.StreamingJimpleAST(classFile) : new soot.jimple.parser.JimpleAST(classFile);
       jimpAST.getSkeleton(sc);
 
       // Set method source for all methods
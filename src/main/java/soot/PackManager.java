@@ -24,6 +24,7 @@ package soot;
 
 import heros.solver.CountingThreadPoolExecutor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -39,6 +40,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -67,6 +69,7 @@ import soot.dava.toolkits.base.misc.ThrowFinder;
 import soot.grimp.Grimp;
 import soot.grimp.toolkits.base.ConstructorFolder;
 import soot.jimple.JimpleBody;
+import soot.jimple.binary.BinaryJimpleWriter;
 import soot.jimple.paddle.PaddleHook;
 import soot.jimple.spark.SparkTransformer;
 import soot.jimple.spark.fieldrw.FieldTagAggregator;
@@ -494,6 +497,9 @@ public class PackManager {
     if (Options.v().whole_program() || Options.v().whole_shimple()) {
       runWholeProgramPacks();
     }
+    if (IncrementalState.v().isEnabled()) {
+      IncrementalState.v().computeAffectedClasses();
+    }
     retrieveAllBodies();
 
     // Create tags from all values we only have in code assignments now
@@ -523,6 +529,9 @@ public class PackManager {
     }
     runBodyPacks();
     handleInnerClasses();
+    if (IncrementalState.v().isEnabled()) {
+      IncrementalState.v().markCompleted();
+    }
   }
 
   public void coffiMetrics() {
@@ -547,7 +556,7 @@ public class PackManager {
   }
 
   public void runBodyPacks() {
-    runBodyPacks(reachableClasses());
+    runBodyPacks(classesToProcess());
   }
 
   public JarOutputStream getJarFile() {
@@ -566,13 +575,16 @@ public class PackManager {
         || Options.v().output_format() == Options.output_format_force_dex) {
       writeDexOutput();
     } else {
-      writeOutput(reachableClasses());
+      writeOutput(classesToProcess());
       tearDownJAR();
     }
-    postProcessXML(reachableClasses());
+    postProcessXML(classesToProcess());
+    if (IncrementalState.v().isEnabled()) {
+      IncrementalState.v().save();
+    }
 
     if (!Options.v().no_writeout_body_releasing()) {
-      releaseBodies(reachableClasses());
+      releaseBodies(classesToProcess());
     }
     if (Options.v().verbose()) {
       PhaseDumper.v().dumpAfter("output");
@@ -581,7 +593,13 @@ public class PackManager {
 
   protected void writeDexOutput() {
     dexPrinter = new DexPrinter();
-    writeOutput(reachableClasses());
+    if (Options.v().parallel_dex()) {
+      // Generate the dex code concurrently, only the interning into the
+      // shared dex pools is done sequentially
+      dexPrinter.addAll(reachableClasses());
+    } else {
+      writeOutput(reachableClasses());
+    }
     dexPrinter.print();
     dexPrinter = null;
   }
@@ -692,6 +710,13 @@ public class PackManager {
   }
 
   protected void writeOutput(Iterator<SootClass> classes) {
+    // Class files that go into a jar are generated concurrently as well,
+    // only appending them to the jar is done by a single writer
+    if (jarFile != null && Options.v().output_format() == Options.output_format_class && !overridesWriteClass()) {
+      writeJarOutput(classes);
+      return;
+    }
+
     // If we're writing individual class files, we can write them
     // concurrently. Otherwise, we need to synchronize for not destroying
     // the shared output stream.
@@ -732,6 +757,182 @@ public class PackManager {
     }
   }
 
+  /**
+   * Writes class files into the output jar. The bytecode of the classes is generated concurrently into byte arrays, while
+   * the calling thread appends the finished entries to the jar one after another and in iteration order. The jar therefore
+   * has the same layout as when the classes are written by a single thread.
+   *
+   * @param classes
+   *          The classes to write
+   */
+  private void writeJarOutput(Iterator<SootClass> classes) {
+    final List<SootClass> toWrite = new ArrayList<SootClass>();
+    while (classes.hasNext()) {
+      toWrite.add(classes.next());
+    }
+
+    if (Options.v().xml_attributes()) {
+      Printer.v().setOption(Printer.ADD_JIMPLE_LN);
+    }
+
+    final byte[][] generated = new byte[toWrite.size()][];
+    final Throwable[] failure = new Throwable[1];
+    int threadNum = Runtime.getRuntime().availableProcessors();
+    // Limits the number of generated classes that are waiting for the writer
+    int window = 4 * threadNum;
+    CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    int submitted = 0;
+    try {
+      for (int i = 0; i < generated.length; i++) {
+        for (; submitted < generated.length && submitted <= i + window; submitted++) {
+          // The executor shuts itself down when a task fails and would
+          // reject further tasks, hiding the original error
+          synchronized (generated) {
+            if (failure[0] != null) {
+              break;
+            }
+          }
+          final int idx = submitted;
+          executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+              byte[] bytes = null;
+              try {
+                bytes = generateClassFile(toWrite.get(idx));
+              } catch (RuntimeException | Error e) {
+                synchronized (generated) {
+                  failure[0] = e;
+                }
+                throw e;
+              } finally {
+                synchronized (generated) {
+                  generated[idx] = bytes;
+                  generated.notifyAll();
+                }
+              }
+            }
+
+          });
+        }
+
+        byte[] bytes;
+        synchronized (generated) {
+          while ((bytes = generated[i]) == null && failure[0] == null) {
+            generated.wait();
+          }
+          generated[i] = null;
+        }
+        if (bytes == null) {
+          break;
+        }
+        writeJarEntry(toWrite.get(i), bytes);
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      // Something went horribly wrong
+      throw new RuntimeException("Could not wait for class file generator threads to finish: " + e.getMessage(), e);
+    } catch (RejectedExecutionException e) {
+      executor.shutdownNow();
+      // A task failed after we checked for failures, it is reported below
+      synchronized (generated) {
+        if (failure[0] == null) {
+          throw e;
+        }
+      }
+    } catch (RuntimeException e) {
+      executor.shutdownNow();
+      throw e;
+    }
+
+    // Wait till all generator threads are done
+    try {
+      executor.awaitCompletion();
+      executor.shutdown();
+    } catch (InterruptedException e) {
+      // Something went horribly wrong
+      throw new RuntimeException("Could not wait for class file generator threads to finish: " + e.getMessage(), e);
+    }
+
+    // If something went wrong, we tell the world
+    Throwable exception = failure[0] != null ? failure[0] : executor.getException();
+    if (exception != null) {
+      if (exception instanceof RuntimeException) {
+        throw (RuntimeException) exception;
+      } else {
+        throw new RuntimeException(exception);
+      }
+    }
+  }
+
+  /**
+   * Checks whether a subclass overrides {@link #writeClass(SootClass)}. If so, class files for a jar are written through
+   * that method as well, one after another.
+   */
+  private boolean overridesWriteClass() {
+    for (Class<?> cls = getClass(); cls != PackManager.class; cls = cls.getSuperclass()) {
+      try {
+        cls.getDeclaredMethod("writeClass", SootClass.class);
+        return true;
+      } catch (NoSuchMethodException e) {
+        // not declared here, check the superclass
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Generates the class file for the given class in memory, including the compression and Jasmin assembly that
+   * {@link #writeClass(SootClass)} applies when writing to a stream.
+   *
+   * @param c
+   *          The class for which to generate bytecode
+   * @return The contents of the class file entry
+   */
+  protected byte[] generateClassFile(SootClass c) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream streamOut = bytes;
+    try {
+      if (Options.v().gzip()) {
+        streamOut = new GZIPOutputStream(streamOut);
+      }
+      if (Options.v().jasmin_backend()) {
+        streamOut = new JasminOutputStream(streamOut);
+        PrintWriter writerOut = new PrintWriter(new OutputStreamWriter(streamOut));
+        createJasminBackend(c).print(writerOut);
+        // Flushing the Jasmin stream assembles the class
+        writerOut.flush();
+      } else {
+        createASMBackend(c).generateClassFile(streamOut);
+      }
+      streamOut.close();
+    } catch (IOException e) {
+      throw new CompilationDeathException("Cannot generate class file for " + c.getName(), e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private void writeJarEntry(SootClass c, byte[] bytes) {
+    String fileName = SourceLocator.v().getFileNameFor(c, Options.output_format_class);
+    if (Options.v().gzip()) {
+      fileName = fileName + ".gz";
+    }
+    // Fix path delimiters according to ZIP specification
+    fileName = fileName.replace("\\", "/");
+    logger.debug("Writing to " + fileName);
+    try {
+      JarEntry entry = new JarEntry(fileName);
+      entry.setMethod(ZipEntry.DEFLATED);
+      jarFile.putNextEntry(entry);
+      jarFile.write(bytes);
+      jarFile.closeEntry();
+    } catch (IOException e) {
+      throw new CompilationDeathException("Cannot output file " + fileName, e);
+    }
+  }
+
   private void tearDownJAR() {
     try {
       if (jarFile != null) {
@@ -752,6 +953,16 @@ public class PackManager {
     return Scene.v().getApplicationClasses().snapshotIterator();
   }
 
+  /**
+   * Returns the application classes that are run through the body packs and written out. In incremental mode, these are
+   * only the classes affected by changes since the previous run.
+   *
+   * @see IncrementalState
+   */
+  private Iterator<SootClass> classesToProcess() {
+    return IncrementalState.v().affectedClasses(reachableClasses());
+  }
+
   /* post process for DAVA */
   private void postProcessDAVA() {
 
@@ -929,6 +1140,7 @@ public class PackManager {
       case Options.output_format_template:
       case Options.output_format_dex:
       case Options.output_format_force_dex:
+      case Options.output_format_binary_jimple:
         break;
       case Options.output_format_shimp:
       case Options.output_format_shimple:
@@ -1088,6 +1300,13 @@ public class PackManager {
     return bafBody;
   }
 
+  /**
+   * Writes the given class in the current output format. Class files that go into a jar are generated through
+   * {@link #generateClassFile(SootClass)} instead, unless a subclass overrides this method.
+   *
+   * @param c
+   *          The class to write
+   */
   protected void writeClass(SootClass c) {
     // Create code assignments for those values we only have in code
     // assignments
@@ -1183,6 +1402,13 @@ public class PackManager {
       case Options.output_format_asm:
         createASMBackend(c).generateTextualRepresentation(writerOut);
         break;
+      case Options.output_format_binary_jimple:
+        try {
+          new BinaryJimpleWriter(c).write(streamOut);
+        } catch (IOException e) {
+          throw new CompilationDeathException("Cannot output file " + fileName, e);
+        }
+        break;
       default:
         throw new RuntimeException();
     }
@@ -1276,7 +1502,7 @@ public class PackManager {
     CountingThreadPoolExecutor executor
         = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
-    Iterator<SootClass> clIt = reachableClasses();
+    Iterator<SootClass> clIt = classesToProcess();
     while (clIt.hasNext()) {
       SootClass cl = clIt.next();
       // note: the following is a snapshot iterator;
@@ -260,6 +260,12 @@ public class SourceLocator {
         classProviders.add(classFileClassProvider);
         classProviders.add(new JimpleClassProvider());
         break;
+      case Options.src_prec_binary_jimple:
+        classProviders.add(new BinaryJimpleClassProvider());
+        classProviders.add(new JimpleClassProvider());
+        classProviders.add(classFileClassProvider);
+        classProviders.add(new JavaClassProvider());
+        break;
       default:
         throw new RuntimeException("Other source precedences are not currently supported.");
     }
@@ -325,7 +331,8 @@ public class SourceLocator {
         for (Enumeration<? extends ZipEntry> entries = archive.entries(); entries.hasMoreElements();) {
           ZipEntry entry = entries.nextElement();
           String entryName = entry.getName();
-          if (entryName.endsWith(".class") || entryName.endsWith(".jimple")) {
+          if (entryName.endsWith(".class") || entryName.endsWith(".jimple")
+              || entryName.endsWith(BinaryJimpleClassProvider.EXTENSION)) {
             int extensionIndex = entryName.lastIndexOf('.');
             entryName = entryName.substring(0, extensionIndex);
             entryName = entryName.replace('/', '.');
@@ -375,6 +382,9 @@ public class SourceLocator {
           } else if (fileName.endsWith(".jimple")) {
             int index = fileName.lastIndexOf(".jimple");
             classes.add(prefix + fileName.substring(0, index));
+          } else if (fileName.endsWith(BinaryJimpleClassProvider.EXTENSION)) {
+            int index = fileName.lastIndexOf(BinaryJimpleClassProvider.EXTENSION);
+            classes.add(prefix + fileName.substring(0, index));
           } else if (fileName.endsWith(".java")) {
             int index = fileName.lastIndexOf(".java");
             classes.add(prefix + fileName.substring(0, index));
@@ -513,6 +523,8 @@ public class SourceLocator {
         return ".java";
       case Options.output_format_asm:
         return ".asm";
+      case Options.output_format_binary_jimple:
+        return BinaryJimpleClassProvider.EXTENSION;
       default:
         throw new RuntimeException();
     }
@@ -176,9 +176,7 @@ import static org.objectweb.asm.tree.AbstractInsnNode.TYPE_INSN;
 import static org.objectweb.asm.tree.AbstractInsnNode.VAR_INSN;
 
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -188,7 +186,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -292,13 +289,17 @@ final class AsmMethodSource implements MethodSource {
 
   private static final Operand DWORD_DUMMY = new Operand(null, null);
 
+  /* -per-thread scratch buffers, see Scratch- */
+  private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>();
+
   /* -state fields- */
   private int nextLocal;
   private Map<Integer, Local> locals;
   private Multimap<LabelNode, UnitBox> labels;
-  private Map<AbstractInsnNode, Unit> units;
+  /* units, frames and outgoing edges are indexed by instruction index */
+  private Unit[] units;
   private ArrayList<Operand> stack;
-  private Map<AbstractInsnNode, StackFrame> frames;
+  private StackFrame[] frames;
   private Multimap<LabelNode, UnitBox> trapHandlers;
   private JimpleBody body;
   private int lastLineNumber = -1;
@@ -321,10 +322,11 @@ final class AsmMethodSource implements MethodSource {
   }
 
   private StackFrame getFrame(AbstractInsnNode insn) {
-    StackFrame frame = frames.get(insn);
+    int idx = instructions.indexOf(insn);
+    StackFrame frame = frames[idx];
     if (frame == null) {
       frame = new StackFrame(this);
-      frames.put(insn, frame);
+      frames[idx] = frame;
     }
     return frame;
   }
@@ -481,18 +483,22 @@ final class AsmMethodSource implements MethodSource {
       }
     }
 
-    Unit o = units.put(insn, u);
+    int idx = instructions.indexOf(insn);
+    Unit o = units[idx];
+    units[idx] = u;
     if (o != null) {
       throw new AssertionError(insn.getOpcode() + " already has a unit, " + o);
     }
   }
 
   void mergeUnits(AbstractInsnNode insn, Unit u) {
-    Unit prev = units.put(insn, u);
-    if (prev != null) {
-      Unit merged = new UnitContainer(prev, u);
-      units.put(insn, merged);
-    }
+    int idx = instructions.indexOf(insn);
+    Unit prev = units[idx];
+    units[idx] = prev == null ? u : new UnitContainer(prev, u);
+  }
+
+  private boolean hasUnit(AbstractInsnNode insn) {
+    return units[instructions.indexOf(insn)] != null;
   }
 
   Local newStackLocal() {
@@ -504,7 +510,7 @@ final class AsmMethodSource implements MethodSource {
 
   @SuppressWarnings("unchecked")
   <A extends Unit> A getUnit(AbstractInsnNode insn) {
-    return (A) units.get(insn);
+    return (A) units[instructions.indexOf(insn)];
   }
 
   private void assignReadOps(Local l) {
@@ -640,7 +646,7 @@ final class AsmMethodSource implements MethodSource {
   private void convertIincInsn(IincInsnNode insn) {
     Local local = getLocal(insn.var);
     assignReadOps(local);
-    if (!units.containsKey(insn)) {
+    if (!hasUnit(insn)) {
       AddExpr add = Jimple.v().newAddExpr(local, IntConstant.v(insn.incr));
       setUnit(insn, Jimple.v().newAssignStmt(local, add));
     }
@@ -708,7 +714,7 @@ final class AsmMethodSource implements MethodSource {
     int op = insn.getOpcode();
     boolean dword = op == LASTORE || op == DASTORE;
     StackFrame frame = getFrame(insn);
-    if (!units.containsKey(insn)) {
+    if (!hasUnit(insn)) {
       Operand valu = dword ? popImmediateDual() : popImmediate();
       Operand indx = popImmediate();
       Operand base = popLocal();
@@ -953,7 +959,7 @@ final class AsmMethodSource implements MethodSource {
     int op = insn.getOpcode();
     boolean dword = op == LRETURN || op == DRETURN;
     StackFrame frame = getFrame(insn);
-    if (!units.containsKey(insn)) {
+    if (!hasUnit(insn)) {
       Operand val = dword ? popImmediateDual() : popImmediate();
       ReturnStmt ret = Jimple.v().newReturnStmt(val.stackOrValue());
       val.addBox(ret.getOpBox());
@@ -971,8 +977,8 @@ final class AsmMethodSource implements MethodSource {
       /*
        * We can ignore NOP instructions, but for completeness, we handle them
        */
-      if (!units.containsKey(insn)) {
-        units.put(insn, Jimple.v().newNopStmt());
+      if (!hasUnit(insn)) {
+        units[instructions.indexOf(insn)] = Jimple.v().newNopStmt();
       }
     } else if (op >= ACONST_NULL && op <= DCONST_1) {
       convertConstInsn(insn);
@@ -1005,13 +1011,13 @@ final class AsmMethodSource implements MethodSource {
     } else if (op >= IRETURN && op <= ARETURN) {
       convertReturnInsn(insn);
     } else if (op == RETURN) {
-      if (!units.containsKey(insn)) {
+      if (!hasUnit(insn)) {
         setUnit(insn, Jimple.v().newReturnVoidStmt());
       }
     } else if (op == ATHROW) {
       StackFrame frame = getFrame(insn);
       Operand opr;
-      if (!units.containsKey(insn)) {
+      if (!hasUnit(insn)) {
         opr = popImmediate();
         ThrowStmt ts = Jimple.v().newThrowStmt(opr.stackOrValue());
         opr.addBox(ts.getOpBox());
@@ -1026,7 +1032,7 @@ final class AsmMethodSource implements MethodSource {
       push(opr);
     } else if (op == MONITORENTER || op == MONITOREXIT) {
       StackFrame frame = getFrame(insn);
-      if (!units.containsKey(insn)) {
+      if (!hasUnit(insn)) {
         Operand opr = popStackConst();
         MonitorStmt ts = op == MONITORENTER ? Jimple.v().newEnterMonitorStmt(opr.stackOrValue())
             : Jimple.v().newExitMonitorStmt(opr.stackOrValue());
@@ -1102,7 +1108,7 @@ final class AsmMethodSource implements MethodSource {
   private void convertJumpInsn(JumpInsnNode insn) {
     int op = insn.getOpcode();
     if (op == GOTO) {
-      if (!units.containsKey(insn)) {
+      if (!hasUnit(insn)) {
         UnitBox box = Jimple.v().newStmtBox(null);
         labels.put(insn.label, box);
         setUnit(insn, Jimple.v().newGotoStmt(box));
@@ -1111,7 +1117,7 @@ final class AsmMethodSource implements MethodSource {
     }
     /* must be ifX insn */
     StackFrame frame = getFrame(insn);
-    if (!units.containsKey(insn)) {
+    if (!hasUnit(insn)) {
       Operand val = popImmediate();
       Value v = val.stackOrValue();
       ConditionExpr cond;
@@ -1221,7 +1227,7 @@ final class AsmMethodSource implements MethodSource {
 
   private void convertLookupSwitchInsn(LookupSwitchInsnNode insn) {
     StackFrame frame = getFrame(insn);
-    if (units.containsKey(insn)) {
+    if (hasUnit(insn)) {
       frame.mergeIn(pop());
       return;
     }
@@ -1345,7 +1351,7 @@ final class AsmMethodSource implements MethodSource {
       pushDual(opr);
     } else if (!(returnType instanceof VoidType)) {
       push(opr);
-    } else if (!units.containsKey(insn)) {
+    } else if (!hasUnit(insn)) {
       setUnit(insn, Jimple.v().newInvokeStmt(opr.value));
     }
     /*
@@ -1436,7 +1442,7 @@ final class AsmMethodSource implements MethodSource {
       pushDual(opr);
     } else if (!(returnType instanceof VoidType)) {
       push(opr);
-    } else if (!units.containsKey(insn)) {
+    } else if (!hasUnit(insn)) {
       setUnit(insn, Jimple.v().newInvokeStmt(opr.value));
     }
     /*
@@ -1491,7 +1497,7 @@ final class AsmMethodSource implements MethodSource {
 
   private void convertTableSwitchInsn(TableSwitchInsnNode insn) {
     StackFrame frame = getFrame(insn);
-    if (units.containsKey(insn)) {
+    if (hasUnit(insn)) {
       frame.mergeIn(pop());
       return;
     }
@@ -1580,7 +1586,7 @@ final class AsmMethodSource implements MethodSource {
     StackFrame frame = getFrame(insn);
     Operand opr = dword ? popDual() : pop();
     Local local = getLocal(insn.var);
-    if (!units.containsKey(insn)) {
+    if (!hasUnit(insn)) {
       DefinitionStmt as = Jimple.v().newAssignStmt(local, opr.stackOrValue());
       opr.addBox(as.getRightOpBox());
       frame.boxes(as.getRightOpBox());
@@ -1600,7 +1606,7 @@ final class AsmMethodSource implements MethodSource {
       convertVarStoreInsn(insn);
     } else if (op == RET) {
       /* we handle it, even thought it should be removed */
-      if (!units.containsKey(insn)) {
+      if (!hasUnit(insn)) {
         setUnit(insn, Jimple.v().newRetStmt(getLocal(insn.var)));
       }
     } else {
@@ -1617,7 +1623,7 @@ final class AsmMethodSource implements MethodSource {
     // somewhere from the real exception handler in case this is inline
     // code
     if (inlineExceptionLabels.contains(ln)) {
-      if (!units.containsKey(ln)) {
+      if (!hasUnit(ln)) {
         NopStmt nop = Jimple.v().newNopStmt();
         setUnit(ln, nop);
       }
@@ -1651,13 +1657,13 @@ final class AsmMethodSource implements MethodSource {
     /* edge endpoint */
     final AbstractInsnNode insn;
     /* previous stacks at edge */
-    final LinkedList<Operand[]> prevStacks;
+    final ArrayList<Operand[]> prevStacks;
     /* current stack at edge */
     ArrayList<Operand> stack;
 
     Edge(AbstractInsnNode insn, ArrayList<Operand> stack) {
       this.insn = insn;
-      this.prevStacks = new LinkedList<Operand[]>();
+      this.prevStacks = new ArrayList<Operand[]>(1);
       this.stack = stack;
     }
 
@@ -1666,22 +1672,34 @@ final class AsmMethodSource implements MethodSource {
     }
   }
 
-  private Table<AbstractInsnNode, AbstractInsnNode, Edge> edges;
+  /* outgoing edges of a branch, one per target in the order tgt1, tgts (duplicate targets share an edge) */
+  private Edge[][] edges;
+  private int[] edgeSlots;
   private ArrayDeque<Edge> conversionWorklist;
 
   private void addEdges(AbstractInsnNode cur, AbstractInsnNode tgt1, List<LabelNode> tgts) {
-    int lastIdx = tgts == null ? -1 : tgts.size() - 1;
-    Operand[] stackss = (new ArrayList<Operand>(stack)).toArray(new Operand[stack.size()]);
-    AbstractInsnNode tgt = tgt1;
-    int i = 0;
-    tgt_loop: do {
-      Edge edge = edges.get(cur, tgt);
+    Operand[] stackss = stack.toArray(new Operand[stack.size()]);
+    int curIdx = instructions.indexOf(cur);
+    Edge[] succs = edges[curIdx];
+    boolean fresh = succs == null;
+    if (fresh) {
+      succs = edges[curIdx] = new Edge[tgts == null ? 1 : tgts.size() + 1];
+    }
+    tgt_loop: for (int i = 0; i != succs.length; i++) {
+      Edge edge = succs[i];
       if (edge == null) {
-        edge = new Edge(tgt);
-        edge.prevStacks.add(stackss);
-        edges.put(cur, tgt, edge);
-        conversionWorklist.add(edge);
-        continue;
+        AbstractInsnNode tgt = i == 0 ? tgt1 : tgts.get(i - 1);
+        int tgtIdx = instructions.indexOf(tgt);
+        int slot = edgeSlots[tgtIdx];
+        if (slot == 0) {
+          edge = new Edge(tgt);
+          edge.prevStacks.add(stackss);
+          succs[i] = edge;
+          edgeSlots[tgtIdx] = i + 1;
+          conversionWorklist.add(edge);
+          continue;
+        }
+        edge = succs[i] = succs[slot - 1];
       }
       if (edge.stack != null) {
         ArrayList<Operand> stackTemp = edge.stack;
@@ -1703,13 +1721,25 @@ final class AsmMethodSource implements MethodSource {
       edge.stack = new ArrayList<Operand>(stack);
       edge.prevStacks.add(stackss);
       conversionWorklist.add(edge);
-    } while (i <= lastIdx && (tgt = tgts.get(i++)) != null);
+    }
+    if (fresh) {
+      /* reset the target slots for the next branch */
+      edgeSlots[instructions.indexOf(tgt1)] = 0;
+      if (tgts != null) {
+        for (LabelNode tgt : tgts) {
+          edgeSlots[instructions.indexOf(tgt)] = 0;
+        }
+      }
+    }
   }
 
-  private void convert() {
+  private void convert(boolean[] branchTargets) {
     ArrayDeque<Edge> worklist = new ArrayDeque<Edge>();
+    if (!trapHandlers.isEmpty()) {
+      markBranchTargets(branchTargets);
+    }
     for (LabelNode ln : trapHandlers.keySet()) {
-      if (checkInlineExceptionHandler(ln)) {
+      if (checkInlineExceptionHandler(ln, branchTargets)) {
         handleInlineExceptionHandler(ln, worklist);
       } else {
         worklist.add(new Edge(ln, new ArrayList<Operand>()));
@@ -1717,7 +1747,6 @@ final class AsmMethodSource implements MethodSource {
     }
     worklist.add(new Edge(instructions.getFirst(), new ArrayList<Operand>()));
     conversionWorklist = worklist;
-    edges = HashBasedTable.create(1, 1);
 
     do {
       Edge edge = worklist.pollLast();
@@ -1791,7 +1820,6 @@ final class AsmMethodSource implements MethodSource {
       } while ((insn = insn.getNext()) != null);
     } while (!worklist.isEmpty());
     conversionWorklist = null;
-    edges = null;
   }
 
   private void handleInlineExceptionHandler(LabelNode ln, ArrayDeque<Edge> worklist) {
@@ -1811,30 +1839,34 @@ final class AsmMethodSource implements MethodSource {
     inlineExceptionHandlers.put(ln, as);
   }
 
-  private boolean checkInlineExceptionHandler(LabelNode ln) {
-    // If this label is reachable through an exception and through normal
-    // code, we have to split the exceptional case (with the exception on
-    // the stack) from the normal fall-through case without anything on the
-    // stack.
-    for (Iterator<AbstractInsnNode> it = instructions.iterator(); it.hasNext();) {
-      AbstractInsnNode node = it.next();
+  /**
+   * Marks the labels targeted by jumps and by the non-default cases of switches, in a single pass over the instructions.
+   */
+  private void markBranchTargets(boolean[] branchTargets) {
+    for (AbstractInsnNode node = instructions.getFirst(); node != null; node = node.getNext()) {
       if (node instanceof JumpInsnNode) {
-        if (((JumpInsnNode) node).label == ln) {
-          inlineExceptionLabels.add(ln);
-          return true;
-        }
+        branchTargets[instructions.indexOf(((JumpInsnNode) node).label)] = true;
       } else if (node instanceof LookupSwitchInsnNode) {
-        if (((LookupSwitchInsnNode) node).labels.contains(ln)) {
-          inlineExceptionLabels.add(ln);
-          return true;
+        for (LabelNode ln : ((LookupSwitchInsnNode) node).labels) {
+          branchTargets[instructions.indexOf(ln)] = true;
         }
       } else if (node instanceof TableSwitchInsnNode) {
-        if (((TableSwitchInsnNode) node).labels.contains(ln)) {
-          inlineExceptionLabels.add(ln);
-          return true;
+        for (LabelNode ln : ((TableSwitchInsnNode) node).labels) {
+          branchTargets[instructions.indexOf(ln)] = true;
         }
       }
     }
+  }
+
+  private boolean checkInlineExceptionHandler(LabelNode ln, boolean[] branchTargets) {
+    // If this label is reachable through an exception and through normal
+    // code, we have to split the exceptional case (with the exception on
+    // the stack) from the normal fall-through case without anything on the
+    // stack.
+    if (branchTargets[instructions.indexOf(ln)]) {
+      inlineExceptionLabels.add(ln);
+      return true;
+    }
     return false;
   }
 
@@ -1899,14 +1931,14 @@ final class AsmMethodSource implements MethodSource {
     AbstractInsnNode insn = instructions.getFirst();
     ArrayDeque<LabelNode> labls = new ArrayDeque<LabelNode>();
 
-    while (insn != null) {
+    for (int idx = 0; insn != null; idx++) {
       // Save the label to assign it to the next real unit
       if (insn instanceof LabelNode) {
         labls.add((LabelNode) insn);
       }
 
       // Get the unit associated with the current instruction
-      Unit u = units.get(insn);
+      Unit u = units[idx];
       if (u == null) {
         insn = insn.getNext();
         continue;
@@ -1956,7 +1988,7 @@ final class AsmMethodSource implements MethodSource {
       }
 
       // We need to jump to the original implementation
-      Unit targetUnit = units.get(ln);
+      Unit targetUnit = units[instructions.indexOf(ln)];
       GotoStmt gotoImpl = Jimple.v().newGotoStmt(targetUnit);
       body.getUnits().add(gotoImpl);
     }
@@ -1997,36 +2029,45 @@ final class AsmMethodSource implements MethodSource {
     JimpleBody jb = Jimple.v().newBody(m);
     /* initialize */
     int nrInsn = instructions.size();
+    Scratch buf = Scratch.acquire(nrInsn);
     nextLocal = maxLocals;
     locals = new HashMap<Integer, Local>(maxLocals + (maxLocals / 2));
     labels = ArrayListMultimap.create(4, 1);
-    units = new HashMap<AbstractInsnNode, Unit>(nrInsn);
-    frames = new HashMap<AbstractInsnNode, StackFrame>(nrInsn);
+    units = buf.units;
+    frames = buf.frames;
+    edges = buf.edges;
+    edgeSlots = buf.edgeSlots;
     trapHandlers = ArrayListMultimap.create(tryCatchBlocks.size(), 1);
     body = jb;
-    /* retrieve all trap handlers */
-    for (TryCatchBlockNode tc : tryCatchBlocks) {
-      trapHandlers.put(tc.handler, Jimple.v().newStmtBox(null));
-    }
-    /* convert instructions */
     try {
-      convert();
-    } catch (Throwable t) {
-      throw new RuntimeException("Failed to convert " + m, t);
-    }
-
-    /* build body (add units, locals, traps, etc.) */
-    emitLocals();
-    emitTraps();
-    emitUnits();
+      /* retrieve all trap handlers */
+      for (TryCatchBlockNode tc : tryCatchBlocks) {
+        trapHandlers.put(tc.handler, Jimple.v().newStmtBox(null));
+      }
+      /* convert instructions */
+      try {
+        convert(buf.branchTargets);
+      } catch (Throwable t) {
+        throw new RuntimeException("Failed to convert " + m, t);
+      }
 
-    /* clean up */
-    locals = null;
-    labels = null;
-    units = null;
-    stack = null;
-    frames = null;
-    body = null;
+      /* build body (add units, locals, traps, etc.) */
+      emitLocals();
+      emitTraps();
+      emitUnits();
+    } finally {
+      /* clean up */
+      locals = null;
+      labels = null;
+      units = null;
+      stack = null;
+      frames = null;
+      edges = null;
+      edgeSlots = null;
+      conversionWorklist = null;
+      body = null;
+      buf.release(nrInsn);
+    }
 
     // Make sure to inline patterns of the form to enable proper variable
     // splitting and type assignment:
@@ -2045,4 +2086,49 @@ final class AsmMethodSource implements MethodSource {
 
     return jb;
   }
+
+  /**
+   * Buffers indexed by instruction that are reused by all bodies converted on the same thread, so that the conversion does
+   * not allocate hash-based lookup structures proportional to the size of each method. Buffers are cleared on release and
+   * a nested conversion on the same thread gets a fresh instance. Buffers for more than {@link #MAX_RETAINED_SIZE}
+   * instructions are dropped on release, so that a single huge method does not pin memory on every thread.
+   */
+  static final class Scratch {
+    static final int MAX_RETAINED_SIZE = 1 << 12;
+
+    Unit[] units;
+    StackFrame[] frames;
+    Edge[][] edges;
+    int[] edgeSlots;
+    boolean[] branchTargets;
+
+    Scratch(int size) {
+      units = new Unit[size];
+      frames = new StackFrame[size];
+      edges = new Edge[size][];
+      edgeSlots = new int[size];
+      branchTargets = new boolean[size];
+    }
+
+    static Scratch acquire(int size) {
+      Scratch buf = scratch.get();
+      if (buf == null || buf.units.length < size) {
+        return new Scratch(Math.max(size, 64));
+      }
+      scratch.remove();
+      return buf;
+    }
+
+    void release(int size) {
+      if (units.length > MAX_RETAINED_SIZE) {
+        return;
+      }
+      Arrays.fill(units, 0, size, null);
+      Arrays.fill(frames, 0, size, null);
+      Arrays.fill(edges, 0, size, null);
+      Arrays.fill(edgeSlots, 0, size, 0);
+      Arrays.fill(branchTargets, 0, size, false);
+      scratch.set(this);
+    }
+  }
 }
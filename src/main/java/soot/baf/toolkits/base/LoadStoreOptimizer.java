@@ -29,6 +29,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,6 +101,11 @@ public class LoadStoreOptimizer extends BodyTransformer {
   final static private int STORE_LOAD_ELIMINATION = 0;
   final static private int STORE_LOAD_LOAD_ELIMINATION = -1;
 
+  // constants returned by the optimizeStore function.
+  final static private int STORE_UNCHANGED = 0;
+  final static private int STORE_ELIMINATED = 1;
+  final static private int STORE_REORDERED = 2;
+
   private Map<String, String> gOptions;
 
   /** The method that drives the optimizations. */
@@ -112,6 +118,12 @@ public class LoadStoreOptimizer extends BodyTransformer {
     Instance instance = new Instance();
     instance.mBody = body;
     instance.mUnits = body.getUnits();
+    instance.mFast = PhaseOptions.getBoolean(gOptions, "fast");
+    int budget = PhaseOptions.getInt(gOptions, "time-budget");
+    if (budget > 0) {
+      instance.mBudgeted = true;
+      instance.mDeadline = nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+    }
 
     debug = PhaseOptions.getBoolean(gOptions, "debug");
 
@@ -126,6 +138,13 @@ public class LoadStoreOptimizer extends BodyTransformer {
     instance.go();
   }
 
+  /**
+   * Returns the current value of the clock the time budget is measured with, in nanoseconds.
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
   class Instance {
     // Instance vars.
     private Chain<Unit> mUnits;
@@ -134,6 +153,10 @@ public class LoadStoreOptimizer extends BodyTransformer {
     private LocalUses mLocalUses;
     private Map<Unit, Block> mUnitToBlockMap; // maps a unit it's containing block
     private boolean mPass2 = false;
+    private boolean mFast = false; // avoids retrying unchanged blocks and rescanning instruction sequences
+    private boolean mBudgeted = false;
+    private long mDeadline; // in terms of nanoTime()
+    private boolean mOverBudget = false;
 
     void go() {
       if (!mUnits.isEmpty()) {
@@ -145,7 +168,7 @@ public class LoadStoreOptimizer extends BodyTransformer {
         }
         optimizeLoadStores();
 
-        if (PhaseOptions.getBoolean(gOptions, "inter")) {
+        if (PhaseOptions.getBoolean(gOptions, "inter") && !isOverBudget()) {
           if (debug) {
             logger.debug("Calling doInterBlockOptimizations");
           }
@@ -158,7 +181,7 @@ public class LoadStoreOptimizer extends BodyTransformer {
           // propagateBackwardsIndependentHunk(); if(debug) logger.debug("pass 6");
         }
 
-        if (PhaseOptions.getBoolean(gOptions, "sl2") || PhaseOptions.getBoolean(gOptions, "sll2")) {
+        if ((PhaseOptions.getBoolean(gOptions, "sl2") || PhaseOptions.getBoolean(gOptions, "sll2")) && !isOverBudget()) {
           mPass2 = true;
           if (debug) {
             logger.debug("Calling optimizeLoadStore(2)");
@@ -218,6 +241,12 @@ public class LoadStoreOptimizer extends BodyTransformer {
       // build a list of all store units in mUnits
       storeList = buildStoreList();
 
+      // in fast mode, blocks get a new version whenever they are changed, and we remember the version of its block
+      // in which each store was last tried together with the outcome
+      Map<Block, Integer> blockVersions = mFast ? new HashMap<Block, Integer>() : null;
+      Map<Unit, Integer> triedInVersion = mFast ? new HashMap<Unit, Integer>() : null;
+      Map<Unit, Integer> lastOutcome = mFast ? new HashMap<Unit, Integer>() : null;
+
       // Eliminate store/load
       {
 
@@ -231,162 +260,233 @@ public class LoadStoreOptimizer extends BodyTransformer {
           // Iterate over the storeList
           Iterator<Unit> unitIt = storeList.iterator();
 
-          nextUnit: while (unitIt.hasNext()) {
+          while (unitIt.hasNext()) {
             Unit unit = unitIt.next();
-            List<UnitValueBoxPair> uses = mLocalUses.getUsesOf(unit);
-
-            // if uses of a store < 3, attempt some form of store/load elimination
-            if (uses.size() < 3) {
-
-              // check that all uses have only the current store as their definition
-              {
-                Iterator<UnitValueBoxPair> useIt = uses.iterator();
-                while (useIt.hasNext()) {
-                  UnitValueBoxPair pair = useIt.next();
-                  Unit loadUnit = pair.getUnit();
-                  if (!(loadUnit instanceof LoadInst)) {
-                    continue nextUnit;
-                  }
+            if (isOverBudget()) {
+              return;
+            }
 
-                  List<Unit> defs = mLocalDefs.getDefsOfAt((Local) pair.getValueBox().getValue(), loadUnit);
-                  if (defs.size() > 1) {
-                    continue nextUnit;
-                  } else if (defs.get(0) != unit) {
-                    continue nextUnit; // xxx how can you get here?
-                  }
+            int outcome;
+            if (mFast) {
+              // The outcome of optimizing a store only depends on the contents of its block, so if the block did not
+              // change since the last try, it is the same as before
+              Block block = mUnitToBlockMap.get(unit);
+              Integer version = blockVersions.get(block);
+              int current = version == null ? 0 : version;
+              Integer tried = triedInVersion.get(unit);
+              if (tried != null && tried == current) {
+                outcome = lastOutcome.get(unit);
+              } else {
+                long modCount = mUnits.getModificationCount();
+                outcome = optimizeStore(unit);
+                if (modCount != mUnits.getModificationCount()) {
+                  // the store has been tried on the old contents of the block
+                  blockVersions.put(block, current + 1);
+                  triedInVersion.remove(unit);
+                } else {
+                  triedInVersion.put(unit, current);
                 }
+                lastOutcome.put(unit, outcome);
               }
+            } else {
+              outcome = optimizeStore(unit);
+            }
 
-              // Check that all loads are in the same bb as the store
-              {
-                Block storeBlock = mUnitToBlockMap.get(unit);
-
-                Iterator<UnitValueBoxPair> useIt = uses.iterator();
-                while (useIt.hasNext()) {
-                  UnitValueBoxPair pair = useIt.next();
-                  Block useBlock = mUnitToBlockMap.get(pair.getUnit());
-                  if (useBlock != storeBlock) {
-                    continue nextUnit;
-                  }
-                }
+            if (outcome == STORE_ELIMINATED) {
+              unitIt.remove(); // remove store from store list
+              hasChanged = true;
+              hasChangedFlag = false;
+            } else if (outcome == STORE_REORDERED) {
+              if (!hasChangedFlag) {
+                hasChangedFlag = true;
+                hasChanged = true;
               }
+            }
+          }
+        }
+      }
+    }
 
-              // Check for stack independance (automatic reordering may be performed by stackIndependent() fcnt)
-              {
-                Block block;
-                switch (uses.size()) {
-                  case 0: /*
-                           * if(Options.getBoolean(gOptions, "s-elimination")) { // replace store by a pop and remove store
-                           * from store list replaceUnit(unit, Baf.v().newPopInst(((StoreInst)unit).getOpType()));
-                           * unitIt.remove();
-                           *
-                           * hasChanged = true; hasChangedFlag = false; }
-                           */
-                    break;
-
-                  case 1:
-                    if (PhaseOptions.getBoolean(gOptions, "sl")) {
-                      if (!mPass2 || PhaseOptions.getBoolean(gOptions, "sl2")) {
-                        // try to eliminate store/load pair
-                        Unit loadUnit = ((UnitValueBoxPair) uses.get(0)).getUnit();
-                        block = mUnitToBlockMap.get(unit);
-                        int test = stackIndependent(unit, loadUnit, block, STORE_LOAD_ELIMINATION);
-
-                        // xxx
-                        // if(block.getIndexInMethod() < 1 ) { // <13
-                        if (test == SUCCESS || test == SPECIAL_SUCCESS) {
-
-                          block.remove(unit);
-                          block.remove(loadUnit);
-                          unitIt.remove();
-                          hasChanged = true;
-                          hasChangedFlag = false;
+    /**
+     * Attempts to eliminate the given store together with its loads.
+     *
+     * @return STORE_ELIMINATED if the store has been removed, STORE_REORDERED if the code has been reordered without
+     *         removing the store, STORE_UNCHANGED otherwise
+     */
+    private int optimizeStore(Unit unit) {
+      List<UnitValueBoxPair> uses = mLocalUses.getUsesOf(unit);
 
-                          // delme[
-                          if (debug) {
-                            logger.debug("Store/Load elimination occurred case1.");
-                          }
-                          // delme]
-                        } /*
-                           * else if (test == SPECIAL_SUCCESS2) { if(!hasChangedFlag) { hasChangedFlag = true; hasChanged =
-                           * true; } }
-                           */
-                      }
-                    }
-                    break;
-
-                  case 2:
-                    if (PhaseOptions.getBoolean(gOptions, "sll")) {
-                      if (!mPass2 || PhaseOptions.getBoolean(gOptions, "sll2")) {
-                        // try to replace store/load/load trio by a flavor of the dup unit
-                        Unit firstLoad = ((UnitValueBoxPair) uses.get(0)).getUnit();
-                        Unit secondLoad = ((UnitValueBoxPair) uses.get(1)).getUnit();
-                        block = mUnitToBlockMap.get(unit);
-
-                        Unit temp; // xxx try to optimize this
-                        if (mUnits.follows(firstLoad, secondLoad)) {
-                          temp = secondLoad;
-                          secondLoad = firstLoad;
-                          firstLoad = temp;
-                        }
+      // if uses of a store < 3, attempt some form of store/load elimination
+      if (uses.size() >= 3) {
+        return STORE_UNCHANGED;
+      }
 
-                        int result = stackIndependent(unit, firstLoad, block, STORE_LOAD_ELIMINATION);
-                        if (result == SUCCESS) {
-
-                          // move the first load just after its defining store.
-                          block.remove(firstLoad);
-                          block.insertAfter(firstLoad, unit);
-
-                          int res = stackIndependent(unit, secondLoad, block, STORE_LOAD_LOAD_ELIMINATION);
-                          if (res == MAKE_DUP) {
-                            // replace store by dup, drop both loads
-                            Dup1Inst dup = Baf.v().newDup1Inst(((LoadInst) secondLoad).getOpType());
-                            dup.addAllTagsOf(unit);
-                            replaceUnit(unit, dup);
-                            unitIt.remove(); // remove store from store list
-
-                            block.remove(firstLoad);
-                            block.remove(secondLoad);
-
-                            hasChanged = true;
-                            hasChangedFlag = false;
-
-                          } /*
-                             * else if(res == MAKE_DUP1_X1) {
-                             *
-                             * // replace store/load/load by a dup1_x1 Unit stackUnit = getStackItemAt2(unit, block, -2);
-                             *
-                             * if(stackUnit instanceof PushInst) break;
-                             *
-                             * Type underType = type(stackUnit); if(underType == null) { throw new
-                             * RuntimeException("this has to be corrected (loadstoroptimiser.java)" + stackUnit); }
-                             *
-                             * if(debug) { logger.debug("stack unit is: " + stackUnit + " stack type is " + underType);}
-                             * replaceUnit(unit, Baf.v().newDup1_x1Inst(((LoadInst) secondLoad).getOpType(),underType));
-                             * unitIt.remove();
-                             *
-                             * block.remove(firstLoad); block.remove(secondLoad);
-                             *
-                             * hasChanged = true; hasChangedFlag = false; break;
-                             *
-                             * }
-                             */
-
-                        } else if (result == SPECIAL_SUCCESS || result == HAS_CHANGED || result == SPECIAL_SUCCESS2) {
-                          if (!hasChangedFlag) {
-                            hasChangedFlag = true;
-                            hasChanged = true;
-                          }
-                        }
-                      }
+      // check that all uses have only the current store as their definition
+      {
+        Iterator<UnitValueBoxPair> useIt = uses.iterator();
+        while (useIt.hasNext()) {
+          UnitValueBoxPair pair = useIt.next();
+          Unit loadUnit = pair.getUnit();
+          if (!(loadUnit instanceof LoadInst)) {
+            return STORE_UNCHANGED;
+          }
 
-                    }
+          List<Unit> defs = mLocalDefs.getDefsOfAt((Local) pair.getValueBox().getValue(), loadUnit);
+          if (defs.size() > 1) {
+            return STORE_UNCHANGED;
+          } else if (defs.get(0) != unit) {
+            return STORE_UNCHANGED; // xxx how can you get here?
+          }
+        }
+      }
+
+      // Check that all loads are in the same bb as the store
+      {
+        Block storeBlock = mUnitToBlockMap.get(unit);
+
+        Iterator<UnitValueBoxPair> useIt = uses.iterator();
+        while (useIt.hasNext()) {
+          UnitValueBoxPair pair = useIt.next();
+          Block useBlock = mUnitToBlockMap.get(pair.getUnit());
+          if (useBlock != storeBlock) {
+            return STORE_UNCHANGED;
+          }
+        }
+      }
+
+      // Check for stack independance (automatic reordering may be performed by stackIndependent() fcnt)
+      Block block;
+      switch (uses.size()) {
+        case 0: /*
+                 * if(Options.getBoolean(gOptions, "s-elimination")) { // replace store by a pop and remove store from store
+                 * list replaceUnit(unit, Baf.v().newPopInst(((StoreInst)unit).getOpType())); unitIt.remove();
+                 *
+                 * hasChanged = true; hasChangedFlag = false; }
+                 */
+          break;
+
+        case 1:
+          if (PhaseOptions.getBoolean(gOptions, "sl")) {
+            if (!mPass2 || PhaseOptions.getBoolean(gOptions, "sl2")) {
+              // try to eliminate store/load pair
+              Unit loadUnit = ((UnitValueBoxPair) uses.get(0)).getUnit();
+              block = mUnitToBlockMap.get(unit);
+              int test = stackIndependent(unit, loadUnit, block, STORE_LOAD_ELIMINATION);
+
+              // xxx
+              // if(block.getIndexInMethod() < 1 ) { // <13
+              if (test == SUCCESS || test == SPECIAL_SUCCESS) {
+
+                block.remove(unit);
+                block.remove(loadUnit);
+
+                // delme[
+                if (debug) {
+                  logger.debug("Store/Load elimination occurred case1.");
                 }
+                // delme]
+                return STORE_ELIMINATED;
+              } /*
+                 * else if (test == SPECIAL_SUCCESS2) { if(!hasChangedFlag) { hasChangedFlag = true; hasChanged = true; } }
+                 */
+            }
+          }
+          break;
+
+        case 2:
+          if (PhaseOptions.getBoolean(gOptions, "sll")) {
+            if (!mPass2 || PhaseOptions.getBoolean(gOptions, "sll2")) {
+              // try to replace store/load/load trio by a flavor of the dup unit
+              Unit firstLoad = ((UnitValueBoxPair) uses.get(0)).getUnit();
+              Unit secondLoad = ((UnitValueBoxPair) uses.get(1)).getUnit();
+              block = mUnitToBlockMap.get(unit);
+
+              Unit temp; // xxx try to optimize this
+              if (follows(block, firstLoad, secondLoad)) {
+                temp = secondLoad;
+                secondLoad = firstLoad;
+                firstLoad = temp;
+              }
+
+              int result = stackIndependent(unit, firstLoad, block, STORE_LOAD_ELIMINATION);
+              if (result == SUCCESS) {
+
+                // move the first load just after its defining store.
+                block.remove(firstLoad);
+                block.insertAfter(firstLoad, unit);
+
+                int res = stackIndependent(unit, secondLoad, block, STORE_LOAD_LOAD_ELIMINATION);
+                if (res == MAKE_DUP) {
+                  // replace store by dup, drop both loads
+                  Dup1Inst dup = Baf.v().newDup1Inst(((LoadInst) secondLoad).getOpType());
+                  dup.addAllTagsOf(unit);
+                  replaceUnit(unit, dup);
+
+                  block.remove(firstLoad);
+                  block.remove(secondLoad);
+
+                  return STORE_ELIMINATED;
+
+                } /*
+                   * else if(res == MAKE_DUP1_X1) {
+                   *
+                   * // replace store/load/load by a dup1_x1 Unit stackUnit = getStackItemAt2(unit, block, -2);
+                   *
+                   * if(stackUnit instanceof PushInst) break;
+                   *
+                   * Type underType = type(stackUnit); if(underType == null) { throw new
+                   * RuntimeException("this has to be corrected (loadstoroptimiser.java)" + stackUnit); }
+                   *
+                   * if(debug) { logger.debug("stack unit is: " + stackUnit + " stack type is " + underType);}
+                   * replaceUnit(unit, Baf.v().newDup1_x1Inst(((LoadInst) secondLoad).getOpType(),underType));
+                   * unitIt.remove();
+                   *
+                   * block.remove(firstLoad); block.remove(secondLoad);
+                   *
+                   * hasChanged = true; hasChangedFlag = false; break;
+                   *
+                   * }
+                   */
+
+              } else if (result == SPECIAL_SUCCESS || result == HAS_CHANGED || result == SPECIAL_SUCCESS2) {
+                return STORE_REORDERED;
               }
             }
+
           }
+      }
+      return STORE_UNCHANGED;
+    }
+
+    /**
+     * Returns true if aUnit follows aReferenceUnit in the method. In fast mode, only the given block, which must contain both
+     * units, is searched.
+     */
+    private boolean follows(Block block, Unit aUnit, Unit aReferenceUnit) {
+      if (!mFast) {
+        return mUnits.follows(aUnit, aReferenceUnit);
+      }
+      for (Unit u = aUnit; u != null; u = block.getSuccOf(u)) {
+        if (u == aReferenceUnit) {
+          return false;
         }
       }
+      return true;
+    }
+
+    /**
+     * Checks whether the time budget of this method has been used up. Once it has, the optimizer stops and keeps the code
+     * as optimized so far.
+     */
+    private boolean isOverBudget() {
+      if (!mBudgeted || mOverBudget) {
+        return mOverBudget;
+      }
+      if (nanoTime() - mDeadline > 0) {
+        mOverBudget = true;
+        logger.debug("[" + mBody.getMethod().getSignature() + "] Load/store optimization exceeded its time budget");
+      }
+      return mOverBudget;
     }
 
     /**
@@ -420,6 +520,26 @@ public class LoadStoreOptimizer extends BodyTransformer {
       return res;
     }
 
+    /**
+     * Computes, for each unit from 'first' up to but excluding 'to', the stack height that is needed before executing it
+     * for the stack height never to go negative until 'to' is reached. The last entry belongs to 'to' and is 0. Then
+     * isRequiredByFollowingUnits(u, to) holds exactly if the entry of the successor of u is positive, which lets the
+     * candidate search answer it for all units with one pass over the units instead of one pass per unit.
+     */
+    private int[] requiredStackHeights(Unit first, Unit to) {
+      List<Unit> units = new ArrayList<Unit>();
+      for (Unit u = first; u != to && u != null; u = mUnits.getSuccOf(u)) {
+        units.add(u);
+      }
+      int[] required = new int[units.size() + 1];
+      for (int i = units.size() - 1; i >= 0; i--) {
+        Inst inst = (Inst) units.get(i);
+        int in = inst.getInCount();
+        required[i] = Math.max(in, required[i + 1] + in - inst.getOutCount());
+      }
+      return required;
+    }
+
     private int pushStoreToLoad(Unit from, Unit to, Block block) {
       Unit storePred = block.getPredOf(from);
       if (storePred != null) {
@@ -615,6 +735,8 @@ public class LoadStoreOptimizer extends BodyTransformer {
           u = it.next();
         }
         int currentH = 0;
+        int[] required = mFast ? requiredStackHeights(u, to) : null;
+        int index = 0;
 
         // find a candidate to move before the store/load/(load) group
         while (u != to) {
@@ -625,7 +747,7 @@ public class LoadStoreOptimizer extends BodyTransformer {
                 || u instanceof Dup1Inst) {
 
               // verify that unitToMove is not required by following units (until the 'to' unit)
-              if (!isRequiredByFollowingUnits(u, to)) {
+              if (required != null ? required[index + 1] == 0 : !isRequiredByFollowingUnits(u, to)) {
                 unitToMove = u;
               }
 
@@ -657,6 +779,7 @@ public class LoadStoreOptimizer extends BodyTransformer {
           currentH += ((Inst) u).getNetCount();
           unitToMove = null;
           u = it.next();
+          index++;
         }
       }
 
@@ -927,6 +1050,9 @@ public class LoadStoreOptimizer extends BodyTransformer {
         Iterator<Unit> it = tempList.iterator();
         while (it.hasNext()) {
           Unit u = it.next();
+          if (isOverBudget()) {
+            return;
+          }
 
           if (u instanceof LoadInst) {
             if (debug) {
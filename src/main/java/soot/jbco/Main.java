@@ -78,6 +78,7 @@ public class Main {
   public static boolean jbcoDebug = false;
   public static boolean jbcoSummary = true;
   public static boolean jbcoVerbose = false;
+  public static boolean jbcoPipeline = false;
   public static boolean metrics = false;
 
   public static Map<String, Integer> transformsToWeights = new ConcurrentHashMap<>();
@@ -113,6 +114,8 @@ public class Main {
         System.out.println("\t-jbco:silent   -  turn off all output, including summary information.");
         System.out.println("\t-jbco:metrics  -  calculate total vertices and edges;\n"
             + "\t                  calculate avg. and highest graph degrees.");
+        System.out.println("\t-jbco:pipeline -  share stack heights between transformations\n"
+            + "\t                  and update renamed references in parallel.");
         System.out.println("\t-jbco:debug    -  turn on extra debugging like\n"
             + "\t                  stack height and type verifier.\n\nTransformations ( -t:[W:]<name>[:pattern] )\n"
             + "\tW              -  specify obfuscation weight (0-9)\n"
@@ -174,6 +177,10 @@ public class Main {
         jbcoDebug = true;
         remove[i] = true;
         rcount++;
+      } else if (arg.equals("-jbco:pipeline")) {
+        jbcoPipeline = true;
+        remove[i] = true;
+        rcount++;
       } else if (arg.startsWith("-i") && arg.length() > 4 && arg.charAt(3) == ':' && arg.charAt(2) == 't') {
         Object o = null;
         arg = arg.substring(4);
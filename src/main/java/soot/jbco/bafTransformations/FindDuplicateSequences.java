@@ -182,8 +182,8 @@ public class FindDuplicateSequences extends BodyTransformer implements IJbcoTran
       List<Unit> unitIDs = new ArrayList<Unit>();
 
       if (changed) {
-        stackHeightsBefore = StackTypeHeightCalculator.calculateStackHeights(b, bafToJLocals);
-        bug = StackTypeHeightCalculator.bug;
+        stackHeightsBefore = StackTypeHeightCalculator.getStackHeights(b, bafToJLocals);
+        bug = StackTypeHeightCalculator.getGraph(b);
         changed = false;
       }
 
@@ -22,12 +22,15 @@ package soot.jbco.bafTransformations;
  * #L%
  */
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.WeakHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +50,7 @@ import soot.StmtAddressType;
 import soot.Trap;
 import soot.Type;
 import soot.Unit;
+import soot.UnitBox;
 import soot.VoidType;
 import soot.baf.AddInst;
 import soot.baf.AndInst;
@@ -575,16 +579,120 @@ public class StackTypeHeightCalculator {
     }
   }
 
-  public static StackEffectSwitch sw = new StackTypeHeightCalculator().new StackEffectSwitch();
+  // Body transformations run concurrently, so every thread gets its own switch and graph
+  private static final ThreadLocal<StackEffectSwitch> switches
+      = ThreadLocal.withInitial(() -> new StackTypeHeightCalculator().new StackEffectSwitch());
+  private static final ThreadLocal<BriefUnitGraph> graphs = new ThreadLocal<BriefUnitGraph>();
+
+  /**
+   * The switch of the last calculation outside the pipeline mode. When bodies are transformed concurrently, it may belong to
+   * another thread.
+   *
+   * @deprecated the calculations use a switch per thread, use {@link #updateStack(Unit, Stack)} or
+   *             {@link #getAfterStack(Stack, Unit)} instead
+   */
+  @Deprecated
+  public static StackEffectSwitch sw = switches.get();
+
+  /**
+   * The unit graph of the last calculation outside the pipeline mode. When bodies are transformed concurrently, it may
+   * belong to another thread.
+   *
+   * @deprecated use {@link #getGraph(Body)} instead
+   */
+  @Deprecated
   public static BriefUnitGraph bug = null;
 
+  // Stack heights shared between the Baf transformations in pipeline mode
+  private static final Map<Body, CachedStackHeights> cache
+      = Collections.synchronizedMap(new WeakHashMap<Body, CachedStackHeights>());
+
+  private static class CachedStackHeights {
+    final Map<Local, Local> bafToJLocals;
+    final Object[] shape;
+    final Map<Unit, Stack<Type>> heights;
+
+    CachedStackHeights(Map<Local, Local> bafToJLocals, Object[] shape, Map<Unit, Stack<Type>> heights) {
+      this.bafToJLocals = bafToJLocals;
+      this.shape = shape;
+      this.heights = heights;
+    }
+
+    boolean isValidFor(Map<Local, Local> b2JLocs, Object[] otherShape) {
+      if (bafToJLocals != b2JLocs || shape.length != otherShape.length) {
+        return false;
+      }
+      for (int i = 0; i < shape.length; i++) {
+        if (shape[i] != otherShape[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns everything the stack heights of the body depend on: the units in order, their branch targets and the traps. The
+   * jbco Baf transformations never change an instruction in place, so a body with the same shape has the same heights.
+   */
+  private static Object[] shapeOf(Body b) {
+    List<Object> shape = new ArrayList<Object>(b.getUnits().size() * 2);
+    for (Unit u : b.getUnits()) {
+      shape.add(u);
+      for (UnitBox ub : u.getUnitBoxes()) {
+        shape.add(ub.getUnit());
+      }
+    }
+    for (Trap t : b.getTraps()) {
+      shape.add(t.getBeginUnit());
+      shape.add(t.getEndUnit());
+      shape.add(t.getHandlerUnit());
+      shape.add(t.getException());
+    }
+    return shape.toArray();
+  }
+
+  /**
+   * Returns the stack heights before each unit of the body. In pipeline mode, the heights are computed once and shared by
+   * the transformations until one of them changes the body. The returned map must not be modified.
+   */
+  public static Map<Unit, Stack<Type>> getStackHeights(Body b, Map<Local, Local> b2JLocs) {
+    if (!soot.jbco.Main.jbcoPipeline) {
+      return b2JLocs == null ? calculateStackHeights(b) : calculateStackHeights(b, b2JLocs);
+    }
+
+    Object[] shape = shapeOf(b);
+    CachedStackHeights cached = cache.get(b);
+    if (cached != null && cached.isValidFor(b2JLocs, shape)) {
+      // the graph of an earlier calculation on this thread may be stale
+      graphs.remove();
+      return cached.heights;
+    }
+
+    Map<Unit, Stack<Type>> heights = b2JLocs == null ? calculateStackHeights(b) : calculateStackHeights(b, b2JLocs);
+    cache.put(b, new CachedStackHeights(b2JLocs, shape, heights));
+    return heights;
+  }
+
+  /**
+   * Returns the unit graph of the given body that the last calculation on this thread was based on, or a new one if that
+   * calculation was for another body or its result came from the cache.
+   */
+  public static BriefUnitGraph getGraph(Body b) {
+    BriefUnitGraph bug = graphs.get();
+    if (bug == null || bug.getBody() != b) {
+      bug = new BriefUnitGraph(b);
+    }
+    return bug;
+  }
+
   public static Map<Unit, Stack<Type>> calculateStackHeights(Body b, Map<Local, Local> b2JLocs) {
-    sw.bafToJLocals = b2JLocs;
+    switches.get().bafToJLocals = b2JLocs;
     return calculateStackHeights(b, true);
   }
 
   public static Map<Unit, Stack<Type>> calculateStackHeights(Body b) {
-    sw.bafToJLocals = null;
+    switches.get().bafToJLocals = null;
     return calculateStackHeights(b, false);
   }
 
@@ -594,8 +702,14 @@ public class StackTypeHeightCalculator {
       // System.out.println("\n"+b.getMethod().getName());
     }
 
+    StackEffectSwitch sw = switches.get();
     Map<Unit, Stack<Type>> results = new HashMap<Unit, Stack<Type>>();
-    bug = new BriefUnitGraph(b);
+    BriefUnitGraph bug = new BriefUnitGraph(b);
+    graphs.set(bug);
+    if (!soot.jbco.Main.jbcoPipeline) {
+      StackTypeHeightCalculator.sw = sw;
+      StackTypeHeightCalculator.bug = bug;
+    }
     List<Unit> heads = bug.getHeads();
     for (int i = 0; i < heads.size(); i++) {
       Unit h = heads.get(i);
@@ -608,7 +722,7 @@ public class StackTypeHeightCalculator {
         continue;
       }
 
-      List<Unit> worklist = new ArrayList<Unit>();
+      ArrayDeque<Unit> worklist = new ArrayDeque<Unit>();
       stack = new Stack<Type>();
       if (handlerExc != null) {
         stack.push(handlerExc);
@@ -616,7 +730,7 @@ public class StackTypeHeightCalculator {
       results.put(h, stack);
       worklist.add(h);
       while (!worklist.isEmpty()) {
-        Inst inst = (Inst) worklist.remove(0);
+        Inst inst = (Inst) worklist.poll();
 
         inst.apply(sw);
 
@@ -644,6 +758,7 @@ public class StackTypeHeightCalculator {
   }
 
   public static Stack<Type> updateStack(Unit u, Stack<Type> st) {
+    StackEffectSwitch sw = switches.get();
     u.apply(sw);
     return updateStack(sw, st);
   }
@@ -731,6 +846,7 @@ public class StackTypeHeightCalculator {
 
   public static void printStack(PatchingChain<Unit> units, Map<Unit, Stack<Type>> stacks, boolean before) {
 
+    StackEffectSwitch sw = switches.get();
     int count = 0;
     sw.shouldThrow = false;
     Map<Unit, Integer> indexes = new HashMap<Unit, Integer>();
@@ -812,12 +928,15 @@ public class StackTypeHeightCalculator {
   }
 
   public static Stack<Type> getAfterStack(Body b, Unit u) {
-    Stack<Type> stack = calculateStackHeights(b).get(u);
+    Stack<Type> stack = getStackHeights(b, null).get(u);
+    StackEffectSwitch sw = switches.get();
+    sw.bafToJLocals = null;
     u.apply(sw);
     return updateStack(sw, stack);
   }
 
   public static Stack<Type> getAfterStack(Stack<Type> beforeStack, Unit u) {
+    StackEffectSwitch sw = switches.get();
     u.apply(sw);
     return updateStack(sw, beforeStack);
   }
@@ -156,7 +156,7 @@ public class TryCatchCombiner extends BodyTransformer implements IJbcoTransform
         continue;
       }
 
-      stackHeightsBefore = StackTypeHeightCalculator.calculateStackHeights(b, bafToJLocals);
+      stackHeightsBefore = StackTypeHeightCalculator.getStackHeights(b, bafToJLocals);
       boolean badType = false;
 
       @SuppressWarnings("unchecked")
@@ -194,7 +194,10 @@ public class TryCatchCombiner extends BodyTransformer implements IJbcoTransform
       units.add(storZero);
 
       Stack<Local> varsToLoad = new Stack<Local>();
-      s = stackHeightsBefore.get(begUnit);
+      // the heights may be shared with other transformations, so do not pop from them
+      @SuppressWarnings("unchecked")
+      Stack<Type> beforeBegin = (Stack<Type>) stackHeightsBefore.get(begUnit).clone();
+      s = beforeBegin;
       if (s.size() > 0) {
         for (int i = 0; i < s.size(); i++) {
           Type type = s.pop();
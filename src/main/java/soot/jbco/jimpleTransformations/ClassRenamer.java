@@ -31,7 +31,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import soot.ArrayType;
-import soot.Body;
 import soot.FastHierarchy;
 import soot.G;
 import soot.RefType;
@@ -39,7 +38,6 @@ import soot.Scene;
 import soot.SceneTransformer;
 import soot.Singletons;
 import soot.SootClass;
-import soot.SootMethod;
 import soot.Type;
 import soot.Unit;
 import soot.Value;
@@ -243,64 +241,57 @@ public class ClassRenamer extends SceneTransformer implements IJbcoTransform {
       logger.info("\r\tUpdating bytecode class references");
     }
 
-    for (SootClass sootClass : Scene.v().getApplicationClasses()) {
-      for (SootMethod sootMethod : sootClass.getMethods()) {
-        if (!sootMethod.isConcrete()) {
-          continue;
-        }
-
-        if (isVerbose()) {
-          logger.info("\t\t" + sootMethod.getSignature());
-        }
-        Body aBody;
-        try {
-          aBody = sootMethod.getActiveBody();
-        } catch (Exception e) {
-          continue;
-        }
+    BodyBuilder.forAllApplicationBodies(aBody -> {
+      if (isVerbose()) {
+        logger.info("\t\t" + aBody.getMethod().getSignature());
+      }
 
-        for (Unit u : aBody.getUnits()) {
-          for (ValueBox vb : u.getUseAndDefBoxes()) {
-            Value v = vb.getValue();
-            if (v instanceof ClassConstant) {
-              ClassConstant constant = (ClassConstant) v;
-              RefType type = (RefType) constant.toSootType();
-              RefType updatedType = type.getSootClass().getType();
-              vb.setValue(ClassConstant.fromType(updatedType));
-            } else if (v instanceof Expr) {
-              if (v instanceof CastExpr) {
-                CastExpr castExpr = (CastExpr) v;
-                updateType(castExpr.getCastType());
-              } else if (v instanceof InstanceOfExpr) {
-                InstanceOfExpr instanceOfExpr = (InstanceOfExpr) v;
-                updateType(instanceOfExpr.getCheckType());
-              }
-            } else if (v instanceof Ref) {
-              updateType(v.getType());
+      for (Unit u : aBody.getUnits()) {
+        for (ValueBox vb : u.getUseAndDefBoxes()) {
+          Value v = vb.getValue();
+          if (v instanceof ClassConstant) {
+            ClassConstant constant = (ClassConstant) v;
+            RefType type = (RefType) constant.toSootType();
+            RefType updatedType = type.getSootClass().getType();
+            vb.setValue(ClassConstant.fromType(updatedType));
+          } else if (v instanceof Expr) {
+            if (v instanceof CastExpr) {
+              CastExpr castExpr = (CastExpr) v;
+              updateType(castExpr.getCastType());
+            } else if (v instanceof InstanceOfExpr) {
+              InstanceOfExpr instanceOfExpr = (InstanceOfExpr) v;
+              updateType(instanceOfExpr.getCheckType());
             }
+          } else if (v instanceof Ref) {
+            updateType(v.getType());
           }
         }
       }
-    }
+    });
 
     Scene.v().releaseActiveHierarchy();
     Scene.v().setFastHierarchy(new FastHierarchy());
   }
 
   private void updateType(Type type) {
+    // types are shared between bodies which may be updated concurrently
     if (type instanceof RefType) {
       RefType rt = (RefType) type;
 
-      if (!rt.getSootClass().isLibraryClass() && oldToNewClassNames.containsKey(rt.getClassName())) {
-        rt.setSootClass(newNameToClass.get(oldToNewClassNames.get(rt.getClassName())));
-        rt.setClassName(oldToNewClassNames.get(rt.getClassName()));
+      synchronized (rt) {
+        if (!rt.getSootClass().isLibraryClass() && oldToNewClassNames.containsKey(rt.getClassName())) {
+          rt.setSootClass(newNameToClass.get(oldToNewClassNames.get(rt.getClassName())));
+          rt.setClassName(oldToNewClassNames.get(rt.getClassName()));
+        }
       }
     } else if (type instanceof ArrayType) {
       ArrayType at = (ArrayType) type;
       if (at.baseType instanceof RefType) {
         RefType rt = (RefType) at.baseType;
-        if (!rt.getSootClass().isLibraryClass() && oldToNewClassNames.containsKey(rt.getClassName())) {
-          rt.setSootClass(newNameToClass.get(oldToNewClassNames.get(rt.getClassName())));
+        synchronized (rt) {
+          if (!rt.getSootClass().isLibraryClass() && oldToNewClassNames.containsKey(rt.getClassName())) {
+            rt.setSootClass(newNameToClass.get(oldToNewClassNames.get(rt.getClassName())));
+          }
         }
       }
     }
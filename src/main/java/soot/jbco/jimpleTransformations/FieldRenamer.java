@@ -26,8 +26,10 @@ import static java.util.Collections.emptyList;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -94,6 +96,9 @@ public class FieldRenamer extends SceneTransformer implements IJbcoTransform {
   public static int handedOutRunPairs[] = null;
   public static boolean rename_fields = false;
 
+  // serializes the resolution of the updated field references
+  private static final Object resolveLock = new Object();
+
   protected void internalTransform(String phaseName, Map<String, String> options) {
     if (output) {
       if (rename_fields) {
@@ -171,52 +176,57 @@ public class FieldRenamer extends SceneTransformer implements IJbcoTransform {
       out.println("\r\tUpdating field references in bytecode");
     }
 
+    // retrieveAllBodies() only works the first time it is called, so fetch
+    // any missing bodies here, before the walk which may run concurrently
     for (SootClass sc : Scene.v().getApplicationClasses()) {
       for (SootMethod m : sc.getMethods()) {
-        if (!m.isConcrete()) {
-          continue;
-        }
-
-        if (!m.hasActiveBody()) {
+        if (m.isConcrete() && !m.hasActiveBody()) {
           m.retrieveActiveBody();
         }
+      }
+    }
 
-        for (Unit unit : m.getActiveBody().getUnits()) {
-          for (ValueBox box : unit.getUseAndDefBoxes()) {
-            Value value = box.getValue();
-            if (value instanceof FieldRef) {
-              FieldRef fieldRef = (FieldRef) value;
-              SootFieldRef sootFieldRef = fieldRef.getFieldRef();
-              if (sootFieldRef.declaringClass().isLibraryClass()) {
-                continue;
-              }
+    // the new names are all known, so the references can be updated body by body
+    final Set<String> notRenamed = new HashSet<>(namesToNotRename);
+    BodyBuilder.forAllApplicationBodies(body -> {
+      for (Unit unit : body.getUnits()) {
+        for (ValueBox box : unit.getUseAndDefBoxes()) {
+          Value value = box.getValue();
+          if (value instanceof FieldRef) {
+            FieldRef fieldRef = (FieldRef) value;
+            SootFieldRef sootFieldRef = fieldRef.getFieldRef();
+            if (sootFieldRef.declaringClass().isLibraryClass()) {
+              continue;
+            }
 
-              String oldName = sootFieldRef.name();
-              String fullName = sootFieldRef.declaringClass().getName() + '.' + oldName;
-              String newName = oldToNewFieldNames.get(oldName);
-              if (newName == null || namesToNotRename.contains(fullName)) {
-                continue;
-              }
+            String oldName = sootFieldRef.name();
+            String fullName = sootFieldRef.declaringClass().getName() + '.' + oldName;
+            String newName = oldToNewFieldNames.get(oldName);
+            if (newName == null || notRenamed.contains(fullName)) {
+              continue;
+            }
 
-              if (newName.equals(oldName)) {
-                System.out.println("Strange.. Should not find a field with the same old and new name.");
-              }
-              sootFieldRef = Scene.v().makeFieldRef(sootFieldRef.declaringClass(), newName, sootFieldRef.type(),
-                  sootFieldRef.isStatic());
-              fieldRef.setFieldRef(sootFieldRef);
-              try {
+            if (newName.equals(oldName)) {
+              System.out.println("Strange.. Should not find a field with the same old and new name.");
+            }
+            sootFieldRef = Scene.v().makeFieldRef(sootFieldRef.declaringClass(), newName, sootFieldRef.type(),
+                sootFieldRef.isStatic());
+            fieldRef.setFieldRef(sootFieldRef);
+            try {
+              // resolving may add phantom fields to the classes
+              synchronized (resolveLock) {
                 sootFieldRef.resolve();
-              } catch (Exception e) {
-                System.err.println("********ERROR Updating " + sootFieldRef.name() + " to " + newName);
-                System.err.println("Fields of " + sootFieldRef.declaringClass().getName() + ": "
-                    + sootFieldRef.declaringClass().getFields());
-                throw new RuntimeException(e);
               }
+            } catch (Exception e) {
+              System.err.println("********ERROR Updating " + sootFieldRef.name() + " to " + newName);
+              System.err.println("Fields of " + sootFieldRef.declaringClass().getName() + ": "
+                  + sootFieldRef.declaringClass().getFields());
+              throw new RuntimeException(e);
             }
           }
         }
       }
-    }
+    });
   }
 
   protected void setBooleanTo(SootClass sc, SootField f, boolean value) {
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -45,7 +46,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import soot.ArrayType;
-import soot.Body;
 import soot.FastHierarchy;
 import soot.G;
 import soot.RefType;
@@ -297,61 +297,53 @@ public class MethodRenamer extends SceneTransformer implements IJbcoTransform {
     }
 
     // iterate through application classes, update references of renamed methods
-    for (SootClass applicationClass : Scene.v().getApplicationClasses()) {
-      final List<SootMethod> methods = new ArrayList<>(applicationClass.getMethods());
-      for (SootMethod method : methods) {
-
-        if (!method.isConcrete() || method.getDeclaringClass().isLibraryClass()) {
-          continue;
-        }
-
-        final Body body = getActiveBodySafely(method);
-        if (body == null) {
-          continue;
-        }
+    final Map<SootClass, Map<String, CallRenaming>> callRenamings = new ConcurrentHashMap<>();
+    BodyBuilder.forAllApplicationBodies(body -> {
+      final SootMethod method = body.getMethod();
+      if (method.getDeclaringClass().isLibraryClass()) {
+        return;
+      }
 
-        for (Unit unit : body.getUnits()) {
-          for (ValueBox valueBox : unit.getUseBoxes()) {
-            Value v = valueBox.getValue();
-            if (!(v instanceof InvokeExpr)) {
-              continue;
-            }
+      for (Unit unit : body.getUnits()) {
+        for (ValueBox valueBox : unit.getUseBoxes()) {
+          Value v = valueBox.getValue();
+          if (!(v instanceof InvokeExpr)) {
+            continue;
+          }
 
-            final InvokeExpr invokeExpr = (InvokeExpr) v;
-            final SootMethodRef methodRef = invokeExpr.getMethodRef();
+          final InvokeExpr invokeExpr = (InvokeExpr) v;
+          final SootMethodRef methodRef = invokeExpr.getMethodRef();
 
-            final Set<SootClass> parents = getParents(methodRef.declaringClass());
+          final CallRenaming renaming = getCallRenaming(callRenamings, methodRef);
 
-            // 1. we check if method overrides one from library directly
-            // Note: we cannot use getDeclaringClasses(applicationClass, method) as method can be renamed
-            final Optional<SootClass> declaringLibraryClass = findDeclaringLibraryClass(parents, methodRef);
-            if (declaringLibraryClass.isPresent()) {
-              if (isVerbose()) {
-                logger.info("Skipping replacing method call \"{}\" in \"{}\" as it is overrides one " + " from library {}.",
-                    methodRef.getSignature(), method.getSignature(), declaringLibraryClass.get().getName());
-              }
-              continue;
+          // 1. we check if method overrides one from library directly
+          // Note: we cannot use getDeclaringClasses(applicationClass, method) as method can be renamed
+          if (renaming.declaringLibraryClass != null) {
+            if (isVerbose()) {
+              logger.info("Skipping replacing method call \"{}\" in \"{}\" as it is overrides one " + " from library {}.",
+                  methodRef.getSignature(), method.getSignature(), renaming.declaringLibraryClass.getName());
             }
+            continue;
+          }
 
-            final String newName = getNewName(parents, methodRef.name());
-            // 2. we indirectly check that method is not overrides one from library indirectly:
-            // we will get new name only if no one from class tree do not overrides library method
-            if (newName == null) {
-              continue;
-            }
+          final String newName = renaming.newName;
+          // 2. we indirectly check that method is not overrides one from library indirectly:
+          // we will get new name only if no one from class tree do not overrides library method
+          if (newName == null) {
+            continue;
+          }
 
-            final SootMethodRef newMethodRef = Scene.v().makeMethodRef(methodRef.declaringClass(), newName,
-                methodRef.parameterTypes(), methodRef.returnType(), methodRef.isStatic());
-            invokeExpr.setMethodRef(newMethodRef);
+          final SootMethodRef newMethodRef = Scene.v().makeMethodRef(methodRef.declaringClass(), newName,
+              methodRef.parameterTypes(), methodRef.returnType(), methodRef.isStatic());
+          invokeExpr.setMethodRef(newMethodRef);
 
-            if (isVerbose()) {
-              logger.info("Method call \"{}\" is being replaced with \"{}\" in {}.", methodRef.getSignature(),
-                  newMethodRef.getSignature(), method.getSignature());
-            }
+          if (isVerbose()) {
+            logger.info("Method call \"{}\" is being replaced with \"{}\" in {}.", methodRef.getSignature(),
+                newMethodRef.getSignature(), method.getSignature());
           }
         }
       }
-    }
+    });
 
     Scene.v().releaseActiveHierarchy();
     Scene.v().setFastHierarchy(new FastHierarchy());
@@ -361,6 +353,42 @@ public class MethodRenamer extends SceneTransformer implements IJbcoTransform {
     }
   }
 
+  /**
+   * How calls to a method are renamed. Only depends on the declaring class, the name and the number of parameters of the
+   * referenced method.
+   */
+  private static final class CallRenaming {
+    final SootClass declaringLibraryClass;
+    final String newName;
+
+    CallRenaming(SootClass declaringLibraryClass, String newName) {
+      this.declaringLibraryClass = declaringLibraryClass;
+      this.newName = newName;
+    }
+  }
+
+  /**
+   * Gets the renaming of calls to the given method, computing it on first use. The hierarchy is not thread-safe, so it is
+   * only queried while holding the lock on this transformer.
+   */
+  private CallRenaming getCallRenaming(Map<SootClass, Map<String, CallRenaming>> callRenamings, SootMethodRef methodRef) {
+    final String key = methodRef.name() + '/' + methodRef.parameterTypes().size();
+    final Map<String, CallRenaming> renamings
+        = callRenamings.computeIfAbsent(methodRef.declaringClass(), k -> new ConcurrentHashMap<>());
+
+    CallRenaming renaming = renamings.get(key);
+    if (renaming == null) {
+      synchronized (this) {
+        final Set<SootClass> parents = getParents(methodRef.declaringClass());
+        final Optional<SootClass> declaringLibraryClass = findDeclaringLibraryClass(parents, methodRef);
+        renaming = declaringLibraryClass.isPresent() ? new CallRenaming(declaringLibraryClass.get(), null)
+            : new CallRenaming(null, getNewName(parents, methodRef.name()));
+      }
+      renamings.putIfAbsent(key, renaming);
+    }
+    return renaming;
+  }
+
   /**
    * Creates new <strong>unique</strong> method name.
    *
@@ -523,14 +551,4 @@ public class MethodRenamer extends SceneTransformer implements IJbcoTransform {
     return false;
   }
 
-  private static Body getActiveBodySafely(SootMethod method) {
-    try {
-      return method.getActiveBody();
-    } catch (Exception exception) {
-      logger.warn("Getting Body from SootMethod {} caused exception that was suppressed.", exception);
-    }
-
-    return null;
-  }
-
 }
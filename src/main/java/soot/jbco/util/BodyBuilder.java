@@ -22,11 +22,17 @@ package soot.jbco.util;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import soot.Body;
 import soot.Local;
 import soot.PatchingChain;
 import soot.RefType;
@@ -108,6 +114,57 @@ public class BodyBuilder {
     namesHaveBeenRetrieved = true;
   }
 
+  /**
+   * Applies the given action to the active bodies of all concrete methods of the application classes. In pipeline mode, the
+   * classes are processed concurrently, so the action must only change the body it is given and must not query the
+   * hierarchy without synchronization.
+   */
+  public static void forAllApplicationBodies(final Consumer<Body> action) {
+    if (!soot.jbco.Main.jbcoPipeline) {
+      for (SootClass c : soot.Scene.v().getApplicationClasses()) {
+        applyToBodies(c, action);
+      }
+      return;
+    }
+
+    int threadNum = Runtime.getRuntime().availableProcessors();
+    CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    for (final SootClass c : soot.Scene.v().getApplicationClasses()) {
+      executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          applyToBodies(c, action);
+        }
+
+      });
+    }
+
+    try {
+      executor.awaitCompletion();
+      executor.shutdown();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Could not wait for jbco threads to finish: " + e.getMessage(), e);
+    }
+
+    if (executor.getException() != null) {
+      if (executor.getException() instanceof RuntimeException) {
+        throw (RuntimeException) executor.getException();
+      } else {
+        throw new RuntimeException(executor.getException());
+      }
+    }
+  }
+
+  private static void applyToBodies(SootClass c, Consumer<Body> action) {
+    for (SootMethod m : c.getMethods()) {
+      if (m.isConcrete() && m.hasActiveBody()) {
+        action.accept(m.getActiveBody());
+      }
+    }
+  }
+
   public static Local buildThisLocal(PatchingChain<Unit> units, ThisRef tr, Collection<Local> locals) {
     Local ths = Jimple.v().newLocal("ths", tr.getType());
     locals.add(ths);
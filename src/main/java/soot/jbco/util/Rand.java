@@ -50,4 +50,11 @@ public class Rand {
   public static double getDouble() {
     return r.nextDouble();
   }
+
+  /**
+   * Resets the generator, so that a run of the obfuscator can be repeated.
+   */
+  public static void setSeed(long seed) {
+    r.setSeed(seed);
+  }
 }
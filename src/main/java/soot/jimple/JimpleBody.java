@@ -43,8 +43,8 @@ import soot.jimple.validation.MethodValidator;
 import soot.jimple.validation.NewValidator;
 import soot.jimple.validation.ReturnStatementsValidator;
 import soot.jimple.validation.TypesValidator;
-import soot.options.Options;
 import soot.util.Chain;
+import soot.validation.BodyValidationContext;
 import soot.validation.BodyValidator;
 import soot.validation.ValidationException;
 
@@ -109,13 +109,19 @@ public class JimpleBody extends StmtBody {
    */
   @Override
   public void validate(List<ValidationException> exceptionList) {
-    super.validate(exceptionList);
-    final boolean runAllValidators = Options.v().debug() || Options.v().validate();
-    for (BodyValidator validator : getValidators()) {
-      if (!validator.isBasicValidator() && !runAllValidators) {
-        continue;
+    // Share the graphs and value boxes between all validators
+    final BodyValidationContext context = BodyValidationContext.open(this);
+    try {
+      super.validate(exceptionList);
+      final boolean runAllValidators = context.runAllValidators();
+      for (BodyValidator validator : getValidators()) {
+        if (!validator.isBasicValidator() && !runAllValidators) {
+          continue;
+        }
+        validator.validate(this, exceptionList);
       }
-      validator.validate(this, exceptionList);
+    } finally {
+      context.close();
     }
   }
 
@@ -0,0 +1,176 @@
+package soot.jimple.binary;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Constants of the binary Jimple format.
+ *
+ * <p>
+ * A file holds a single class. All integers except for the header and long and floating point constants are written as
+ * unsigned LEB128 varints, signed values are zigzag encoded first. A file has the following layout:
+ * </p>
+ *
+ * <pre>
+ * file       = MAGIC:u4 VERSION:u2 strings types fieldRefs methodRefs class bodies
+ * strings    = count { length utf8-bytes }
+ * types      = count { kind [payload] }          ref: name:string, array: base:type dims
+ * fieldRefs  = count { class:type name:string type:type static:u1 }
+ * methodRefs = count { class:type name:string count params:type* return:type static:u1 }
+ * class      = length modifiers name:string super:type? count interfaces:type* outer:type? tags fields methods
+ * field      = modifiers name:string type:type tags
+ * method     = modifiers name:string count params:type* return:type count exceptions:type* tags body:offset?
+ * bodies     = length bytes
+ * body       = count { name:string type:type } count { stmt tags } count { exception:type begin end handler }
+ * </pre>
+ *
+ * <p>
+ * Optional entries are written as the index plus one, with zero meaning absent. Statements refer to branch targets by
+ * their position in the unit chain, values refer to locals by their position in the local chain.
+ * </p>
+ */
+final class BinaryJimpleFormat {
+
+  static final int MAGIC = 0x534A4246;
+
+  static final int VERSION = 1;
+
+  // type kinds
+  static final int TYPE_VOID = 0;
+  static final int TYPE_BOOLEAN = 1;
+  static final int TYPE_BYTE = 2;
+  static final int TYPE_CHAR = 3;
+  static final int TYPE_SHORT = 4;
+  static final int TYPE_INT = 5;
+  static final int TYPE_LONG = 6;
+  static final int TYPE_FLOAT = 7;
+  static final int TYPE_DOUBLE = 8;
+  static final int TYPE_NULL = 9;
+  static final int TYPE_UNKNOWN = 10;
+  static final int TYPE_REF = 11;
+  static final int TYPE_ARRAY = 12;
+
+  // statements
+  static final int STMT_NOP = 0;
+  static final int STMT_BREAKPOINT = 1;
+  static final int STMT_INVOKE = 2;
+  static final int STMT_ASSIGN = 3;
+  static final int STMT_IDENTITY = 4;
+  static final int STMT_ENTER_MONITOR = 5;
+  static final int STMT_EXIT_MONITOR = 6;
+  static final int STMT_GOTO = 7;
+  static final int STMT_IF = 8;
+  static final int STMT_LOOKUP_SWITCH = 9;
+  static final int STMT_TABLE_SWITCH = 10;
+  static final int STMT_RET = 11;
+  static final int STMT_RETURN = 12;
+  static final int STMT_RETURN_VOID = 13;
+  static final int STMT_THROW = 14;
+
+  // values
+  static final int VALUE_LOCAL = 0;
+  static final int VALUE_INT = 1;
+  static final int VALUE_LONG = 2;
+  static final int VALUE_FLOAT = 3;
+  static final int VALUE_DOUBLE = 4;
+  static final int VALUE_STRING = 5;
+  static final int VALUE_NULL = 6;
+  static final int VALUE_CLASS = 7;
+  static final int VALUE_METHOD_HANDLE = 8;
+  static final int VALUE_ADD = 9;
+  static final int VALUE_AND = 10;
+  static final int VALUE_CMP = 11;
+  static final int VALUE_CMPG = 12;
+  static final int VALUE_CMPL = 13;
+  static final int VALUE_DIV = 14;
+  static final int VALUE_EQ = 15;
+  static final int VALUE_NE = 16;
+  static final int VALUE_GE = 17;
+  static final int VALUE_GT = 18;
+  static final int VALUE_LE = 19;
+  static final int VALUE_LT = 20;
+  static final int VALUE_MUL = 21;
+  static final int VALUE_OR = 22;
+  static final int VALUE_REM = 23;
+  static final int VALUE_SHL = 24;
+  static final int VALUE_SHR = 25;
+  static final int VALUE_USHR = 26;
+  static final int VALUE_SUB = 27;
+  static final int VALUE_XOR = 28;
+  static final int VALUE_INTERFACE_INVOKE = 29;
+  static final int VALUE_SPECIAL_INVOKE = 30;
+  static final int VALUE_STATIC_INVOKE = 31;
+  static final int VALUE_VIRTUAL_INVOKE = 32;
+  static final int VALUE_DYNAMIC_INVOKE = 33;
+  static final int VALUE_CAST = 34;
+  static final int VALUE_INSTANCE_OF = 35;
+  static final int VALUE_NEW_ARRAY = 36;
+  static final int VALUE_NEW_MULTI_ARRAY = 37;
+  static final int VALUE_NEW = 38;
+  static final int VALUE_LENGTH = 39;
+  static final int VALUE_NEG = 40;
+  static final int VALUE_ARRAY_REF = 41;
+  static final int VALUE_STATIC_FIELD_REF = 42;
+  static final int VALUE_INSTANCE_FIELD_REF = 43;
+  static final int VALUE_PARAMETER_REF = 44;
+  static final int VALUE_CAUGHT_EXCEPTION_REF = 45;
+  static final int VALUE_THIS_REF = 46;
+
+  // tags, all other tags are stored as generic attributes
+  static final int TAG_GENERIC = 0;
+  static final int TAG_LINE_NUMBER = 1;
+  static final int TAG_BYTECODE_OFFSET = 2;
+  static final int TAG_SOURCE_FILE = 3;
+  static final int TAG_SIGNATURE = 4;
+  static final int TAG_DEBUG_TYPE = 5;
+  static final int TAG_DEPRECATED = 6;
+  static final int TAG_SYNTHETIC = 7;
+  static final int TAG_SOURCE_LN_POS = 8;
+  static final int TAG_SOURCE_LN_NAME_POS = 9;
+  static final int TAG_INNER_CLASS = 10;
+  static final int TAG_INNER_CLASS_ATTRIBUTE = 11;
+  static final int TAG_ENCLOSING_METHOD = 12;
+  static final int TAG_INT_CONSTANT_VALUE = 13;
+  static final int TAG_LONG_CONSTANT_VALUE = 14;
+  static final int TAG_FLOAT_CONSTANT_VALUE = 15;
+  static final int TAG_DOUBLE_CONSTANT_VALUE = 16;
+  static final int TAG_STRING_CONSTANT_VALUE = 17;
+  static final int TAG_PARAM_NAMES = 18;
+  static final int TAG_VISIBILITY_ANNOTATION = 19;
+  static final int TAG_VISIBILITY_PARAMETER_ANNOTATION = 20;
+  static final int TAG_ANNOTATION_DEFAULT = 21;
+
+  // annotation elements
+  static final int ELEM_INT = 0;
+  static final int ELEM_LONG = 1;
+  static final int ELEM_FLOAT = 2;
+  static final int ELEM_DOUBLE = 3;
+  static final int ELEM_BOOLEAN = 4;
+  static final int ELEM_STRING = 5;
+  static final int ELEM_CLASS = 6;
+  static final int ELEM_ENUM = 7;
+  static final int ELEM_ARRAY = 8;
+  static final int ELEM_ANNOTATION = 9;
+
+  private BinaryJimpleFormat() {
+  }
+}
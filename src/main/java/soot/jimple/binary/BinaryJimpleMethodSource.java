@@ -0,0 +1,61 @@
+package soot.jimple.binary;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Body;
+import soot.MethodSource;
+import soot.PackManager;
+import soot.SootMethod;
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+
+/**
+ * Method source for a body in a binary Jimple file. Like bodies read from <tt>.jimple</tt> files, the body is run through
+ * the jb pack after it has been decoded.
+ */
+class BinaryJimpleMethodSource implements MethodSource {
+  private static final Logger logger = LoggerFactory.getLogger(BinaryJimpleMethodSource.class);
+
+  private final BinaryJimpleReader reader;
+  private final int offset;
+  private final int length;
+
+  BinaryJimpleMethodSource(BinaryJimpleReader reader, int offset, int length) {
+    this.reader = reader;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public Body getBody(SootMethod m, String phaseName) {
+    if (Options.v().verbose()) {
+      logger.debug("[" + m.getName() + "] Retrieving JimpleBody from binary Jimple...");
+    }
+
+    JimpleBody jb = reader.readBody(m, offset, length);
+    PackManager.v().getPack("jb").apply(jb);
+    return jb;
+  }
+}
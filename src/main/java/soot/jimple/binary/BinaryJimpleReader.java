@@ -0,0 +1,864 @@
+package soot.jimple.binary;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static soot.jimple.binary.BinaryJimpleFormat.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import soot.ArrayType;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.NullType;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.SootResolver;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.UnknownType;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.ClassConstant;
+import soot.jimple.DoubleConstant;
+import soot.jimple.FloatConstant;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LongConstant;
+import soot.jimple.MethodHandle;
+import soot.jimple.NullConstant;
+import soot.jimple.StringConstant;
+import soot.tagkit.AnnotationAnnotationElem;
+import soot.tagkit.AnnotationArrayElem;
+import soot.tagkit.AnnotationBooleanElem;
+import soot.tagkit.AnnotationClassElem;
+import soot.tagkit.AnnotationDefaultTag;
+import soot.tagkit.AnnotationDoubleElem;
+import soot.tagkit.AnnotationElem;
+import soot.tagkit.AnnotationEnumElem;
+import soot.tagkit.AnnotationFloatElem;
+import soot.tagkit.AnnotationIntElem;
+import soot.tagkit.AnnotationLongElem;
+import soot.tagkit.AnnotationStringElem;
+import soot.tagkit.AnnotationTag;
+import soot.tagkit.BytecodeOffsetTag;
+import soot.tagkit.DebugTypeTag;
+import soot.tagkit.DeprecatedTag;
+import soot.tagkit.DoubleConstantValueTag;
+import soot.tagkit.EnclosingMethodTag;
+import soot.tagkit.FloatConstantValueTag;
+import soot.tagkit.GenericAttribute;
+import soot.tagkit.Host;
+import soot.tagkit.InnerClassAttribute;
+import soot.tagkit.InnerClassTag;
+import soot.tagkit.IntegerConstantValueTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.LongConstantValueTag;
+import soot.tagkit.ParamNamesTag;
+import soot.tagkit.SignatureTag;
+import soot.tagkit.SourceFileTag;
+import soot.tagkit.SourceLnNamePosTag;
+import soot.tagkit.SourceLnPosTag;
+import soot.tagkit.StringConstantValueTag;
+import soot.tagkit.SyntheticTag;
+import soot.tagkit.Tag;
+import soot.tagkit.VisibilityAnnotationTag;
+import soot.tagkit.VisibilityParameterAnnotationTag;
+
+/**
+ * Reads a class in the binary Jimple format written by {@link BinaryJimpleWriter}. Only the offsets of the constant pool
+ * entries are read when the reader is created; the class skeleton is built by {@link #readSkeleton(SootClass)} and each
+ * method body is decoded when it is requested from its method source. Bodies may be read concurrently.
+ */
+public class BinaryJimpleReader {
+
+  private final byte[] data;
+
+  private final int[] stringOffsets;
+  private final AtomicReferenceArray<String> strings;
+
+  private final int[] typeOffsets;
+  private final AtomicReferenceArray<Type> types;
+
+  private final int[] fieldRefOffsets;
+  private final int[] methodRefOffsets;
+
+  private final int classOffset;
+  private final int bodiesOffset;
+
+  /**
+   * Reads the binary Jimple file from the given stream. The stream is not closed.
+   */
+  public BinaryJimpleReader(InputStream stream) throws IOException {
+    this(readFully(stream));
+  }
+
+  public BinaryJimpleReader(byte[] data) throws IOException {
+    this.data = data;
+    if (data.length < 6) {
+      throw new IOException("Not a binary Jimple file");
+    }
+    Input in = new Input(0);
+    if (in.readFixedInt() != MAGIC) {
+      throw new IOException("Not a binary Jimple file");
+    }
+    int version = (in.readByte() << 8) | in.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported binary Jimple version " + version + ", expected " + VERSION);
+    }
+
+    stringOffsets = new int[in.readVarInt()];
+    for (int i = 0; i < stringOffsets.length; i++) {
+      stringOffsets[i] = in.pos;
+      int length = in.readVarInt();
+      in.pos += length;
+    }
+    strings = new AtomicReferenceArray<String>(stringOffsets.length);
+
+    typeOffsets = new int[in.readVarInt()];
+    for (int i = 0; i < typeOffsets.length; i++) {
+      typeOffsets[i] = in.pos;
+      switch (in.readByte()) {
+        case TYPE_REF:
+          in.readVarInt();
+          break;
+        case TYPE_ARRAY:
+          in.readVarInt();
+          in.readVarInt();
+          break;
+        default:
+          break;
+      }
+    }
+    types = new AtomicReferenceArray<Type>(typeOffsets.length);
+
+    fieldRefOffsets = new int[in.readVarInt()];
+    for (int i = 0; i < fieldRefOffsets.length; i++) {
+      fieldRefOffsets[i] = in.pos;
+      in.readVarInt();
+      in.readVarInt();
+      in.readVarInt();
+      in.readByte();
+    }
+
+    methodRefOffsets = new int[in.readVarInt()];
+    for (int i = 0; i < methodRefOffsets.length; i++) {
+      methodRefOffsets[i] = in.pos;
+      in.readVarInt();
+      in.readVarInt();
+      for (int n = in.readVarInt(); n > 0; n--) {
+        in.readVarInt();
+      }
+      in.readVarInt();
+      in.readByte();
+    }
+
+    int classLength = in.readVarInt();
+    classOffset = in.pos;
+    in.pos += classLength;
+    int length = in.readVarInt();
+    bodiesOffset = in.pos;
+    if (bodiesOffset + length != data.length) {
+      throw new IOException("Corrupt binary Jimple file");
+    }
+  }
+
+  private static byte[] readFully(InputStream stream) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    for (int n; (n = stream.read(buf)) != -1;) {
+      bytes.write(buf, 0, n);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Gets the name of the class in this file
+   */
+  public String getClassName() {
+    Input in = new Input(classOffset);
+    in.readVarInt();
+    return string(in.readVarInt());
+  }
+
+  /**
+   * Gets the names of all classes that are referenced in this file, including the class itself
+   */
+  public Set<String> getReferencedClasses() {
+    Set<String> classes = new HashSet<String>();
+    for (int offset : typeOffsets) {
+      Input in = new Input(offset);
+      if (in.readByte() == TYPE_REF) {
+        classes.add(string(in.readVarInt()));
+      }
+    }
+    return classes;
+  }
+
+  /**
+   * Fills the given class with the modifiers, superclass, interfaces, fields, methods and tags from this file. Concrete
+   * methods get a method source that reads their body from this file.
+   */
+  public void readSkeleton(SootClass sc) {
+    Input in = new Input(classOffset);
+    int modifiers = in.readVarInt();
+    String name = string(in.readVarInt());
+    if (!sc.getName().equals(name)) {
+      throw new RuntimeException("Invalid SootClass for this binary Jimple file. The SootClass provided is of type: >"
+          + sc.getName() + "< whereas this file is for type: >" + name + "<");
+    }
+    sc.setModifiers(modifiers);
+    int superClass = in.readVarInt();
+    if (superClass != 0) {
+      sc.setSuperclass(classRef(superClass - 1));
+    }
+    for (int n = in.readVarInt(); n > 0; n--) {
+      sc.addInterface(classRef(in.readVarInt()));
+    }
+    int outerClass = in.readVarInt();
+    if (outerClass != 0) {
+      sc.setOuterClass(classRef(outerClass - 1));
+    }
+    readTags(in, sc);
+
+    for (int n = in.readVarInt(); n > 0; n--) {
+      int fieldModifiers = in.readVarInt();
+      String fieldName = string(in.readVarInt());
+      SootField f = Scene.v().makeSootField(fieldName, type(in.readVarInt()), fieldModifiers);
+      readTags(in, f);
+      sc.addField(f);
+    }
+
+    for (int n = in.readVarInt(); n > 0; n--) {
+      int methodModifiers = in.readVarInt();
+      String methodName = string(in.readVarInt());
+      List<Type> parameterTypes = readTypes(in);
+      Type returnType = type(in.readVarInt());
+      int exceptionCount = in.readVarInt();
+      List<SootClass> exceptions = new ArrayList<SootClass>(exceptionCount);
+      for (int i = 0; i < exceptionCount; i++) {
+        exceptions.add(classRef(in.readVarInt()));
+      }
+      SootMethod m = Scene.v().makeSootMethod(methodName, parameterTypes, returnType, methodModifiers, exceptions);
+      readTags(in, m);
+      int body = in.readVarInt();
+      if (body != 0) {
+        int length = in.readVarInt();
+        m.setSource(new BinaryJimpleMethodSource(this, bodiesOffset + body - 1, length));
+      }
+      sc.addMethod(m);
+    }
+  }
+
+  /**
+   * Decodes the body that starts at the given offset in this file
+   */
+  JimpleBody readBody(SootMethod m, int offset, int length) {
+    Input in = new Input(offset);
+    JimpleBody body = new BodyReader(in, m).read();
+    if (in.pos != offset + length) {
+      throw new RuntimeException("Corrupt body of method " + m.getSignature() + " in binary Jimple file");
+    }
+    return body;
+  }
+
+  private String string(int idx) {
+    // Bodies may be read concurrently. Racing threads decode equal entries,
+    // so it does not matter whose entry is kept
+    String s = strings.get(idx);
+    if (s == null) {
+      Input in = new Input(stringOffsets[idx]);
+      int length = in.readVarInt();
+      s = new String(data, in.pos, length, StandardCharsets.UTF_8);
+      strings.set(idx, s);
+    }
+    return s;
+  }
+
+  private String optString(Input in) {
+    int idx = in.readVarInt();
+    return idx == 0 ? null : string(idx - 1);
+  }
+
+  private Type type(int idx) {
+    Type t = types.get(idx);
+    if (t == null) {
+      Input in = new Input(typeOffsets[idx]);
+      int kind = in.readByte();
+      switch (kind) {
+        case TYPE_VOID:
+          t = VoidType.v();
+          break;
+        case TYPE_BOOLEAN:
+          t = BooleanType.v();
+          break;
+        case TYPE_BYTE:
+          t = ByteType.v();
+          break;
+        case TYPE_CHAR:
+          t = CharType.v();
+          break;
+        case TYPE_SHORT:
+          t = ShortType.v();
+          break;
+        case TYPE_INT:
+          t = IntType.v();
+          break;
+        case TYPE_LONG:
+          t = LongType.v();
+          break;
+        case TYPE_FLOAT:
+          t = FloatType.v();
+          break;
+        case TYPE_DOUBLE:
+          t = DoubleType.v();
+          break;
+        case TYPE_NULL:
+          t = NullType.v();
+          break;
+        case TYPE_UNKNOWN:
+          t = UnknownType.v();
+          break;
+        case TYPE_REF:
+          t = RefType.v(string(in.readVarInt()));
+          break;
+        case TYPE_ARRAY:
+          Type base = type(in.readVarInt());
+          t = ArrayType.v(base, in.readVarInt());
+          break;
+        default:
+          throw new RuntimeException("Unknown type kind " + kind + " in binary Jimple file");
+      }
+      types.set(idx, t);
+    }
+    return t;
+  }
+
+  private List<Type> readTypes(Input in) {
+    int count = in.readVarInt();
+    List<Type> result = new ArrayList<Type>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(type(in.readVarInt()));
+    }
+    return result;
+  }
+
+  private SootClass classRef(int typeIdx) {
+    return SootResolver.v().makeClassRef(((RefType) type(typeIdx)).getClassName());
+  }
+
+  private SootFieldRef fieldRef(int idx) {
+    Input in = new Input(fieldRefOffsets[idx]);
+    SootClass cls = classRef(in.readVarInt());
+    String name = string(in.readVarInt());
+    Type type = type(in.readVarInt());
+    return Scene.v().makeFieldRef(cls, name, type, in.readByte() != 0);
+  }
+
+  private SootMethodRef methodRef(int idx) {
+    Input in = new Input(methodRefOffsets[idx]);
+    SootClass cls = classRef(in.readVarInt());
+    String name = string(in.readVarInt());
+    List<Type> parameterTypes = readTypes(in);
+    Type returnType = type(in.readVarInt());
+    return Scene.v().makeMethodRef(cls, name, parameterTypes, returnType, in.readByte() != 0);
+  }
+
+  private void readTags(Input in, Host h) {
+    for (int n = in.readVarInt(); n > 0; n--) {
+      h.addTag(readTag(in));
+    }
+  }
+
+  private Tag readTag(Input in) {
+    int kind = in.readByte();
+    switch (kind) {
+      case TAG_GENERIC: {
+        String name = string(in.readVarInt());
+        int length = in.readVarInt();
+        byte[] value = Arrays.copyOfRange(data, in.pos, in.pos + length);
+        in.pos += length;
+        return new GenericAttribute(name, value);
+      }
+      case TAG_LINE_NUMBER:
+        return new LineNumberTag(in.readVarInt());
+      case TAG_BYTECODE_OFFSET:
+        return new BytecodeOffsetTag(in.readVarInt());
+      case TAG_SOURCE_FILE: {
+        String sourceFile = optString(in);
+        return new SourceFileTag(sourceFile, optString(in));
+      }
+      case TAG_SIGNATURE:
+        return new SignatureTag(string(in.readVarInt()));
+      case TAG_DEBUG_TYPE:
+        return new DebugTypeTag(string(in.readVarInt()));
+      case TAG_DEPRECATED:
+        return new DeprecatedTag();
+      case TAG_SYNTHETIC:
+        return new SyntheticTag();
+      case TAG_SOURCE_LN_POS:
+        return new SourceLnPosTag(in.readSignedVarInt(), in.readSignedVarInt(), in.readSignedVarInt(),
+            in.readSignedVarInt());
+      case TAG_SOURCE_LN_NAME_POS: {
+        String fileName = optString(in);
+        return new SourceLnNamePosTag(fileName, in.readSignedVarInt(), in.readSignedVarInt(), in.readSignedVarInt(),
+            in.readSignedVarInt());
+      }
+      case TAG_INNER_CLASS:
+        return readInnerClass(in);
+      case TAG_INNER_CLASS_ATTRIBUTE: {
+        int count = in.readVarInt();
+        ArrayList<InnerClassTag> specs = new ArrayList<InnerClassTag>(count);
+        for (int i = 0; i < count; i++) {
+          specs.add(readInnerClass(in));
+        }
+        return new InnerClassAttribute(specs);
+      }
+      case TAG_ENCLOSING_METHOD: {
+        String cls = optString(in);
+        String method = optString(in);
+        return new EnclosingMethodTag(cls, method, optString(in));
+      }
+      case TAG_INT_CONSTANT_VALUE:
+        return new IntegerConstantValueTag(in.readSignedVarInt());
+      case TAG_LONG_CONSTANT_VALUE:
+        return new LongConstantValueTag(in.readLong());
+      case TAG_FLOAT_CONSTANT_VALUE:
+        return new FloatConstantValueTag(Float.intBitsToFloat(in.readFixedInt()));
+      case TAG_DOUBLE_CONSTANT_VALUE:
+        return new DoubleConstantValueTag(Double.longBitsToDouble(in.readLong()));
+      case TAG_STRING_CONSTANT_VALUE:
+        return new StringConstantValueTag(string(in.readVarInt()));
+      case TAG_PARAM_NAMES: {
+        int count = in.readVarInt();
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+          names.add(optString(in));
+        }
+        return new ParamNamesTag(names);
+      }
+      case TAG_VISIBILITY_ANNOTATION:
+        return readVisibilityAnnotation(in);
+      case TAG_VISIBILITY_PARAMETER_ANNOTATION: {
+        int annotationKind = in.readVarInt();
+        int count = in.readVarInt();
+        VisibilityParameterAnnotationTag tag = new VisibilityParameterAnnotationTag(count, annotationKind);
+        for (int i = 0; i < count; i++) {
+          tag.addVisibilityAnnotation(in.readByte() == 0 ? null : readVisibilityAnnotation(in));
+        }
+        return tag;
+      }
+      case TAG_ANNOTATION_DEFAULT:
+        return new AnnotationDefaultTag(readAnnotationElem(in));
+      default:
+        throw new RuntimeException("Unknown tag kind " + kind + " in binary Jimple file");
+    }
+  }
+
+  private InnerClassTag readInnerClass(Input in) {
+    String innerClass = optString(in);
+    String outerClass = optString(in);
+    String name = optString(in);
+    return new InnerClassTag(innerClass, outerClass, name, in.readVarInt());
+  }
+
+  private VisibilityAnnotationTag readVisibilityAnnotation(Input in) {
+    VisibilityAnnotationTag tag = new VisibilityAnnotationTag(in.readVarInt());
+    for (int n = in.readVarInt(); n > 0; n--) {
+      tag.addAnnotation(readAnnotation(in));
+    }
+    return tag;
+  }
+
+  private AnnotationTag readAnnotation(Input in) {
+    String type = string(in.readVarInt());
+    int count = in.readVarInt();
+    List<AnnotationElem> elems = new ArrayList<AnnotationElem>(count);
+    for (int i = 0; i < count; i++) {
+      elems.add(readAnnotationElem(in));
+    }
+    return new AnnotationTag(type, elems);
+  }
+
+  private AnnotationElem readAnnotationElem(Input in) {
+    int elemKind = in.readByte();
+    char kind = (char) in.readVarInt();
+    String name = optString(in);
+    switch (elemKind) {
+      case ELEM_INT:
+        return new AnnotationIntElem(in.readSignedVarInt(), kind, name);
+      case ELEM_LONG:
+        return new AnnotationLongElem(in.readLong(), kind, name);
+      case ELEM_FLOAT:
+        return new AnnotationFloatElem(Float.intBitsToFloat(in.readFixedInt()), kind, name);
+      case ELEM_DOUBLE:
+        return new AnnotationDoubleElem(Double.longBitsToDouble(in.readLong()), kind, name);
+      case ELEM_BOOLEAN:
+        return new AnnotationBooleanElem(in.readByte() != 0, kind, name);
+      case ELEM_STRING:
+        return new AnnotationStringElem(string(in.readVarInt()), kind, name);
+      case ELEM_CLASS:
+        return new AnnotationClassElem(string(in.readVarInt()), kind, name);
+      case ELEM_ENUM: {
+        String typeName = string(in.readVarInt());
+        return new AnnotationEnumElem(typeName, string(in.readVarInt()), kind, name);
+      }
+      case ELEM_ARRAY: {
+        int count = in.readVarInt();
+        ArrayList<AnnotationElem> values = new ArrayList<AnnotationElem>(count);
+        for (int i = 0; i < count; i++) {
+          values.add(readAnnotationElem(in));
+        }
+        return new AnnotationArrayElem(values, kind, name);
+      }
+      case ELEM_ANNOTATION:
+        return new AnnotationAnnotationElem(readAnnotation(in), kind, name);
+      default:
+        throw new RuntimeException("Unknown annotation element kind " + elemKind + " in binary Jimple file");
+    }
+  }
+
+  /**
+   * Decodes a single body. Branch targets are patched once all units have been read.
+   */
+  private class BodyReader {
+    private final Input in;
+    private final SootMethod method;
+    private final Jimple jimple = Jimple.v();
+
+    private Local[] locals;
+    private final List<UnitBox> boxes = new ArrayList<UnitBox>();
+    private int[] boxTargets = new int[16];
+
+    BodyReader(Input in, SootMethod method) {
+      this.in = in;
+      this.method = method;
+    }
+
+    JimpleBody read() {
+      JimpleBody body = jimple.newBody(method);
+
+      locals = new Local[in.readVarInt()];
+      for (int i = 0; i < locals.length; i++) {
+        String name = string(in.readVarInt());
+        locals[i] = jimple.newLocal(name, type(in.readVarInt()));
+        body.getLocals().add(locals[i]);
+      }
+
+      Unit[] units = new Unit[in.readVarInt()];
+      for (int i = 0; i < units.length; i++) {
+        units[i] = readStmt();
+        readTags(in, units[i]);
+        body.getUnits().add(units[i]);
+      }
+
+      for (int n = in.readVarInt(); n > 0; n--) {
+        SootClass exception = classRef(in.readVarInt());
+        UnitBox begin = target();
+        UnitBox end = target();
+        body.getTraps().add(jimple.newTrap(exception, begin, end, target()));
+      }
+
+      for (int i = 0; i < boxes.size(); i++) {
+        boxes.get(i).setUnit(units[boxTargets[i]]);
+      }
+      return body;
+    }
+
+    private UnitBox target() {
+      UnitBox box = jimple.newStmtBox(null);
+      if (boxes.size() == boxTargets.length) {
+        boxTargets = Arrays.copyOf(boxTargets, boxTargets.length * 2);
+      }
+      boxTargets[boxes.size()] = in.readVarInt();
+      boxes.add(box);
+      return box;
+    }
+
+    private Unit readStmt() {
+      int code = in.readByte();
+      switch (code) {
+        case STMT_NOP:
+          return jimple.newNopStmt();
+        case STMT_BREAKPOINT:
+          return jimple.newBreakpointStmt();
+        case STMT_INVOKE:
+          return jimple.newInvokeStmt(readValue());
+        case STMT_ASSIGN: {
+          Value left = readValue();
+          return jimple.newAssignStmt(left, readValue());
+        }
+        case STMT_IDENTITY: {
+          Value left = readValue();
+          return jimple.newIdentityStmt(left, readValue());
+        }
+        case STMT_ENTER_MONITOR:
+          return jimple.newEnterMonitorStmt(readValue());
+        case STMT_EXIT_MONITOR:
+          return jimple.newExitMonitorStmt(readValue());
+        case STMT_GOTO:
+          return jimple.newGotoStmt(target());
+        case STMT_IF: {
+          Value condition = readValue();
+          return jimple.newIfStmt(condition, target());
+        }
+        case STMT_LOOKUP_SWITCH: {
+          Value key = readValue();
+          int count = in.readVarInt();
+          List<IntConstant> values = new ArrayList<IntConstant>(count);
+          List<UnitBox> targets = new ArrayList<UnitBox>(count);
+          for (int i = 0; i < count; i++) {
+            values.add(IntConstant.v(in.readSignedVarInt()));
+            targets.add(target());
+          }
+          return jimple.newLookupSwitchStmt(key, values, targets, target());
+        }
+        case STMT_TABLE_SWITCH: {
+          Value key = readValue();
+          int low = in.readSignedVarInt();
+          int high = in.readSignedVarInt();
+          int count = in.readVarInt();
+          List<UnitBox> targets = new ArrayList<UnitBox>(count);
+          for (int i = 0; i < count; i++) {
+            targets.add(target());
+          }
+          return jimple.newTableSwitchStmt(key, low, high, targets, target());
+        }
+        case STMT_RET:
+          return jimple.newRetStmt(readValue());
+        case STMT_RETURN:
+          return jimple.newReturnStmt(readValue());
+        case STMT_RETURN_VOID:
+          return jimple.newReturnVoidStmt();
+        case STMT_THROW:
+          return jimple.newThrowStmt(readValue());
+        default:
+          throw new RuntimeException("Unknown statement " + code + " in binary Jimple file");
+      }
+    }
+
+    private List<Value> readValues() {
+      int count = in.readVarInt();
+      List<Value> values = new ArrayList<Value>(count);
+      for (int i = 0; i < count; i++) {
+        values.add(readValue());
+      }
+      return values;
+    }
+
+    private Value readValue() {
+      int code = in.readByte();
+      switch (code) {
+        case VALUE_LOCAL:
+          return locals[in.readVarInt()];
+        case VALUE_INT:
+          return IntConstant.v(in.readSignedVarInt());
+        case VALUE_LONG:
+          return LongConstant.v(in.readLong());
+        case VALUE_FLOAT:
+          return FloatConstant.v(Float.intBitsToFloat(in.readFixedInt()));
+        case VALUE_DOUBLE:
+          return DoubleConstant.v(Double.longBitsToDouble(in.readLong()));
+        case VALUE_STRING:
+          return StringConstant.v(string(in.readVarInt()));
+        case VALUE_NULL:
+          return NullConstant.v();
+        case VALUE_CLASS:
+          return ClassConstant.v(string(in.readVarInt()));
+        case VALUE_METHOD_HANDLE: {
+          SootMethodRef ref = methodRef(in.readVarInt());
+          return MethodHandle.v(ref, in.readVarInt());
+        }
+        case VALUE_ADD:
+          return jimple.newAddExpr(readValue(), readValue());
+        case VALUE_AND:
+          return jimple.newAndExpr(readValue(), readValue());
+        case VALUE_CMP:
+          return jimple.newCmpExpr(readValue(), readValue());
+        case VALUE_CMPG:
+          return jimple.newCmpgExpr(readValue(), readValue());
+        case VALUE_CMPL:
+          return jimple.newCmplExpr(readValue(), readValue());
+        case VALUE_DIV:
+          return jimple.newDivExpr(readValue(), readValue());
+        case VALUE_EQ:
+          return jimple.newEqExpr(readValue(), readValue());
+        case VALUE_NE:
+          return jimple.newNeExpr(readValue(), readValue());
+        case VALUE_GE:
+          return jimple.newGeExpr(readValue(), readValue());
+        case VALUE_GT:
+          return jimple.newGtExpr(readValue(), readValue());
+        case VALUE_LE:
+          return jimple.newLeExpr(readValue(), readValue());
+        case VALUE_LT:
+          return jimple.newLtExpr(readValue(), readValue());
+        case VALUE_MUL:
+          return jimple.newMulExpr(readValue(), readValue());
+        case VALUE_OR:
+          return jimple.newOrExpr(readValue(), readValue());
+        case VALUE_REM:
+          return jimple.newRemExpr(readValue(), readValue());
+        case VALUE_SHL:
+          return jimple.newShlExpr(readValue(), readValue());
+        case VALUE_SHR:
+          return jimple.newShrExpr(readValue(), readValue());
+        case VALUE_USHR:
+          return jimple.newUshrExpr(readValue(), readValue());
+        case VALUE_SUB:
+          return jimple.newSubExpr(readValue(), readValue());
+        case VALUE_XOR:
+          return jimple.newXorExpr(readValue(), readValue());
+        case VALUE_INTERFACE_INVOKE: {
+          Local base = (Local) readValue();
+          SootMethodRef ref = methodRef(in.readVarInt());
+          return jimple.newInterfaceInvokeExpr(base, ref, readValues());
+        }
+        case VALUE_SPECIAL_INVOKE: {
+          Local base = (Local) readValue();
+          SootMethodRef ref = methodRef(in.readVarInt());
+          return jimple.newSpecialInvokeExpr(base, ref, readValues());
+        }
+        case VALUE_VIRTUAL_INVOKE: {
+          Local base = (Local) readValue();
+          SootMethodRef ref = methodRef(in.readVarInt());
+          return jimple.newVirtualInvokeExpr(base, ref, readValues());
+        }
+        case VALUE_STATIC_INVOKE: {
+          SootMethodRef ref = methodRef(in.readVarInt());
+          return jimple.newStaticInvokeExpr(ref, readValues());
+        }
+        case VALUE_DYNAMIC_INVOKE: {
+          SootMethodRef bootstrapRef = methodRef(in.readVarInt());
+          List<Value> bootstrapArgs = readValues();
+          SootMethodRef ref = methodRef(in.readVarInt());
+          int tag = in.readVarInt();
+          return jimple.newDynamicInvokeExpr(bootstrapRef, bootstrapArgs, ref, tag, readValues());
+        }
+        case VALUE_CAST: {
+          Value op = readValue();
+          return jimple.newCastExpr(op, type(in.readVarInt()));
+        }
+        case VALUE_INSTANCE_OF: {
+          Value op = readValue();
+          return jimple.newInstanceOfExpr(op, type(in.readVarInt()));
+        }
+        case VALUE_NEW_ARRAY: {
+          Type baseType = type(in.readVarInt());
+          return jimple.newNewArrayExpr(baseType, readValue());
+        }
+        case VALUE_NEW_MULTI_ARRAY: {
+          ArrayType baseType = (ArrayType) type(in.readVarInt());
+          return jimple.newNewMultiArrayExpr(baseType, readValues());
+        }
+        case VALUE_NEW:
+          return jimple.newNewExpr((RefType) type(in.readVarInt()));
+        case VALUE_LENGTH:
+          return jimple.newLengthExpr(readValue());
+        case VALUE_NEG:
+          return jimple.newNegExpr(readValue());
+        case VALUE_ARRAY_REF: {
+          Value base = readValue();
+          return jimple.newArrayRef(base, readValue());
+        }
+        case VALUE_STATIC_FIELD_REF:
+          return jimple.newStaticFieldRef(fieldRef(in.readVarInt()));
+        case VALUE_INSTANCE_FIELD_REF: {
+          Value base = readValue();
+          return jimple.newInstanceFieldRef(base, fieldRef(in.readVarInt()));
+        }
+        case VALUE_PARAMETER_REF: {
+          Type type = type(in.readVarInt());
+          return jimple.newParameterRef(type, in.readVarInt());
+        }
+        case VALUE_CAUGHT_EXCEPTION_REF:
+          return jimple.newCaughtExceptionRef();
+        case VALUE_THIS_REF:
+          return jimple.newThisRef((RefType) type(in.readVarInt()));
+        default:
+          throw new RuntimeException("Unknown value " + code + " in binary Jimple file");
+      }
+    }
+  }
+
+  /**
+   * A read position in the file
+   */
+  private final class Input {
+    int pos;
+
+    Input(int pos) {
+      this.pos = pos;
+    }
+
+    int readByte() {
+      return data[pos++] & 0xFF;
+    }
+
+    int readVarInt() {
+      int result = 0;
+      for (int shift = 0;; shift += 7) {
+        byte b = data[pos++];
+        result |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return result;
+        }
+      }
+    }
+
+    int readSignedVarInt() {
+      int v = readVarInt();
+      return (v >>> 1) ^ -(v & 1);
+    }
+
+    int readFixedInt() {
+      return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    long readLong() {
+      return ((long) readFixedInt() << 32) | (readFixedInt() & 0xFFFFFFFFL);
+    }
+  }
+}
@@ -0,0 +1,1113 @@
+package soot.jimple.binary;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static soot.jimple.binary.BinaryJimpleFormat.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.ArrayType;
+import soot.Body;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.NullType;
+import soot.RefType;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.Trap;
+import soot.Type;
+import soot.Unit;
+import soot.UnknownType;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.AbstractJimpleValueSwitch;
+import soot.jimple.AbstractStmtSwitch;
+import soot.jimple.AddExpr;
+import soot.jimple.AndExpr;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.BinopExpr;
+import soot.jimple.BreakpointStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.CmpExpr;
+import soot.jimple.CmpgExpr;
+import soot.jimple.CmplExpr;
+import soot.jimple.DivExpr;
+import soot.jimple.DoubleConstant;
+import soot.jimple.DynamicInvokeExpr;
+import soot.jimple.EnterMonitorStmt;
+import soot.jimple.EqExpr;
+import soot.jimple.ExitMonitorStmt;
+import soot.jimple.FloatConstant;
+import soot.jimple.GeExpr;
+import soot.jimple.GotoStmt;
+import soot.jimple.GtExpr;
+import soot.jimple.IdentityStmt;
+import soot.jimple.IfStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.InterfaceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.InvokeStmt;
+import soot.jimple.JimpleBody;
+import soot.jimple.LeExpr;
+import soot.jimple.LengthExpr;
+import soot.jimple.LongConstant;
+import soot.jimple.LookupSwitchStmt;
+import soot.jimple.LtExpr;
+import soot.jimple.MethodHandle;
+import soot.jimple.MulExpr;
+import soot.jimple.NeExpr;
+import soot.jimple.NegExpr;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.NopStmt;
+import soot.jimple.NullConstant;
+import soot.jimple.OrExpr;
+import soot.jimple.ParameterRef;
+import soot.jimple.RemExpr;
+import soot.jimple.RetStmt;
+import soot.jimple.ReturnStmt;
+import soot.jimple.ReturnVoidStmt;
+import soot.jimple.ShlExpr;
+import soot.jimple.ShrExpr;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.StringConstant;
+import soot.jimple.SubExpr;
+import soot.jimple.TableSwitchStmt;
+import soot.jimple.ThisRef;
+import soot.jimple.ThrowStmt;
+import soot.jimple.UshrExpr;
+import soot.jimple.VirtualInvokeExpr;
+import soot.jimple.XorExpr;
+import soot.tagkit.AnnotationAnnotationElem;
+import soot.tagkit.AnnotationArrayElem;
+import soot.tagkit.AnnotationBooleanElem;
+import soot.tagkit.AnnotationClassElem;
+import soot.tagkit.AnnotationDefaultTag;
+import soot.tagkit.AnnotationDoubleElem;
+import soot.tagkit.AnnotationElem;
+import soot.tagkit.AnnotationEnumElem;
+import soot.tagkit.AnnotationFloatElem;
+import soot.tagkit.AnnotationIntElem;
+import soot.tagkit.AnnotationLongElem;
+import soot.tagkit.AnnotationStringElem;
+import soot.tagkit.AnnotationTag;
+import soot.tagkit.BytecodeOffsetTag;
+import soot.tagkit.DebugTypeTag;
+import soot.tagkit.DeprecatedTag;
+import soot.tagkit.DoubleConstantValueTag;
+import soot.tagkit.EnclosingMethodTag;
+import soot.tagkit.FloatConstantValueTag;
+import soot.tagkit.GenericAttribute;
+import soot.tagkit.Host;
+import soot.tagkit.InnerClassAttribute;
+import soot.tagkit.InnerClassTag;
+import soot.tagkit.IntegerConstantValueTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.LongConstantValueTag;
+import soot.tagkit.ParamNamesTag;
+import soot.tagkit.SignatureTag;
+import soot.tagkit.SourceFileTag;
+import soot.tagkit.SourceLnNamePosTag;
+import soot.tagkit.SourceLnPosTag;
+import soot.tagkit.StringConstantValueTag;
+import soot.tagkit.SyntheticTag;
+import soot.tagkit.Tag;
+import soot.tagkit.VisibilityAnnotationTag;
+import soot.tagkit.VisibilityParameterAnnotationTag;
+
+/**
+ * Writes a class and the active bodies of its methods in the binary Jimple format, see {@link BinaryJimpleFormat}. Strings,
+ * types, and field and method references are stored once per file in constant pools. The bodies must be
+ * {@link JimpleBody JimpleBodies}. Of the tags, only those that are needed for writing class files and the ones that
+ * describe source positions are kept.
+ */
+public class BinaryJimpleWriter {
+
+  private final SootClass sc;
+
+  private final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+  private final Buffer stringPool = new Buffer();
+
+  private final Map<Type, Integer> typeIndex = new HashMap<Type, Integer>();
+  private final Buffer typePool = new Buffer();
+
+  private final Map<String, Integer> fieldRefIndex = new HashMap<String, Integer>();
+  private final Buffer fieldRefPool = new Buffer();
+
+  private final Map<String, Integer> methodRefIndex = new HashMap<String, Integer>();
+  private final Buffer methodRefPool = new Buffer();
+
+  /** The buffer that the statement and value switches write to */
+  private Buffer out;
+  private Map<Local, Integer> localIndex;
+  private Map<Unit, Integer> unitIndex;
+
+  private final StmtWriter stmtWriter = new StmtWriter();
+  private final ValueWriter valueWriter = new ValueWriter();
+
+  public BinaryJimpleWriter(SootClass sc) {
+    this.sc = sc;
+  }
+
+  /**
+   * Writes the class to the given stream. The stream is not closed.
+   */
+  public void write(OutputStream stream) throws IOException {
+    Buffer classSection = new Buffer();
+    Buffer bodies = new Buffer();
+    writeClass(classSection, bodies);
+
+    Buffer file = new Buffer();
+    file.writeFixedInt(MAGIC);
+    file.writeByte(VERSION >>> 8);
+    file.writeByte(VERSION);
+    file.writeVarInt(stringIndex.size());
+    file.write(stringPool);
+    file.writeVarInt(typeIndex.size());
+    file.write(typePool);
+    file.writeVarInt(fieldRefIndex.size());
+    file.write(fieldRefPool);
+    file.writeVarInt(methodRefIndex.size());
+    file.write(methodRefPool);
+    file.writeVarInt(classSection.size);
+    file.write(classSection);
+    file.writeVarInt(bodies.size);
+    file.write(bodies);
+    stream.write(file.data, 0, file.size);
+  }
+
+  private void writeClass(Buffer buf, Buffer bodies) {
+    buf.writeVarInt(sc.getModifiers());
+    buf.writeVarInt(string(sc.getName()));
+    buf.writeVarInt(sc.hasSuperclass() ? type(sc.getSuperclass().getType()) + 1 : 0);
+    buf.writeVarInt(sc.getInterfaceCount());
+    for (SootClass i : sc.getInterfaces()) {
+      buf.writeVarInt(type(i.getType()));
+    }
+    buf.writeVarInt(sc.hasOuterClass() ? type(sc.getOuterClass().getType()) + 1 : 0);
+    writeTags(buf, sc);
+
+    buf.writeVarInt(sc.getFieldCount());
+    for (SootField f : sc.getFields()) {
+      buf.writeVarInt(f.getModifiers());
+      buf.writeVarInt(string(f.getName()));
+      buf.writeVarInt(type(f.getType()));
+      writeTags(buf, f);
+    }
+
+    buf.writeVarInt(sc.getMethodCount());
+    for (SootMethod m : sc.getMethods()) {
+      buf.writeVarInt(m.getModifiers());
+      buf.writeVarInt(string(m.getName()));
+      buf.writeVarInt(m.getParameterCount());
+      for (Type t : m.getParameterTypes()) {
+        buf.writeVarInt(type(t));
+      }
+      buf.writeVarInt(type(m.getReturnType()));
+      List<SootClass> exceptions = m.getExceptionsUnsafe();
+      if (exceptions == null) {
+        buf.writeVarInt(0);
+      } else {
+        buf.writeVarInt(exceptions.size());
+        for (SootClass e : exceptions) {
+          buf.writeVarInt(type(e.getType()));
+        }
+      }
+      writeTags(buf, m);
+
+      if (m.hasActiveBody()) {
+        int start = bodies.size;
+        writeBody(bodies, m.getActiveBody());
+        buf.writeVarInt(start + 1);
+        buf.writeVarInt(bodies.size - start);
+      } else {
+        buf.writeVarInt(0);
+      }
+    }
+  }
+
+  private void writeBody(Buffer buf, Body b) {
+    if (!(b instanceof JimpleBody)) {
+      throw new RuntimeException("Binary Jimple only supports Jimple bodies, found " + b.getClass().getName() + " for "
+          + b.getMethod().getSignature());
+    }
+    out = buf;
+    localIndex = new HashMap<Local, Integer>(b.getLocalCount() * 2);
+    unitIndex = new HashMap<Unit, Integer>(b.getUnits().size() * 2);
+
+    buf.writeVarInt(b.getLocalCount());
+    for (Local l : b.getLocals()) {
+      localIndex.put(l, localIndex.size());
+      buf.writeVarInt(string(l.getName()));
+      buf.writeVarInt(type(l.getType()));
+    }
+
+    // branches may go forward, so number all units first
+    for (Unit u : b.getUnits()) {
+      unitIndex.put(u, unitIndex.size());
+    }
+    buf.writeVarInt(unitIndex.size());
+    for (Unit u : b.getUnits()) {
+      u.apply(stmtWriter);
+      writeTags(buf, u);
+    }
+
+    buf.writeVarInt(b.getTraps().size());
+    for (Trap t : b.getTraps()) {
+      buf.writeVarInt(type(t.getException().getType()));
+      buf.writeVarInt(unit(t.getBeginUnit()));
+      buf.writeVarInt(unit(t.getEndUnit()));
+      buf.writeVarInt(unit(t.getHandlerUnit()));
+    }
+
+    out = null;
+    localIndex = null;
+    unitIndex = null;
+  }
+
+  private int unit(Unit u) {
+    Integer idx = unitIndex.get(u);
+    if (idx == null) {
+      throw new RuntimeException("Unit " + u + " is not contained in the body");
+    }
+    return idx;
+  }
+
+  private void value(Value v) {
+    v.apply(valueWriter);
+  }
+
+  private int string(String s) {
+    Integer idx = stringIndex.get(s);
+    if (idx == null) {
+      idx = stringIndex.size();
+      stringIndex.put(s, idx);
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      stringPool.writeVarInt(bytes.length);
+      stringPool.write(bytes);
+    }
+    return idx;
+  }
+
+  /**
+   * Writes an optional string as its index plus one, or zero if the string is null
+   */
+  private void optString(Buffer buf, String s) {
+    buf.writeVarInt(s == null ? 0 : string(s) + 1);
+  }
+
+  private int type(Type t) {
+    Integer idx = typeIndex.get(t);
+    if (idx != null) {
+      return idx;
+    }
+    if (t instanceof RefType) {
+      int name = string(((RefType) t).getClassName());
+      typePool.writeByte(TYPE_REF);
+      typePool.writeVarInt(name);
+    } else if (t instanceof ArrayType) {
+      ArrayType at = (ArrayType) t;
+      int base = type(at.baseType);
+      typePool.writeByte(TYPE_ARRAY);
+      typePool.writeVarInt(base);
+      typePool.writeVarInt(at.numDimensions);
+    } else if (t instanceof IntType) {
+      typePool.writeByte(TYPE_INT);
+    } else if (t instanceof BooleanType) {
+      typePool.writeByte(TYPE_BOOLEAN);
+    } else if (t instanceof ByteType) {
+      typePool.writeByte(TYPE_BYTE);
+    } else if (t instanceof CharType) {
+      typePool.writeByte(TYPE_CHAR);
+    } else if (t instanceof ShortType) {
+      typePool.writeByte(TYPE_SHORT);
+    } else if (t instanceof LongType) {
+      typePool.writeByte(TYPE_LONG);
+    } else if (t instanceof FloatType) {
+      typePool.writeByte(TYPE_FLOAT);
+    } else if (t instanceof DoubleType) {
+      typePool.writeByte(TYPE_DOUBLE);
+    } else if (t instanceof VoidType) {
+      typePool.writeByte(TYPE_VOID);
+    } else if (t instanceof NullType) {
+      typePool.writeByte(TYPE_NULL);
+    } else if (t instanceof UnknownType) {
+      typePool.writeByte(TYPE_UNKNOWN);
+    } else {
+      throw new RuntimeException("Unsupported type in binary Jimple: " + t);
+    }
+    idx = typeIndex.size();
+    typeIndex.put(t, idx);
+    return idx;
+  }
+
+  private int fieldRef(SootFieldRef ref) {
+    String key = (ref.isStatic() ? "static " : "") + ref.getSignature();
+    Integer idx = fieldRefIndex.get(key);
+    if (idx == null) {
+      int cls = type(ref.declaringClass().getType());
+      int name = string(ref.name());
+      int type = type(ref.type());
+      fieldRefPool.writeVarInt(cls);
+      fieldRefPool.writeVarInt(name);
+      fieldRefPool.writeVarInt(type);
+      fieldRefPool.writeByte(ref.isStatic() ? 1 : 0);
+      idx = fieldRefIndex.size();
+      fieldRefIndex.put(key, idx);
+    }
+    return idx;
+  }
+
+  private int methodRef(SootMethodRef ref) {
+    String key = (ref.isStatic() ? "static " : "") + ref.getSignature();
+    Integer idx = methodRefIndex.get(key);
+    if (idx == null) {
+      int cls = type(ref.declaringClass().getType());
+      int name = string(ref.name());
+      List<Type> paramTypes = ref.parameterTypes();
+      int[] params = new int[paramTypes.size()];
+      for (int i = 0; i < params.length; i++) {
+        params[i] = type(paramTypes.get(i));
+      }
+      int ret = type(ref.returnType());
+      methodRefPool.writeVarInt(cls);
+      methodRefPool.writeVarInt(name);
+      methodRefPool.writeVarInt(params.length);
+      for (int p : params) {
+        methodRefPool.writeVarInt(p);
+      }
+      methodRefPool.writeVarInt(ret);
+      methodRefPool.writeByte(ref.isStatic() ? 1 : 0);
+      idx = methodRefIndex.size();
+      methodRefIndex.put(key, idx);
+    }
+    return idx;
+  }
+
+  private void writeTags(Buffer buf, Host h) {
+    List<Tag> tags = h.getTags();
+    if (tags.isEmpty()) {
+      buf.writeVarInt(0);
+      return;
+    }
+    Buffer tagBuf = new Buffer();
+    int count = 0;
+    for (Tag t : tags) {
+      if (writeTag(tagBuf, t)) {
+        count++;
+      }
+    }
+    buf.writeVarInt(count);
+    buf.write(tagBuf);
+  }
+
+  /**
+   * Writes a single tag
+   *
+   * @return true if the tag was written, false if this kind of tag is not stored
+   */
+  private boolean writeTag(Buffer buf, Tag t) {
+    if (t instanceof LineNumberTag) {
+      buf.writeByte(TAG_LINE_NUMBER);
+      buf.writeVarInt(((LineNumberTag) t).getLineNumber());
+    } else if (t instanceof BytecodeOffsetTag) {
+      buf.writeByte(TAG_BYTECODE_OFFSET);
+      buf.writeVarInt(((BytecodeOffsetTag) t).getBytecodeOffset());
+    } else if (t instanceof SourceFileTag) {
+      SourceFileTag sft = (SourceFileTag) t;
+      buf.writeByte(TAG_SOURCE_FILE);
+      optString(buf, sft.getSourceFile());
+      optString(buf, sft.getAbsolutePath());
+    } else if (t instanceof DebugTypeTag) {
+      buf.writeByte(TAG_DEBUG_TYPE);
+      buf.writeVarInt(string(((DebugTypeTag) t).getSignature()));
+    } else if (t instanceof SignatureTag) {
+      buf.writeByte(TAG_SIGNATURE);
+      buf.writeVarInt(string(((SignatureTag) t).getSignature()));
+    } else if (t instanceof DeprecatedTag) {
+      buf.writeByte(TAG_DEPRECATED);
+    } else if (t instanceof SyntheticTag) {
+      buf.writeByte(TAG_SYNTHETIC);
+    } else if (t instanceof SourceLnPosTag) {
+      SourceLnPosTag pos = (SourceLnPosTag) t;
+      if (t instanceof SourceLnNamePosTag) {
+        buf.writeByte(TAG_SOURCE_LN_NAME_POS);
+        optString(buf, ((SourceLnNamePosTag) t).getFileName());
+      } else {
+        buf.writeByte(TAG_SOURCE_LN_POS);
+      }
+      buf.writeSignedVarInt(pos.startLn());
+      buf.writeSignedVarInt(pos.endLn());
+      buf.writeSignedVarInt(pos.startPos());
+      buf.writeSignedVarInt(pos.endPos());
+    } else if (t instanceof InnerClassTag) {
+      buf.writeByte(TAG_INNER_CLASS);
+      writeInnerClass(buf, (InnerClassTag) t);
+    } else if (t instanceof InnerClassAttribute) {
+      List<InnerClassTag> specs = ((InnerClassAttribute) t).getSpecs();
+      buf.writeByte(TAG_INNER_CLASS_ATTRIBUTE);
+      buf.writeVarInt(specs.size());
+      for (InnerClassTag ict : specs) {
+        writeInnerClass(buf, ict);
+      }
+    } else if (t instanceof EnclosingMethodTag) {
+      EnclosingMethodTag emt = (EnclosingMethodTag) t;
+      buf.writeByte(TAG_ENCLOSING_METHOD);
+      optString(buf, emt.getEnclosingClass());
+      optString(buf, emt.getEnclosingMethod());
+      optString(buf, emt.getEnclosingMethodSig());
+    } else if (t instanceof IntegerConstantValueTag) {
+      buf.writeByte(TAG_INT_CONSTANT_VALUE);
+      buf.writeSignedVarInt(((IntegerConstantValueTag) t).getIntValue());
+    } else if (t instanceof LongConstantValueTag) {
+      buf.writeByte(TAG_LONG_CONSTANT_VALUE);
+      buf.writeLong(((LongConstantValueTag) t).getLongValue());
+    } else if (t instanceof FloatConstantValueTag) {
+      buf.writeByte(TAG_FLOAT_CONSTANT_VALUE);
+      buf.writeFixedInt(Float.floatToRawIntBits(((FloatConstantValueTag) t).getFloatValue()));
+    } else if (t instanceof DoubleConstantValueTag) {
+      buf.writeByte(TAG_DOUBLE_CONSTANT_VALUE);
+      buf.writeLong(Double.doubleToRawLongBits(((DoubleConstantValueTag) t).getDoubleValue()));
+    } else if (t instanceof StringConstantValueTag) {
+      buf.writeByte(TAG_STRING_CONSTANT_VALUE);
+      buf.writeVarInt(string(((StringConstantValueTag) t).getStringValue()));
+    } else if (t instanceof ParamNamesTag) {
+      List<String> names = ((ParamNamesTag) t).getNames();
+      buf.writeByte(TAG_PARAM_NAMES);
+      buf.writeVarInt(names.size());
+      for (String n : names) {
+        optString(buf, n);
+      }
+    } else if (t instanceof VisibilityAnnotationTag) {
+      buf.writeByte(TAG_VISIBILITY_ANNOTATION);
+      writeVisibilityAnnotation(buf, (VisibilityAnnotationTag) t);
+    } else if (t instanceof VisibilityParameterAnnotationTag) {
+      VisibilityParameterAnnotationTag vpat = (VisibilityParameterAnnotationTag) t;
+      List<VisibilityAnnotationTag> annotations = vpat.getVisibilityAnnotations();
+      buf.writeByte(TAG_VISIBILITY_PARAMETER_ANNOTATION);
+      buf.writeVarInt(vpat.getKind());
+      buf.writeVarInt(annotations == null ? 0 : annotations.size());
+      if (annotations != null) {
+        for (VisibilityAnnotationTag vat : annotations) {
+          if (vat == null) {
+            buf.writeByte(0);
+          } else {
+            buf.writeByte(1);
+            writeVisibilityAnnotation(buf, vat);
+          }
+        }
+      }
+    } else if (t instanceof AnnotationDefaultTag) {
+      buf.writeByte(TAG_ANNOTATION_DEFAULT);
+      writeAnnotationElem(buf, ((AnnotationDefaultTag) t).getDefaultVal());
+    } else if (t instanceof GenericAttribute) {
+      byte[] value = t.getValue();
+      buf.writeByte(TAG_GENERIC);
+      buf.writeVarInt(string(t.getName()));
+      buf.writeVarInt(value.length);
+      buf.write(value);
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private void writeInnerClass(Buffer buf, InnerClassTag t) {
+    optString(buf, t.getInnerClass());
+    optString(buf, t.getOuterClass());
+    optString(buf, t.getShortName());
+    buf.writeVarInt(t.getAccessFlags());
+  }
+
+  private void writeVisibilityAnnotation(Buffer buf, VisibilityAnnotationTag t) {
+    List<AnnotationTag> annotations = t.getAnnotations();
+    buf.writeVarInt(t.getVisibility());
+    buf.writeVarInt(annotations == null ? 0 : annotations.size());
+    if (annotations != null) {
+      for (AnnotationTag a : annotations) {
+        writeAnnotation(buf, a);
+      }
+    }
+  }
+
+  private void writeAnnotation(Buffer buf, AnnotationTag a) {
+    buf.writeVarInt(string(a.getType()));
+    buf.writeVarInt(a.getElems().size());
+    for (AnnotationElem e : a.getElems()) {
+      writeAnnotationElem(buf, e);
+    }
+  }
+
+  private void writeAnnotationElem(Buffer buf, AnnotationElem e) {
+    int start = buf.size;
+    buf.writeByte(0);
+    buf.writeVarInt(e.getKind());
+    optString(buf, e.getName());
+    int kind;
+    if (e instanceof AnnotationIntElem) {
+      kind = ELEM_INT;
+      buf.writeSignedVarInt(((AnnotationIntElem) e).getValue());
+    } else if (e instanceof AnnotationLongElem) {
+      kind = ELEM_LONG;
+      buf.writeLong(((AnnotationLongElem) e).getValue());
+    } else if (e instanceof AnnotationFloatElem) {
+      kind = ELEM_FLOAT;
+      buf.writeFixedInt(Float.floatToRawIntBits(((AnnotationFloatElem) e).getValue()));
+    } else if (e instanceof AnnotationDoubleElem) {
+      kind = ELEM_DOUBLE;
+      buf.writeLong(Double.doubleToRawLongBits(((AnnotationDoubleElem) e).getValue()));
+    } else if (e instanceof AnnotationBooleanElem) {
+      kind = ELEM_BOOLEAN;
+      buf.writeByte(((AnnotationBooleanElem) e).getValue() ? 1 : 0);
+    } else if (e instanceof AnnotationStringElem) {
+      kind = ELEM_STRING;
+      buf.writeVarInt(string(((AnnotationStringElem) e).getValue()));
+    } else if (e instanceof AnnotationClassElem) {
+      kind = ELEM_CLASS;
+      buf.writeVarInt(string(((AnnotationClassElem) e).getDesc()));
+    } else if (e instanceof AnnotationEnumElem) {
+      kind = ELEM_ENUM;
+      buf.writeVarInt(string(((AnnotationEnumElem) e).getTypeName()));
+      buf.writeVarInt(string(((AnnotationEnumElem) e).getConstantName()));
+    } else if (e instanceof AnnotationArrayElem) {
+      kind = ELEM_ARRAY;
+      List<AnnotationElem> values = ((AnnotationArrayElem) e).getValues();
+      buf.writeVarInt(values.size());
+      for (AnnotationElem v : values) {
+        writeAnnotationElem(buf, v);
+      }
+    } else if (e instanceof AnnotationAnnotationElem) {
+      kind = ELEM_ANNOTATION;
+      writeAnnotation(buf, ((AnnotationAnnotationElem) e).getValue());
+    } else {
+      throw new RuntimeException("Unsupported annotation element: " + e.getClass().getName());
+    }
+    buf.data[start] = (byte) kind;
+  }
+
+  private class StmtWriter extends AbstractStmtSwitch {
+
+    @Override
+    public void caseBreakpointStmt(BreakpointStmt stmt) {
+      out.writeByte(STMT_BREAKPOINT);
+    }
+
+    @Override
+    public void caseInvokeStmt(InvokeStmt stmt) {
+      out.writeByte(STMT_INVOKE);
+      value(stmt.getInvokeExpr());
+    }
+
+    @Override
+    public void caseAssignStmt(AssignStmt stmt) {
+      out.writeByte(STMT_ASSIGN);
+      value(stmt.getLeftOp());
+      value(stmt.getRightOp());
+    }
+
+    @Override
+    public void caseIdentityStmt(IdentityStmt stmt) {
+      out.writeByte(STMT_IDENTITY);
+      value(stmt.getLeftOp());
+      value(stmt.getRightOp());
+    }
+
+    @Override
+    public void caseEnterMonitorStmt(EnterMonitorStmt stmt) {
+      out.writeByte(STMT_ENTER_MONITOR);
+      value(stmt.getOp());
+    }
+
+    @Override
+    public void caseExitMonitorStmt(ExitMonitorStmt stmt) {
+      out.writeByte(STMT_EXIT_MONITOR);
+      value(stmt.getOp());
+    }
+
+    @Override
+    public void caseGotoStmt(GotoStmt stmt) {
+      out.writeByte(STMT_GOTO);
+      out.writeVarInt(unit(stmt.getTarget()));
+    }
+
+    @Override
+    public void caseIfStmt(IfStmt stmt) {
+      out.writeByte(STMT_IF);
+      value(stmt.getCondition());
+      out.writeVarInt(unit(stmt.getTarget()));
+    }
+
+    @Override
+    public void caseLookupSwitchStmt(LookupSwitchStmt stmt) {
+      out.writeByte(STMT_LOOKUP_SWITCH);
+      value(stmt.getKey());
+      int count = stmt.getTargetCount();
+      out.writeVarInt(count);
+      for (int i = 0; i < count; i++) {
+        out.writeSignedVarInt(stmt.getLookupValue(i));
+        out.writeVarInt(unit(stmt.getTarget(i)));
+      }
+      out.writeVarInt(unit(stmt.getDefaultTarget()));
+    }
+
+    @Override
+    public void caseTableSwitchStmt(TableSwitchStmt stmt) {
+      out.writeByte(STMT_TABLE_SWITCH);
+      value(stmt.getKey());
+      out.writeSignedVarInt(stmt.getLowIndex());
+      out.writeSignedVarInt(stmt.getHighIndex());
+      List<Unit> targets = stmt.getTargets();
+      out.writeVarInt(targets.size());
+      for (Unit target : targets) {
+        out.writeVarInt(unit(target));
+      }
+      out.writeVarInt(unit(stmt.getDefaultTarget()));
+    }
+
+    @Override
+    public void caseNopStmt(NopStmt stmt) {
+      out.writeByte(STMT_NOP);
+    }
+
+    @Override
+    public void caseRetStmt(RetStmt stmt) {
+      out.writeByte(STMT_RET);
+      value(stmt.getStmtAddress());
+    }
+
+    @Override
+    public void caseReturnStmt(ReturnStmt stmt) {
+      out.writeByte(STMT_RETURN);
+      value(stmt.getOp());
+    }
+
+    @Override
+    public void caseReturnVoidStmt(ReturnVoidStmt stmt) {
+      out.writeByte(STMT_RETURN_VOID);
+    }
+
+    @Override
+    public void caseThrowStmt(ThrowStmt stmt) {
+      out.writeByte(STMT_THROW);
+      value(stmt.getOp());
+    }
+
+    @Override
+    public void defaultCase(Object obj) {
+      throw new RuntimeException("Unsupported statement in binary Jimple: " + obj);
+    }
+  }
+
+  private class ValueWriter extends AbstractJimpleValueSwitch {
+
+    @Override
+    public void caseLocal(Local l) {
+      Integer idx = localIndex.get(l);
+      if (idx == null) {
+        throw new RuntimeException("Local " + l + " is not declared in the body");
+      }
+      out.writeByte(VALUE_LOCAL);
+      out.writeVarInt(idx);
+    }
+
+    @Override
+    public void caseIntConstant(IntConstant v) {
+      out.writeByte(VALUE_INT);
+      out.writeSignedVarInt(v.value);
+    }
+
+    @Override
+    public void caseLongConstant(LongConstant v) {
+      out.writeByte(VALUE_LONG);
+      out.writeLong(v.value);
+    }
+
+    @Override
+    public void caseFloatConstant(FloatConstant v) {
+      out.writeByte(VALUE_FLOAT);
+      out.writeFixedInt(Float.floatToRawIntBits(v.value));
+    }
+
+    @Override
+    public void caseDoubleConstant(DoubleConstant v) {
+      out.writeByte(VALUE_DOUBLE);
+      out.writeLong(Double.doubleToRawLongBits(v.value));
+    }
+
+    @Override
+    public void caseStringConstant(StringConstant v) {
+      out.writeByte(VALUE_STRING);
+      out.writeVarInt(string(v.value));
+    }
+
+    @Override
+    public void caseNullConstant(NullConstant v) {
+      out.writeByte(VALUE_NULL);
+    }
+
+    @Override
+    public void caseClassConstant(ClassConstant v) {
+      out.writeByte(VALUE_CLASS);
+      out.writeVarInt(string(v.value));
+    }
+
+    @Override
+    public void caseMethodHandle(MethodHandle handle) {
+      out.writeByte(VALUE_METHOD_HANDLE);
+      out.writeVarInt(methodRef(handle.getMethodRef()));
+      out.writeVarInt(handle.tag);
+    }
+
+    private void binop(int code, BinopExpr v) {
+      out.writeByte(code);
+      value(v.getOp1());
+      value(v.getOp2());
+    }
+
+    @Override
+    public void caseAddExpr(AddExpr v) {
+      binop(VALUE_ADD, v);
+    }
+
+    @Override
+    public void caseAndExpr(AndExpr v) {
+      binop(VALUE_AND, v);
+    }
+
+    @Override
+    public void caseCmpExpr(CmpExpr v) {
+      binop(VALUE_CMP, v);
+    }
+
+    @Override
+    public void caseCmpgExpr(CmpgExpr v) {
+      binop(VALUE_CMPG, v);
+    }
+
+    @Override
+    public void caseCmplExpr(CmplExpr v) {
+      binop(VALUE_CMPL, v);
+    }
+
+    @Override
+    public void caseDivExpr(DivExpr v) {
+      binop(VALUE_DIV, v);
+    }
+
+    @Override
+    public void caseEqExpr(EqExpr v) {
+      binop(VALUE_EQ, v);
+    }
+
+    @Override
+    public void caseNeExpr(NeExpr v) {
+      binop(VALUE_NE, v);
+    }
+
+    @Override
+    public void caseGeExpr(GeExpr v) {
+      binop(VALUE_GE, v);
+    }
+
+    @Override
+    public void caseGtExpr(GtExpr v) {
+      binop(VALUE_GT, v);
+    }
+
+    @Override
+    public void caseLeExpr(LeExpr v) {
+      binop(VALUE_LE, v);
+    }
+
+    @Override
+    public void caseLtExpr(LtExpr v) {
+      binop(VALUE_LT, v);
+    }
+
+    @Override
+    public void caseMulExpr(MulExpr v) {
+      binop(VALUE_MUL, v);
+    }
+
+    @Override
+    public void caseOrExpr(OrExpr v) {
+      binop(VALUE_OR, v);
+    }
+
+    @Override
+    public void caseRemExpr(RemExpr v) {
+      binop(VALUE_REM, v);
+    }
+
+    @Override
+    public void caseShlExpr(ShlExpr v) {
+      binop(VALUE_SHL, v);
+    }
+
+    @Override
+    public void caseShrExpr(ShrExpr v) {
+      binop(VALUE_SHR, v);
+    }
+
+    @Override
+    public void caseUshrExpr(UshrExpr v) {
+      binop(VALUE_USHR, v);
+    }
+
+    @Override
+    public void caseSubExpr(SubExpr v) {
+      binop(VALUE_SUB, v);
+    }
+
+    @Override
+    public void caseXorExpr(XorExpr v) {
+      binop(VALUE_XOR, v);
+    }
+
+    private void args(InvokeExpr v) {
+      List<Value> args = v.getArgs();
+      out.writeVarInt(args.size());
+      for (Value arg : args) {
+        value(arg);
+      }
+    }
+
+    private void instanceInvoke(int code, InstanceInvokeExpr v) {
+      out.writeByte(code);
+      value(v.getBase());
+      out.writeVarInt(methodRef(v.getMethodRef()));
+      args(v);
+    }
+
+    @Override
+    public void caseInterfaceInvokeExpr(InterfaceInvokeExpr v) {
+      instanceInvoke(VALUE_INTERFACE_INVOKE, v);
+    }
+
+    @Override
+    public void caseSpecialInvokeExpr(SpecialInvokeExpr v) {
+      instanceInvoke(VALUE_SPECIAL_INVOKE, v);
+    }
+
+    @Override
+    public void caseVirtualInvokeExpr(VirtualInvokeExpr v) {
+      instanceInvoke(VALUE_VIRTUAL_INVOKE, v);
+    }
+
+    @Override
+    public void caseStaticInvokeExpr(StaticInvokeExpr v) {
+      out.writeByte(VALUE_STATIC_INVOKE);
+      out.writeVarInt(methodRef(v.getMethodRef()));
+      args(v);
+    }
+
+    @Override
+    public void caseDynamicInvokeExpr(DynamicInvokeExpr v) {
+      out.writeByte(VALUE_DYNAMIC_INVOKE);
+      out.writeVarInt(methodRef(v.getBootstrapMethodRef()));
+      List<Value> bsmArgs = v.getBootstrapArgs();
+      out.writeVarInt(bsmArgs.size());
+      for (Value arg : bsmArgs) {
+        value(arg);
+      }
+      out.writeVarInt(methodRef(v.getMethodRef()));
+      out.writeVarInt(v.getHandleTag());
+      args(v);
+    }
+
+    @Override
+    public void caseCastExpr(CastExpr v) {
+      out.writeByte(VALUE_CAST);
+      value(v.getOp());
+      out.writeVarInt(type(v.getCastType()));
+    }
+
+    @Override
+    public void caseInstanceOfExpr(InstanceOfExpr v) {
+      out.writeByte(VALUE_INSTANCE_OF);
+      value(v.getOp());
+      out.writeVarInt(type(v.getCheckType()));
+    }
+
+    @Override
+    public void caseNewArrayExpr(NewArrayExpr v) {
+      out.writeByte(VALUE_NEW_ARRAY);
+      out.writeVarInt(type(v.getBaseType()));
+      value(v.getSize());
+    }
+
+    @Override
+    public void caseNewMultiArrayExpr(NewMultiArrayExpr v) {
+      out.writeByte(VALUE_NEW_MULTI_ARRAY);
+      out.writeVarInt(type(v.getBaseType()));
+      List<Value> sizes = v.getSizes();
+      out.writeVarInt(sizes.size());
+      for (Value size : sizes) {
+        value(size);
+      }
+    }
+
+    @Override
+    public void caseNewExpr(NewExpr v) {
+      out.writeByte(VALUE_NEW);
+      out.writeVarInt(type(v.getBaseType()));
+    }
+
+    @Override
+    public void caseLengthExpr(LengthExpr v) {
+      out.writeByte(VALUE_LENGTH);
+      value(v.getOp());
+    }
+
+    @Override
+    public void caseNegExpr(NegExpr v) {
+      out.writeByte(VALUE_NEG);
+      value(v.getOp());
+    }
+
+    @Override
+    public void caseArrayRef(ArrayRef v) {
+      out.writeByte(VALUE_ARRAY_REF);
+      value(v.getBase());
+      value(v.getIndex());
+    }
+
+    @Override
+    public void caseStaticFieldRef(StaticFieldRef v) {
+      out.writeByte(VALUE_STATIC_FIELD_REF);
+      out.writeVarInt(fieldRef(v.getFieldRef()));
+    }
+
+    @Override
+    public void caseInstanceFieldRef(InstanceFieldRef v) {
+      out.writeByte(VALUE_INSTANCE_FIELD_REF);
+      value(v.getBase());
+      out.writeVarInt(fieldRef(v.getFieldRef()));
+    }
+
+    @Override
+    public void caseParameterRef(ParameterRef v) {
+      out.writeByte(VALUE_PARAMETER_REF);
+      out.writeVarInt(type(v.getType()));
+      out.writeVarInt(v.getIndex());
+    }
+
+    @Override
+    public void caseCaughtExceptionRef(CaughtExceptionRef v) {
+      out.writeByte(VALUE_CAUGHT_EXCEPTION_REF);
+    }
+
+    @Override
+    public void caseThisRef(ThisRef v) {
+      out.writeByte(VALUE_THIS_REF);
+      out.writeVarInt(type(v.getType()));
+    }
+
+    @Override
+    public void defaultCase(Object v) {
+      throw new RuntimeException("Unsupported value in binary Jimple: " + v);
+    }
+  }
+
+  /**
+   * A growable byte array
+   */
+  private static final class Buffer {
+    byte[] data = new byte[256];
+    int size = 0;
+
+    private void ensure(int n) {
+      if (size + n > data.length) {
+        data = Arrays.copyOf(data, Math.max(data.length * 2, size + n));
+      }
+    }
+
+    void writeByte(int b) {
+      ensure(1);
+      data[size++] = (byte) b;
+    }
+
+    void writeVarInt(int v) {
+      ensure(5);
+      while ((v & ~0x7F) != 0) {
+        data[size++] = (byte) ((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      data[size++] = (byte) v;
+    }
+
+    void writeSignedVarInt(int v) {
+      writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    void writeFixedInt(int v) {
+      ensure(4);
+      data[size++] = (byte) (v >>> 24);
+      data[size++] = (byte) (v >>> 16);
+      data[size++] = (byte) (v >>> 8);
+      data[size++] = (byte) v;
+    }
+
+    void writeLong(long v) {
+      writeFixedInt((int) (v >>> 32));
+      writeFixedInt((int) v);
+    }
+
+    void write(byte[] bytes) {
+      ensure(bytes.length);
+      System.arraycopy(bytes, 0, data, size, bytes.length);
+      size += bytes.length;
+    }
+
+    void write(Buffer other) {
+      ensure(other.size);
+      System.arraycopy(other.data, 0, data, size, other.size);
+      size += other.size;
+    }
+  }
+}
@@ -60,6 +60,12 @@ public class JimpleAST {
     mTree = p.parse();
   }
 
+  /**
+   * Constructor for subclasses that parse the input with a different parser.
+   */
+  protected JimpleAST() {
+  }
+
   /**
    * Reads an entire class from jimple, creates the Soot objects & returns it.
    */
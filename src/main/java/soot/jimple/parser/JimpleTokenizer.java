@@ -0,0 +1,553 @@
+package soot.jimple.parser;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import soot.jimple.parser.lexer.LexerException;
+
+/**
+ * Hand-written lexer for Jimple text that recognizes the same tokens as the SableCC lexer generated from
+ * <code>jimple.scc</code>, including its longest-match and keyword rules. It works directly on a character array and does
+ * not allocate an object per token: the tokenizer itself holds the current token, and its text is only materialized on
+ * demand.
+ */
+final class JimpleTokenizer {
+
+  enum Kind {
+    EOF("end of file"), IDENTIFIER("identifier"), FULL_IDENTIFIER("full identifier"), QUOTED_NAME("quoted name"),
+    AT_IDENTIFIER("at identifier"), STRING_CONSTANT("string constant"), INTEGER_CONSTANT("integer constant"),
+    FLOAT_CONSTANT("float constant"), QUOTE("'"),
+
+    COMMA(","), L_BRACE("{"), R_BRACE("}"), SEMICOLON(";"), L_BRACKET("["), R_BRACKET("]"), L_PAREN("("), R_PAREN(")"),
+    COLON(":"), DOT("."), COLON_EQUALS(":="), EQUALS("="), AND("&"), OR("|"), XOR("^"), MOD("%"), CMPEQ("=="), CMPNE("!="),
+    CMPGT(">"), CMPGE(">="), CMPLT("<"), CMPLE("<="), SHL("<<"), SHR(">>"), USHR(">>>"), PLUS("+"), MINUS("-"), MULT("*"),
+    DIV("/"),
+
+    ABSTRACT("abstract"), FINAL("final"), NATIVE("native"), PUBLIC("public"), PROTECTED("protected"), PRIVATE("private"),
+    STATIC("static"), SYNCHRONIZED("synchronized"), TRANSIENT("transient"), VOLATILE("volatile"), STRICTFP("strictfp"),
+    ENUM("enum"), ANNOTATION("annotation"), CLASS("class"), INTERFACE("interface"), VOID("void"), BOOLEAN("boolean"),
+    BYTE("byte"), SHORT("short"), CHAR("char"), INT("int"), LONG("long"), FLOAT("float"), DOUBLE("double"),
+    NULL_TYPE("null_type"), UNKNOWN("unknown"), EXTENDS("extends"), IMPLEMENTS("implements"), BREAKPOINT("breakpoint"),
+    CASE("case"), CATCH("catch"), CMP("cmp"), CMPG("cmpg"), CMPL("cmpl"), DEFAULT("default"), ENTERMONITOR("entermonitor"),
+    EXITMONITOR("exitmonitor"), GOTO("goto"), IF("if"), INSTANCEOF("instanceof"), INTERFACEINVOKE("interfaceinvoke"),
+    LENGTHOF("lengthof"), LOOKUPSWITCH("lookupswitch"), NEG("neg"), NEW("new"), NEWARRAY("newarray"),
+    NEWMULTIARRAY("newmultiarray"), NOP("nop"), RET("ret"), RETURN("return"), SPECIALINVOKE("specialinvoke"),
+    STATICINVOKE("staticinvoke"), DYNAMICINVOKE("dynamicinvoke"), TABLESWITCH("tableswitch"), THROW("throw"),
+    THROWS("throws"), VIRTUALINVOKE("virtualinvoke"), NULL("null"), FROM("from"), TO("to"), WITH("with"), CLS("cls");
+
+    final String text;
+
+    Kind(String text) {
+      this.text = text;
+    }
+  }
+
+  private static final Map<String, Kind> KEYWORDS = new HashMap<String, Kind>();
+
+  static {
+    for (Kind k : Kind.values()) {
+      if (k.compareTo(Kind.ABSTRACT) >= 0) {
+        KEYWORDS.put(k.text, k);
+      }
+    }
+  }
+
+  private final char[] buf;
+  private final int limit;
+
+  /** The position right after the current token */
+  private int pos;
+
+  /** The kind of the current token */
+  Kind kind;
+
+  /** The start of the current token */
+  int start;
+
+  /** The end of the current token, exclusive */
+  int end;
+
+  private String text;
+
+  /**
+   * Creates a tokenizer for the given characters. Call {@link #reset(int)} to move to the first token.
+   */
+  JimpleTokenizer(char[] buf, int limit) {
+    this.buf = buf;
+    this.limit = limit;
+  }
+
+  /**
+   * Moves to the token that starts at the given offset, as previously returned by {@link #start}
+   */
+  void reset(int offset) throws LexerException {
+    pos = offset;
+    next();
+  }
+
+  /**
+   * Returns the text of the current token
+   */
+  String text() {
+    if (text == null) {
+      text = new String(buf, start, end - start);
+    }
+    return text;
+  }
+
+  /**
+   * Advances to the next token
+   */
+  void next() throws LexerException {
+    text = null;
+    int p = skipIgnored(pos);
+    start = p;
+    if (p >= limit) {
+      set(Kind.EOF, p);
+      return;
+    }
+
+    final char c = buf[p];
+    switch (c) {
+      case ',':
+        set(Kind.COMMA, p + 1);
+        return;
+      case '{':
+        set(Kind.L_BRACE, p + 1);
+        return;
+      case '}':
+        set(Kind.R_BRACE, p + 1);
+        return;
+      case ';':
+        set(Kind.SEMICOLON, p + 1);
+        return;
+      case '[':
+        set(Kind.L_BRACKET, p + 1);
+        return;
+      case ']':
+        set(Kind.R_BRACKET, p + 1);
+        return;
+      case '(':
+        set(Kind.L_PAREN, p + 1);
+        return;
+      case ')':
+        set(Kind.R_PAREN, p + 1);
+        return;
+      case '.':
+        set(Kind.DOT, p + 1);
+        return;
+      case '&':
+        set(Kind.AND, p + 1);
+        return;
+      case '|':
+        set(Kind.OR, p + 1);
+        return;
+      case '^':
+        set(Kind.XOR, p + 1);
+        return;
+      case '%':
+        set(Kind.MOD, p + 1);
+        return;
+      case '+':
+        set(Kind.PLUS, p + 1);
+        return;
+      case '-':
+        set(Kind.MINUS, p + 1);
+        return;
+      case '*':
+        set(Kind.MULT, p + 1);
+        return;
+      case '/':
+        set(Kind.DIV, p + 1);
+        return;
+      case ':':
+        if (at(p + 1, '=')) {
+          set(Kind.COLON_EQUALS, p + 2);
+        } else {
+          set(Kind.COLON, p + 1);
+        }
+        return;
+      case '=':
+        if (at(p + 1, '=')) {
+          set(Kind.CMPEQ, p + 2);
+        } else {
+          set(Kind.EQUALS, p + 1);
+        }
+        return;
+      case '!':
+        if (at(p + 1, '=')) {
+          set(Kind.CMPNE, p + 2);
+          return;
+        }
+        break;
+      case '>':
+        if (at(p + 1, '>')) {
+          if (at(p + 2, '>')) {
+            set(Kind.USHR, p + 3);
+          } else {
+            set(Kind.SHR, p + 2);
+          }
+        } else if (at(p + 1, '=')) {
+          set(Kind.CMPGE, p + 2);
+        } else {
+          set(Kind.CMPGT, p + 1);
+        }
+        return;
+      case '<':
+        if (startsWith(p, "<clinit>")) {
+          set(Kind.IDENTIFIER, p + 8);
+        } else if (startsWith(p, "<init>")) {
+          set(Kind.IDENTIFIER, p + 6);
+        } else if (at(p + 1, '<')) {
+          set(Kind.SHL, p + 2);
+        } else if (at(p + 1, '=')) {
+          set(Kind.CMPLE, p + 2);
+        } else {
+          set(Kind.CMPLT, p + 1);
+        }
+        return;
+      case '"':
+        stringConstant(p);
+        return;
+      case '@':
+        if (atIdentifier(p)) {
+          return;
+        }
+        break;
+      case '#':
+        if (specialFloat(p)) {
+          return;
+        }
+        break;
+      default:
+        if (c >= '0' && c <= '9') {
+          number(p);
+          return;
+        }
+        if (isFirstIdChar(c) || c == '\\' || c == '\'') {
+          if (identifier(p)) {
+            return;
+          }
+        }
+        break;
+    }
+    throw error("Unknown token: " + c);
+  }
+
+  /**
+   * Creates an exception that points to the current token
+   */
+  LexerException error(String message) {
+    return new LexerException(location() + " " + message);
+  }
+
+  /**
+   * Returns the line and column of the current token in the same format as the SableCC lexer and parser
+   */
+  String location() {
+    int line = 1;
+    int lineStart = 0;
+    for (int i = 0; i < start && i < limit; i++) {
+      if (buf[i] == '\n') {
+        line++;
+        lineStart = i + 1;
+      }
+    }
+    return "[" + line + "," + (start - lineStart + 1) + "]";
+  }
+
+  private void set(Kind k, int e) {
+    kind = k;
+    end = e;
+    pos = e;
+  }
+
+  private boolean at(int p, char c) {
+    return p < limit && buf[p] == c;
+  }
+
+  private boolean startsWith(int p, String s) {
+    if (p + s.length() > limit) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (buf[p + i] != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int skipIgnored(int p) throws LexerException {
+    while (p < limit) {
+      char c = buf[p];
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+        p++;
+      } else if (c == '/' && at(p + 1, '/')) {
+        p += 2;
+        while (p < limit && buf[p] != '\n' && buf[p] != '\r') {
+          p++;
+        }
+      } else if (c == '/' && at(p + 1, '*')) {
+        int q = p + 2;
+        while (q + 1 < limit && !(buf[q] == '*' && buf[q + 1] == '/')) {
+          q++;
+        }
+        if (q + 1 >= limit) {
+          start = p;
+          throw error("Unterminated comment");
+        }
+        p = q + 2;
+      } else {
+        break;
+      }
+    }
+    return p;
+  }
+
+  private static boolean isFirstIdChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+  }
+
+  private static boolean isIdChar(char c) {
+    return isFirstIdChar(c) || (c >= '0' && c <= '9') || c == '-';
+  }
+
+  private static boolean isHexDigit(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  /**
+   * Returns the length of the escape sequence at the given position, or 0 if there is none
+   */
+  private int escape(int p) {
+    if (p + 1 >= limit || buf[p] != '\\') {
+      return 0;
+    }
+    switch (buf[p + 1]) {
+      case '\\':
+      case ' ':
+      case '\'':
+      case '.':
+      case '#':
+      case '"':
+      case 'n':
+      case 't':
+      case 'r':
+      case 'b':
+      case 'f':
+        return 2;
+      case 'u':
+        if (p + 5 < limit && isHexDigit(buf[p + 2]) && isHexDigit(buf[p + 3]) && isHexDigit(buf[p + 4])
+            && isHexDigit(buf[p + 5])) {
+          return 6;
+        }
+        return 0;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Matches one segment of an identifier. Segments of full identifiers may be enclosed in quotes.
+   *
+   * @return the end of the segment, or -1 if there is none at the given position
+   */
+  private int segment(int p, boolean quotes) {
+    if (p >= limit) {
+      return -1;
+    }
+    if (isFirstIdChar(buf[p]) || (quotes && buf[p] == '\'')) {
+      p++;
+    } else {
+      int e = escape(p);
+      if (e == 0) {
+        return -1;
+      }
+      p += e;
+    }
+    while (p < limit) {
+      if (isIdChar(buf[p])) {
+        p++;
+      } else {
+        int e = escape(p);
+        if (e == 0) {
+          break;
+        }
+        p += e;
+      }
+    }
+    if (quotes && at(p, '\'')) {
+      p++;
+    }
+    return p;
+  }
+
+  /**
+   * Matches identifiers, full identifiers and quoted names. As in the SableCC lexer, the longest match wins, and quoted
+   * names take precedence over full identifiers of the same length.
+   */
+  private boolean identifier(int p) {
+    final boolean quote = buf[p] == '\'';
+
+    int identEnd = quote ? -1 : segment(p, false);
+
+    int fullEnd = -1;
+    int q = segment(p, true);
+    while (q > 0 && at(q, '.')) {
+      q = segment(q + 1, true);
+      if (q < 0) {
+        break;
+      }
+      fullEnd = q;
+    }
+
+    int quotedEnd = -1;
+    if (quote) {
+      q = p + 1;
+      while (q < limit && buf[q] != '\'' && buf[q] != '\n' && buf[q] != '\r') {
+        q++;
+      }
+      if (q < limit && buf[q] == '\'' && q > p + 1) {
+        quotedEnd = q + 1;
+      }
+    }
+
+    if (quotedEnd > 0 && quotedEnd >= fullEnd) {
+      set(Kind.QUOTED_NAME, quotedEnd);
+    } else if (fullEnd > identEnd) {
+      set(Kind.FULL_IDENTIFIER, fullEnd);
+    } else if (identEnd > 0) {
+      set(Kind.IDENTIFIER, identEnd);
+      Kind keyword = KEYWORDS.get(text());
+      if (keyword != null) {
+        kind = keyword;
+      }
+    } else if (quote) {
+      set(Kind.QUOTE, p + 1);
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private boolean atIdentifier(int p) {
+    if (startsWith(p, "@parameter")) {
+      int q = p + 10;
+      while (q < limit && buf[q] >= '0' && buf[q] <= '9') {
+        q++;
+      }
+      if (q > p + 10 && at(q, ':')) {
+        set(Kind.AT_IDENTIFIER, q + 1);
+        return true;
+      }
+    } else if (startsWith(p, "@this:")) {
+      set(Kind.AT_IDENTIFIER, p + 6);
+      return true;
+    } else if (startsWith(p, "@caughtexception")) {
+      set(Kind.AT_IDENTIFIER, p + 16);
+      return true;
+    }
+    return false;
+  }
+
+  private void stringConstant(int p) throws LexerException {
+    int q = p + 1;
+    while (q < limit && buf[q] != '"') {
+      if (buf[q] == '\\') {
+        int e = escape(q);
+        if (e == 0) {
+          throw error("Invalid escape sequence in string constant");
+        }
+        q += e;
+      } else {
+        q++;
+      }
+    }
+    if (q >= limit) {
+      throw error("Unterminated string constant");
+    }
+    set(Kind.STRING_CONSTANT, q + 1);
+  }
+
+  private void number(int p) {
+    int q = p;
+    if (buf[p] == '0' && (at(p + 1, 'x') || at(p + 1, 'X')) && p + 2 < limit && isHexDigit(buf[p + 2])) {
+      q = p + 2;
+      while (q < limit && isHexDigit(buf[q])) {
+        q++;
+      }
+    } else {
+      while (q < limit && buf[q] >= '0' && buf[q] <= '9') {
+        q++;
+      }
+      if (at(q, '.') && q + 1 < limit && buf[q + 1] >= '0' && buf[q + 1] <= '9') {
+        q += 2;
+        while (q < limit && buf[q] >= '0' && buf[q] <= '9') {
+          q++;
+        }
+        if (at(q, 'e') || at(q, 'E')) {
+          int r = q + 1;
+          if (at(r, '+') || at(r, '-')) {
+            r++;
+          }
+          if (r < limit && buf[r] >= '0' && buf[r] <= '9') {
+            while (r < limit && buf[r] >= '0' && buf[r] <= '9') {
+              r++;
+            }
+            q = r;
+          }
+        }
+        if (at(q, 'f') || at(q, 'F')) {
+          q++;
+        }
+        set(Kind.FLOAT_CONSTANT, q);
+        return;
+      }
+    }
+    if (at(q, 'L')) {
+      q++;
+    }
+    set(Kind.INTEGER_CONSTANT, q);
+  }
+
+  private boolean specialFloat(int p) {
+    int q;
+    if (startsWith(p, "#Infinity")) {
+      q = p + 9;
+    } else if (startsWith(p, "#-Infinity")) {
+      q = p + 10;
+    } else if (startsWith(p, "#NaN")) {
+      q = p + 4;
+    } else {
+      return false;
+    }
+    if (at(q, 'f') || at(q, 'F')) {
+      q++;
+    }
+    set(Kind.FLOAT_CONSTANT, q);
+    return true;
+  }
+}
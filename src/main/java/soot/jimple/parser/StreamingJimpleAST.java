@@ -0,0 +1,141 @@
+package soot.jimple.parser;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.SootResolver;
+import soot.jimple.JimpleBody;
+import soot.jimple.parser.lexer.LexerException;
+import soot.jimple.parser.parser.ParserException;
+
+/**
+ * A {@link JimpleAST} that reads the Jimple text with the {@link StreamingJimpleParser} instead of building the SableCC
+ * syntax tree. Only the source text is kept in memory. The class skeleton and the constant pool are extracted in a single
+ * pass, and each method body is parsed from the text when it is requested.
+ */
+public class StreamingJimpleAST extends JimpleAST {
+  private final char[] source;
+  private final Map<SootMethod, Integer> bodyOffsets = new HashMap<SootMethod, Integer>();
+  private Set<String> cstPool = null;
+
+  /**
+   * Constructs a StreamingJimpleAST and reads the Jimple text from the given InputStream.
+   *
+   * @param aJIS
+   *          The InputStream to parse.
+   */
+  public StreamingJimpleAST(InputStream aJIS) throws IOException {
+    Reader reader = new InputStreamReader(aJIS);
+    char[] buf = new char[8192];
+    int len = 0;
+    for (int n; (n = reader.read(buf, len, buf.length - len)) != -1;) {
+      len += n;
+      if (len == buf.length) {
+        buf = Arrays.copyOf(buf, buf.length * 2);
+      }
+    }
+    source = len == buf.length ? buf : Arrays.copyOf(buf, len);
+  }
+
+  @Override
+  public SootClass createSootClass() {
+    SootClass sc = parseSkeleton(null);
+    sc.setResolvingLevel(SootClass.BODIES);
+    for (SootMethod m : sc.getMethods()) {
+      if (m.isConcrete() && bodyOffsets.containsKey(m)) {
+        m.setActiveBody(getBody(m));
+      }
+    }
+    return sc;
+  }
+
+  @Override
+  public void getSkeleton(SootClass sc) {
+    parseSkeleton(sc);
+  }
+
+  private SootClass parseSkeleton(SootClass sc) {
+    Set<String> refTypes = new HashSet<String>();
+    try {
+      sc = new StreamingJimpleParser(source, SootResolver.v()).parseSkeleton(sc, bodyOffsets, refTypes);
+    } catch (ParserException | LexerException e) {
+      throw new RuntimeException("Error: Failed when parsing class" + (sc == null ? "." : " " + sc.getName() + "."), e);
+    }
+    cstPool = refTypes;
+    return sc;
+  }
+
+  /**
+   * Parses the body of the given method from the Jimple text. Every call creates a new body.
+   *
+   * @param m
+   *          the method we want to get a body for.
+   * @return the body, or null if the method has no body in the Jimple text
+   */
+  @Override
+  public synchronized Body getBody(SootMethod m) {
+    Integer offset = bodyOffsets.get(m);
+    if (offset == null) {
+      return null;
+    }
+    if (!m.isConcrete()) {
+      throw new RuntimeException("Impossible: !concrete => ! instanceof " + m.getName());
+    }
+
+    boolean oldPhantomValue = Scene.v().getPhantomRefs();
+    Scene.v().setPhantomRefs(true);
+    try {
+      JimpleBody body = new StreamingJimpleParser(source, SootResolver.v()).parseBody(offset);
+      body.setMethod(m);
+      return body;
+    } catch (ParserException | LexerException e) {
+      throw new RuntimeException("Error: Failed when parsing body of method " + m.getSignature() + ".", e);
+    } finally {
+      Scene.v().setPhantomRefs(oldPhantomValue);
+    }
+  }
+
+  /**
+   * Returns the names of the reference types in the Jimple text. They are collected while the skeleton is extracted.
+   */
+  @Override
+  public Set<String> getCstPool() {
+    if (cstPool == null) {
+      throw new IllegalStateException("The class skeleton must be extracted before the constant pool");
+    }
+    return cstPool;
+  }
+}
@@ -0,0 +1,1332 @@
+package soot.jimple.parser;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.ArrayType;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.Modifier;
+import soot.NullType;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.SootResolver;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.UnknownType;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.ClassConstant;
+import soot.jimple.DoubleConstant;
+import soot.jimple.FloatConstant;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LongConstant;
+import soot.jimple.NullConstant;
+import soot.jimple.StringConstant;
+import soot.jimple.parser.JimpleTokenizer.Kind;
+import soot.jimple.parser.lexer.LexerException;
+import soot.jimple.parser.parser.ParserException;
+import soot.util.StringTools;
+
+/**
+ * Recursive-descent parser for Jimple text that creates Soot objects directly from the tokens of a
+ * {@link JimpleTokenizer}, without building a syntax tree. It accepts the grammar in <code>jimple.scc</code> and creates
+ * the same objects as the {@link SkeletonExtractorWalker} and the {@link BodyExtractorWalker}.
+ *
+ * <p>
+ * The class skeleton is created in one pass over the whole file. In this pass, method bodies are only checked for syntax;
+ * their start offsets are recorded so that each body can be parsed on its own when it is requested.
+ * </p>
+ */
+final class StreamingJimpleParser {
+  private static final Logger logger = LoggerFactory.getLogger(StreamingJimpleParser.class);
+
+  private final JimpleTokenizer in;
+  private final SootResolver resolver;
+
+  /** Whether Jimple objects are created for method bodies, or bodies are only scanned */
+  private boolean build;
+
+  /** Collects the names of all reference types in the file, null if they are not needed */
+  private Set<String> refTypes;
+
+  private Map<String, Local> locals;
+  private Map<String, Unit> labelToStmt;
+  private Map<String, List<UnitBox>> labelToPatchList;
+  private List<String> pendingLabels;
+
+  StreamingJimpleParser(char[] source, SootResolver resolver) {
+    this.in = new JimpleTokenizer(source, source.length);
+    this.resolver = resolver;
+  }
+
+  /**
+   * Parses the whole file and fills in the class skeleton.
+   *
+   * @param sc
+   *          the class to fill in, or null to create a new class
+   * @param bodyOffsets
+   *          receives the offsets of the bodies of all methods that have one
+   * @param refTypes
+   *          receives the names of all reference types in the file
+   * @return the class
+   */
+  SootClass parseSkeleton(SootClass sc, Map<SootMethod, Integer> bodyOffsets, Set<String> refTypes)
+      throws ParserException, LexerException {
+    this.build = false;
+    this.refTypes = refTypes;
+    in.reset(0);
+
+    int modifiers = parseModifiers();
+    if (in.kind == Kind.INTERFACE) {
+      modifiers |= Modifier.INTERFACE;
+      in.next();
+    } else {
+      expect(Kind.CLASS);
+    }
+
+    String className = parseClassName();
+    if (sc == null) {
+      sc = new SootClass(className);
+      sc.setResolvingLevel(SootClass.SIGNATURES);
+    } else if (!className.equals(sc.getName())) {
+      throw error("expected:  " + className + ", but got: " + sc.getName());
+    }
+
+    String superClass = null;
+    if (accept(Kind.EXTENDS)) {
+      superClass = parseClassName();
+    }
+    List<String> interfaces = null;
+    if (accept(Kind.IMPLEMENTS)) {
+      interfaces = parseClassNameList();
+    }
+
+    expect(Kind.L_BRACE);
+    while (in.kind != Kind.R_BRACE) {
+      parseMember(sc, bodyOffsets);
+    }
+    in.next();
+    check(Kind.EOF);
+
+    sc.setModifiers(modifiers);
+    if (superClass != null) {
+      sc.setSuperclass(resolver.makeClassRef(superClass));
+    }
+    if (interfaces != null) {
+      for (String i : interfaces) {
+        sc.addInterface(resolver.makeClassRef(i));
+      }
+    }
+    return sc;
+  }
+
+  /**
+   * Parses the method body that starts at the given offset
+   */
+  JimpleBody parseBody(int offset) throws ParserException, LexerException {
+    this.build = true;
+    this.refTypes = null;
+    in.reset(offset);
+    return parseMethodBody();
+  }
+
+  /*
+   * member = {field} modifier* type name semicolon | {method} modifier* type name l_paren parameter_list? r_paren
+   * throws_clause? method_body;
+   */
+  private void parseMember(SootClass sc, Map<SootMethod, Integer> bodyOffsets) throws ParserException, LexerException {
+    int modifiers = parseModifiers();
+    Type type = parseType();
+    String name = parseName();
+
+    if (accept(Kind.SEMICOLON)) {
+      sc.addField(Scene.v().makeSootField(name, type, modifiers));
+      return;
+    }
+
+    expect(Kind.L_PAREN);
+    List<Type> parameterTypes = parseParameterList();
+    expect(Kind.R_PAREN);
+
+    SootMethod method;
+    if (accept(Kind.THROWS)) {
+      List<SootClass> exceptions = new ArrayList<SootClass>();
+      for (String e : parseClassNameList()) {
+        exceptions.add(resolver.makeClassRef(e));
+      }
+      method = Scene.v().makeSootMethod(name, parameterTypes, type, modifiers, exceptions);
+    } else {
+      method = Scene.v().makeSootMethod(name, parameterTypes, type, modifiers);
+    }
+    sc.addMethod(method);
+
+    if (in.kind == Kind.L_BRACE) {
+      bodyOffsets.put(method, in.start);
+      parseMethodBody();
+    } else {
+      expect(Kind.SEMICOLON);
+    }
+  }
+
+  private int parseModifiers() throws LexerException {
+    int modifiers = 0;
+    while (true) {
+      switch (in.kind) {
+        case ABSTRACT:
+          modifiers |= Modifier.ABSTRACT;
+          break;
+        case FINAL:
+          modifiers |= Modifier.FINAL;
+          break;
+        case NATIVE:
+          modifiers |= Modifier.NATIVE;
+          break;
+        case PUBLIC:
+          modifiers |= Modifier.PUBLIC;
+          break;
+        case PROTECTED:
+          modifiers |= Modifier.PROTECTED;
+          break;
+        case PRIVATE:
+          modifiers |= Modifier.PRIVATE;
+          break;
+        case STATIC:
+          modifiers |= Modifier.STATIC;
+          break;
+        case SYNCHRONIZED:
+          modifiers |= Modifier.SYNCHRONIZED;
+          break;
+        case TRANSIENT:
+          modifiers |= Modifier.TRANSIENT;
+          break;
+        case VOLATILE:
+          modifiers |= Modifier.VOLATILE;
+          break;
+        case STRICTFP:
+          modifiers |= Modifier.STRICTFP;
+          break;
+        case ENUM:
+          modifiers |= Modifier.ENUM;
+          break;
+        case ANNOTATION:
+          modifiers |= Modifier.ANNOTATION;
+          break;
+        default:
+          return modifiers;
+      }
+      in.next();
+    }
+  }
+
+  /*
+   * method_body = {empty} semicolon | {full} l_brace declaration* statement* catch_clause* r_brace;
+   */
+  private JimpleBody parseMethodBody() throws ParserException, LexerException {
+    expect(Kind.L_BRACE);
+
+    JimpleBody body = null;
+    if (build) {
+      body = Jimple.v().newBody();
+      locals = new HashMap<String, Local>();
+      labelToStmt = new HashMap<String, Unit>();
+      labelToPatchList = new HashMap<String, List<UnitBox>>();
+      pendingLabels = new ArrayList<String>();
+    }
+
+    while (isDeclaration()) {
+      parseDeclaration(body);
+    }
+    while (in.kind != Kind.CATCH && in.kind != Kind.R_BRACE) {
+      parseStatement(body);
+    }
+    while (in.kind == Kind.CATCH) {
+      parseCatchClause(body);
+    }
+    expect(Kind.R_BRACE);
+
+    if (build) {
+      if (!pendingLabels.isEmpty()) {
+        throw error("Label " + pendingLabels.get(0) + " is not followed by a statement");
+      }
+      for (Map.Entry<String, List<UnitBox>> e : labelToPatchList.entrySet()) {
+        Unit target = labelToStmt.get(e.getKey());
+        for (UnitBox box : e.getValue()) {
+          box.setUnit(target);
+        }
+      }
+      locals = null;
+      labelToStmt = null;
+      labelToPatchList = null;
+      pendingLabels = null;
+    }
+    return body;
+  }
+
+  /**
+   * Checks whether a declaration starts at the current token. Names can start both declarations and statements, so this
+   * may need to look at the next two tokens.
+   */
+  private boolean isDeclaration() throws LexerException {
+    switch (in.kind) {
+      case UNKNOWN:
+      case BOOLEAN:
+      case BYTE:
+      case CHAR:
+      case SHORT:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case NULL_TYPE:
+      case FULL_IDENTIFIER:
+        return true;
+      case IDENTIFIER:
+      case QUOTED_NAME:
+        final int mark = in.start;
+        in.next();
+        boolean declaration = in.kind == Kind.IDENTIFIER || in.kind == Kind.QUOTED_NAME;
+        if (!declaration && in.kind == Kind.L_BRACKET) {
+          in.next();
+          declaration = in.kind == Kind.R_BRACKET;
+        }
+        in.reset(mark);
+        return declaration;
+      default:
+        return false;
+    }
+  }
+
+  /*
+   * declaration = jimple_type local_name_list semicolon;
+   */
+  private void parseDeclaration(JimpleBody body) throws ParserException, LexerException {
+    Type type;
+    if (accept(Kind.UNKNOWN)) {
+      type = UnknownType.v();
+    } else {
+      type = parseNonvoidType();
+    }
+    do {
+      String name = parseName();
+      if (build) {
+        Local l = Jimple.v().newLocal(name, type);
+        locals.put(name, l);
+        body.getLocals().add(l);
+      }
+    } while (accept(Kind.COMMA));
+    expect(Kind.SEMICOLON);
+  }
+
+  private void parseStatement(JimpleBody body) throws ParserException, LexerException {
+    Unit u = null;
+    switch (in.kind) {
+      case IDENTIFIER:
+      case QUOTED_NAME: {
+        final boolean isIdentifier = in.kind == Kind.IDENTIFIER;
+        final String name = tokenName();
+        in.next();
+        switch (in.kind) {
+          case COLON:
+            // label_name = identifier
+            if (!isIdentifier) {
+              throw expected("=");
+            }
+            in.next();
+            if (build) {
+              pendingLabels.add(name);
+            }
+            return;
+          case COLON_EQUALS:
+            u = parseIdentity(name);
+            break;
+          default:
+            Value variable = parseReference(name, true);
+            expect(Kind.EQUALS);
+            Value rvalue = parseExpression();
+            expect(Kind.SEMICOLON);
+            if (build) {
+              u = Jimple.v().newAssignStmt(variable, rvalue);
+            }
+            break;
+        }
+        break;
+      }
+      case CMPLT: {
+        Value variable = parseStaticFieldRef();
+        expect(Kind.EQUALS);
+        Value rvalue = parseExpression();
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = Jimple.v().newAssignStmt(variable, rvalue);
+        }
+        break;
+      }
+      case BREAKPOINT:
+        in.next();
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = Jimple.v().newBreakpointStmt();
+        }
+        break;
+      case ENTERMONITOR: {
+        in.next();
+        Value op = parseImmediate();
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = Jimple.v().newEnterMonitorStmt(op);
+        }
+        break;
+      }
+      case EXITMONITOR: {
+        in.next();
+        Value op = parseImmediate();
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = Jimple.v().newExitMonitorStmt(op);
+        }
+        break;
+      }
+      case TABLESWITCH:
+      case LOOKUPSWITCH:
+        u = parseSwitch();
+        break;
+      case IF: {
+        in.next();
+        Value condition = parseBoolExpr();
+        UnitBox target = parseGoto();
+        if (build) {
+          u = Jimple.v().newIfStmt(condition, target);
+        }
+        break;
+      }
+      case GOTO: {
+        UnitBox target = parseGoto();
+        if (build) {
+          u = Jimple.v().newGotoStmt(target);
+        }
+        break;
+      }
+      case NOP:
+        in.next();
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = Jimple.v().newNopStmt();
+        }
+        break;
+      case RET:
+        in.next();
+        if (in.kind != Kind.SEMICOLON) {
+          parseImmediate();
+        }
+        expect(Kind.SEMICOLON);
+        if (build) {
+          throw error("ret not yet implemented.");
+        }
+        break;
+      case RETURN: {
+        in.next();
+        Value op = null;
+        if (in.kind != Kind.SEMICOLON) {
+          op = parseImmediate();
+        }
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = op == null ? Jimple.v().newReturnVoidStmt() : Jimple.v().newReturnStmt(op);
+        }
+        break;
+      }
+      case THROW: {
+        in.next();
+        Value op = parseImmediate();
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = Jimple.v().newThrowStmt(op);
+        }
+        break;
+      }
+      case SPECIALINVOKE:
+      case VIRTUALINVOKE:
+      case INTERFACEINVOKE:
+      case STATICINVOKE:
+      case DYNAMICINVOKE: {
+        Value expr = parseInvokeExpr();
+        expect(Kind.SEMICOLON);
+        if (build) {
+          u = Jimple.v().newInvokeStmt(expr);
+        }
+        break;
+      }
+      default:
+        throw expected("statement");
+    }
+
+    if (build) {
+      body.getUnits().add(u);
+      // A label refers to the statement that follows it. If a label is
+      // declared twice, the first declaration wins, as in the Walker.
+      for (String label : pendingLabels) {
+        if (!labelToStmt.containsKey(label)) {
+          labelToStmt.put(label, u);
+        }
+      }
+      pendingLabels.clear();
+    }
+  }
+
+  /*
+   * identity = local_name colon_equals at_identifier type semicolon; identity_no_type = local_name colon_equals
+   * at_identifier semicolon;
+   */
+  private Unit parseIdentity(String localName) throws ParserException, LexerException {
+    expect(Kind.COLON_EQUALS);
+    check(Kind.AT_IDENTIFIER);
+    final String atClause = in.text();
+    in.next();
+    Type type = null;
+    if (in.kind != Kind.SEMICOLON) {
+      type = parseType();
+    }
+    expect(Kind.SEMICOLON);
+    if (!build) {
+      return null;
+    }
+
+    Value ref;
+    if (type == null) {
+      ref = Jimple.v().newCaughtExceptionRef();
+    } else if (atClause.startsWith("@this")) {
+      ref = Jimple.v().newThisRef((RefType) type);
+    } else if (atClause.startsWith("@parameter")) {
+      int index = Integer.parseInt(atClause.substring(10, atClause.length() - 1));
+      ref = Jimple.v().newParameterRef(type, index);
+    } else {
+      throw error("shouldn't @caughtexception be handled by outAIdentityNoTypeStatement: got" + atClause);
+    }
+    return Jimple.v().newIdentityStmt(local(localName), ref);
+  }
+
+  /*
+   * tableswitch l_paren immediate r_paren l_brace case_stmt+ r_brace semicolon | lookupswitch l_paren immediate r_paren
+   * l_brace case_stmt+ r_brace semicolon;
+   */
+  private Unit parseSwitch() throws ParserException, LexerException {
+    final boolean isTable = in.kind == Kind.TABLESWITCH;
+    in.next();
+    expect(Kind.L_PAREN);
+    Value key = parseImmediate();
+    expect(Kind.R_PAREN);
+    expect(Kind.L_BRACE);
+
+    // the values of all case statements in order, null for the default
+    List<IntConstant> caseValues = new ArrayList<IntConstant>();
+    List<UnitBox> caseTargets = new ArrayList<UnitBox>();
+    do {
+      IntConstant value = null;
+      if (!accept(Kind.DEFAULT)) {
+        expect(Kind.CASE);
+        final boolean negative = accept(Kind.MINUS);
+        check(Kind.INTEGER_CONSTANT);
+        if (build) {
+          value = (IntConstant) caseConstant(in.text(), negative);
+        }
+        in.next();
+      }
+      expect(Kind.COLON);
+      UnitBox target = parseGoto();
+      caseValues.add(value);
+      caseTargets.add(target);
+    } while (in.kind != Kind.R_BRACE);
+    in.next();
+    expect(Kind.SEMICOLON);
+    if (!build) {
+      return null;
+    }
+
+    List<IntConstant> lookupValues = new ArrayList<IntConstant>();
+    List<UnitBox> targets = new ArrayList<UnitBox>();
+    UnitBox defaultTarget = null;
+    for (int i = 0; i < caseValues.size(); i++) {
+      if (caseValues.get(i) == null) {
+        if (defaultTarget != null) {
+          throw error("can't have more than 1 default stmt");
+        }
+        defaultTarget = caseTargets.get(i);
+      } else {
+        lookupValues.add(caseValues.get(i));
+        targets.add(caseTargets.get(i));
+      }
+    }
+
+    if (!isTable) {
+      return Jimple.v().newLookupSwitchStmt(key, lookupValues, targets, defaultTarget);
+    }
+
+    // The range of the table is given by the first case and the last case
+    // before the default, just like in the Walker
+    final int size = caseValues.size();
+    IntConstant low = caseValues.get(0);
+    IntConstant high = caseValues.get(size - 1);
+    if (high == null && size > 1) {
+      high = caseValues.get(size - 2);
+    }
+    return Jimple.v().newTableSwitchStmt(key, low == null ? 0 : low.value, high == null ? 0 : high.value, targets,
+        defaultTarget);
+  }
+
+  /*
+   * goto_stmt = goto label_name semicolon;
+   */
+  private UnitBox parseGoto() throws ParserException, LexerException {
+    expect(Kind.GOTO);
+    UnitBox box = parseLabelRef();
+    expect(Kind.SEMICOLON);
+    return box;
+  }
+
+  /*
+   * catch_clause = catch [name]:class_name from [from_label]:label_name to [to_label]:label_name with
+   * [with_label]:label_name semicolon;
+   */
+  private void parseCatchClause(JimpleBody body) throws ParserException, LexerException {
+    expect(Kind.CATCH);
+    String exceptionName = parseClassName();
+    expect(Kind.FROM);
+    UnitBox from = parseLabelRef();
+    expect(Kind.TO);
+    UnitBox to = parseLabelRef();
+    expect(Kind.WITH);
+    UnitBox with = parseLabelRef();
+    expect(Kind.SEMICOLON);
+    if (build) {
+      body.getTraps().add(Jimple.v().newTrap(resolver.makeClassRef(exceptionName), from, to, with));
+    }
+  }
+
+  /**
+   * Parses a label name and returns a box that will be patched with the labeled statement once the whole body is parsed
+   */
+  private UnitBox parseLabelRef() throws ParserException, LexerException {
+    check(Kind.IDENTIFIER);
+    final String label = tokenName();
+    in.next();
+    if (!build) {
+      return null;
+    }
+    UnitBox box = Jimple.v().newStmtBox(null);
+    List<UnitBox> patchList = labelToPatchList.get(label);
+    if (patchList == null) {
+      patchList = new ArrayList<UnitBox>();
+      labelToPatchList.put(label, patchList);
+    }
+    patchList.add(box);
+    return box;
+  }
+
+  /*
+   * expression = {new} new_expr | {cast} l_paren nonvoid_type r_paren immediate | {instanceof} immediate instanceof
+   * nonvoid_type | {invoke} invoke_expr | {reference} reference | {binop} binop_expr | {unop} unop_expr | {immediate}
+   * immediate;
+   */
+  private Value parseExpression() throws ParserException, LexerException {
+    Value left;
+    switch (in.kind) {
+      case NEW: {
+        in.next();
+        Type type = parseBaseType();
+        return build ? Jimple.v().newNewExpr((RefType) type) : null;
+      }
+      case NEWARRAY: {
+        in.next();
+        expect(Kind.L_PAREN);
+        Type type = parseNonvoidType();
+        expect(Kind.R_PAREN);
+        expect(Kind.L_BRACKET);
+        Value size = parseImmediate();
+        expect(Kind.R_BRACKET);
+        return build ? Jimple.v().newNewArrayExpr(type, size) : null;
+      }
+      case NEWMULTIARRAY:
+        return parseNewMultiArray();
+      case L_PAREN: {
+        in.next();
+        Type type = parseNonvoidType();
+        expect(Kind.R_PAREN);
+        Value op = parseImmediate();
+        return build ? Jimple.v().newCastExpr(op, type) : null;
+      }
+      case SPECIALINVOKE:
+      case VIRTUALINVOKE:
+      case INTERFACEINVOKE:
+      case STATICINVOKE:
+      case DYNAMICINVOKE:
+        return parseInvokeExpr();
+      case CMPLT:
+        return parseStaticFieldRef();
+      case LENGTHOF:
+      case NEG:
+        return parseUnop();
+      case IDENTIFIER:
+      case QUOTED_NAME: {
+        final String name = tokenName();
+        in.next();
+        if (in.kind == Kind.L_BRACKET || in.kind == Kind.DOT) {
+          return parseReference(name, false);
+        }
+        left = build ? local(name) : null;
+        break;
+      }
+      default:
+        left = parseImmediate();
+        break;
+    }
+
+    if (accept(Kind.INSTANCEOF)) {
+      Type type = parseNonvoidType();
+      return build ? Jimple.v().newInstanceOfExpr(left, type) : null;
+    }
+    if (isBinop(in.kind)) {
+      return parseBinop(left);
+    }
+    return left;
+  }
+
+  /*
+   * new_expr = {multi} newmultiarray l_paren base_type r_paren array_descriptor+;
+   */
+  private Value parseNewMultiArray() throws ParserException, LexerException {
+    expect(Kind.NEWMULTIARRAY);
+    expect(Kind.L_PAREN);
+    Type baseType = parseBaseType();
+    expect(Kind.R_PAREN);
+
+    // Only the sizes up to the first empty descriptor count
+    List<Value> sizes = new ArrayList<Value>();
+    boolean hasSize = true;
+    int dimensions = 0;
+    do {
+      expect(Kind.L_BRACKET);
+      dimensions++;
+      if (in.kind == Kind.R_BRACKET) {
+        hasSize = false;
+      } else {
+        Value size = parseImmediate();
+        if (hasSize) {
+          sizes.add(size);
+        }
+      }
+      expect(Kind.R_BRACKET);
+    } while (in.kind == Kind.L_BRACKET);
+
+    return build ? Jimple.v().newNewMultiArrayExpr(ArrayType.v(baseType, dimensions), sizes) : null;
+  }
+
+  /*
+   * bool_expr = {binop} binop_expr | {unop} unop_expr;
+   */
+  private Value parseBoolExpr() throws ParserException, LexerException {
+    if (in.kind == Kind.LENGTHOF || in.kind == Kind.NEG) {
+      return parseUnop();
+    }
+    Value left = parseImmediate();
+    if (!isBinop(in.kind)) {
+      throw expected("binary operator");
+    }
+    return parseBinop(left);
+  }
+
+  /*
+   * unop_expr = unop immediate;
+   */
+  private Value parseUnop() throws ParserException, LexerException {
+    final boolean isLength = in.kind == Kind.LENGTHOF;
+    in.next();
+    Value op = parseImmediate();
+    if (!build) {
+      return null;
+    }
+    return isLength ? Jimple.v().newLengthExpr(op) : Jimple.v().newNegExpr(op);
+  }
+
+  private static boolean isBinop(Kind k) {
+    switch (k) {
+      case AND:
+      case OR:
+      case XOR:
+      case MOD:
+      case CMP:
+      case CMPG:
+      case CMPL:
+      case CMPEQ:
+      case CMPNE:
+      case CMPGT:
+      case CMPGE:
+      case CMPLT:
+      case CMPLE:
+      case SHL:
+      case SHR:
+      case USHR:
+      case PLUS:
+      case MINUS:
+      case MULT:
+      case DIV:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /*
+   * binop_expr = [left]:immediate binop [right]:immediate;
+   */
+  private Value parseBinop(Value left) throws ParserException, LexerException {
+    final Kind op = in.kind;
+    in.next();
+    Value right = parseImmediate();
+    if (!build) {
+      return null;
+    }
+
+    final Jimple j = Jimple.v();
+    switch (op) {
+      case AND:
+        return j.newAndExpr(left, right);
+      case OR:
+        return j.newOrExpr(left, right);
+      case XOR:
+        return j.newXorExpr(left, right);
+      case MOD:
+        return j.newRemExpr(left, right);
+      case CMP:
+        return j.newCmpExpr(left, right);
+      case CMPG:
+        return j.newCmpgExpr(left, right);
+      case CMPL:
+        return j.newCmplExpr(left, right);
+      case CMPEQ:
+        return j.newEqExpr(left, right);
+      case CMPNE:
+        return j.newNeExpr(left, right);
+      case CMPGT:
+        return j.newGtExpr(left, right);
+      case CMPGE:
+        return j.newGeExpr(left, right);
+      case CMPLT:
+        return j.newLtExpr(left, right);
+      case CMPLE:
+        return j.newLeExpr(left, right);
+      case SHL:
+        return j.newShlExpr(left, right);
+      case SHR:
+        return j.newShrExpr(left, right);
+      case USHR:
+        return j.newUshrExpr(left, right);
+      case PLUS:
+        return j.newAddExpr(left, right);
+      case MINUS:
+        return j.newSubExpr(left, right);
+      case MULT:
+        return j.newMulExpr(left, right);
+      case DIV:
+        return j.newDivExpr(left, right);
+      default:
+        throw error("Not a binary operator: " + op.text);
+    }
+  }
+
+  /**
+   * Parses an array reference, an instance field reference or, if allowed, a local after the name of the base local has
+   * been consumed.
+   *
+   * array_ref = identifier fixed_array_descriptor | quoted_name fixed_array_descriptor; field_ref = {local} local_name dot
+   * field_signature;
+   */
+  private Value parseReference(String name, boolean allowLocal) throws ParserException, LexerException {
+    if (accept(Kind.L_BRACKET)) {
+      Value index = parseImmediate();
+      expect(Kind.R_BRACKET);
+      return build ? Jimple.v().newArrayRef(local(name), index) : null;
+    }
+    if (accept(Kind.DOT)) {
+      SootFieldRef field = parseFieldSignature(false);
+      return build ? Jimple.v().newInstanceFieldRef(local(name), field) : null;
+    }
+    if (!allowLocal) {
+      throw expected("[ or .");
+    }
+    return build ? local(name) : null;
+  }
+
+  private Value parseStaticFieldRef() throws ParserException, LexerException {
+    SootFieldRef field = parseFieldSignature(true);
+    return build ? Jimple.v().newStaticFieldRef(field) : null;
+  }
+
+  /*
+   * field_signature = cmplt [class_name]:class_name [first]:colon type [field_name]:name cmpgt;
+   */
+  private SootFieldRef parseFieldSignature(boolean isStatic) throws ParserException, LexerException {
+    expect(Kind.CMPLT);
+    String className = parseClassName();
+    expect(Kind.COLON);
+    Type type = parseType();
+    String name = parseName();
+    expect(Kind.CMPGT);
+    return build ? Scene.v().makeFieldRef(resolver.makeClassRef(className), name, type, isStatic) : null;
+  }
+
+  /*
+   * method_signature = cmplt [class_name]:class_name [first]:colon type [method_name]:name l_paren parameter_list? r_paren
+   * cmpgt;
+   */
+  private SootMethodRef parseMethodSignature(boolean isStatic) throws ParserException, LexerException {
+    expect(Kind.CMPLT);
+    String className = parseClassName();
+    expect(Kind.COLON);
+    Type returnType = parseType();
+    String name = parseName();
+    expect(Kind.L_PAREN);
+    List<Type> parameterTypes = parseParameterList();
+    expect(Kind.R_PAREN);
+    expect(Kind.CMPGT);
+    return build ? Scene.v().makeMethodRef(resolver.makeClassRef(className), name, parameterTypes, returnType, isStatic)
+        : null;
+  }
+
+  /*
+   * invoke_expr = {nonstatic} nonstatic_invoke local_name dot method_signature l_paren arg_list? r_paren | {static}
+   * staticinvoke method_signature l_paren arg_list? r_paren | {dynamic} dynamicinvoke string_constant
+   * [dynmethod]:unnamed_method_signature [firstl]:l_paren [dynargs]:arg_list? [firstr]:r_paren [bsm]:method_signature
+   * l_paren [staticargs]:arg_list? r_paren;
+   */
+  private Value parseInvokeExpr() throws ParserException, LexerException {
+    final Kind kind = in.kind;
+    in.next();
+    switch (kind) {
+      case STATICINVOKE: {
+        SootMethodRef method = parseMethodSignature(true);
+        List<Value> args = parseArgList();
+        return build ? Jimple.v().newStaticInvokeExpr(method, args) : null;
+      }
+      case DYNAMICINVOKE: {
+        check(Kind.STRING_CONSTANT);
+        final String name = stringConstant();
+        in.next();
+
+        // unnamed_method_signature = cmplt type l_paren parameter_list? r_paren cmpgt;
+        expect(Kind.CMPLT);
+        Type returnType = parseType();
+        expect(Kind.L_PAREN);
+        List<Type> parameterTypes = parseParameterList();
+        expect(Kind.R_PAREN);
+        expect(Kind.CMPGT);
+        List<Value> dynArgs = parseArgList();
+
+        SootMethodRef bsmMethod = parseMethodSignature(false);
+        List<Value> bsmArgs = parseArgList();
+        if (!build) {
+          return null;
+        }
+        SootClass dummy = resolver.makeClassRef(SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME);
+        SootMethodRef dynMethod = Scene.v().makeMethodRef(dummy, name, parameterTypes, returnType, false);
+        return Jimple.v().newDynamicInvokeExpr(bsmMethod, bsmArgs, dynMethod, dynArgs);
+      }
+      default: {
+        String baseName = parseName();
+        expect(Kind.DOT);
+        SootMethodRef method = parseMethodSignature(false);
+        List<Value> args = parseArgList();
+        if (!build) {
+          return null;
+        }
+        Local base = local(baseName);
+        if (kind == Kind.SPECIALINVOKE) {
+          return Jimple.v().newSpecialInvokeExpr(base, method, args);
+        } else if (kind == Kind.VIRTUALINVOKE) {
+          return Jimple.v().newVirtualInvokeExpr(base, method, args);
+        } else {
+          return Jimple.v().newInterfaceInvokeExpr(base, method, args);
+        }
+      }
+    }
+  }
+
+  /*
+   * l_paren arg_list? r_paren
+   */
+  private List<Value> parseArgList() throws ParserException, LexerException {
+    expect(Kind.L_PAREN);
+    List<Value> args = new ArrayList<Value>();
+    if (in.kind != Kind.R_PAREN) {
+      do {
+        args.add(parseImmediate());
+      } while (accept(Kind.COMMA));
+    }
+    expect(Kind.R_PAREN);
+    return args;
+  }
+
+  /*
+   * immediate = {local} local_name | {constant} constant; constant = {integer} minus? integer_constant | {float} minus?
+   * float_constant | {string} string_constant | {clzz} [id]:class string_constant | {null} null;
+   */
+  private Value parseImmediate() throws ParserException, LexerException {
+    Value v = null;
+    switch (in.kind) {
+      case IDENTIFIER:
+      case QUOTED_NAME:
+        if (build) {
+          v = local(tokenName());
+        }
+        break;
+      case MINUS:
+        in.next();
+        if (in.kind == Kind.INTEGER_CONSTANT) {
+          if (build) {
+            v = integerConstant(in.text(), true);
+          }
+        } else if (in.kind == Kind.FLOAT_CONSTANT) {
+          if (build) {
+            v = floatConstant(in.text(), true);
+          }
+        } else {
+          throw expected("integer constant, float constant");
+        }
+        break;
+      case INTEGER_CONSTANT:
+        if (build) {
+          v = integerConstant(in.text(), false);
+        }
+        break;
+      case FLOAT_CONSTANT:
+        if (build) {
+          v = floatConstant(in.text(), false);
+        }
+        break;
+      case STRING_CONSTANT:
+        if (build) {
+          v = StringConstant.v(stringConstant());
+        }
+        break;
+      case CLASS:
+        in.next();
+        check(Kind.STRING_CONSTANT);
+        if (build) {
+          v = ClassConstant.v(stringConstant());
+        }
+        break;
+      case NULL:
+        if (build) {
+          v = NullConstant.v();
+        }
+        break;
+      default:
+        throw expected("immediate");
+    }
+    in.next();
+    return v;
+  }
+
+  private static Value integerConstant(String s, boolean negative) {
+    if (negative) {
+      s = "-" + s;
+    }
+    if (s.endsWith("L")) {
+      return LongConstant.v(Long.parseLong(s.substring(0, s.length() - 1)));
+    } else if (s.equals("2147483648")) {
+      return IntConstant.v(Integer.MIN_VALUE);
+    } else {
+      return IntConstant.v(Integer.parseInt(s));
+    }
+  }
+
+  private static Value caseConstant(String s, boolean negative) {
+    final int sign = negative ? -1 : 1;
+    if (s.endsWith("L")) {
+      return LongConstant.v(sign * Long.parseLong(s.substring(0, s.length() - 1)));
+    } else if (s.equals("2147483648")) {
+      return IntConstant.v(sign * Integer.MIN_VALUE);
+    } else {
+      return IntConstant.v(sign * Integer.parseInt(s));
+    }
+  }
+
+  /* float_constant = ... | ('#' (('-'? 'Infinity') | 'NaN') ('f' | 'F')? ) ; */
+  private static Value floatConstant(String s, boolean negative) {
+    final boolean isDouble = !(s.endsWith("f") || s.endsWith("F"));
+    if (s.charAt(0) == '#') {
+      if (s.charAt(1) == '-') {
+        return isDouble ? DoubleConstant.v(Double.NEGATIVE_INFINITY) : FloatConstant.v(Float.NEGATIVE_INFINITY);
+      } else if (s.charAt(1) == 'I') {
+        return isDouble ? DoubleConstant.v(Double.POSITIVE_INFINITY) : FloatConstant.v(Float.POSITIVE_INFINITY);
+      } else {
+        return isDouble ? DoubleConstant.v(Double.NaN) : FloatConstant.v(Float.NaN);
+      }
+    }
+    if (negative) {
+      s = "-" + s;
+    }
+    return isDouble ? DoubleConstant.v(Double.parseDouble(s)) : FloatConstant.v(Float.parseFloat(s));
+  }
+
+  /*
+   * type = {void} void | {novoid} nonvoid_type;
+   */
+  private Type parseType() throws ParserException, LexerException {
+    if (accept(Kind.VOID)) {
+      return VoidType.v();
+    }
+    return parseNonvoidType();
+  }
+
+  /*
+   * nonvoid_type = {base} base_type_no_name array_brackets* | {quoted} quoted_name array_brackets* | {ident} identifier
+   * array_brackets* | {full_ident} full_identifier array_brackets*;
+   */
+  private Type parseNonvoidType() throws ParserException, LexerException {
+    Type type;
+    switch (in.kind) {
+      case QUOTED_NAME:
+      case IDENTIFIER:
+      case FULL_IDENTIFIER:
+        type = RefType.v(refTypeName());
+        break;
+      default:
+        type = primitiveType();
+        if (type == null) {
+          throw expected("type");
+        }
+        break;
+    }
+    in.next();
+
+    int dimensions = 0;
+    while (accept(Kind.L_BRACKET)) {
+      expect(Kind.R_BRACKET);
+      dimensions++;
+    }
+    return dimensions > 0 ? ArrayType.v(type, dimensions) : type;
+  }
+
+  /*
+   * base_type = {boolean} boolean | ... | {null} null_type | {class_name} class_name;
+   */
+  private Type parseBaseType() throws ParserException, LexerException {
+    switch (in.kind) {
+      case QUOTED_NAME:
+      case IDENTIFIER:
+      case FULL_IDENTIFIER:
+        return RefType.v(parseClassName());
+      default:
+        Type type = primitiveType();
+        if (type == null) {
+          throw expected("type");
+        }
+        in.next();
+        return type;
+    }
+  }
+
+  /*
+   * base_type_no_name = {boolean} boolean | {byte} byte | {char} char | {short} short | {int} int | {long} long | {float}
+   * float | {double} double | {null} null_type;
+   */
+  private Type primitiveType() {
+    switch (in.kind) {
+      case BOOLEAN:
+        return BooleanType.v();
+      case BYTE:
+        return ByteType.v();
+      case CHAR:
+        return CharType.v();
+      case SHORT:
+        return ShortType.v();
+      case INT:
+        return IntType.v();
+      case LONG:
+        return LongType.v();
+      case FLOAT:
+        return FloatType.v();
+      case DOUBLE:
+        return DoubleType.v();
+      case NULL_TYPE:
+        return NullType.v();
+      default:
+        return null;
+    }
+  }
+
+  /*
+   * parameter_list = {single} parameter | {multi} parameter comma parameter_list;
+   */
+  private List<Type> parseParameterList() throws ParserException, LexerException {
+    List<Type> types = new ArrayList<Type>();
+    if (in.kind != Kind.R_PAREN) {
+      do {
+        types.add(parseNonvoidType());
+      } while (accept(Kind.COMMA));
+    }
+    return types;
+  }
+
+  /*
+   * class_name_list = {class_name_single} class_name | {class_name_multi} class_name comma class_name_list;
+   */
+  private List<String> parseClassNameList() throws ParserException, LexerException {
+    List<String> names = new ArrayList<String>();
+    do {
+      names.add(parseClassName());
+    } while (accept(Kind.COMMA));
+    return names;
+  }
+
+  /*
+   * class_name = {quoted} quoted_name | {ident} identifier | {full_ident} full_identifier;
+   */
+  private String parseClassName() throws ParserException, LexerException {
+    if (in.kind != Kind.QUOTED_NAME && in.kind != Kind.IDENTIFIER && in.kind != Kind.FULL_IDENTIFIER) {
+      throw expected("class name");
+    }
+    String name = refTypeName();
+    in.next();
+    return name;
+  }
+
+  /*
+   * name = {quoted} quoted_name | {ident} identifier;
+   */
+  private String parseName() throws ParserException, LexerException {
+    if (in.kind != Kind.QUOTED_NAME && in.kind != Kind.IDENTIFIER) {
+      throw expected("name");
+    }
+    String name = tokenName();
+    in.next();
+    return name;
+  }
+
+  /**
+   * Returns the name of the reference type at the current token and records it for the constant pool
+   */
+  private String refTypeName() {
+    String name = tokenName();
+    if (refTypes != null) {
+      refTypes.add(name);
+    }
+    return name;
+  }
+
+  /**
+   * Returns the unescaped text of the current name token, in the same way as the Walker
+   */
+  private String tokenName() {
+    String s = in.text();
+    if (in.kind == Kind.QUOTED_NAME) {
+      s = s.substring(1, s.length() - 1);
+    } else if (in.kind == Kind.FULL_IDENTIFIER) {
+      s = Scene.v().unescapeName(s);
+    }
+    return unescape(s);
+  }
+
+  /**
+   * Returns the unescaped contents of the current string constant
+   */
+  private String stringConstant() {
+    String s = in.text();
+    return unescape(s.substring(1, s.length() - 1));
+  }
+
+  private static String unescape(String s) {
+    if (s.indexOf('\\') < 0) {
+      return s;
+    }
+    try {
+      return StringTools.getUnEscapedStringOf(s);
+    } catch (RuntimeException e) {
+      logger.debug("Invalid escaped string: " + s);
+      // just used the unescaped string, better than nothing
+      return s;
+    }
+  }
+
+  private Local local(String name) throws ParserException {
+    Local l = locals.get(name);
+    if (l == null) {
+      throw error("did not find local: " + name);
+    }
+    return l;
+  }
+
+  private boolean accept(Kind k) throws LexerException {
+    if (in.kind == k) {
+      in.next();
+      return true;
+    }
+    return false;
+  }
+
+  private void check(Kind k) throws ParserException {
+    if (in.kind != k) {
+      throw expected(k.text);
+    }
+  }
+
+  private void expect(Kind k) throws ParserException, LexerException {
+    check(k);
+    in.next();
+  }
+
+  private ParserException expected(String what) {
+    String found = in.kind == Kind.EOF ? Kind.EOF.text : in.text();
+    return error("expecting: " + what + ", found: " + found);
+  }
+
+  /**
+   * Creates an exception that points to the current token
+   */
+  private ParserException error(String message) {
+    return new ParserException(null, in.location() + " " + message);
+  }
+}
@@ -0,0 +1,196 @@
+package soot.jimple.spark.geom.geomE;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import soot.jimple.spark.geom.geomPA.IVarAbstraction;
+
+/**
+ * Keeps the number of figures on the heap within a budget by spilling the figures of cold pointers to a memory-mapped file.
+ * A spilled pointer only keeps the keys of its points-to and flows-to maps on the heap, its figures are paged back in as
+ * soon as the pointer is accessed again.
+ *
+ * <p>
+ * Pointers are only spilled when the solver calls {@link #spillColdFigures()}, at which point no figure is in use. Pointers
+ * in the worklist or with unprocessed points-to tuples are never spilled. The file is append-only, so a pointer that is
+ * spilled again is written anew.
+ * </p>
+ *
+ * <p>
+ * The file is created by the first spill and deleted by {@link #reset()} or {@link #close()}. The regions mapped from it stay
+ * valid after that, so pointers that are still spilled can be paged back in, and the next spill starts a new file.
+ * </p>
+ */
+public class FigureStore {
+  // The size of the regions the backing file is mapped in
+  private static final int CHUNK_SIZE = 64 << 20;
+
+  private final long budget;
+  private File file = null;
+  private FileChannel channel = null;
+  private MappedByteBuffer current = null;
+  private long mappedEnd = 0;
+
+  // The resident pointers in least recently used order, with the number of figures they held when last touched
+  private final LinkedHashMap<FullSensitiveNode, Integer> resident
+      = new LinkedHashMap<FullSensitiveNode, Integer>(1024, 0.75f, true);
+  private long residentFigures = 0;
+  private long n_spills = 0, n_reloads = 0;
+
+  /**
+   * @param budget
+   *          the number of figures that are kept on the heap
+   */
+  public FigureStore(long budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Record that the pointer has been used, and update the number of figures it holds.
+   */
+  public void touch(IVarAbstraction pn) {
+    if (!(pn instanceof FullSensitiveNode)) {
+      return;
+    }
+
+    FullSensitiveNode fn = (FullSensitiveNode) pn;
+    int figures = fn.countFigures();
+    Integer old = resident.put(fn, figures);
+    residentFigures += figures - (old == null ? 0 : old);
+  }
+
+  /**
+   * Spill the least recently used pointers until the resident figures are well below the budget. Must only be called when
+   * no figure of any pointer is in use.
+   */
+  public void spillColdFigures() {
+    if (residentFigures <= budget) {
+      return;
+    }
+
+    // Leave some room so that we do not spill again right after the next propagation
+    long target = budget - budget / 4;
+
+    for (Iterator<Map.Entry<FullSensitiveNode, Integer>> it = resident.entrySet().iterator(); it.hasNext()
+        && residentFigures > target;) {
+      Map.Entry<FullSensitiveNode, Integer> entry = it.next();
+      FullSensitiveNode pn = entry.getKey();
+
+      if (pn.isDeleted()) {
+        it.remove();
+        residentFigures -= entry.getValue();
+      } else if (pn.isSpillable()) {
+        it.remove();
+        residentFigures -= entry.getValue();
+        pn.spill(this);
+        ++n_spills;
+      }
+    }
+  }
+
+  /**
+   * Forget all the resident pointers, e.g. after their points-to information has been reset, and drop the backing file.
+   */
+  public void reset() {
+    resident.clear();
+    residentFigures = 0;
+    close();
+  }
+
+  /**
+   * Close and delete the backing file. The figures spilled so far can still be paged back in.
+   */
+  public void close() {
+    current = null;
+    mappedEnd = 0;
+
+    if (channel == null) {
+      return;
+    }
+
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new RuntimeException("[Geom] The figure spill file " + file + " cannot be closed.", e);
+    } finally {
+      file.delete();
+      channel = null;
+      file = null;
+    }
+  }
+
+  public long getNumberOfSpills() {
+    return n_spills;
+  }
+
+  public long getNumberOfReloads() {
+    return n_reloads;
+  }
+
+  /**
+   * Called when the figures of a spilled pointer have been paged back in.
+   */
+  void reloaded(FullSensitiveNode pn) {
+    ++n_reloads;
+    touch(pn);
+  }
+
+  /**
+   * Reserve a region of the given size in the backing file.
+   */
+  ByteBuffer allocate(int length) {
+    if (channel == null) {
+      try {
+        file = File.createTempFile("geomPTA", ".figures");
+        file.deleteOnExit();
+        channel = new RandomAccessFile(file, "rw").getChannel();
+      } catch (IOException e) {
+        throw new RuntimeException("[Geom] The figure spill file cannot be created.", e);
+      }
+    }
+
+    if (current == null || current.remaining() < length) {
+      int size = Math.max(CHUNK_SIZE, length);
+      try {
+        current = channel.map(FileChannel.MapMode.READ_WRITE, mappedEnd, size);
+      } catch (IOException e) {
+        throw new RuntimeException("[Geom] The figure spill file " + file + " cannot be mapped.", e);
+      }
+      mappedEnd += size;
+    }
+
+    ByteBuffer region = current.slice();
+    region.limit(length);
+    current.position(current.position() + length);
+    return region;
+  }
+}
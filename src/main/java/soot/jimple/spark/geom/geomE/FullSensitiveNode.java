@@ -23,6 +23,7 @@ package soot.jimple.spark.geom.geomE;
  */
 
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -71,6 +72,14 @@ public class FullSensitiveNode extends IVarAbstraction {
   // store/load complex constraints
   public Vector<PlainConstraint> complex_cons;
 
+  // The figures of this pointer while they are spilled to a figure store
+  private SpilledFigures spilled = null;
+
+  // Kinds of the geometric managers in a spilled record
+  private static final byte DEAD_MANAGER = 0;
+  private static final byte STUB_MANAGER = 1;
+  private static final byte FIGURES = 2;
+
   // Symbolicize the 1-to-1 and many-to-many mappings
   public static String symbols[] = { "/", "[]" };
 
@@ -87,6 +96,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public void deleteAll() {
+    spilled = null;
     flowto = null;
     pt_objs = null;
     new_pts = null;
@@ -95,6 +105,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public void reconstruct() {
+    spilled = null;
     flowto = new HashMap<FullSensitiveNode, GeometricManager>();
     pt_objs = new HashMap<AllocNode, GeometricManager>();
     new_pts = new HashMap<AllocNode, GeometricManager>();
@@ -104,6 +115,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public void keepPointsToOnly() {
+    ensureResident();
     flowto = null;
     new_pts = null;
     complex_cons = null;
@@ -111,6 +123,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public void do_before_propagation() {
+    ensureResident();
     // We first perform the geometric merging
     do_pts_interval_merge();
     do_flow_edge_interval_merge();
@@ -157,6 +170,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public void do_after_propagation() {
+    ensureResident();
     if (new_pts.size() > 0) {
       for (GeometricManager gm : new_pts.values()) {
         gm.flush();
@@ -172,6 +186,7 @@ public class FullSensitiveNode extends IVarAbstraction {
       return getRepresentative().num_of_diff_objs();
     }
 
+    ensureResident();
     if (pt_objs == null) {
       return -1;
     }
@@ -185,6 +200,7 @@ public class FullSensitiveNode extends IVarAbstraction {
       return getRepresentative().num_of_diff_objs();
     }
 
+    ensureResident();
     if (flowto == null) {
       return -1;
     }
@@ -194,6 +210,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public boolean add_points_to_3(AllocNode obj, long I1, long I2, long L) {
+    RectangleNode pres = tempRectangle();
     pres.I1 = I1;
     pres.I2 = I2;
     pres.L = L;
@@ -203,6 +220,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public boolean add_points_to_4(AllocNode obj, long I1, long I2, long L1, long L2) {
+    RectangleNode pres = tempRectangle();
     pres.I1 = I1;
     pres.I2 = I2;
     pres.L = L1;
@@ -213,6 +231,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public boolean add_simple_constraint_3(IVarAbstraction qv, long I1, long I2, long L) {
+    RectangleNode pres = tempRectangle();
     pres.I1 = I1;
     pres.I2 = I2;
     pres.L = L;
@@ -222,6 +241,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public boolean add_simple_constraint_4(IVarAbstraction qv, long I1, long I2, long L1, long L2) {
+    RectangleNode pres = tempRectangle();
     pres.I1 = I1;
     pres.I2 = I2;
     pres.L = L1;
@@ -240,6 +260,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public void drop_duplicates() {
+    ensureResident();
     for (GeometricManager gm : pt_objs.values()) {
       gm.removeUselessSegments();
     }
@@ -250,6 +271,7 @@ public class FullSensitiveNode extends IVarAbstraction {
    */
   @Override
   public void propagate(GeomPointsTo ptAnalyzer, IWorklist worklist) {
+    ensureResident();
     int i, j;
     AllocNode obj;
     SegmentNode pts, pe, entry_pts[], entry_pe[];
@@ -432,6 +454,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public boolean isDeadObject(AllocNode obj) {
+    ensureResident();
     return pt_objs.get(obj) == deadManager;
   }
 
@@ -469,6 +492,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public boolean heap_sensitive_intersection(IVarAbstraction qv) {
+    ensureResident();
     int i, j;
     FullSensitiveNode qn;
     SegmentNode p, q, pt[], qt[];
@@ -525,11 +549,13 @@ public class FullSensitiveNode extends IVarAbstraction {
       return getRepresentative().get_all_points_to_objects();
     }
 
+    ensureResident();
     return pt_objs.keySet();
   }
 
   @Override
   public void print_context_sensitive_points_to(PrintStream outPrintStream) {
+    ensureResident();
     for (Iterator<AllocNode> it = pt_objs.keySet().iterator(); it.hasNext();) {
       AllocNode obj = it.next();
       SegmentNode[] int_entry = find_points_to(obj);
@@ -556,6 +582,7 @@ public class FullSensitiveNode extends IVarAbstraction {
   @Override
   public void injectPts() {
     final GeomPointsTo geomPTA = (GeomPointsTo) Scene.v().getPointsToAnalysis();
+    spilled = null;
     pt_objs = new HashMap<AllocNode, GeometricManager>();
 
     me.getP2Set().forall(new P2SetVisitor() {
@@ -590,6 +617,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public void remove_points_to(AllocNode obj) {
+    ensureResident();
     pt_objs.remove(obj);
   }
 
@@ -600,6 +628,7 @@ public class FullSensitiveNode extends IVarAbstraction {
       return;
     }
 
+    ensureResident();
     GeomPointsTo geomPTA = (GeomPointsTo) Scene.v().getPointsToAnalysis();
 
     for (Map.Entry<AllocNode, GeometricManager> entry : pt_objs.entrySet()) {
@@ -668,6 +697,7 @@ public class FullSensitiveNode extends IVarAbstraction {
 
   @Override
   public int count_new_pts_intervals() {
+    ensureResident();
     int ans = 0;
 
     for (GeometricManager gm : new_pts.values()) {
@@ -684,11 +714,164 @@ public class FullSensitiveNode extends IVarAbstraction {
     return ans;
   }
 
+  // -----------------------------------Figure Spilling---------------------------------------
+  /**
+   * The figures of a spilled pointer. The keys of the maps stay on the heap, the managers are written to the region in the
+   * iteration order of the keys.
+   */
+  private static final class SpilledFigures {
+    final FigureStore store;
+    final ByteBuffer region;
+    final AllocNode[] objs;
+    final FullSensitiveNode[] targets;
+    final boolean hasNewPts;
+
+    SpilledFigures(FigureStore store, ByteBuffer region, AllocNode[] objs, FullSensitiveNode[] targets, boolean hasNewPts) {
+      this.store = store;
+      this.region = region;
+      this.objs = objs;
+      this.targets = targets;
+      this.hasNewPts = hasNewPts;
+    }
+  }
+
+  /**
+   * The number of figures this pointer holds on the heap.
+   */
+  int countFigures() {
+    int ret = 0;
+
+    if (pt_objs != null) {
+      for (GeometricManager gm : pt_objs.values()) {
+        if (gm != deadManager && gm != stubManager) {
+          ret += gm.countFigures();
+        }
+      }
+    }
+
+    if (flowto != null) {
+      for (GeometricManager gm : flowto.values()) {
+        ret += gm.countFigures();
+      }
+    }
+
+    return ret;
+  }
+
+  boolean isDeleted() {
+    return spilled == null && pt_objs == null;
+  }
+
+  /**
+   * A pointer can be spilled if it is neither in the worklist nor holds unprocessed points-to tuples.
+   */
+  boolean isSpillable() {
+    return spilled == null && pt_objs != null && Qpos == 0 && (new_pts == null || new_pts.isEmpty());
+  }
+
+  /**
+   * Move the figures of this pointer to the store.
+   */
+  void spill(FigureStore store) {
+    int length = 0;
+    for (GeometricManager gm : pt_objs.values()) {
+      length += spillSize(gm);
+    }
+    if (flowto != null) {
+      for (GeometricManager gm : flowto.values()) {
+        length += spillSize(gm);
+      }
+    }
+
+    ByteBuffer region = store.allocate(length);
+    AllocNode[] objs = new AllocNode[pt_objs.size()];
+    FullSensitiveNode[] targets = (flowto == null ? null : new FullSensitiveNode[flowto.size()]);
+    int k = 0;
+
+    for (Map.Entry<AllocNode, GeometricManager> entry : pt_objs.entrySet()) {
+      objs[k++] = entry.getKey();
+      writeManager(region, entry.getValue());
+    }
+
+    if (flowto != null) {
+      k = 0;
+      for (Map.Entry<FullSensitiveNode, GeometricManager> entry : flowto.entrySet()) {
+        targets[k++] = entry.getKey();
+        writeManager(region, entry.getValue());
+      }
+    }
+
+    spilled = new SpilledFigures(store, region, objs, targets, new_pts != null);
+    pt_objs = null;
+    flowto = null;
+    new_pts = null;
+  }
+
+  /**
+   * Page the figures of this pointer back in if they have been spilled.
+   */
+  private void ensureResident() {
+    if (spilled == null) {
+      return;
+    }
+
+    SpilledFigures sf = spilled;
+    spilled = null;
+    ByteBuffer in = sf.region.duplicate();
+    in.position(0);
+
+    pt_objs = new HashMap<AllocNode, GeometricManager>();
+    for (AllocNode obj : sf.objs) {
+      pt_objs.put(obj, readManager(in));
+    }
+
+    if (sf.targets != null) {
+      flowto = new HashMap<FullSensitiveNode, GeometricManager>();
+      for (FullSensitiveNode qn : sf.targets) {
+        flowto.put(qn, readManager(in));
+      }
+    }
+
+    if (sf.hasNewPts) {
+      new_pts = new HashMap<AllocNode, GeometricManager>();
+    }
+
+    sf.store.reloaded(this);
+  }
+
+  private static int spillSize(GeometricManager gm) {
+    return (gm == deadManager || gm == stubManager) ? 1 : 1 + gm.spillSize();
+  }
+
+  private static void writeManager(ByteBuffer out, GeometricManager gm) {
+    if (gm == deadManager) {
+      out.put(DEAD_MANAGER);
+    } else if (gm == stubManager) {
+      out.put(STUB_MANAGER);
+    } else {
+      out.put(FIGURES);
+      gm.writeTo(out);
+    }
+  }
+
+  private static GeometricManager readManager(ByteBuffer in) {
+    switch (in.get()) {
+      case DEAD_MANAGER:
+        return (GeometricManager) deadManager;
+      case STUB_MANAGER:
+        return (GeometricManager) stubManager;
+      default:
+        return GeometricManager.readFrom(in);
+    }
+  }
+
   // -----------------------------------Private Functions---------------------------------------
   /**
    * A non-interface public function. It adds the points-to tuple to the geometric manager.
    */
   private boolean addPointsTo(int code, AllocNode obj) {
+    ensureResident();
+    RectangleNode pres = tempRectangle();
     GeometricManager gm = pt_objs.get(obj);
 
     if (gm == null) {
@@ -712,6 +895,8 @@ public class FullSensitiveNode extends IVarAbstraction {
    * A non-interface public function. It adds the flows-to tuple to the geometric manager.
    */
   private boolean addFlowsTo(int code, IVarAbstraction qv) {
+    ensureResident();
+    RectangleNode pres = tempRectangle();
     GeometricManager gm = flowto.get(qv);
 
     if (gm == null) {
@@ -739,11 +924,13 @@ public class FullSensitiveNode extends IVarAbstraction {
   }
 
   private SegmentNode[] find_flowto(FullSensitiveNode qv) {
+    ensureResident();
     GeometricManager im = flowto.get(qv);
     return im == null ? null : im.getFigures();
   }
 
   private SegmentNode[] find_points_to(AllocNode obj) {
+    ensureResident();
     GeometricManager im = pt_objs.get(obj);
     return im == null ? null : im.getFigures();
   }
@@ -752,6 +939,7 @@ public class FullSensitiveNode extends IVarAbstraction {
    * Implement the inference rules when the input points-to figure is a one-to-one mapping.
    */
   private static int infer_pts_is_one_to_one(SegmentNode pts, SegmentNode pe, int code) {
+    RectangleNode pres = tempRectangle();
     long interI, interJ;
 
     // The left-end is the larger one
@@ -785,6 +973,7 @@ public class FullSensitiveNode extends IVarAbstraction {
    * Implement the inference rules when the input points-to figure is a many-to-many mapping.
    */
   private static int infer_pts_is_many_to_many(RectangleNode pts, SegmentNode pe, int code) {
+    RectangleNode pres = tempRectangle();
     long interI, interJ;
 
     // The left-end is the larger one
@@ -849,6 +1038,7 @@ public class FullSensitiveNode extends IVarAbstraction {
    * The last parameter code can only be 1-1 and many-1
    */
   private static boolean instantiateLoadConstraint(FullSensitiveNode objn, FullSensitiveNode qn, SegmentNode pts, int code) {
+    RectangleNode pres = tempRectangle();
     int ret_type = GeometricManager.Undefined_Mapping;
 
     if ((code >> 8) == GeometricManager.ONE_TO_ONE) {
@@ -898,6 +1088,7 @@ public class FullSensitiveNode extends IVarAbstraction {
   // code can only be 1-1 and 1-many
   private static boolean instantiateStoreConstraint(FullSensitiveNode qn, FullSensitiveNode objn, SegmentNode pts,
       int code) {
+    RectangleNode pres = tempRectangle();
     int ret_type = GeometricManager.Undefined_Mapping;
 
     if ((code >> 8) == GeometricManager.ONE_TO_ONE) {
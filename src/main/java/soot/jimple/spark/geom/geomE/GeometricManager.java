@@ -22,6 +22,8 @@ package soot.jimple.spark.geom.geomE;
  * #L%
  */
 
+import java.nio.ByteBuffer;
+
 import soot.jimple.spark.geom.dataRep.RectangleNode;
 import soot.jimple.spark.geom.dataRep.SegmentNode;
 import soot.jimple.spark.geom.geomPA.IFigureManager;
@@ -174,6 +176,90 @@ public class GeometricManager extends IFigureManager {
     header[GeometricManager.ONE_TO_ONE] = q;
   }
 
+  /**
+   * The number of figures held by this manager.
+   */
+  public int countFigures() {
+    return size[GeometricManager.ONE_TO_ONE] + size[GeometricManager.MANY_TO_MANY];
+  }
+
+  /**
+   * The number of bytes written by {@link #writeTo(ByteBuffer)}.
+   */
+  int spillSize() {
+    int bytes = 1 + 8 * Divisions;
+
+    for (int i = 0; i < Divisions; ++i) {
+      for (SegmentNode p = header[i]; p != null; p = p.next) {
+        bytes += (i == GeometricManager.ONE_TO_ONE ? 25 : 33);
+      }
+    }
+
+    return bytes;
+  }
+
+  /**
+   * Write all the figures to the buffer, keeping their order and their new labels.
+   */
+  void writeTo(ByteBuffer out) {
+    out.put((byte) (hasNewFigure ? 1 : 0));
+
+    for (int i = 0; i < Divisions; ++i) {
+      out.putInt(size[i]);
+      int countPos = out.position();
+      int count = 0;
+      out.putInt(0);
+
+      for (SegmentNode p = header[i]; p != null; p = p.next) {
+        out.put((byte) (p.is_new ? 1 : 0));
+        out.putLong(p.I1);
+        out.putLong(p.I2);
+        out.putLong(p.L);
+        if (i == GeometricManager.MANY_TO_MANY) {
+          out.putLong(((RectangleNode) p).L_prime);
+        }
+        ++count;
+      }
+
+      out.putInt(countPos, count);
+    }
+  }
+
+  /**
+   * Rebuild a manager from the figures written by {@link #writeTo(ByteBuffer)}.
+   */
+  static GeometricManager readFrom(ByteBuffer in) {
+    GeometricManager gm = new GeometricManager();
+    gm.hasNewFigure = in.get() != 0;
+
+    for (int i = 0; i < Divisions; ++i) {
+      gm.size[i] = in.getInt();
+      int count = in.getInt();
+      SegmentNode tail = null;
+
+      for (int k = 0; k < count; ++k) {
+        SegmentNode p = (i == GeometricManager.ONE_TO_ONE ? getSegmentNode() : getRectangleNode());
+        p.is_new = in.get() != 0;
+        p.I1 = in.getLong();
+        p.I2 = in.getLong();
+        p.L = in.getLong();
+        if (i == GeometricManager.MANY_TO_MANY) {
+          ((RectangleNode) p).L_prime = in.getLong();
+        }
+        p.next = null;
+
+        if (tail == null) {
+          gm.header[i] = p;
+        } else {
+          tail.next = p;
+        }
+        tail = p;
+      }
+    }
+
+    return gm;
+  }
+
   /**
    * Is the input line covered by any rectangle?
    *
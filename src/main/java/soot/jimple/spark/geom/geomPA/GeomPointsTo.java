@@ -22,22 +22,30 @@ package soot.jimple.spark.geom.geomPA;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +66,7 @@ import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.Stmt;
 import soot.jimple.spark.geom.dataRep.CgEdge;
 import soot.jimple.spark.geom.dataRep.PlainConstraint;
+import soot.jimple.spark.geom.geomE.FigureStore;
 import soot.jimple.spark.geom.geomE.FullSensitiveNodeGenerator;
 import soot.jimple.spark.geom.heapinsE.HeapInsNodeGenerator;
 import soot.jimple.spark.geom.helper.GeomEvaluator;
@@ -110,6 +119,9 @@ public class GeomPointsTo extends PAG {
   // The offline processing strategies for the constraints
   protected OfflineProcessor offlineProcessor = null;
 
+  // Spills the figures of cold pointers to disk, if the number of figures on the heap is bounded
+  protected FigureStore figureStore = null;
+
   // A table that maps the SPARK nodes to the geometric nodes
   public Map<Node, IVarAbstraction> consG = null;
 
@@ -256,14 +268,18 @@ public class GeomPointsTo extends PAG {
     }
 
     // Then, we set the worklist
-    switch (opts.geom_worklist()) {
-      case SparkOptions.geom_worklist_FIFO:
-        worklist = new FIFO_Worklist();
-        break;
-
-      case SparkOptions.geom_worklist_PQ:
-        worklist = new PQ_Worklist();
-        break;
+    worklist = createWorklist();
+
+    // Bound the number of figures on the heap if required
+    int spill_budget = opts.geom_spill_budget();
+    if (spill_budget > 0) {
+      if (solver_encoding != SparkOptions.geom_encoding_Geom) {
+        logger.warn("[Geom] Spilling figures is only supported by the Geom encoding, the budget is ignored.");
+      } else if (opts.geom_threads() > 1) {
+        logger.warn("[Geom] Spilling figures is not supported by the parallel solver, the budget is ignored.");
+      } else {
+        figureStore = new FigureStore(spill_budget);
+      }
     }
 
     // We dump the processing statistics to an external file if needed by the user
@@ -342,6 +358,21 @@ public class GeomPointsTo extends PAG {
         + "> encoding.");
   }
 
+  /**
+   * Create an empty worklist of the type selected by the user.
+   */
+  private IWorklist createWorklist() {
+    switch (opts.geom_worklist()) {
+      case SparkOptions.geom_worklist_FIFO:
+        return new FIFO_Worklist();
+
+      case SparkOptions.geom_worklist_PQ:
+        return new PQ_Worklist();
+    }
+
+    return null;
+  }
+
   /**
    * Read in the program facts generated by SPARK. We also construct our own call graph and pointer variables.
    */
@@ -882,13 +913,188 @@ public class GeomPointsTo extends PAG {
    * We iteratively update the call graph and the constraints list until our demand is satisfied
    */
   private void solveConstraints() {
-    IWorklist ptaList = worklist;
+    int threads = opts.geom_threads();
+    if (threads > 1) {
+      solveConstraintsInParallel(threads);
+    } else {
+      propagateAll(worklist);
+    }
+  }
 
+  /**
+   * Process the worklist until the points-to information reaches the fixed point.
+   */
+  private void propagateAll(IWorklist ptaList) {
     while (ptaList.has_job()) {
       IVarAbstraction pn = ptaList.next();
       pn.do_before_propagation();
       pn.propagate(this, ptaList);
       pn.do_after_propagation();
+
+      if (figureStore != null) {
+        figureStore.touch(pn);
+        figureStore.spillColdFigures();
+      }
+    }
+  }
+
+  /**
+   * Solve the constraints with multiple threads. Propagating a pointer only modifies the pointers it flows to and the
+   * instance fields it loads from or stores into. We therefore put the pointers connected by assignments, and all the
+   * pointers accessing the same field, into one partition. The partitions are independent and are distributed over the
+   * threads, each of which runs the usual worklist algorithm with its own worklist.
+   */
+  private void solveConstraintsInParallel(int threads) {
+    // The seeds are pushed to the global worklist by the flow graph initialization
+    List<IVarAbstraction> seeds = new ArrayList<IVarAbstraction>();
+    while (worklist.has_job()) {
+      seeds.add(worklist.next());
+    }
+    if (seeds.isEmpty()) {
+      return;
+    }
+
+    // Slots [0, n) are the pointers indexed by their ids, slot n gathers the unnumbered pointers, and the remaining slots
+    // stand for the accessed fields
+    int n = 0;
+    for (IVarAbstraction pn : pointers) {
+      n = Math.max(n, pn.id + 1);
+    }
+    Map<SparkField, Integer> fieldSlots = new HashMap<SparkField, Integer>();
+    for (PlainConstraint cons : constraints) {
+      if (cons.isActive && cons.f != null && !fieldSlots.containsKey(cons.f)) {
+        fieldSlots.put(cons.f, n + 1 + fieldSlots.size());
+      }
+    }
+    for (IVarAbstraction pn : pointers) {
+      Node v = pn.getWrappedNode();
+      if (v instanceof AllocDotField) {
+        SparkField f = ((AllocDotField) v).getField();
+        if (!fieldSlots.containsKey(f)) {
+          fieldSlots.put(f, n + 1 + fieldSlots.size());
+        }
+      }
+    }
+
+    int[] partition = new int[n + 1 + fieldSlots.size()];
+    for (int i = 0; i < partition.length; ++i) {
+      partition[i] = i;
+    }
+    for (PlainConstraint cons : constraints) {
+      if (!cons.isActive || cons.type == Constants.NEW_CONS) {
+        continue;
+      }
+      int lhs = slotOf(cons.getLHS().getRepresentative(), n);
+      union(partition, lhs, slotOf(cons.getRHS().getRepresentative(), n));
+      if (cons.f != null) {
+        union(partition, lhs, fieldSlots.get(cons.f));
+      }
+    }
+    for (IVarAbstraction pn : pointers) {
+      Node v = pn.getWrappedNode();
+      if (v instanceof AllocDotField) {
+        union(partition, slotOf(pn, n), fieldSlots.get(((AllocDotField) v).getField()));
+      }
+    }
+
+    // Group the seeds by partition, and weigh each partition by its number of pointers
+    Map<Integer, List<IVarAbstraction>> partitionSeeds = new HashMap<Integer, List<IVarAbstraction>>();
+    for (IVarAbstraction pn : seeds) {
+      int root = find(partition, slotOf(pn, n));
+      List<IVarAbstraction> list = partitionSeeds.get(root);
+      if (list == null) {
+        list = new ArrayList<IVarAbstraction>();
+        partitionSeeds.put(root, list);
+      }
+      list.add(pn);
+    }
+    final int[] weight = new int[partition.length];
+    for (IVarAbstraction pn : pointers) {
+      weight[find(partition, slotOf(pn, n))]++;
+    }
+
+    // Assign the largest partitions first, always to the least loaded thread
+    List<Integer> roots = new ArrayList<Integer>(partitionSeeds.keySet());
+    Collections.sort(roots, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return weight[o2] - weight[o1];
+      }
+    });
+    int nBuckets = Math.min(threads, roots.size());
+    List<List<IVarAbstraction>> buckets = new ArrayList<List<IVarAbstraction>>(nBuckets);
+    long[] load = new long[nBuckets];
+    for (int i = 0; i < nBuckets; ++i) {
+      buckets.add(new ArrayList<IVarAbstraction>());
+    }
+    for (Integer root : roots) {
+      int min = 0;
+      for (int i = 1; i < nBuckets; ++i) {
+        if (load[i] < load[min]) {
+          min = i;
+        }
+      }
+      load[min] += Math.max(weight[root], 1);
+      buckets.get(min).addAll(partitionSeeds.get(root));
+    }
+
+    final int capacity = pointers.size() + 1;
+    CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(nBuckets, nBuckets, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    IVarAbstraction.setSolvingInParallel(true);
+    try {
+      for (final List<IVarAbstraction> bucket : buckets) {
+        executor.execute(new Runnable() {
+
+          @Override
+          public void run() {
+            IWorklist ptaList = createWorklist();
+            ptaList.initialize(capacity);
+            for (IVarAbstraction pn : bucket) {
+              ptaList.push(pn);
+            }
+            propagateAll(ptaList);
+            IFigureManager.cleanCache();
+          }
+
+        });
+      }
+
+      // Wait till all partitions have been solved
+      executor.awaitCompletion();
+      executor.shutdown();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Could not wait for geomPTA threads to finish: " + e.getMessage(), e);
+    } finally {
+      IVarAbstraction.setSolvingInParallel(false);
+    }
+
+    if (executor.getException() != null) {
+      if (executor.getException() instanceof RuntimeException) {
+        throw (RuntimeException) executor.getException();
+      } else {
+        throw new RuntimeException(executor.getException());
+      }
+    }
+  }
+
+  private static int slotOf(IVarAbstraction pn, int n) {
+    return pn.id >= 0 && pn.id < n ? pn.id : n;
+  }
+
+  private static int find(int[] partition, int x) {
+    while (partition[x] != x) {
+      partition[x] = partition[partition[x]];
+      x = partition[x];
+    }
+    return x;
+  }
+
+  private static void union(int[] partition, int x, int y) {
+    x = find(partition, x);
+    y = find(partition, y);
+    if (x != y) {
+      partition[y] = x;
     }
   }
 
@@ -1021,6 +1227,10 @@ public class GeomPointsTo extends PAG {
    * Prepare for the next iteration.
    */
   private void prepareNextRun() {
+    if (figureStore != null) {
+      figureStore.reset();
+    }
+
     // Clean the context sensitive points-to results for the representative pointers
     for (IVarAbstraction pn : pointers) {
       if (pn.willUpdate == true) {
@@ -1126,6 +1336,7 @@ public class GeomPointsTo extends PAG {
 
     for (Iterator<IVarAbstraction> it = pointers.iterator(); it.hasNext();) {
       IVarAbstraction pn = it.next();
+      spillColdFigures();
 
       // Is this pointer obsoleted?
       Node vn = pn.getWrappedNode();
@@ -1216,9 +1427,21 @@ public class GeomPointsTo extends PAG {
     offlineProcessor.destroy();
     offlineProcessor = null;
     IFigureManager.cleanCache();
+    if (figureStore != null) {
+      figureStore.close();
+    }
     System.gc();
   }
 
+  /**
+   * Give the figure store a chance to spill, when no figure is in use.
+   */
+  private void spillColdFigures() {
+    if (figureStore != null) {
+      figureStore.spillColdFigures();
+    }
+  }
+
   /**
    * Update the reachable methods and SPARK points-to results.
    */
@@ -1233,6 +1456,8 @@ public class GeomPointsTo extends PAG {
       // results (willUpdate = true)
       // At querying time, the SPARK points-to container acts as a query cache
       for (IVarAbstraction pn : pointers) {
+        spillColdFigures();
+
         // Keep only the points-to results for representatives
         if (pn != pn.getRepresentative()) {
           continue;
@@ -1258,6 +1483,7 @@ public class GeomPointsTo extends PAG {
    */
   public void transformToCIResult() {
     for (IVarAbstraction pn : pointers) {
+      spillColdFigures();
       if (pn.getRepresentative() != pn) {
         continue;
       }
@@ -1356,6 +1582,10 @@ public class GeomPointsTo extends PAG {
     ps.printf("[Geom] Preprocessing time: %.2f s\n", (double) prepare_time / 1000);
     ps.printf("[Geom] Total time: %.2f s\n", (double) solve_time / 1000);
     ps.printf("[Geom] Memory: %.1f MB\n", (double) (mem) / 1024 / 1024);
+    if (figureStore != null) {
+      ps.printf("[Geom] Figure spills: %d, reloads: %d\n", figureStore.getNumberOfSpills(),
+          figureStore.getNumberOfReloads());
+    }
 
     // We perform a set of tests to assess the quality of the points-to results for
     // user pointers
@@ -1451,6 +1681,9 @@ public class GeomPointsTo extends PAG {
     edgeMapping.clear();
     hasTransformed = false;
     hasExecuted = false;
+    if (figureStore != null) {
+      figureStore.reset();
+    }
 
     System.gc();
     System.gc();
@@ -1674,7 +1907,7 @@ public class GeomPointsTo extends PAG {
   /**
    * Obtain or create an internal representation of an object field.
    */
-  public IVarAbstraction findAndInsertInstanceField(AllocNode obj, SparkField field) {
+  public synchronized IVarAbstraction findAndInsertInstanceField(AllocNode obj, SparkField field) {
     AllocDotField af = findAllocDotField(obj, field);
     IVarAbstraction pn = null;
 
@@ -32,9 +32,13 @@ import soot.jimple.spark.geom.dataRep.SegmentNode;
  *
  */
 public abstract class IFigureManager {
-  // We implement an internal memory manager here
-  private static SegmentNode segHeader = null;
-  private static SegmentNode rectHeader = null;
+  // We implement an internal memory manager here, one per thread since the constraints may be solved in parallel
+  private static final ThreadLocal<NodeCache> caches = ThreadLocal.withInitial(NodeCache::new);
+
+  private static final class NodeCache {
+    SegmentNode segHeader = null;
+    SegmentNode rectHeader = null;
+  }
 
   /**
    * Generate a segment node from our own cache.
@@ -42,11 +46,12 @@ public abstract class IFigureManager {
    * @return
    */
   protected static SegmentNode getSegmentNode() {
+    NodeCache cache = caches.get();
     SegmentNode ret = null;
 
-    if (segHeader != null) {
-      ret = segHeader;
-      segHeader = ret.next;
+    if (cache.segHeader != null) {
+      ret = cache.segHeader;
+      cache.segHeader = ret.next;
       ret.next = null;
       ret.is_new = true;
     } else {
@@ -62,11 +67,12 @@ public abstract class IFigureManager {
    * @return
    */
   protected static RectangleNode getRectangleNode() {
+    NodeCache cache = caches.get();
     RectangleNode ret = null;
 
-    if (rectHeader != null) {
-      ret = (RectangleNode) rectHeader;
-      rectHeader = ret.next;
+    if (cache.rectHeader != null) {
+      ret = (RectangleNode) cache.rectHeader;
+      cache.rectHeader = ret.next;
       ret.next = null;
       ret.is_new = true;
     } else {
@@ -83,9 +89,10 @@ public abstract class IFigureManager {
    * @return
    */
   protected static SegmentNode reclaimSegmentNode(SegmentNode p) {
+    NodeCache cache = caches.get();
     SegmentNode q = p.next;
-    p.next = segHeader;
-    segHeader = p;
+    p.next = cache.segHeader;
+    cache.segHeader = p;
     return q;
   }
 
@@ -96,9 +103,10 @@ public abstract class IFigureManager {
    * @return
    */
   protected static SegmentNode reclaimRectangleNode(SegmentNode p) {
+    NodeCache cache = caches.get();
     SegmentNode q = p.next;
-    p.next = rectHeader;
-    rectHeader = p;
+    p.next = cache.rectHeader;
+    cache.rectHeader = p;
     return q;
   }
 
@@ -106,8 +114,7 @@ public abstract class IFigureManager {
    * We return the cached memory to garbage collector.
    */
   public static void cleanCache() {
-    segHeader = null;
-    rectHeader = null;
+    caches.remove();
   }
 
   // Get the information of the figures
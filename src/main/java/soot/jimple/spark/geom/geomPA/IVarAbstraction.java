@@ -49,6 +49,9 @@ public abstract class IVarAbstraction implements Numberable {
   protected static IFigureManager deadManager = null;
   // A temporary rectangle holds the candidate figure
   protected static RectangleNode pres = null;
+  // The temporary rectangles of the threads while the constraints are solved in parallel
+  private static final ThreadLocal<RectangleNode> tempRectangles = ThreadLocal.withInitial(RectangleNode::new);
+  private static volatile boolean solvingInParallel = false;
 
   // Corresponding SPARK node
   public Node me;
@@ -81,6 +84,18 @@ public abstract class IVarAbstraction implements Numberable {
     return top_value < other.top_value;
   }
 
+  /**
+   * The temporary rectangle of the current thread. Unless the constraints are solved in parallel, this is the shared
+   * rectangle {@link #pres}.
+   */
+  protected static RectangleNode tempRectangle() {
+    return solvingInParallel || pres == null ? tempRectangles.get() : pres;
+  }
+
+  static void setSolvingInParallel(boolean parallel) {
+    solvingInParallel = parallel;
+  }
+
   public IVarAbstraction getRepresentative() {
     return parent == this ? this : (parent = parent.getRepresentative());
   }
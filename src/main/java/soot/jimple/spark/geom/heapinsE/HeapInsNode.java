@@ -187,6 +187,7 @@ public class HeapInsNode extends IVarAbstraction {
 
   @Override
   public boolean add_points_to_3(AllocNode obj, long I1, long I2, long L) {
+    RectangleNode pres = tempRectangle();
     int code = 0;
 
     pres.I1 = I1;
@@ -209,6 +210,7 @@ public class HeapInsNode extends IVarAbstraction {
 
   @Override
   public boolean add_simple_constraint_3(IVarAbstraction qv, long I1, long I2, long L) {
+    RectangleNode pres = tempRectangle();
     int code = 0;
 
     pres.I1 = I1;
@@ -669,6 +671,7 @@ public class HeapInsNode extends IVarAbstraction {
   }
 
   private boolean addPointsTo(int code, AllocNode obj) {
+    RectangleNode pres = tempRectangle();
     HeapInsIntervalManager im = pt_objs.get(obj);
 
     if (im == null) {
@@ -689,6 +692,7 @@ public class HeapInsNode extends IVarAbstraction {
   }
 
   private boolean addFlowsTo(int code, HeapInsNode qv) {
+    RectangleNode pres = tempRectangle();
     HeapInsIntervalManager im = flowto.get(qv);
 
     if (im == null) {
@@ -702,6 +706,7 @@ public class HeapInsNode extends IVarAbstraction {
 
   // Apply the inference rules
   private static boolean add_new_points_to_tuple(SegmentNode pts, SegmentNode pe, AllocNode obj, HeapInsNode qn) {
+    RectangleNode pres = tempRectangle();
     long interI, interJ;
     int code = 0;
 
@@ -180,6 +180,7 @@ public class PtInsNode extends IVarAbstraction {
 
   @Override
   public boolean add_points_to_3(AllocNode obj, long I1, long I2, long L) {
+    RectangleNode pres = tempRectangle();
     int code = 0;
 
     pres.I1 = I1;
@@ -202,6 +203,7 @@ public class PtInsNode extends IVarAbstraction {
 
   @Override
   public boolean add_simple_constraint_3(IVarAbstraction qv, long I1, long I2, long L) {
+    RectangleNode pres = tempRectangle();
     int code = 0;
 
     pres.I1 = I1;
@@ -656,6 +658,7 @@ public class PtInsNode extends IVarAbstraction {
   }
 
   private boolean addPointsTo(int code, AllocNode obj) {
+    RectangleNode pres = tempRectangle();
     PtInsIntervalManager im = pt_objs.get(obj);
 
     if (im == null) {
@@ -676,6 +679,7 @@ public class PtInsNode extends IVarAbstraction {
   }
 
   private boolean addFlowsTo(int code, PtInsNode qv) {
+    RectangleNode pres = tempRectangle();
     PtInsIntervalManager im = flowto.get(qv);
 
     if (im == null) {
@@ -689,6 +693,7 @@ public class PtInsNode extends IVarAbstraction {
 
   // Implement the pointer assignment inference rules
   private static boolean add_new_points_to_tuple(SegmentNode pts, SegmentNode pe, AllocNode obj, PtInsNode qn) {
+    RectangleNode pres = tempRectangle();
     long interI, interJ;
     int code = 0;
 
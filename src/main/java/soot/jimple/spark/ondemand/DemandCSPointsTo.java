@@ -275,6 +275,11 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 
   protected boolean useCache;
 
+  /**
+   * value of {@link System#nanoTime()} after which the current query is aborted, {@link Long#MAX_VALUE} for no time limit
+   */
+  protected long deadline = Long.MAX_VALUE;
+
   private final boolean lazy;
 
   public DemandCSPointsTo(ContextSensitiveInfo csInfo, PAG pag) {
@@ -373,17 +378,29 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
    * Computes the refined set of reaching objects for l. Returns <code>null</code> if refinement failed.
    */
   protected PointsToSet computeRefinedReachingObjects(VarNode v) {
+    return computeRefinedReachingObjects(v, EMPTY_CALLSTACK);
+  }
+
+  /**
+   * Computes the refined set of reaching objects for v in the given calling context. Returns <code>null</code> if refinement
+   * failed.
+   */
+  protected AllocAndContextSet computeRefinedReachingObjects(VarNode v, ImmutableStack<Integer> context) {
+    // lazy initialization
+    if (fieldToStores == null) {
+      init();
+    }
     // must reset the refinement heuristic for each query
     this.fieldCheckHeuristic = HeuristicType.getHeuristic(heuristicType, pag.getTypeManager(), getMaxPasses());
     doPointsTo = true;
     numPasses = 0;
-    PointsToSet contextSensitiveResult = null;
+    AllocAndContextSet contextSensitiveResult = null;
     while (true) {
       numPasses++;
       if (DEBUG_PASS != -1 && numPasses > DEBUG_PASS) {
         break;
       }
-      if (numPasses > maxPasses) {
+      if (numPasses > maxPasses || System.nanoTime() > deadline) {
         break;
       }
       if (DEBUG) {
@@ -393,7 +410,7 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
       clearState();
       pointsTo = new AllocAndContextSet();
       try {
-        refineP2Set(new VarAndContext(v, EMPTY_CALLSTACK), null);
+        refineP2Set(new VarAndContext(v, context), null);
         contextSensitiveResult = pointsTo;
       } catch (TerminateEarlyException e) {
         logger.debug(e.getMessage(), e);
@@ -1305,6 +1322,11 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
     if (numNodesTraversed > maxNodesPerPass) {
       throw new TerminateEarlyException();
     }
+    // checking the clock is comparatively expensive, so only do it every
+    // now and then
+    if ((numNodesTraversed & 0x3ff) == 0 && System.nanoTime() > deadline) {
+      throw new TerminateEarlyException();
+    }
   }
 
   @SuppressWarnings("unused")
@@ -1975,6 +1997,24 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
     this.refineCallGraph = refineCallGraph;
   }
 
+  /**
+   * Sets the point in time after which queries are aborted. Aborted queries fall back to Spark's points-to sets.
+   *
+   * @param deadline
+   *          a value of {@link System#nanoTime()}, or {@link Long#MAX_VALUE} for no time limit
+   */
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  /**
+   * Checks whether the deadline set by {@link #setDeadline(long)} has passed, i.e., whether a query that failed just now
+   * may have been aborted for lack of time rather than for exceeding its traversal or pass budget.
+   */
+  public boolean hasDeadlinePassed() {
+    return System.nanoTime() > deadline;
+  }
+
   public HeuristicType getHeuristicType() {
     return heuristicType;
   }
@@ -0,0 +1,267 @@
+package soot.jimple.spark.ondemand;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import soot.Local;
+import soot.PointsToSet;
+import soot.Scene;
+import soot.jimple.spark.ondemand.DemandCSPointsTo.VarAndContext;
+import soot.jimple.spark.ondemand.genericutil.ImmutableStack;
+import soot.jimple.spark.ondemand.pautil.ContextSensitiveInfo;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.EmptyPointsToSet;
+
+/**
+ * Thread-safe query service for the demand-driven, context-sensitive points-to analysis of {@link DemandCSPointsTo}.
+ *
+ * <p>
+ * Every query gets a budget in terms of traversed nodes and passes, just like {@link DemandCSPointsTo}, and additionally a
+ * wall-clock time limit. Queries that exceed their budget fall back to Spark's context-insensitive points-to set. The
+ * refined points-to sets are kept in a cache that is shared by all clients, so that repeated queries on the same variable
+ * and calling context are answered immediately.
+ * </p>
+ *
+ * <p>
+ * Queries can be issued concurrently. Each thread borrows its own {@link DemandCSPointsTo} engine from a pool, since the
+ * engines keep mutable traversal state; the engines share the read-only {@link ContextSensitiveInfo} of the PAG. The PAG
+ * must not be modified while the service is in use.
+ * </p>
+ */
+public class DemandCSQueryService {
+
+  protected static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+
+  protected final PAG pag;
+
+  protected final ContextSensitiveInfo csInfo;
+
+  protected final int maxTraversal;
+
+  protected final int maxPasses;
+
+  protected final long timeBudgetNanos;
+
+  protected volatile HeuristicType heuristicType = HeuristicType.INCR;
+
+  protected volatile boolean refineCallGraph = true;
+
+  /**
+   * refined points-to sets of the variables and calling contexts queried so far
+   */
+  protected final ConcurrentMap<VarAndContext, AllocAndContextSet> refinedCache
+      = new ConcurrentHashMap<VarAndContext, AllocAndContextSet>();
+
+  /**
+   * variables and calling contexts for which refinement has exceeded the traversal or pass budget. Queries that ran out of
+   * time are not remembered, since they may succeed when the machine is less loaded.
+   */
+  protected final Set<VarAndContext> failedQueries = ConcurrentHashMap.<VarAndContext>newKeySet();
+
+  protected final ConcurrentLinkedQueue<DemandCSPointsTo> idleEngines = new ConcurrentLinkedQueue<DemandCSPointsTo>();
+
+  /**
+   * Makes a query service with the default budget. Assumes Spark has already run.
+   */
+  public static DemandCSQueryService makeDefault() {
+    return makeWithBudget(DemandCSPointsTo.DEFAULT_MAX_TRAVERSAL, DemandCSPointsTo.DEFAULT_MAX_PASSES,
+        DEFAULT_TIME_BUDGET_MILLIS);
+  }
+
+  public static DemandCSQueryService makeWithBudget(int maxTraversal, int maxPasses, long timeBudgetMillis) {
+    PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+    return new DemandCSQueryService(pag, maxTraversal, maxPasses, timeBudgetMillis);
+  }
+
+  /**
+   * @param pag
+   *          the pointer assignment graph computed by Spark
+   * @param maxTraversal
+   *          the maximum number of nodes traversed per query
+   * @param maxPasses
+   *          the maximum number of refinement passes per query
+   * @param timeBudgetMillis
+   *          the maximum time spent on a single query in milliseconds, or a non-positive value for no time limit
+   */
+  public DemandCSQueryService(PAG pag, int maxTraversal, int maxPasses, long timeBudgetMillis) {
+    this.pag = pag;
+    this.csInfo = new ContextSensitiveInfo(pag);
+    this.maxTraversal = maxTraversal;
+    this.maxPasses = maxPasses;
+    this.timeBudgetNanos = timeBudgetMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis) : -1;
+    freezePAG();
+  }
+
+  /**
+   * The PAG converts its edge sets to arrays lazily on the first lookup. Do all of these conversions now, so that the engines
+   * only read the PAG afterwards.
+   */
+  private void freezePAG() {
+    for (VarNode v : pag.simpleSources()) {
+      pag.simpleLookup(v);
+    }
+    for (VarNode v : pag.simpleInvSources()) {
+      pag.simpleInvLookup(v);
+    }
+    for (AllocNode a : pag.allocSources()) {
+      pag.allocLookup(a);
+    }
+    for (VarNode v : pag.allocInvSources()) {
+      pag.allocInvLookup(v);
+    }
+    for (VarNode v : pag.storeSources()) {
+      pag.storeLookup(v);
+    }
+    for (FieldRefNode f : pag.storeInvSources()) {
+      pag.storeInvLookup(f);
+    }
+    for (FieldRefNode f : pag.loadSources()) {
+      pag.loadLookup(f);
+    }
+    for (VarNode v : pag.loadInvSources()) {
+      pag.loadInvLookup(v);
+    }
+  }
+
+  /**
+   * Computes the objects that l may point to, in any calling context of its method.
+   */
+  public PointsToSet reachingObjects(Local l) {
+    VarNode v = pag.findLocalVarNode(l);
+    if (v == null) {
+      // no reaching objects
+      return EmptyPointsToSet.v();
+    }
+    return reachingObjects(v, DemandCSPointsTo.EMPTY_CALLSTACK);
+  }
+
+  /**
+   * Computes the objects that v may point to in the given calling context. The result is an {@link AllocAndContextSet} if
+   * the query could be answered within the budget, or Spark's points-to set of v otherwise.
+   */
+  public PointsToSet reachingObjects(VarNode v, ImmutableStack<Integer> context) {
+    VarAndContext key = new VarAndContext(v, context);
+    AllocAndContextSet result = refinedCache.get(key);
+    if (result != null) {
+      return result;
+    }
+    if (!failedQueries.contains(key)) {
+      DemandCSPointsTo engine = acquireEngine();
+      boolean timedOut;
+      try {
+        engine.setDeadline(timeBudgetNanos < 0 ? Long.MAX_VALUE : nanoTime() + timeBudgetNanos);
+        result = engine.computeRefinedReachingObjects(v, context);
+        timedOut = result == null && engine.hasDeadlinePassed();
+      } finally {
+        releaseEngine(engine);
+      }
+      if (result != null) {
+        AllocAndContextSet old = refinedCache.putIfAbsent(key, result);
+        return old == null ? result : old;
+      }
+      if (!timedOut) {
+        failedQueries.add(key);
+      }
+    }
+    return new WrappedPointsToSet(v.getP2Set());
+  }
+
+  /**
+   * Checks whether l1 and l2 may point to the same object. The refined points-to sets are only computed if Spark's points-to
+   * sets of the two locals intersect.
+   */
+  public boolean mayAlias(Local l1, Local l2) {
+    VarNode v1 = pag.findLocalVarNode(l1);
+    VarNode v2 = pag.findLocalVarNode(l2);
+    if (v1 == null || v2 == null) {
+      return false;
+    }
+    if (!v1.getP2Set().hasNonEmptyIntersection(v2.getP2Set())) {
+      return false;
+    }
+    PointsToSet p1 = reachingObjects(v1, DemandCSPointsTo.EMPTY_CALLSTACK);
+    PointsToSet p2 = reachingObjects(v2, DemandCSPointsTo.EMPTY_CALLSTACK);
+    return p1.hasNonEmptyIntersection(p2);
+  }
+
+  protected DemandCSPointsTo acquireEngine() {
+    DemandCSPointsTo engine = idleEngines.poll();
+    if (engine == null) {
+      engine = new DemandCSPointsTo(csInfo, pag, maxTraversal, maxPasses, false);
+      engine.disableCache();
+    }
+    // the settings may have changed since the engine was last used
+    engine.setHeuristicType(heuristicType);
+    engine.setRefineCallGraph(refineCallGraph);
+    return engine;
+  }
+
+  protected void releaseEngine(DemandCSPointsTo engine) {
+    idleEngines.offer(engine);
+  }
+
+  /**
+   * The clock from which the deadlines of the queries are computed
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Drops all cached results
+   */
+  public void clearCache() {
+    refinedCache.clear();
+    failedQueries.clear();
+  }
+
+  public PAG getPAG() {
+    return pag;
+  }
+
+  public HeuristicType getHeuristicType() {
+    return heuristicType;
+  }
+
+  public void setHeuristicType(HeuristicType heuristicType) {
+    this.heuristicType = heuristicType;
+    clearCache();
+  }
+
+  public boolean isRefineCallGraph() {
+    return refineCallGraph;
+  }
+
+  public void setRefineCallGraph(boolean refineCallGraph) {
+    this.refineCallGraph = refineCallGraph;
+    clearCache();
+  }
+}
@@ -65,6 +65,7 @@ import soot.jimple.spark.internal.ClientAccessibilityOracle;
 import soot.jimple.spark.internal.SparkLibraryHelper;
 import soot.jimple.spark.internal.TypeManager;
 import soot.jimple.spark.sets.BitPointsToSet;
+import soot.jimple.spark.sets.CompressedPointsToSet;
 import soot.jimple.spark.sets.DoublePointsToSet;
 import soot.jimple.spark.sets.EmptyPointsToSet;
 import soot.jimple.spark.sets.HashPointsToSet;
@@ -126,6 +127,9 @@ public class PAG implements PointsToAnalysis {
       case SparkOptions.set_impl_sharedlist:
         setFactory = SharedListSet.getFactory();
         break;
+      case SparkOptions.set_impl_compressed:
+        setFactory = CompressedPointsToSet.getFactory();
+        break;
       case SparkOptions.set_impl_array:
         setFactory = SortedArraySet.getFactory();
         break;
@@ -148,6 +152,9 @@ public class PAG implements PointsToAnalysis {
           case SparkOptions.double_set_old_sharedlist:
             oldF = SharedListSet.getFactory();
             break;
+          case SparkOptions.double_set_old_compressed:
+            oldF = CompressedPointsToSet.getFactory();
+            break;
           case SparkOptions.double_set_old_array:
             oldF = SortedArraySet.getFactory();
             break;
@@ -170,6 +177,9 @@ public class PAG implements PointsToAnalysis {
           case SparkOptions.double_set_new_sharedlist:
             newF = SharedListSet.getFactory();
             break;
+          case SparkOptions.double_set_new_compressed:
+            newF = CompressedPointsToSet.getFactory();
+            break;
           case SparkOptions.double_set_new_array:
             newF = SortedArraySet.getFactory();
             break;
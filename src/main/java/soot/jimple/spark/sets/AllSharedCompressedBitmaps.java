@@ -0,0 +1,47 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import soot.G;
+import soot.Singletons;
+
+/**
+ * A singleton to hold the hash-consing tables for CompressedBitmap. The tables only hold weak references, so bitmaps and
+ * containers that are no longer used by any points-to set can be garbage collected.
+ */
+
+public class AllSharedCompressedBitmaps {
+  public AllSharedCompressedBitmaps(Singletons.Global g) {
+  }
+
+  public static AllSharedCompressedBitmaps v() {
+    return G.v().soot_jimple_spark_sets_AllSharedCompressedBitmaps();
+  }
+
+  final Interner<CompressedBitmap> bitmaps = Interners.newWeakInterner();
+
+  final Interner<CompressedBitmap.Container> containers = Interners.newWeakInterner();
+}
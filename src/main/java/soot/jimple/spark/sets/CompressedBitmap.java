@@ -0,0 +1,436 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable, compressed set of non-negative integers in the style of Roaring bitmaps.
+ *
+ * <p>
+ * The integers are partitioned by their upper 16 bits. Each partition is stored in a container that is either a sorted
+ * array of the lower 16 bits, if the partition holds at most {@link #ARRAY_MAX} elements, or a plain bitmap of 2^16 bits
+ * otherwise. Sparse sets thus cost two bytes per element, and dense sets one bit per possible element.
+ * </p>
+ *
+ * <p>
+ * All containers and bitmaps are hash-consed through {@link AllSharedCompressedBitmaps}: equal containers and equal
+ * bitmaps are represented by the same object. Two bitmaps are therefore equal if and only if they are identical, and sets
+ * that are built from the same elements share all of their memory.
+ * </p>
+ */
+public final class CompressedBitmap {
+
+  /** The maximum number of elements in an array container */
+  static final int ARRAY_MAX = 4096;
+
+  private static final int BITMAP_WORDS = (1 << 16) / 64;
+
+  public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0]);
+
+  private final char[] keys;
+  private final Container[] containers;
+  private final int cardinality;
+  private final int hashCode;
+
+  private CompressedBitmap(char[] keys, Container[] containers) {
+    this.keys = keys;
+    this.containers = containers;
+
+    int card = 0;
+    int h = 1;
+    for (int i = 0; i < keys.length; i++) {
+      card += containers[i].cardinality();
+      h = 31 * h + keys[i];
+      h = 31 * h + containers[i].hashCode();
+    }
+    this.cardinality = card;
+    this.hashCode = h;
+  }
+
+  private static CompressedBitmap make(char[] keys, Container[] containers) {
+    if (keys.length == 0) {
+      return EMPTY;
+    }
+    return AllSharedCompressedBitmaps.v().bitmaps.intern(new CompressedBitmap(keys, containers));
+  }
+
+  private static Container intern(Container c) {
+    return AllSharedCompressedBitmaps.v().containers.intern(c);
+  }
+
+  /**
+   * Creates a bitmap from the given elements
+   *
+   * @param elements
+   *          The elements, sorted in ascending order and without duplicates
+   * @param length
+   *          The number of elements to take from the array
+   * @return The canonical bitmap with the given elements
+   */
+  public static CompressedBitmap of(int[] elements, int length) {
+    if (length == 0) {
+      return EMPTY;
+    }
+
+    int numKeys = 1;
+    for (int i = 1; i < length; i++) {
+      if ((elements[i] >>> 16) != (elements[i - 1] >>> 16)) {
+        numKeys++;
+      }
+    }
+
+    char[] keys = new char[numKeys];
+    Container[] containers = new Container[numKeys];
+    int start = 0;
+    for (int k = 0; k < numKeys; k++) {
+      final int high = elements[start] >>> 16;
+      int end = start + 1;
+      while (end < length && (elements[end] >>> 16) == high) {
+        end++;
+      }
+
+      keys[k] = (char) high;
+      if (end - start <= ARRAY_MAX) {
+        char[] content = new char[end - start];
+        for (int i = start; i < end; i++) {
+          content[i - start] = (char) elements[i];
+        }
+        containers[k] = intern(new ArrayContainer(content));
+      } else {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = start; i < end; i++) {
+          final char low = (char) elements[i];
+          words[low >>> 6] |= 1L << low;
+        }
+        containers[k] = intern(new BitmapContainer(words, end - start));
+      }
+      start = end;
+    }
+    return make(keys, containers);
+  }
+
+  public boolean isEmpty() {
+    return keys.length == 0;
+  }
+
+  public int cardinality() {
+    return cardinality;
+  }
+
+  public boolean contains(int x) {
+    final int idx = Arrays.binarySearch(keys, (char) (x >>> 16));
+    return idx >= 0 && containers[idx].contains((char) x);
+  }
+
+  /**
+   * Calls the given consumer for all elements of this set in ascending order
+   */
+  public void forEach(IntConsumer consumer) {
+    for (int i = 0; i < keys.length; i++) {
+      containers[i].forEach(keys[i] << 16, consumer);
+    }
+  }
+
+  /**
+   * Computes the union of this bitmap and the given one
+   *
+   * @return The canonical union. This is this bitmap itself if the other bitmap does not add any elements.
+   */
+  public CompressedBitmap union(CompressedBitmap other) {
+    if (other == this || other.isEmpty()) {
+      return this;
+    }
+    if (this.isEmpty()) {
+      return other;
+    }
+
+    final int maxKeys = keys.length + other.keys.length;
+    char[] k = new char[maxKeys];
+    Container[] c = new Container[maxKeys];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    boolean changed = false;
+    while (i < keys.length && j < other.keys.length) {
+      if (keys[i] < other.keys[j]) {
+        k[n] = keys[i];
+        c[n++] = containers[i++];
+      } else if (keys[i] > other.keys[j]) {
+        k[n] = other.keys[j];
+        c[n++] = other.containers[j++];
+        changed = true;
+      } else {
+        Container u = containers[i].union(other.containers[j]);
+        changed |= u != containers[i];
+        k[n] = keys[i];
+        c[n++] = u;
+        i++;
+        j++;
+      }
+    }
+    while (i < keys.length) {
+      k[n] = keys[i];
+      c[n++] = containers[i++];
+    }
+    while (j < other.keys.length) {
+      k[n] = other.keys[j];
+      c[n++] = other.containers[j++];
+      changed = true;
+    }
+
+    if (!changed) {
+      return this;
+    }
+    return make(Arrays.copyOf(k, n), Arrays.copyOf(c, n));
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CompressedBitmap)) {
+      return false;
+    }
+    CompressedBitmap other = (CompressedBitmap) obj;
+    if (hashCode != other.hashCode || cardinality != other.cardinality || !Arrays.equals(keys, other.keys)) {
+      return false;
+    }
+    // Containers are hash-consed, so we can compare them by identity
+    for (int i = 0; i < containers.length; i++) {
+      if (containers[i] != other.containers[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Set of the lower 16 bits of all elements that share the same upper 16 bits
+   */
+  abstract static class Container {
+    abstract int cardinality();
+
+    abstract boolean contains(char low);
+
+    abstract void forEach(int high, IntConsumer consumer);
+
+    /**
+     * Computes the union of this container and the given one. If the result is equal to this container or to the other
+     * one, that container is returned, otherwise a new canonical container.
+     */
+    abstract Container union(Container other);
+  }
+
+  /**
+   * Container that stores the lower 16 bits of its elements in a sorted array
+   */
+  static final class ArrayContainer extends Container {
+    final char[] content;
+    private final int hashCode;
+
+    ArrayContainer(char[] content) {
+      this.content = content;
+      this.hashCode = Arrays.hashCode(content);
+    }
+
+    @Override
+    int cardinality() {
+      return content.length;
+    }
+
+    @Override
+    boolean contains(char low) {
+      return Arrays.binarySearch(content, low) >= 0;
+    }
+
+    @Override
+    void forEach(int high, IntConsumer consumer) {
+      for (char low : content) {
+        consumer.accept(high | low);
+      }
+    }
+
+    @Override
+    Container union(Container other) {
+      if (other == this) {
+        return this;
+      }
+      if (other instanceof BitmapContainer) {
+        return other.union(this);
+      }
+
+      final char[] o = ((ArrayContainer) other).content;
+      char[] merged = new char[content.length + o.length];
+      int i = 0;
+      int j = 0;
+      int n = 0;
+      while (i < content.length && j < o.length) {
+        if (content[i] < o[j]) {
+          merged[n++] = content[i++];
+        } else if (content[i] > o[j]) {
+          merged[n++] = o[j++];
+        } else {
+          merged[n++] = content[i++];
+          j++;
+        }
+      }
+      while (i < content.length) {
+        merged[n++] = content[i++];
+      }
+      while (j < o.length) {
+        merged[n++] = o[j++];
+      }
+
+      if (n == content.length) {
+        return this;
+      }
+      if (n == o.length) {
+        return other;
+      }
+      if (n <= ARRAY_MAX) {
+        return intern(new ArrayContainer(Arrays.copyOf(merged, n)));
+      }
+      long[] words = new long[BITMAP_WORDS];
+      for (int k = 0; k < n; k++) {
+        words[merged[k] >>> 6] |= 1L << merged[k];
+      }
+      return intern(new BitmapContainer(words, n));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ArrayContainer)) {
+        return false;
+      }
+      ArrayContainer other = (ArrayContainer) obj;
+      return hashCode == other.hashCode && Arrays.equals(content, other.content);
+    }
+  }
+
+  /**
+   * Container that stores its elements in a bitmap of 2^16 bits. Only used for more than {@link CompressedBitmap#ARRAY_MAX}
+   * elements, so that every set of lower bits has exactly one representation.
+   */
+  static final class BitmapContainer extends Container {
+    final long[] words;
+    private final int cardinality;
+    private final int hashCode;
+
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+      this.hashCode = Arrays.hashCode(words);
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(char low) {
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    void forEach(int high, IntConsumer consumer) {
+      for (int w = 0; w < words.length; w++) {
+        long word = words[w];
+        while (word != 0) {
+          final int bit = Long.numberOfTrailingZeros(word);
+          consumer.accept(high | (w << 6) | bit);
+          word &= word - 1;
+        }
+      }
+    }
+
+    @Override
+    Container union(Container other) {
+      if (other == this) {
+        return this;
+      }
+
+      long[] merged;
+      int card = 0;
+      if (other instanceof ArrayContainer) {
+        merged = words.clone();
+        card = cardinality;
+        for (char low : ((ArrayContainer) other).content) {
+          final long mask = 1L << low;
+          if ((merged[low >>> 6] & mask) == 0) {
+            merged[low >>> 6] |= mask;
+            card++;
+          }
+        }
+      } else {
+        final long[] o = ((BitmapContainer) other).words;
+        merged = new long[BITMAP_WORDS];
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+          merged[w] = words[w] | o[w];
+          card += Long.bitCount(merged[w]);
+        }
+        if (card == other.cardinality()) {
+          return other;
+        }
+      }
+
+      if (card == cardinality) {
+        return this;
+      }
+      return intern(new BitmapContainer(merged, card));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof BitmapContainer)) {
+        return false;
+      }
+      BitmapContainer other = (BitmapContainer) obj;
+      return hashCode == other.hashCode && cardinality == other.cardinality && Arrays.equals(words, other.words);
+    }
+  }
+}
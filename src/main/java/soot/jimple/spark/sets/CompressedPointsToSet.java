@@ -0,0 +1,209 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import soot.Type;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.util.ArrayNumberer;
+import soot.util.BitVector;
+
+/**
+ * Implementation of a points-to set as a hash-consed {@link CompressedBitmap} plus a small overflow array of recently
+ * added elements.
+ *
+ * The bitmap is immutable and shared by all points-to sets with the same contents, so propagating a set along a chain of
+ * assignments does not copy it. Single elements are first collected in the overflow array, which is merged into the bitmap
+ * once it is full, so that adding elements one by one does not rebuild the bitmap every time.
+ */
+public final class CompressedPointsToSet extends PointsToSetInternal {
+
+  /** The number of elements that are collected before they are merged into the shared bitmap */
+  public final static int OVERFLOW_SIZE = 16;
+
+  public CompressedPointsToSet(Type type, PAG pag) {
+    super(type);
+    this.pag = pag;
+  }
+
+  public final static P2SetFactory getFactory() {
+    return new P2SetFactory() {
+      public final PointsToSetInternal newSet(Type type, PAG pag) {
+        return new CompressedPointsToSet(type, pag);
+      }
+    };
+  }
+
+  /** Returns true if this set contains no run-time objects. */
+  public boolean isEmpty() {
+    return overflowSize == 0 && bits.isEmpty();
+  }
+
+  /** Returns true iff the set contains n. */
+  public boolean contains(Node n) {
+    return contains(n.getNumber());
+  }
+
+  /** Adds n to this set, returns true if n was not already in this set. */
+  public boolean add(Node n) {
+    if (pag.getTypeManager().castNeverFails(n.getType(), type)) {
+      return fastAdd(n.getNumber());
+    }
+    return false;
+  }
+
+  /**
+   * Adds contents of other into this set, returns true if this set changed.
+   */
+  public boolean addAll(PointsToSetInternal other, PointsToSetInternal exclude) {
+    if (other != null && !(other instanceof CompressedPointsToSet)) {
+      return super.addAll(other, exclude);
+    }
+    if (exclude != null && !(exclude instanceof CompressedPointsToSet)) {
+      return super.addAll(other, exclude);
+    }
+    return nativeAddAll((CompressedPointsToSet) other, (CompressedPointsToSet) exclude);
+  }
+
+  /** Calls v's visit method on all nodes in this set. */
+  public boolean forall(final P2SetVisitor v) {
+    final ArrayNumberer<AllocNode> nodes = pag.getAllocNodeNumberer();
+    // Take a snapshot of the overflow array, the visitor may add to this
+    // set and thereby reorder it
+    final int[] ov = overflowSize == 0 ? null : Arrays.copyOf(overflow, overflowSize);
+    bits.forEach(new IntConsumer() {
+      public void accept(int e) {
+        v.visit(nodes.get(e));
+      }
+    });
+    if (ov != null) {
+      for (int e : ov) {
+        v.visit(nodes.get(e));
+      }
+    }
+    return v.getReturnValue();
+  }
+
+  public int size() {
+    return bits.cardinality() + overflowSize;
+  }
+
+  /* End of public methods. */
+  /* End of package methods. */
+
+  private boolean contains(int e) {
+    if (bits.contains(e)) {
+      return true;
+    }
+    for (int i = 0; i < overflowSize; i++) {
+      if (overflow[i] == e) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean fastAdd(int e) {
+    if (contains(e)) {
+      return false;
+    }
+    if (overflow == null) {
+      overflow = new int[OVERFLOW_SIZE];
+    }
+    overflow[overflowSize++] = e;
+    if (overflowSize == OVERFLOW_SIZE) {
+      flushOverflow();
+    }
+    return true;
+  }
+
+  /**
+   * Merges the overflow array into the shared bitmap. This does not change the contents of the set.
+   */
+  private void flushOverflow() {
+    if (overflowSize == 0) {
+      return;
+    }
+    Arrays.sort(overflow, 0, overflowSize);
+    bits = bits.union(CompressedBitmap.of(overflow, overflowSize));
+    overflowSize = 0;
+  }
+
+  private boolean nativeAddAll(CompressedPointsToSet other, final CompressedPointsToSet exclude) {
+    if (other == null || other.isEmpty()) {
+      return false;
+    }
+
+    final BitVector mask = getBitMask(other, pag);
+    if (mask == null && (exclude == null || exclude.isEmpty())) {
+      // Plain union, we can combine the shared bitmaps container by
+      // container, and even adopt the other bitmap as a whole if this set
+      // is empty
+      other.flushOverflow();
+      flushOverflow();
+      CompressedBitmap newBits = bits.union(other.bits);
+      if (newBits == bits) {
+        return false;
+      }
+      bits = newBits;
+      return true;
+    }
+
+    // We need to filter the elements one by one
+    final int[][] buffer = new int[1][];
+    final int[] count = new int[1];
+    IntConsumer filter = new IntConsumer() {
+      public void accept(int e) {
+        if ((mask == null || mask.get(e)) && (exclude == null || !exclude.contains(e)) && !contains(e)) {
+          if (buffer[0] == null) {
+            buffer[0] = new int[OVERFLOW_SIZE];
+          } else if (count[0] == buffer[0].length) {
+            buffer[0] = Arrays.copyOf(buffer[0], count[0] * 2);
+          }
+          buffer[0][count[0]++] = e;
+        }
+      }
+    };
+    other.bits.forEach(filter);
+    for (int i = 0; i < other.overflowSize; i++) {
+      filter.accept(other.overflow[i]);
+    }
+
+    if (count[0] == 0) {
+      return false;
+    }
+    flushOverflow();
+    Arrays.sort(buffer[0], 0, count[0]);
+    bits = bits.union(CompressedBitmap.of(buffer[0], count[0]));
+    return true;
+  }
+
+  private CompressedBitmap bits = CompressedBitmap.EMPTY;
+  private int[] overflow = null;
+  private int overflowSize = 0;
+  private PAG pag = null;
+}
@@ -22,13 +22,23 @@ package soot.jimple.toolkits.annotation.purity;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,8 +48,10 @@ import soot.SourceLocator;
 import soot.jimple.Stmt;
 import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
 import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.PseudoTopologicalOrderer;
+import soot.toolkits.graph.StronglyConnectedComponentsFast;
 import soot.util.dot.DotGraph;
 import soot.util.dot.DotGraphEdge;
 import soot.util.dot.DotGraphNode;
@@ -65,12 +77,19 @@ import soot.util.dot.DotGraphNode;
  *
  * This class tries to use the same abstract methods and data management policy as regular FlowAnalysis classes.
  *
+ * The analysis can also be carried out in parallel, see {@link #doAnalysisParallel(boolean)}. The abstract methods must
+ * then be safe to call concurrently for different methods.
+ *
  * @param <S>
  */
 public abstract class AbstractInterproceduralAnalysis<S> {
   private static final Logger logger = LoggerFactory.getLogger(AbstractInterproceduralAnalysis.class);
 
-  public static final boolean doCheck = false;
+  /**
+   * Whether to verify after the analysis that the summaries are a fixpoint, by analysing every method once more. The
+   * verification is always done when assertions are enabled.
+   */
+  public static boolean doCheck = false;
 
   protected final CallGraph cg; // analysed call-graph
   protected final DirectedGraph<SootMethod> dg; // filtered trimed call-graph
@@ -90,10 +109,9 @@ public abstract class AbstractInterproceduralAnalysis<S> {
       boolean verbose) {
     this.cg = cg;
 
-    System.out.println("this.cg = " + System.identityHashCode(this.cg));
     this.dg = new DirectedCallGraph(cg, filter, heads, verbose);
-    this.data = new HashMap<SootMethod, S>();
-    this.unanalysed = new HashMap<SootMethod, S>();
+    this.data = new ConcurrentHashMap<SootMethod, S>();
+    this.unanalysed = new ConcurrentHashMap<SootMethod, S>();
 
     // construct reverse pseudo topological order on filtered methods
     this.order = new HashMap<SootMethod, Integer>();
@@ -117,7 +135,8 @@ public abstract class AbstractInterproceduralAnalysis<S> {
    * analyseMethod.
    *
    * <p>
-   * Note: This function is called at most once per filtered-out method. It is the equivalent of entryInitialFlow!
+   * Note: This function is called at most once per filtered-out method, even in the parallel mode. It is the equivalent of
+   * entryInitialFlow!
    *
    * @param method
    *
@@ -202,21 +221,22 @@ public abstract class AbstractInterproceduralAnalysis<S> {
   public void analyseCall(S src, Stmt callStmt, S dst) {
     S accum = newInitialSummary();
     copy(accum, dst);
-    System.out.println("Edges out of " + callStmt + "...");
+    if (logger.isDebugEnabled()) {
+      logger.debug("Edges out of " + callStmt + "...");
+    }
     for (Iterator<Edge> it = cg.edgesOutOf(callStmt); it.hasNext();) {
       Edge edge = it.next();
       SootMethod m = edge.tgt();
-      System.out.println("\t-> " + m.getSignature());
+      if (logger.isDebugEnabled()) {
+        logger.debug("\t-> " + m.getSignature());
+      }
       S elem;
       if (data.containsKey(m)) {
         // analysed method
         elem = data.get(m);
       } else {
         // unanalysed method
-        if (!unanalysed.containsKey(m)) {
-          unanalysed.put(m, summaryOfUnanalysedMethod(m));
-        }
-        elem = unanalysed.get(m);
+        elem = unanalysed.computeIfAbsent(m, this::summaryOfUnanalysedMethod);
       }
       applySummary(src, callStmt, elem, accum);
       merge(dst, accum, dst);
@@ -382,22 +402,175 @@ public abstract class AbstractInterproceduralAnalysis<S> {
     }
 
     // fixpoint verification
-    if (doCheck) {
-      for (SootMethod m : order.keySet()) {
-        S newSummary = newInitialSummary();
-        S oldSummary = data.get(m);
-        analyseMethod(m, newSummary);
-        if (!oldSummary.equals(newSummary)) {
-          logger.debug("inter-procedural fixpoint not reached for method " + m.toString());
-          DotGraph gm = new DotGraph("false_fixpoint");
-          DotGraph gmm = new DotGraph("next_iterate");
-          gm.setGraphLabel("false fixpoint: " + m.toString());
-          gmm.setGraphLabel("fixpoint next iterate: " + m.toString());
-          fillDotGraph("", oldSummary, gm);
-          fillDotGraph("", newSummary, gmm);
-          gm.plot(m.toString() + "_false_fixpoint.dot");
-          gmm.plot(m.toString() + "_false_fixpoint_next.dot");
-          throw new Error("AbstractInterproceduralAnalysis sanity check failed!!!");
+    if (isCheckEnabled()) {
+      checkFixpoint();
+    }
+  }
+
+  private static boolean isCheckEnabled() {
+    boolean enabled = doCheck;
+    // Side effect only when assertions are enabled
+    assert enabled = true;
+    return enabled;
+  }
+
+  /**
+   * Analyses every method once more and fails if a summary changes, i.e., if the fixpoint has not been reached.
+   */
+  private void checkFixpoint() {
+    for (SootMethod m : order.keySet()) {
+      S newSummary = newInitialSummary();
+      S oldSummary = data.get(m);
+      analyseMethod(m, newSummary);
+      if (!oldSummary.equals(newSummary)) {
+        logger.debug("inter-procedural fixpoint not reached for method " + m.toString());
+        DotGraph gm = new DotGraph("false_fixpoint");
+        DotGraph gmm = new DotGraph("next_iterate");
+        gm.setGraphLabel("false fixpoint: " + m.toString());
+        gmm.setGraphLabel("fixpoint next iterate: " + m.toString());
+        fillDotGraph("", oldSummary, gm);
+        fillDotGraph("", newSummary, gmm);
+        gm.plot(m.toString() + "_false_fixpoint.dot");
+        gmm.plot(m.toString() + "_false_fixpoint_next.dot");
+        throw new Error("AbstractInterproceduralAnalysis sanity check failed!!!");
+      }
+    }
+  }
+
+  /**
+   * Carry out the analysis in parallel, bottom-up on the strongly connected components of the call-graph.
+   *
+   * A component is analysed as soon as all the components it calls have been analysed, and all components that are ready
+   * are analysed concurrently. Within a component, the methods are iterated in topological order until the summaries reach
+   * a fixpoint. Only the summaries of callees in the same component can change meanwhile, so the result is the same as the
+   * one of {@link #doAnalysis(boolean)}.
+   *
+   * @param verbose
+   */
+  protected void doAnalysisParallel(boolean verbose) {
+    // init
+    for (SootMethod o : order.keySet()) {
+      data.put(o, newInitialSummary());
+    }
+
+    // condense the call-graph
+    final List<List<SootMethod>> components = new StronglyConnectedComponentsFast<SootMethod>(dg).getComponents();
+    final Map<SootMethod, Integer> componentOf = new HashMap<SootMethod, Integer>();
+    for (int c = 0; c < components.size(); c++) {
+      for (SootMethod m : components.get(c)) {
+        componentOf.put(m, c);
+      }
+    }
+    final List<List<Integer>> callers = new ArrayList<List<Integer>>(components.size());
+    final AtomicInteger[] pendingCallees = new AtomicInteger[components.size()];
+    for (int c = 0; c < components.size(); c++) {
+      callers.add(new ArrayList<Integer>());
+    }
+    for (int c = 0; c < components.size(); c++) {
+      Set<Integer> callees = new HashSet<Integer>();
+      for (SootMethod m : components.get(c)) {
+        for (SootMethod callee : dg.getSuccsOf(m)) {
+          Integer cc = componentOf.get(callee);
+          if (cc != c && callees.add(cc)) {
+            callers.get(cc).add(c);
+          }
+        }
+      }
+      pendingCallees[c] = new AtomicInteger(callees.size());
+    }
+
+    // The old coffi front-end is not thread-safe
+    int threadNum = Options.v().coffi() ? 1 : Runtime.getRuntime().availableProcessors();
+    final CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    class ComponentTask implements Runnable {
+      private final int component;
+
+      ComponentTask(int component) {
+        this.component = component;
+      }
+
+      @Override
+      public void run() {
+        analyseComponent(components.get(component), verbose);
+        for (int caller : callers.get(component)) {
+          if (pendingCallees[caller].decrementAndGet() == 0) {
+            executor.execute(new ComponentTask(caller));
+          }
+        }
+      }
+    }
+
+    try {
+      for (int c = 0; c < components.size(); c++) {
+        if (pendingCallees[c].get() == 0) {
+          executor.execute(new ComponentTask(c));
+        }
+      }
+      try {
+        executor.awaitCompletion();
+      } catch (InterruptedException e) {
+        // Something went horribly wrong
+        throw new RuntimeException("Could not wait for interprocedural analysis threads to finish: " + e.getMessage(), e);
+      }
+
+      // If something went wrong, we tell the world
+      if (executor.getException() != null) {
+        if (executor.getException() instanceof RuntimeException) {
+          throw (RuntimeException) executor.getException();
+        } else {
+          throw new RuntimeException(executor.getException());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // fixpoint verification
+    if (isCheckEnabled()) {
+      checkFixpoint();
+    }
+  }
+
+  /**
+   * Iterates the analysis of the methods of one strongly connected component until their summaries do not change anymore.
+   * All methods called from outside the component must already have their final summary.
+   */
+  private void analyseComponent(List<SootMethod> methods, boolean verbose) {
+    final Set<SootMethod> members = new HashSet<SootMethod>(methods);
+    SortedSet<SootMethod> queue = new TreeSet<SootMethod>(new Comparator<SootMethod>() {
+
+      @Override
+      public int compare(SootMethod o1, SootMethod o2) {
+        return order.get(o1) - order.get(o2);
+      }
+    });
+    queue.addAll(methods);
+
+    Map<SootMethod, Integer> nb = new HashMap<SootMethod, Integer>(); // only for debug pretty-printing
+
+    while (!queue.isEmpty()) {
+      SootMethod m = queue.first();
+      queue.remove(m);
+      S newSummary = newInitialSummary();
+      S oldSummary = data.get(m);
+
+      Integer n = nb.get(m);
+      nb.put(m, n == null ? 1 : n + 1);
+      if (verbose) {
+        logger.debug(" |- processing " + m.toString() + " (" + nb.get(m) + "-st time)");
+      }
+
+      analyseMethod(m, newSummary);
+      if (!oldSummary.equals(newSummary)) {
+        // summary for m changed, callers in other components have not been
+        // analysed yet
+        data.put(m, newSummary);
+        for (SootMethod pred : dg.getPredsOf(m)) {
+          if (members.contains(pred)) {
+            queue.add(pred);
+          }
         }
       }
     }
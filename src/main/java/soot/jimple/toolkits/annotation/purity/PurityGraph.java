@@ -29,6 +29,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -157,21 +160,17 @@ public class PurityGraph {
   /**
    * Caching: this semm to actually improve both speed and memory consumption!
    */
-  private static final Map<PurityNode, PurityNode> nodeCache = new HashMap<PurityNode, PurityNode>();
-  private static final Map<PurityEdge, PurityEdge> edgeCache = new HashMap<PurityEdge, PurityEdge>();
+  private static final ConcurrentMap<PurityNode, PurityNode> nodeCache = new ConcurrentHashMap<PurityNode, PurityNode>();
+  private static final ConcurrentMap<PurityEdge, PurityEdge> edgeCache = new ConcurrentHashMap<PurityEdge, PurityEdge>();
 
   private static PurityNode cacheNode(PurityNode p) {
-    if (!nodeCache.containsKey(p)) {
-      nodeCache.put(p, p);
-    }
-    return nodeCache.get(p);
+    PurityNode old = nodeCache.putIfAbsent(p, p);
+    return old == null ? p : old;
   }
 
   private static PurityEdge cacheEdge(PurityEdge e) {
-    if (!edgeCache.containsKey(e)) {
-      edgeCache.put(e, e);
-    }
-    return edgeCache.get(e);
+    PurityEdge old = edgeCache.putIfAbsent(e, e);
+    return old == null ? e : old;
   }
 
   /**
@@ -1270,13 +1269,13 @@ public class PurityGraph {
     logger.debug("");
   }
 
-  /** Simple statistics on maximal graph sizes. */
+  /** Simple statistics on maximal graph sizes, updated concurrently by the parallel analysis. */
 
-  static private int maxInsideNodes = 0;
-  static private int maxLoadNodes = 0;
-  static private int maxInsideEdges = 0;
-  static private int maxOutsideEdges = 0;
-  static private int maxMutated = 0;
+  static private final AtomicInteger maxInsideNodes = new AtomicInteger();
+  static private final AtomicInteger maxLoadNodes = new AtomicInteger();
+  static private final AtomicInteger maxInsideEdges = new AtomicInteger();
+  static private final AtomicInteger maxOutsideEdges = new AtomicInteger();
+  static private final AtomicInteger maxMutated = new AtomicInteger();
 
   void dumpStat() {
     logger.debug("Stat: " + maxInsideNodes + " inNodes, " + maxLoadNodes + " loadNodes, " + maxInsideEdges + " inEdges, "
@@ -1316,28 +1315,18 @@ public class PurityGraph {
     }
 
     boolean changed = false;
-    if (insideNodes > maxInsideNodes) {
-      maxInsideNodes = insideNodes;
-      changed = true;
-    }
-    if (loadNodes > maxLoadNodes) {
-      maxLoadNodes = loadNodes;
-      changed = true;
-    }
-    if (insideEdges > maxInsideEdges) {
-      maxInsideEdges = insideEdges;
-      changed = true;
-    }
-    if (outsideEdges > maxOutsideEdges) {
-      maxOutsideEdges = outsideEdges;
-      changed = true;
-    }
-    if (mutatedFields > maxMutated) {
-      maxMutated = mutatedFields;
-      changed = true;
-    }
+    changed |= updateMax(maxInsideNodes, insideNodes);
+    changed |= updateMax(maxLoadNodes, loadNodes);
+    changed |= updateMax(maxInsideEdges, insideEdges);
+    changed |= updateMax(maxOutsideEdges, outsideEdges);
+    changed |= updateMax(maxMutated, mutatedFields);
     if (changed) {
       dumpStat();
     }
   }
+
+  /** Raises max to value, returns true if it was lower. */
+  private static boolean updateMax(AtomicInteger max, int value) {
+    return max.getAndAccumulate(value, Math::max) < value;
+  }
 }
@@ -159,7 +159,11 @@ public class PurityInterproceduralAnalysis extends AbstractInterproceduralAnalys
 
     Date start = new Date();
     logger.debug("[AM] Analysis began");
-    doAnalysis(opts.verbose());
+    if (opts.parallel()) {
+      doAnalysisParallel(opts.verbose());
+    } else {
+      doAnalysis(opts.verbose());
+    }
     logger.debug("[AM] Analysis finished");
     Date finish = new Date();
     long runtime = finish.getTime() - start.getTime();
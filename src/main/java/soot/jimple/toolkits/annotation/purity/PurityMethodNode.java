@@ -22,8 +22,8 @@ package soot.jimple.toolkits.annotation.purity;
  * #L%
  */
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import soot.SootMethod;
 
@@ -36,14 +36,19 @@ public class PurityMethodNode implements PurityNode {
   private SootMethod id;
 
   /** gives a unique id, for pretty-printing purposes */
-  private static final Map<SootMethod, Integer> nMap = new HashMap<SootMethod, Integer>();
+  private static final Map<SootMethod, Integer> nMap = new ConcurrentHashMap<SootMethod, Integer>();
   private static int n = 0;
 
   PurityMethodNode(SootMethod id) {
     this.id = id;
     if (!nMap.containsKey(id)) {
-      nMap.put(id, new Integer(n));
-      n++;
+      // nodes may be created by concurrent analyses
+      synchronized (nMap) {
+        if (!nMap.containsKey(id)) {
+          nMap.put(id, new Integer(n));
+          n++;
+        }
+      }
     }
   }
 
@@ -22,8 +22,8 @@ package soot.jimple.toolkits.annotation.purity;
  * #L%
  */
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import soot.jimple.Stmt;
 
@@ -41,15 +41,20 @@ public class PurityStmtNode implements PurityNode {
   private boolean inside;
 
   /** gives a unique id, for pretty-printing purposes */
-  private static final Map<Stmt, Integer> nMap = new HashMap<Stmt, Integer>();
+  private static final Map<Stmt, Integer> nMap = new ConcurrentHashMap<Stmt, Integer>();
   private static int n = 0;
 
   PurityStmtNode(Stmt id, boolean inside) {
     this.id = id;
     this.inside = inside;
     if (!nMap.containsKey(id)) {
-      nMap.put(id, new Integer(n));
-      n++;
+      // nodes may be created by concurrent analyses
+      synchronized (nMap) {
+        if (!nMap.containsKey(id)) {
+          nMap.put(id, new Integer(n));
+          n++;
+        }
+      }
     }
   }
 
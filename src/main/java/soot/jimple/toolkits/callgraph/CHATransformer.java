@@ -48,6 +48,7 @@ public class CHATransformer extends SceneTransformer {
   protected void internalTransform(String phaseName, Map<String, String> opts) {
     CHAOptions options = new CHAOptions(opts);
     CallGraphBuilder cg = options.apponly() ? new CallGraphBuilder() : new CallGraphBuilder(DumbPointerAnalysis.v());
+    cg.setParallel(options.parallel());
     cg.build();
     if (options.verbose()) {
       logger.debug("" + "Number of reachable methods: " + Scene.v().getReachableMethods().size());
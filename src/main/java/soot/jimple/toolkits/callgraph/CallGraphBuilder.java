@@ -22,10 +22,14 @@ package soot.jimple.toolkits.callgraph;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +49,8 @@ import soot.jimple.spark.pag.ArrayElement;
 import soot.jimple.spark.pag.Node;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.OnFlyCallGraphBuilder.ResolvedCalls;
+import soot.options.Options;
 import soot.util.queue.QueueReader;
 
 /**
@@ -58,6 +64,7 @@ public final class CallGraphBuilder {
   private final ReachableMethods reachables;
   private final OnFlyCallGraphBuilder ofcgb;
   private final CallGraph cg;
+  private boolean parallel = false;
 
   public CallGraph getCallGraph() {
     return cg;
@@ -101,7 +108,21 @@ public final class CallGraphBuilder {
     ofcgb = new OnFlyCallGraphBuilder(cm, reachables, true);
   }
 
+  /**
+   * Sets whether {@link #build()} retrieves the bodies of reachable methods and resolves their virtual call sites on
+   * multiple threads. This requires that the points-to analysis can answer queries concurrently, which is the case for the
+   * class hierarchy analysis. The resulting call graph is the same as with a sequential build, and its edges are added in a
+   * deterministic order.
+   */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
   public void build() {
+    if (parallel) {
+      buildParallel();
+      return;
+    }
     QueueReader<MethodOrMethodContext> worklist = reachables.listener();
     while (true) {
       ofcgb.processReachables();
@@ -121,59 +142,145 @@ public final class CallGraphBuilder {
           }
         }
       }
-      List<Local> bases = ofcgb.methodToInvokeArgs().get(momc.method());
-      if (bases != null) {
-        for (Local base : bases) {
-          PointsToSet pts = pa.reachingObjects(base);
-          for (Type ty : pts.possibleTypes()) {
-            ofcgb.addBaseType(base, momc.context(), ty);
+      processInvokesAndStrings(momc);
+    }
+  }
+
+  private void buildParallel() {
+    // The old coffi front-end is not thread-safe
+    int threadNum = Options.v().coffi() ? 1 : Runtime.getRuntime().availableProcessors();
+    CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    try {
+      QueueReader<MethodOrMethodContext> worklist = reachables.listener();
+      while (true) {
+        ofcgb.processReachables(executor);
+        reachables.update();
+        if (!worklist.hasNext()) {
+          break;
+        }
+
+        // Resolve the virtual call sites of all methods that have become
+        // reachable so far concurrently
+        List<MethodOrMethodContext> batch = new ArrayList<MethodOrMethodContext>();
+        while (worklist.hasNext()) {
+          batch.add(worklist.next());
+        }
+        final List<List<ResolvedCalls>> resolved = new ArrayList<List<ResolvedCalls>>(batch.size());
+        for (MethodOrMethodContext momc : batch) {
+          final List<Local> receivers = ofcgb.methodToReceivers().get(momc.method());
+          if (receivers == null) {
+            resolved.add(null);
+            continue;
+          }
+          final List<ResolvedCalls> calls = new ArrayList<ResolvedCalls>(receivers.size());
+          resolved.add(calls);
+          executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+              for (Local receiver : receivers) {
+                calls.add(ofcgb.resolveTypes(receiver, pa.reachingObjects(receiver).possibleTypes()));
+              }
+            }
+
+          });
+        }
+        awaitCompletion(executor);
+
+        // Add the edges in the order in which the methods have become
+        // reachable, so that the call graph is deterministic
+        for (int i = 0; i < batch.size(); i++) {
+          MethodOrMethodContext momc = batch.get(i);
+          List<ResolvedCalls> calls = resolved.get(i);
+          if (calls != null) {
+            for (ResolvedCalls rc : calls) {
+              ofcgb.addResolvedCalls(rc, momc.context());
+            }
           }
+          processInvokesAndStrings(momc);
         }
       }
-      List<Local> argArrays = ofcgb.methodToInvokeBases().get(momc.method());
-      if (argArrays != null) {
-        for (final Local argArray : argArrays) {
-          PointsToSet pts = pa.reachingObjects(argArray);
-          if (pts instanceof PointsToSetInternal) {
-            PointsToSetInternal ptsi = (PointsToSetInternal) pts;
-            ptsi.forall(new P2SetVisitor() {
-              @Override
-              public void visit(Node n) {
-                assert n instanceof AllocNode;
-                AllocNode an = (AllocNode) n;
-                Object newExpr = an.getNewExpr();
-                ofcgb.addInvokeArgDotField(argArray, an.dot(ArrayElement.v()));
-                if (newExpr instanceof NewArrayExpr) {
-                  NewArrayExpr nae = (NewArrayExpr) newExpr;
-                  Value size = nae.getSize();
-                  if (size instanceof IntConstant) {
-                    IntConstant arrSize = (IntConstant) size;
-                    ofcgb.addPossibleArgArraySize(argArray, arrSize.value, momc.context());
-                  } else {
-                    ofcgb.setArgArrayNonDetSize(argArray, momc.context());
-                  }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Waits until the given executor has completed all tasks, and rethrows the first exception that has occurred in any of
+   * them
+   */
+  static void awaitCompletion(CountingThreadPoolExecutor executor) {
+    try {
+      executor.awaitCompletion();
+    } catch (InterruptedException e) {
+      // Something went horribly wrong
+      throw new RuntimeException("Could not wait for call graph threads to " + "finish: " + e.getMessage(), e);
+    }
+
+    // If something went wrong, we tell the world
+    if (executor.getException() != null) {
+      if (executor.getException() instanceof RuntimeException) {
+        throw (RuntimeException) executor.getException();
+      } else {
+        throw new RuntimeException(executor.getException());
+      }
+    }
+  }
+
+  private void processInvokesAndStrings(final MethodOrMethodContext momc) {
+    List<Local> bases = ofcgb.methodToInvokeArgs().get(momc.method());
+    if (bases != null) {
+      for (Local base : bases) {
+        PointsToSet pts = pa.reachingObjects(base);
+        for (Type ty : pts.possibleTypes()) {
+          ofcgb.addBaseType(base, momc.context(), ty);
+        }
+      }
+    }
+    List<Local> argArrays = ofcgb.methodToInvokeBases().get(momc.method());
+    if (argArrays != null) {
+      for (final Local argArray : argArrays) {
+        PointsToSet pts = pa.reachingObjects(argArray);
+        if (pts instanceof PointsToSetInternal) {
+          PointsToSetInternal ptsi = (PointsToSetInternal) pts;
+          ptsi.forall(new P2SetVisitor() {
+            @Override
+            public void visit(Node n) {
+              assert n instanceof AllocNode;
+              AllocNode an = (AllocNode) n;
+              Object newExpr = an.getNewExpr();
+              ofcgb.addInvokeArgDotField(argArray, an.dot(ArrayElement.v()));
+              if (newExpr instanceof NewArrayExpr) {
+                NewArrayExpr nae = (NewArrayExpr) newExpr;
+                Value size = nae.getSize();
+                if (size instanceof IntConstant) {
+                  IntConstant arrSize = (IntConstant) size;
+                  ofcgb.addPossibleArgArraySize(argArray, arrSize.value, momc.context());
+                } else {
+                  ofcgb.setArgArrayNonDetSize(argArray, momc.context());
                 }
               }
-            });
-          }
-          for (Type t : pa.reachingObjectsOfArrayElement(pts).possibleTypes()) {
-            ofcgb.addInvokeArgType(argArray, momc.context(), t);
-          }
+            }
+          });
+        }
+        for (Type t : pa.reachingObjectsOfArrayElement(pts).possibleTypes()) {
+          ofcgb.addInvokeArgType(argArray, momc.context(), t);
         }
       }
-      List<Local> stringConstants = ofcgb.methodToStringConstants().get(momc.method());
-      if (stringConstants != null) {
-        for (Iterator<Local> stringConstantIt = stringConstants.iterator(); stringConstantIt.hasNext();) {
-          final Local stringConstant = stringConstantIt.next();
-          PointsToSet p2set = pa.reachingObjects(stringConstant);
-          Collection<String> possibleStringConstants = p2set.possibleStringConstants();
-          if (possibleStringConstants == null) {
-            ofcgb.addStringConstant(stringConstant, momc.context(), null);
-          } else {
-            for (Iterator<String> constantIt = possibleStringConstants.iterator(); constantIt.hasNext();) {
-              final String constant = constantIt.next();
-              ofcgb.addStringConstant(stringConstant, momc.context(), constant);
-            }
+    }
+    List<Local> stringConstants = ofcgb.methodToStringConstants().get(momc.method());
+    if (stringConstants != null) {
+      for (Iterator<Local> stringConstantIt = stringConstants.iterator(); stringConstantIt.hasNext();) {
+        final Local stringConstant = stringConstantIt.next();
+        PointsToSet p2set = pa.reachingObjects(stringConstant);
+        Collection<String> possibleStringConstants = p2set.possibleStringConstants();
+        if (possibleStringConstants == null) {
+          ofcgb.addStringConstant(stringConstant, momc.context(), null);
+        } else {
+          for (Iterator<String> constantIt = possibleStringConstants.iterator(); constantIt.hasNext();) {
+            final String constant = constantIt.next();
+            ofcgb.addStringConstant(stringConstant, momc.context(), constant);
           }
         }
       }
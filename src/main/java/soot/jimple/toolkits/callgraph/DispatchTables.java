@@ -0,0 +1,216 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import soot.FastHierarchy;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.util.NumberedString;
+
+/**
+ * Dispatch tables of all classes for one version of the class hierarchy, as represented by a {@link FastHierarchy}.
+ *
+ * <p>
+ * The dispatch table of a class maps the subsignatures of all methods that can be invoked on instances of the class to the
+ * method that is actually executed. It is built once per class from the table of the superclass, so that dispatch is a
+ * binary search over a sorted array of subsignature numbers instead of a walk up the superclass chain. Since the tables are
+ * keyed by subsignature, they serve for calls through interfaces as well.
+ * </p>
+ *
+ * <p>
+ * A table is a snapshot of the methods of the class and its superclasses, built lazily the first time a call on the class
+ * is resolved. Subsignatures that have no concrete target in the snapshot are looked up by walking the superclass chain,
+ * so methods added later, e.g. by transformers or as error methods for unresolved references, and methods that became
+ * concrete later are still found. Only a method added later that overrides a target already in the table requires
+ * {@link VirtualCalls#clearDispatchTables()}.
+ * </p>
+ *
+ * <p>
+ * Methods can be added to phantom classes on the fly, so no tables are built for phantom classes and their subclasses.
+ * Calls on them are resolved by walking the superclass chain. All methods may be called concurrently.
+ * </p>
+ */
+final class DispatchTables {
+
+  /** Placeholder for classes that have a phantom class in their superclass chain */
+  private static final Table INCOMPLETE = new Table(new int[0], new SootMethod[0], false);
+
+  final FastHierarchy hierarchy;
+
+  /** The dispatch tables, indexed by the number of the class type */
+  private volatile Table[] tables = new Table[0];
+
+  /** Memo of the concrete subtypes of a type, plus the type itself */
+  final ConcurrentMap<Type, Type[]> subTypes = new ConcurrentHashMap<Type, Type[]>();
+
+  /** Memo of the possible implementations by signature of a subsignature of an interface */
+  final ConcurrentMap<Type, ConcurrentMap<NumberedString, SignatureTargets>> signatureTargets
+      = new ConcurrentHashMap<Type, ConcurrentMap<NumberedString, SignatureTargets>>();
+
+  DispatchTables(FastHierarchy hierarchy) {
+    this.hierarchy = hierarchy;
+  }
+
+  /**
+   * Gets the method that is executed when a method with the given subsignature is invoked on an instance of the given class
+   *
+   * @return the target method, or null if the class does not have a concrete, native, or phantom method with this
+   *         subsignature
+   */
+  SootMethod dispatch(SootClass cls, NumberedString subSig) {
+    Table table = getTable(cls);
+    if (table.complete) {
+      SootMethod m = table.lookup(subSig);
+      if (m != null) {
+        return m;
+      }
+      // A miss is not final: the method may have been added to the class
+      // or one of its superclasses, or may have become concrete, since the
+      // table was built
+    }
+
+    // Walk up the superclass chain
+    for (SootClass c = cls; c != null; c = c.getSuperclassUnsafe()) {
+      SootMethod m = c.getMethodUnsafe(subSig);
+      if (m != null) {
+        return m.isConcrete() || m.isNative() || m.isPhantom() ? m : null;
+      }
+    }
+    return null;
+  }
+
+  private Table getTable(SootClass cls) {
+    final int n = cls.getType().getNumber();
+    Table[] t = tables;
+    if (n < t.length && t[n] != null) {
+      return t[n];
+    }
+
+    // Build the table outside of the lock, we need the tables of the
+    // superclasses first
+    Table table;
+    if (cls.isPhantom()) {
+      table = INCOMPLETE;
+    } else {
+      SootClass superClass = cls.getSuperclassUnsafe();
+      Table parent = superClass == null ? null : getTable(superClass);
+      table = parent != null && !parent.complete ? INCOMPLETE : Table.build(cls, parent);
+    }
+
+    synchronized (this) {
+      t = tables;
+      if (n >= t.length) {
+        t = Arrays.copyOf(t, Math.max(n + 1, t.length * 2));
+      }
+      if (t[n] == null) {
+        t[n] = table;
+      }
+      tables = t;
+      return t[n];
+    }
+  }
+
+  /**
+   * Dispatch table of a single class
+   */
+  private static final class Table {
+    /** The numbers of all subsignatures, sorted in ascending order */
+    final int[] subSigs;
+    /** The targets for the subsignatures, null for abstract methods, which are looked up again on dispatch */
+    final SootMethod[] targets;
+    final boolean complete;
+
+    Table(int[] subSigs, SootMethod[] targets, boolean complete) {
+      this.subSigs = subSigs;
+      this.targets = targets;
+      this.complete = complete;
+    }
+
+    SootMethod lookup(NumberedString subSig) {
+      int idx = Arrays.binarySearch(subSigs, subSig.getNumber());
+      return idx < 0 ? null : targets[idx];
+    }
+
+    /**
+     * Builds the table of the given class by overriding the entries of the parent table with the methods of the class
+     */
+    static Table build(SootClass cls, Table parent) {
+      List<SootMethod> methods = cls.getMethods();
+
+      // Sort the methods of the class by subsignature number. We pack the
+      // number and the index into one long to avoid boxing.
+      long[] own = new long[methods.size()];
+      for (int i = 0; i < own.length; i++) {
+        own[i] = ((long) methods.get(i).getNumberedSubSignature().getNumber() << 32) | i;
+      }
+      Arrays.sort(own);
+
+      int[] parentSigs = parent == null ? INCOMPLETE.subSigs : parent.subSigs;
+      SootMethod[] parentTargets = parent == null ? INCOMPLETE.targets : parent.targets;
+      int[] sigs = new int[parentSigs.length + own.length];
+      SootMethod[] targets = new SootMethod[sigs.length];
+      int i = 0;
+      int j = 0;
+      int n = 0;
+      while (i < parentSigs.length || j < own.length) {
+        int ownSig = j < own.length ? (int) (own[j] >>> 32) : Integer.MAX_VALUE;
+        if (i < parentSigs.length && parentSigs[i] < ownSig) {
+          sigs[n] = parentSigs[i];
+          targets[n++] = parentTargets[i++];
+        } else {
+          if (i < parentSigs.length && parentSigs[i] == ownSig) {
+            // overridden
+            i++;
+          }
+          SootMethod m = methods.get((int) own[j++]);
+          sigs[n] = ownSig;
+          targets[n++] = m.isConcrete() || m.isNative() || m.isPhantom() ? m : null;
+        }
+      }
+      if (n < sigs.length) {
+        sigs = Arrays.copyOf(sigs, n);
+        targets = Arrays.copyOf(targets, n);
+      }
+      return new Table(sigs, targets, true);
+    }
+  }
+
+  /**
+   * The possible implementations by signature of a subsignature of an interface, as pairs of a class type and a subsignature
+   */
+  static final class SignatureTargets {
+    final Type[] types;
+    final NumberedString[] subSigs;
+
+    SignatureTargets(Type[] types, NumberedString[] subSigs) {
+      this.types = types;
+      this.subSigs = subSigs;
+    }
+  }
+}
@@ -22,6 +22,8 @@ package soot.jimple.toolkits.callgraph;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -272,6 +274,54 @@ public final class OnFlyCallGraphBuilder {
     }
   }
 
+  /**
+   * Processes the reachable methods like {@link #processReachables()}, but first retrieves the bodies of all methods that
+   * have become reachable concurrently on the given executor. The methods are then scanned in the order in which they have
+   * become reachable, so that the call graph does not depend on the scheduling of the threads.
+   */
+  public void processReachables(CountingThreadPoolExecutor executor) {
+    while (true) {
+      if (!worklist.hasNext()) {
+        rm.update();
+        if (!worklist.hasNext()) {
+          break;
+        }
+      }
+      List<MethodOrMethodContext> batch = new ArrayList<MethodOrMethodContext>();
+      Set<SootMethod> toLoad = new HashSet<SootMethod>();
+      while (worklist.hasNext()) {
+        MethodOrMethodContext momc = worklist.next();
+        batch.add(momc);
+        final SootMethod m = momc.method();
+        if (appOnly && !m.getDeclaringClass().isApplicationClass()) {
+          continue;
+        }
+        if (m.isConcrete() && !m.hasActiveBody() && !analyzedMethods.contains(m) && toLoad.add(m)) {
+          executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+              m.retrieveActiveBody();
+            }
+
+          });
+        }
+      }
+      CallGraphBuilder.awaitCompletion(executor);
+
+      for (MethodOrMethodContext momc : batch) {
+        SootMethod m = momc.method();
+        if (appOnly && !m.getDeclaringClass().isApplicationClass()) {
+          continue;
+        }
+        if (analyzedMethods.add(m)) {
+          processNewMethod(m);
+        }
+        processNewMethodContext(momc);
+      }
+    }
+  }
+
   public boolean wantTypes(Local receiver) {
     return receiverToSites.get(receiver) != null || baseToInvokeSite.get(receiver) != null;
   }
@@ -560,32 +610,7 @@ public final class OnFlyCallGraphBuilder {
     if (receiverToSites.get(receiver) != null) {
       for (Iterator<VirtualCallSite> siteIt = receiverToSites.get(receiver).iterator(); siteIt.hasNext();) {
         final VirtualCallSite site = siteIt.next();
-        if (site.kind() == Kind.THREAD && !fh.canStoreType(type, clRunnable)) {
-          continue;
-        }
-        if (site.kind() == Kind.EXECUTOR && !fh.canStoreType(type, clRunnable)) {
-          continue;
-        }
-        if (site.kind() == Kind.ASYNCTASK && !fh.canStoreType(type, clAsyncTask)) {
-          continue;
-        }
-        if (site.kind() == Kind.HANDLER && !fh.canStoreType(type, clHandler)) {
-          continue;
-        }
-
-        if (site.iie() instanceof SpecialInvokeExpr && site.kind != Kind.THREAD && site.kind != Kind.EXECUTOR
-            && site.kind != Kind.ASYNCTASK) {
-          SootMethod target
-              = VirtualCalls.v().resolveSpecial((SpecialInvokeExpr) site.iie(), site.subSig(), site.container(), appOnly);
-          // if the call target resides in a phantom class then
-          // "target" will be null;
-          // simply do not add the target in that case
-          if (target != null) {
-            targetsQueue.add(target);
-          }
-        } else {
-          VirtualCalls.v().resolve(type, receiver.getType(), site.subSig(), site.container(), targetsQueue, appOnly);
-        }
+        resolveSite(fh, receiver, site, type, targetsQueue);
         while (targets.hasNext()) {
           SootMethod target = targets.next();
           cm.addVirtualEdge(MethodContext.v(site.container(), srcContext), site.stmt(), target, site.kind(), typeContext);
@@ -597,6 +622,93 @@ public final class OnFlyCallGraphBuilder {
     }
   }
 
+  /**
+   * Resolves the virtual call sites on the given receiver for the given receiver types without modifying the call graph.
+   * This method may be called concurrently, but not concurrently with any method that processes new methods. The result is
+   * added to the call graph with {@link #addResolvedCalls(ResolvedCalls, Context)}.
+   */
+  public ResolvedCalls resolveTypes(Local receiver, Collection<Type> types) {
+    ResolvedCalls ret = new ResolvedCalls(receiver, types);
+    List<VirtualCallSite> sites = receiverToSites.get(receiver);
+    if (sites != null) {
+      FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+      ChunkedQueue<SootMethod> queue = new ChunkedQueue<SootMethod>();
+      QueueReader<SootMethod> reader = queue.reader();
+      for (Type type : types) {
+        for (VirtualCallSite site : sites) {
+          resolveSite(fh, receiver, site, type, queue);
+          while (reader.hasNext()) {
+            ret.sites.add(site);
+            ret.targets.add(reader.next());
+          }
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Adds the edges of call sites that have been resolved with {@link #resolveTypes(Local, Collection)}. This has the same
+   * effect as calling {@link #addType(Local, Context, Type, Context)} for all of the resolved types.
+   */
+  public void addResolvedCalls(ResolvedCalls resolved, Context srcContext) {
+    for (int i = 0; i < resolved.sites.size(); i++) {
+      VirtualCallSite site = resolved.sites.get(i);
+      cm.addVirtualEdge(MethodContext.v(site.container(), srcContext), site.stmt(), resolved.targets.get(i), site.kind(),
+          null);
+    }
+    if (baseToInvokeSite.get(resolved.receiver) != null) {
+      for (Type type : resolved.types) {
+        addBaseType(resolved.receiver, srcContext, type);
+      }
+    }
+  }
+
+  private void resolveSite(FastHierarchy fh, Local receiver, VirtualCallSite site, Type type,
+      ChunkedQueue<SootMethod> targetsQueue) {
+    if (site.kind() == Kind.THREAD && !fh.canStoreType(type, clRunnable)) {
+      return;
+    }
+    if (site.kind() == Kind.EXECUTOR && !fh.canStoreType(type, clRunnable)) {
+      return;
+    }
+    if (site.kind() == Kind.ASYNCTASK && !fh.canStoreType(type, clAsyncTask)) {
+      return;
+    }
+    if (site.kind() == Kind.HANDLER && !fh.canStoreType(type, clHandler)) {
+      return;
+    }
+
+    if (site.iie() instanceof SpecialInvokeExpr && site.kind != Kind.THREAD && site.kind != Kind.EXECUTOR
+        && site.kind != Kind.ASYNCTASK) {
+      SootMethod target
+          = VirtualCalls.v().resolveSpecial((SpecialInvokeExpr) site.iie(), site.subSig(), site.container(), appOnly);
+      // if the call target resides in a phantom class then
+      // "target" will be null;
+      // simply do not add the target in that case
+      if (target != null) {
+        targetsQueue.add(target);
+      }
+    } else {
+      VirtualCalls.v().resolve(type, receiver.getType(), site.subSig(), site.container(), targetsQueue, appOnly);
+    }
+  }
+
+  /**
+   * The targets of the virtual call sites on a receiver, as computed by {@link #resolveTypes(Local, Collection)}
+   */
+  public static final class ResolvedCalls {
+    private final Local receiver;
+    private final Collection<Type> types;
+    private final List<VirtualCallSite> sites = new ArrayList<VirtualCallSite>();
+    private final List<SootMethod> targets = new ArrayList<SootMethod>();
+
+    private ResolvedCalls(Local receiver, Collection<Type> types) {
+      this.receiver = receiver;
+      this.types = types;
+    }
+  }
+
   public boolean wantStringConstants(Local stringConst) {
     return stringConstToSites.get(stringConst) != null;
   }
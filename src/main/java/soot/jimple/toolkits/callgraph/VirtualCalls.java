@@ -25,9 +25,12 @@ package soot.jimple.toolkits.callgraph;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.AnySubType;
 import soot.ArrayType;
@@ -42,14 +45,13 @@ import soot.SootClass;
 import soot.SootMethod;
 import soot.Type;
 import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.toolkits.callgraph.DispatchTables.SignatureTargets;
 import soot.options.CGOptions;
 import soot.toolkits.scalar.Pair;
 import soot.util.Chain;
 import soot.util.HashMultiMap;
-import soot.util.LargeNumberedMap;
 import soot.util.MultiMap;
 import soot.util.NumberedString;
-import soot.util.SmallNumberedMap;
 import soot.util.queue.ChunkedQueue;
 
 /**
@@ -67,8 +69,8 @@ public class VirtualCalls {
     return G.v().soot_jimple_toolkits_callgraph_VirtualCalls();
   }
 
-  private final LargeNumberedMap<Type, SmallNumberedMap<SootMethod>> typeToVtbl
-      = new LargeNumberedMap<Type, SmallNumberedMap<SootMethod>>(Scene.v().getTypeNumberer());
+  /** The dispatch tables for the current class hierarchy */
+  private volatile DispatchTables dispatchTables;
 
   public SootMethod resolveSpecial(SpecialInvokeExpr iie, NumberedString subSig, SootMethod container) {
     return resolveSpecial(iie, subSig, container, false);
@@ -93,35 +95,48 @@ public class VirtualCalls {
   }
 
   public SootMethod resolveNonSpecial(RefType t, NumberedString subSig, boolean appOnly) {
-    SmallNumberedMap<SootMethod> vtbl = typeToVtbl.get(t);
-    if (vtbl == null) {
-      typeToVtbl.put(t, vtbl = new SmallNumberedMap<SootMethod>());
-    }
-    SootMethod ret = vtbl.get(subSig);
-    if (ret != null) {
-      return ret;
-    }
     SootClass cls = t.getSootClass();
     if (appOnly && cls.isLibraryClass()) {
       return null;
     }
+    return getDispatchTables().dispatch(cls, subSig);
+  }
 
-    SootMethod m = cls.getMethodUnsafe(subSig);
-    if (m != null) {
-      if (m.isConcrete() || m.isNative() || m.isPhantom()) {
-        ret = m;
-      }
-    } else {
-      SootClass c = cls.getSuperclassUnsafe();
-      if (c != null) {
-        ret = resolveNonSpecial(c.getType(), subSig);
-      }
+  /**
+   * Gets the dispatch tables for the current class hierarchy. The tables are rebuilt whenever the Scene creates a new
+   * {@link FastHierarchy}.
+   */
+  protected DispatchTables getDispatchTables() {
+    FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+    DispatchTables tables = dispatchTables;
+    if (tables == null || tables.hierarchy != fh) {
+      // Racing threads may build several instances here, all of them are
+      // equivalent
+      tables = new DispatchTables(fh);
+      dispatchTables = tables;
     }
-    vtbl.put(subSig, ret);
-    return ret;
+    return tables;
   }
 
+  /**
+   * Drops all dispatch tables. This is necessary if methods have been removed from classes, or methods overriding inherited
+   * ones have been added, after calls on these classes have been resolved, without modifying the class hierarchy. Other
+   * added methods are found without clearing the tables.
+   */
+  public void clearDispatchTables() {
+    dispatchTables = null;
+  }
+
+  /**
+   * @deprecated The subtypes are memoized in the dispatch tables now, this map is no longer filled or read.
+   */
+  @Deprecated
   protected MultiMap<Type, Type> baseToSubTypes = new HashMultiMap<Type, Type>();
+  /**
+   * @deprecated The possible implementations by signature are memoized in the dispatch tables now, this map is no longer
+   *             filled or read.
+   */
+  @Deprecated
   protected MultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>> baseToPossibleSubTypes
       = new HashMultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>>();
 
@@ -190,11 +205,11 @@ public class VirtualCalls {
 
   protected void resolveAnySubType(Type declaredType, Type sigType, NumberedString subSig, SootMethod container,
       ChunkedQueue<SootMethod> targets, boolean appOnly, RefType base) {
-    FastHierarchy fastHierachy = Scene.v().getOrMakeFastHierarchy();
+    DispatchTables tables = getDispatchTables();
 
     {
-      Set<Type> subTypes = baseToSubTypes.get(base);
-      if (subTypes != null && !subTypes.isEmpty()) {
+      Type[] subTypes = tables.subTypes.get(base);
+      if (subTypes != null) {
         for (final Type st : subTypes) {
           resolve(st, declaredType, sigType, subSig, container, targets, appOnly);
         }
@@ -202,12 +217,12 @@ public class VirtualCalls {
       }
     }
 
-    Set<Type> newSubTypes = new HashSet<>();
+    Set<Type> newSubTypes = new LinkedHashSet<>();
     newSubTypes.add(base);
 
     LinkedList<SootClass> worklist = new LinkedList<SootClass>();
     HashSet<SootClass> workset = new HashSet<SootClass>();
-    FastHierarchy fh = fastHierachy;
+    FastHierarchy fh = tables.hierarchy;
     SootClass cl = base.getSootClass();
 
     if (workset.add(cl)) {
@@ -236,24 +251,32 @@ public class VirtualCalls {
       }
     }
 
-    baseToSubTypes.putAll(base, newSubTypes);
+    tables.subTypes.putIfAbsent(base, newSubTypes.toArray(new Type[newSubTypes.size()]));
   }
 
   protected void resolveLibrarySignature(Type declaredType, Type sigType, NumberedString subSig, SootMethod container,
       ChunkedQueue<SootMethod> targets, boolean appOnly, RefType base) {
-    FastHierarchy fastHierachy = Scene.v().getOrMakeFastHierarchy();
+    DispatchTables tables = getDispatchTables();
+    FastHierarchy fastHierachy = tables.hierarchy;
 
     assert (declaredType instanceof RefType);
-    Pair<Type, NumberedString> pair = new Pair<Type, NumberedString>(base, subSig);
+    ConcurrentMap<NumberedString, SignatureTargets> baseTargets = tables.signatureTargets.get(base);
+    if (baseTargets == null) {
+      baseTargets = new ConcurrentHashMap<NumberedString, SignatureTargets>();
+      ConcurrentMap<NumberedString, SignatureTargets> old = tables.signatureTargets.putIfAbsent(base, baseTargets);
+      if (old != null) {
+        baseTargets = old;
+      }
+    }
     {
-      Set<Pair<Type, NumberedString>> types = baseToPossibleSubTypes.get(pair);
+      SignatureTargets cached = baseTargets.get(subSig);
       // if this type and method has been resolved earlier we can
       // just retrieve the previous result.
-      if (types != null) {
-        for (Pair<Type, NumberedString> tuple : types) {
-          Type st = tuple.getO1();
+      if (cached != null) {
+        for (int i = 0; i < cached.types.length; i++) {
+          Type st = cached.types[i];
           if (!fastHierachy.canStoreType(st, declaredType)) {
-            resolve(st, st, sigType, subSig, container, targets, appOnly);
+            resolve(st, st, sigType, cached.subSigs[i], container, targets, appOnly);
           } else {
             resolve(st, declaredType, sigType, subSig, container, targets, appOnly);
           }
@@ -262,7 +285,8 @@ public class VirtualCalls {
       }
     }
 
-    Set<Pair<Type, NumberedString>> types = new HashSet<Pair<Type, NumberedString>>();
+    List<Type> types = new ArrayList<Type>();
+    List<NumberedString> subSigs = new ArrayList<NumberedString>();
 
     // get return type; method name; parameter types
     String[] split = subSig.getString().replaceAll("(.*) (.*)\\((.*)\\)", "$1;$2;$3").split(";");
@@ -316,17 +340,20 @@ public class VirtualCalls {
               if (!sc.isFinal()) {
                 NumberedString newSubSig = sm.getNumberedSubSignature();
                 resolve(st, st, sigType, newSubSig, container, targets, appOnly);
-                types.add(new Pair<Type, NumberedString>(st, newSubSig));
+                types.add(st);
+                subSigs.add(newSubSig);
               }
             } else {
               resolve(st, declaredType, sigType, subSig, container, targets, appOnly);
-              types.add(new Pair<Type, NumberedString>(st, subSig));
+              types.add(st);
+              subSigs.add(subSig);
             }
           }
         }
       }
     }
-    baseToPossibleSubTypes.putAll(pair, types);
+    baseTargets.putIfAbsent(subSig, new SignatureTargets(types.toArray(new Type[types.size()]),
+        subSigs.toArray(new NumberedString[subSigs.size()])));
   }
 
   public final NumberedString sigClinit = Scene.v().getSubSigNumberer().findOrAdd("void <clinit>()");
@@ -91,6 +91,11 @@ public class MethodRWSet extends RWSet {
      */
   }
 
+  /** Returns true if this set stands for all globals and fields. */
+  public boolean isFull() {
+    return isFull;
+  }
+
   public boolean getCallsNative() {
     return callsNative;
   }
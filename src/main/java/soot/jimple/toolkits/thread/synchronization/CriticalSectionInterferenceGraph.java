@@ -22,9 +22,16 @@ package soot.jimple.toolkits.thread.synchronization;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import soot.Hierarchy;
 import soot.Local;
@@ -35,6 +42,7 @@ import soot.Scene;
 import soot.SootClass;
 import soot.jimple.toolkits.callgraph.ReachableMethods;
 import soot.jimple.toolkits.pointer.CodeBlockRWSet;
+import soot.jimple.toolkits.pointer.MethodRWSet;
 import soot.jimple.toolkits.thread.mhp.MhpTester;
 
 public class CriticalSectionInterferenceGraph {
@@ -48,15 +56,27 @@ public class CriticalSectionInterferenceGraph {
   boolean optionOneGlobalLock = false;
   boolean optionLeaveOriginalLocks = false;
   boolean optionIncludeEmptyPossibleEdges = false;
+  boolean optionIndexedInterference = false;
 
   public CriticalSectionInterferenceGraph(List<CriticalSection> criticalSections, MhpTester mhp, boolean optionOneGlobalLock,
       boolean optionLeaveOriginalLocks, boolean optionIncludeEmptyPossibleEdges) {
+    this(criticalSections, mhp, optionOneGlobalLock, optionLeaveOriginalLocks, optionIncludeEmptyPossibleEdges, false);
+  }
+
+  /**
+   * @param optionIndexedInterference
+   *          if true, the read/write sets are indexed by the locations they access, and only pairs of critical sections that
+   *          share a location are tested for interference, in parallel. The resulting groups and edges are the same.
+   */
+  public CriticalSectionInterferenceGraph(List<CriticalSection> criticalSections, MhpTester mhp, boolean optionOneGlobalLock,
+      boolean optionLeaveOriginalLocks, boolean optionIncludeEmptyPossibleEdges, boolean optionIndexedInterference) {
     this.criticalSections = criticalSections;
     this.mhp = mhp;
     this.pta = Scene.v().getPointsToAnalysis();
     this.optionOneGlobalLock = optionOneGlobalLock;
     this.optionLeaveOriginalLocks = optionLeaveOriginalLocks;
     this.optionIncludeEmptyPossibleEdges = optionIncludeEmptyPossibleEdges;
+    this.optionIndexedInterference = optionIndexedInterference;
 
     calculateGroups();
   }
@@ -84,6 +104,8 @@ public class CriticalSectionInterferenceGraph {
       }
       nextGroup++;
       groups.add(onlyGroup);
+    } else if (optionIndexedInterference && !optionLeaveOriginalLocks) {
+      calculateGroupsIndexed();
     } else // calculate separate groups for transactions
     {
       Iterator<CriticalSection> tnIt1 = criticalSections.iterator();
@@ -182,41 +204,7 @@ public class CriticalSectionInterferenceGraph {
                 size = rw.size();
               }
 
-              // Record this
-              tn1.edges.add(new CriticalSectionDataDependency(tn2, size, rw));
-              // Don't add opposite... all n^2 pairs will be visited separately
-
-              if (size > 0) {
-                // if tn1 already is in a group
-                if (tn1.setNumber > 0) {
-                  // if tn2 is NOT already in a group
-                  if (tn2.setNumber == 0) {
-                    tn1.group.add(tn2);
-                  }
-                  // if tn2 is already in a group
-                  else if (tn2.setNumber > 0) {
-                    if (tn1.setNumber != tn2.setNumber) // if they are equal, then they are already in the same group!
-                    {
-                      tn1.group.mergeGroups(tn2.group);
-                    }
-                  }
-                }
-                // if tn1 is NOT already in a group
-                else if (tn1.setNumber == 0) {
-                  // if tn2 is NOT already in a group
-                  if (tn2.setNumber == 0) {
-                    CriticalSectionGroup newGroup = new CriticalSectionGroup(nextGroup);
-                    newGroup.add(tn1);
-                    newGroup.add(tn2);
-                    groups.add(newGroup);
-                    nextGroup++;
-                  }
-                  // if tn2 is already in a group
-                  else if (tn2.setNumber > 0) {
-                    tn2.group.add(tn1);
-                  }
-                }
-              }
+              recordDependency(tn1, new CriticalSectionDataDependency(tn2, size, rw));
             }
           }
           // If, after comparing to all other transactions, we have no group:
@@ -228,12 +216,207 @@ public class CriticalSectionInterferenceGraph {
     }
   }
 
+  /**
+   * Calculates the same groups and edges as the all-pairs search, but only tests the pairs of critical sections that access
+   * a common global or field, with at least one of them writing it. The tests run in parallel, then the groups are built in
+   * the original order of the critical sections.
+   */
+  private void calculateGroupsIndexed() {
+    final int n = criticalSections.size();
+    final CriticalSection[] sections = criticalSections.toArray(new CriticalSection[n]);
+
+    // index the critical sections by the locations they read and write
+    final Map<Object, BitSet> readers = new HashMap<Object, BitSet>();
+    final Map<Object, BitSet> writers = new HashMap<Object, BitSet>();
+    final BitSet full = new BitSet(n);
+    for (int i = 0; i < n; i++) {
+      CriticalSection tn = sections[i];
+      if (tn.read.isFull() || tn.write.isFull()) {
+        full.set(i);
+      } else {
+        indexLocations(tn.read, i, readers);
+        indexLocations(tn.write, i, writers);
+      }
+    }
+
+    // getReachableMethods() updates the reachable methods, so it must not be
+    // called by the tasks; they only query the set with contains()
+    final ReachableMethods rm = mhp == null ? Scene.v().getReachableMethods() : null;
+
+    @SuppressWarnings("unchecked")
+    final List<CriticalSectionDataDependency>[] dependencies = new List[n];
+    int threadNum = Runtime.getRuntime().availableProcessors();
+    CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    for (int i = 0; i < n; i++) {
+      final CriticalSection tn1 = sections[i];
+      if (tn1.setNumber == -1 || (tn1.read.size() == 0 && tn1.write.size() == 0)) {
+        continue;
+      }
+      final int index = i;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          dependencies[index] = findDependencies(tn1, index, sections, readers, writers, full, rm);
+        }
+      });
+    }
+
+    try {
+      executor.awaitCompletion();
+      executor.shutdown();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    if (executor.getException() != null) {
+      if (executor.getException() instanceof RuntimeException) {
+        throw (RuntimeException) executor.getException();
+      } else {
+        throw new RuntimeException(executor.getException());
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      CriticalSection tn1 = sections[i];
+      if (tn1.setNumber == -1) {
+        continue;
+      }
+      if (tn1.read.size() == 0 && tn1.write.size() == 0) {
+        tn1.setNumber = -1;
+        continue;
+      }
+      for (CriticalSectionDataDependency dependency : dependencies[i]) {
+        if (dependency.other.setNumber != -1) {
+          recordDependency(tn1, dependency);
+        }
+      }
+      if (tn1.setNumber == 0) {
+        tn1.setNumber = -1;
+      }
+    }
+  }
+
+  private static void indexLocations(MethodRWSet rw, int index, Map<Object, BitSet> locationToSections) {
+    for (Object global : rw.getGlobals()) {
+      addToIndex(global, index, locationToSections);
+    }
+    for (Object field : rw.getFields()) {
+      addToIndex(field, index, locationToSections);
+    }
+  }
+
+  private static void addToIndex(Object location, int index, Map<Object, BitSet> locationToSections) {
+    BitSet sections = locationToSections.get(location);
+    if (sections == null) {
+      sections = new BitSet();
+      locationToSections.put(location, sections);
+    }
+    sections.set(index);
+  }
+
+  private static void addCandidates(MethodRWSet rw, Map<Object, BitSet> locationToSections, BitSet candidates) {
+    for (Object global : rw.getGlobals()) {
+      BitSet sections = locationToSections.get(global);
+      if (sections != null) {
+        candidates.or(sections);
+      }
+    }
+    for (Object field : rw.getFields()) {
+      BitSet sections = locationToSections.get(field);
+      if (sections != null) {
+        candidates.or(sections);
+      }
+    }
+  }
+
+  /**
+   * Returns the dependencies of {@code tn1} on the critical sections that may run in parallel with it and share a location
+   * with it. Does not modify any critical section, so it may be called concurrently.
+   */
+  private List<CriticalSectionDataDependency> findDependencies(CriticalSection tn1, int index, CriticalSection[] sections,
+      Map<Object, BitSet> readers, Map<Object, BitSet> writers, BitSet full, ReachableMethods rm) {
+    // sections with a full read or write set are compared with everything
+    BitSet candidates = (BitSet) full.clone();
+    if (full.get(index)) {
+      candidates.set(0, sections.length);
+    } else {
+      addCandidates(tn1.write, readers, candidates);
+      addCandidates(tn1.write, writers, candidates);
+      addCandidates(tn1.read, writers, candidates);
+    }
+
+    List<CriticalSectionDataDependency> ret = new ArrayList<CriticalSectionDataDependency>();
+    for (int j = candidates.nextSetBit(0); j >= 0; j = candidates.nextSetBit(j + 1)) {
+      CriticalSection tn2 = sections[j];
+      if (tn2.setNumber == -1 || !mayHappenInParallel(tn1, tn2, rm)) {
+        continue;
+      }
+      if (tn1.write.hasNonEmptyIntersection(tn2.write) || tn1.write.hasNonEmptyIntersection(tn2.read)
+          || tn1.read.hasNonEmptyIntersection(tn2.write)) {
+        CodeBlockRWSet rw = tn1.write.intersection(tn2.write);
+        rw.union(tn1.write.intersection(tn2.read));
+        rw.union(tn1.read.intersection(tn2.write));
+        ret.add(new CriticalSectionDataDependency(tn2, rw.size(), rw));
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Records the dependency of {@code tn1} on another critical section, and puts both into the same group if the dependency
+   * is not empty.
+   */
+  private void recordDependency(CriticalSection tn1, CriticalSectionDataDependency dependency) {
+    CriticalSection tn2 = dependency.other;
+    tn1.edges.add(dependency);
+    // Don't add opposite... all n^2 pairs will be visited separately
+
+    if (dependency.size > 0) {
+      // if tn1 already is in a group
+      if (tn1.setNumber > 0) {
+        // if tn2 is NOT already in a group
+        if (tn2.setNumber == 0) {
+          tn1.group.add(tn2);
+        }
+        // if tn2 is already in a group
+        else if (tn2.setNumber > 0) {
+          if (tn1.setNumber != tn2.setNumber) // if they are equal, then they are already in the same group!
+          {
+            tn1.group.mergeGroups(tn2.group);
+          }
+        }
+      }
+      // if tn1 is NOT already in a group
+      else if (tn1.setNumber == 0) {
+        // if tn2 is NOT already in a group
+        if (tn2.setNumber == 0) {
+          CriticalSectionGroup newGroup = new CriticalSectionGroup(nextGroup);
+          newGroup.add(tn1);
+          newGroup.add(tn2);
+          groups.add(newGroup);
+          nextGroup++;
+        }
+        // if tn2 is already in a group
+        else if (tn2.setNumber > 0) {
+          tn2.group.add(tn1);
+        }
+      }
+    }
+  }
+
   public boolean mayHappenInParallel(CriticalSection tn1, CriticalSection tn2) {
+    return mayHappenInParallel(tn1, tn2, mhp == null && !optionLeaveOriginalLocks ? Scene.v().getReachableMethods() : null);
+  }
+
+  /**
+   * Like {@link #mayHappenInParallel(CriticalSection, CriticalSection)}, with the reachable methods fetched by the caller
+   * when there is no MHP information. Only queries {@code rm}, so it may be called concurrently.
+   */
+  private boolean mayHappenInParallel(CriticalSection tn1, CriticalSection tn2, ReachableMethods rm) {
     if (mhp == null) {
       if (optionLeaveOriginalLocks) {
         return true;
       }
-      ReachableMethods rm = Scene.v().getReachableMethods();
       if (!rm.contains(tn1.method) || !rm.contains(tn2.method)) {
         return false;
       }
@@ -104,6 +104,7 @@ public class LockAllocator extends SceneTransformer {
   // Analysis options
   boolean optionDoMHP = false;
   boolean optionDoTLO = false;
+  boolean optionIndexedInterference = false;
   boolean optionOnFlyTLO = false; // not a CLI option yet // on-fly is more efficient, but harder to measure in time
 
   // Output options
@@ -160,6 +161,7 @@ public class LockAllocator extends SceneTransformer {
 
     optionDoMHP = PhaseOptions.getBoolean(options, "do-mhp");
     optionDoTLO = PhaseOptions.getBoolean(options, "do-tlo");
+    optionIndexedInterference = PhaseOptions.getBoolean(options, "indexed-interference");
     // optionOnFlyTLO = PhaseOptions.getBoolean( options, "on-fly-tlo" ); // not a real option yet
 
     // optionPrintMhpSummary = PhaseOptions.getBoolean( options, "print-mhp" ); // not a real option yet
@@ -303,7 +305,7 @@ public class LockAllocator extends SceneTransformer {
     // Search for data dependencies between transactions, and split them into disjoint sets
     logger.debug("[wjtp.tn] *** Calculate Locking Groups *** " + (new Date()));
     CriticalSectionInterferenceGraph ig = new CriticalSectionInterferenceGraph(criticalSections, mhp, optionOneGlobalLock,
-        optionLeaveOriginalLocks, optionIncludeEmptyPossibleEdges);
+        optionLeaveOriginalLocks, optionIncludeEmptyPossibleEdges, optionIndexedInterference);
     interferenceGraph = ig; // save in field for later retrieval
 
     // *** Detect the Possibility of Deadlock ***
@@ -92,6 +92,21 @@ public class BytecodeHierarchy implements IHierarchy {
   }
 
   public static Collection<Type> lcas_(Type a, Type b) {
+    HierarchyCache cache = HierarchyCache.v();
+    if (HierarchyCache.isCacheable(a) && HierarchyCache.isCacheable(b) && !TypeResolver.typesEqual(a, b)
+        && cache.isEnabled()) {
+      // Walking the ancestry trees is expensive, and the same pairs of
+      // reference types show up in many bodies
+      Collection<Type> r = cache.getLcas(a, b);
+      if (r == null) {
+        r = cache.putLcas(a, b, Collections.unmodifiableCollection(computeLcas(a, b)));
+      }
+      return r;
+    }
+    return computeLcas(a, b);
+  }
+
+  private static Collection<Type> computeLcas(Type a, Type b) {
     if (TypeResolver.typesEqual(a, b)) {
       return Collections.<Type>singletonList(a);
     } else if (a instanceof BottomType) {
@@ -220,6 +235,15 @@ public class BytecodeHierarchy implements IHierarchy {
       return true;
     } else if (ancestor instanceof NullType) {
       return false;
+    } else if (HierarchyCache.isCacheable(ancestor) && HierarchyCache.isCacheable(child)
+        && HierarchyCache.v().isEnabled()) {
+      HierarchyCache cache = HierarchyCache.v();
+      Boolean r = cache.getAncestor(ancestor, child);
+      if (r == null) {
+        r = Scene.v().getOrMakeFastHierarchy().canStoreType(child, ancestor);
+        cache.putAncestor(ancestor, child, r);
+      }
+      return r;
     } else {
       return Scene.v().getOrMakeFastHierarchy().canStoreType(child, ancestor);
     }
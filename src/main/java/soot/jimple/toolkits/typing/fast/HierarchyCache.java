@@ -0,0 +1,174 @@
+package soot.jimple.toolkits.typing.fast;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import soot.ArrayType;
+import soot.FastHierarchy;
+import soot.G;
+import soot.RefType;
+import soot.Scene;
+import soot.Singletons;
+import soot.Type;
+
+/**
+ * Scene-wide memo of the least common ancestor and ancestor queries on reference types that the fast type assigner issues
+ * through {@link BytecodeHierarchy}. The answers to these queries only depend on the class hierarchy, so they can be shared
+ * between all bodies that are typed, also when the bodies are typed concurrently. The memo is bound to the active
+ * {@link FastHierarchy} of the {@link Scene} and is discarded as soon as the Scene builds a new one, i.e., whenever the
+ * class hierarchy has been modified.
+ */
+public class HierarchyCache {
+
+  private volatile Cache cache;
+  private volatile boolean enabled = true;
+
+  public HierarchyCache(Singletons.Global g) {
+  }
+
+  public static HierarchyCache v() {
+    return G.v().soot_jimple_toolkits_typing_fast_HierarchyCache();
+  }
+
+  /**
+   * Checks whether the fast type assigner uses this memo
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Turns the memo on or off. While it is off, the fast type assigner computes the answer to every query itself.
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Checks whether the results of queries on the given types can be memoized. This is the case for class and array types,
+   * whose relationships are determined by the class hierarchy alone.
+   */
+  static boolean isCacheable(Type t) {
+    return t instanceof RefType || t instanceof ArrayType;
+  }
+
+  /**
+   * Gets the memoized least common ancestors of the given types
+   *
+   * @return The least common ancestors of a and b, or null if they have not been computed for the current hierarchy yet
+   */
+  public Collection<Type> getLcas(Type a, Type b) {
+    return getCache().lcas.get(new TypePair(a, b));
+  }
+
+  /**
+   * Memoizes the least common ancestors of the given types. If another thread has memoized a result in the meantime, that
+   * result is kept and returned instead.
+   *
+   * @return The memoized least common ancestors of a and b
+   */
+  public Collection<Type> putLcas(Type a, Type b, Collection<Type> lcas) {
+    Collection<Type> old = getCache().lcas.putIfAbsent(new TypePair(a, b), lcas);
+    return old == null ? lcas : old;
+  }
+
+  /**
+   * Gets the memoized answer whether ancestor is an ancestor of child
+   *
+   * @return The memoized answer, or null if it has not been computed for the current hierarchy yet
+   */
+  public Boolean getAncestor(Type ancestor, Type child) {
+    return getCache().ancestors.get(new TypePair(ancestor, child));
+  }
+
+  /**
+   * Memoizes the answer whether ancestor is an ancestor of child
+   */
+  public void putAncestor(Type ancestor, Type child, boolean isAncestor) {
+    getCache().ancestors.putIfAbsent(new TypePair(ancestor, child), isAncestor);
+  }
+
+  /**
+   * Drops all memoized results
+   */
+  public void clear() {
+    cache = null;
+  }
+
+  private Cache getCache() {
+    FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+    Cache c = cache;
+    if (c == null || c.hierarchy != fh) {
+      // The hierarchy has changed, all previous answers are stale. Racing
+      // threads may create several caches here, but only the last one
+      // survives, which is fine since all of them are equivalent.
+      c = new Cache(fh);
+      cache = c;
+    }
+    return c;
+  }
+
+  private static class Cache {
+    final FastHierarchy hierarchy;
+    final ConcurrentMap<TypePair, Collection<Type>> lcas = new ConcurrentHashMap<TypePair, Collection<Type>>();
+    final ConcurrentMap<TypePair, Boolean> ancestors = new ConcurrentHashMap<TypePair, Boolean>();
+
+    Cache(FastHierarchy hierarchy) {
+      this.hierarchy = hierarchy;
+    }
+  }
+
+  /**
+   * Ordered pair of types. The LCA computation is not symmetric with respect to the order of the results, so (a, b) and (b,
+   * a) are different keys.
+   */
+  private static class TypePair {
+    final Type first;
+    final Type second;
+
+    TypePair(Type first, Type second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * first.hashCode() + second.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof TypePair)) {
+        return false;
+      }
+      TypePair other = (TypePair) obj;
+      return TypeResolver.typesEqual(first, other.first) && TypeResolver.typesEqual(second, other.second);
+    }
+  }
+}
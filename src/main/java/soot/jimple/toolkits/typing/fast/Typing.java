@@ -24,6 +24,8 @@ package soot.jimple.toolkits.typing.fast;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -33,40 +35,64 @@ import soot.Local;
 import soot.Type;
 
 /**
+ * A mapping from locals to types.
+ *
+ * <p>
+ * The type resolver copies typings whenever an assignment admits more than one least common ancestor. To keep these copies
+ * cheap, all typings that are derived from the same initial typing share a numbering of the locals, and each typing only
+ * stores a flat array of types indexed by that numbering.
+ * </p>
+ *
  * @author Ben Bellamy
  */
 public class Typing {
-  private HashMap<Local, Type> map;
+  private final LocalIndex index;
+  private Type[] types;
 
   public Typing(Collection<Local> vs) {
-    map = new HashMap<Local, Type>(vs.size());
-    final BottomType bottomType = BottomType.v();
+    this.index = new LocalIndex(vs.size());
     for (Local v : vs) {
-      this.map.put(v, bottomType);
+      this.index.getOrAdd(v);
     }
+    this.types = new Type[this.index.size()];
+    Arrays.fill(this.types, BottomType.v());
   }
 
   public Typing(Typing tg) {
-    this.map = new HashMap<Local, Type>(tg.map);
+    this.index = tg.index;
+    this.types = tg.types.clone();
   }
 
   public Type get(Local v) {
-    return this.map.get(v);
+    int i = this.index.indexOf(v);
+    if (i < 0 || i >= this.types.length) {
+      return null;
+    }
+    return this.types[i];
   }
 
   public Type set(Local v, Type t) {
-    return this.map.put(v, t);
+    int i = this.index.getOrAdd(v);
+    if (i >= this.types.length) {
+      // Locals that were created after this typing, e.g., temporaries for casts
+      this.types = Arrays.copyOf(this.types, this.index.size());
+    }
+    Type old = this.types[i];
+    this.types[i] = t;
+    return old;
   }
 
   @Override
   public String toString() {
     StringBuffer sb = new StringBuffer();
     sb.append('{');
-    for (Local v : this.map.keySet()) {
-      sb.append(v);
-      sb.append(':');
-      sb.append(this.get(v));
-      sb.append(',');
+    for (int i = 0; i < this.types.length; i++) {
+      if (this.types[i] != null) {
+        sb.append(this.index.get(i));
+        sb.append(':');
+        sb.append(this.types[i]);
+        sb.append(',');
+      }
     }
     sb.append('}');
     return sb.toString();
@@ -92,8 +118,12 @@ public class Typing {
 
   public static int compare(Typing a, Typing b, IHierarchy h) {
     int r = 0;
-    for (Local v : a.map.keySet()) {
-      Type ta = a.get(v), tb = b.get(v);
+    for (int i = 0; i < a.types.length; i++) {
+      Type ta = a.types[i];
+      if (ta == null) {
+        continue;
+      }
+      Type tb = i < b.types.length ? b.types[i] : null;
 
       int cmp;
       if (TypeResolver.typesEqual(ta, tb)) {
@@ -115,4 +145,40 @@ public class Typing {
     }
     return r;
   }
-}
\ No newline at end of file
+
+  /**
+   * Numbering of the locals of a body that is shared between all typings derived from the same initial typing
+   */
+  private static class LocalIndex {
+    private final HashMap<Local, Integer> indices;
+    private final List<Local> locals;
+
+    LocalIndex(int size) {
+      this.indices = new HashMap<Local, Integer>(size * 2);
+      this.locals = new ArrayList<Local>(size);
+    }
+
+    int indexOf(Local v) {
+      Integer i = this.indices.get(v);
+      return i == null ? -1 : i;
+    }
+
+    int getOrAdd(Local v) {
+      Integer i = this.indices.get(v);
+      if (i == null) {
+        i = this.locals.size();
+        this.indices.put(v, i);
+        this.locals.add(v);
+      }
+      return i;
+    }
+
+    Local get(int i) {
+      return this.locals.get(i);
+    }
+
+    int size() {
+      return this.locals.size();
+    }
+  }
+}
@@ -40,8 +40,8 @@ import soot.jimple.InvokeStmt;
 import soot.jimple.NewExpr;
 import soot.jimple.SpecialInvokeExpr;
 import soot.jimple.Stmt;
-import soot.toolkits.graph.BriefUnitGraph;
 import soot.toolkits.graph.UnitGraph;
+import soot.validation.BodyValidationContext;
 import soot.validation.BodyValidator;
 import soot.validation.ValidationException;
 
@@ -69,7 +69,7 @@ public enum NewValidator implements BodyValidator {
    */
   @Override
   public void validate(Body body, List<ValidationException> exceptions) {
-    UnitGraph g = new BriefUnitGraph(body);
+    UnitGraph g = null;
     for (Unit u : body.getUnits()) {
       if (u instanceof AssignStmt) {
         AssignStmt assign = (AssignStmt) u;
@@ -87,6 +87,9 @@ public enum NewValidator implements BodyValidator {
           LinkedHashSet<Local> locals = new LinkedHashSet<Local>();
           locals.add((Local) assign.getLeftOp());
 
+          if (g == null) {
+            g = BodyValidationContext.of(body).getBriefGraph();
+          }
           checkForInitializerOnPath(g, assign, exceptions);
         }
       }
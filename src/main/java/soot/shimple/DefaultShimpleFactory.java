@@ -40,6 +40,7 @@ import soot.toolkits.graph.ExceptionalBlockGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.HashReversibleGraph;
 import soot.toolkits.graph.ReversibleGraph;
+import soot.toolkits.graph.SemiNCADominatorsFinder;
 import soot.toolkits.graph.SimpleDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 
@@ -155,7 +156,7 @@ public class DefaultShimpleFactory implements ShimpleFactory {
       return dFinder;
     }
 
-    dFinder = new SimpleDominatorsFinder<Block>(getBlockGraph());
+    dFinder = new SemiNCADominatorsFinder<Block>(getBlockGraph());
     return dFinder;
   }
 
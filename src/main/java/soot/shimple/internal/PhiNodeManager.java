@@ -49,7 +49,6 @@ import soot.toolkits.graph.BlockGraph;
 import soot.toolkits.graph.DominanceFrontier;
 import soot.toolkits.graph.DominatorNode;
 import soot.toolkits.graph.DominatorTree;
-import soot.toolkits.scalar.GuaranteedDefs;
 import soot.toolkits.scalar.ValueUnitPair;
 import soot.util.Chain;
 import soot.util.HashMultiMap;
@@ -67,7 +66,6 @@ public class PhiNodeManager {
   protected DominatorTree<Block> dt;
   protected DominanceFrontier<Block> df;
   protected BlockGraph cfg;
-  protected GuaranteedDefs gd;
 
   public PhiNodeManager(ShimpleBody body, ShimpleFactory sf) {
     this.body = body;
@@ -75,7 +73,6 @@ public class PhiNodeManager {
   }
 
   public void update() {
-    gd = new GuaranteedDefs(sf.getUnitGraph());
     cfg = sf.getBlockGraph();
     dt = sf.getDominatorTree();
     df = sf.getDominanceFrontier();
@@ -89,16 +86,36 @@ public class PhiNodeManager {
    * <p>
    * Special Java case: If a variable is not defined along all paths of entry to a node, a Phi node is not needed.
    * </p>
+   *
+   * <p>
+   * With the semi-pruned option, locals that are never used in a block before being defined there are skipped, as they
+   * cannot be live at the entry of any block (Briggs et al 98).
+   * </p>
    **/
   public boolean insertTrivialPhiNodes() {
     update();
     boolean change = false;
     varToBlocks = new HashMultiMap<Local, Block>();
     Map<Local, List<Block>> localsToDefPoints = new HashMap<Local, List<Block>>();
+    final boolean semiPruned = body.getOptions().semi_pruned();
+    Set<Local> globals = semiPruned ? new HashSet<Local>() : null;
+    Set<Local> killed = semiPruned ? new HashSet<Local>() : null;
 
     // compute localsToDefPoints and varToBlocks
     for (Block block : cfg) {
+      if (semiPruned) {
+        killed.clear();
+      }
       for (Unit unit : block) {
+        if (semiPruned) {
+          for (ValueBox vb : unit.getUseBoxes()) {
+            Value use = vb.getValue();
+            if (use instanceof Local && !killed.contains(use)) {
+              globals.add((Local) use);
+            }
+          }
+        }
+
         List<ValueBox> defBoxes = unit.getDefBoxes();
         for (ValueBox vb : defBoxes) {
           Value def = vb.getValue();
@@ -112,6 +129,9 @@ public class PhiNodeManager {
               localsToDefPoints.put(local, def_points);
             }
             def_points.add(block);
+            if (semiPruned) {
+              killed.add(local);
+            }
           }
         }
 
@@ -146,6 +166,10 @@ public class PhiNodeManager {
           if (def_points.size() == 1) {
             continue;
           }
+          // if the local never lives across blocks, no need either
+          if (semiPruned && !globals.contains(local)) {
+            continue;
+          }
           for (Block block : def_points) {
             workFlags[block.getIndexInMethod()] = iterCount;
             workList.push(block);
@@ -22,6 +22,8 @@ package soot.toDex;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -41,10 +43,13 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -601,6 +606,18 @@ public class DexPrinter {
   }
 
   private void addAsClassDefItem(SootClass c) {
+    dexBuilder.internClass(toClassDef(c));
+  }
+
+  /**
+   * Translates the given class into a dexlib2 class definition. This does not touch the shared {@link MultiDexBuilder}, so it
+   * can be called for different classes concurrently.
+   *
+   * @param c
+   *          The class to translate
+   * @return The class definition that can be interned into the dex builder
+   */
+  protected ClassDef toClassDef(SootClass c) {
     // add source file tag if any
     String sourceFile = null;
     if (c.hasTag("SourceFileTag")) {
@@ -655,9 +672,8 @@ public class DexPrinter {
 
     Collection<Method> methods = toMethods(c);
 
-    ClassDef classDef = new ImmutableClassDef(classType, accessFlags, superClass, interfaces, sourceFile,
-        buildClassAnnotations(c), fields, methods);
-    dexBuilder.internClass(classDef);
+    return new ImmutableClassDef(classType, accessFlags, superClass, interfaces, sourceFile, buildClassAnnotations(c),
+        fields, methods);
   }
 
   private Set<Annotation> buildClassAnnotations(SootClass c) {
@@ -1625,6 +1641,70 @@ public class DexPrinter {
     }
 
     addAsClassDefItem(c);
+    recordOriginalApk(c);
+  }
+
+  /**
+   * Adds all given classes to the dex output. The classes are translated into dex code concurrently, while the resulting
+   * class definitions are interned into the shared string, type and method pools sequentially and in iteration order. The
+   * generated dex files are therefore identical to the ones obtained by calling {@link #add(SootClass)} for each class.
+   *
+   * @param classes
+   *          The classes to add
+   */
+  public void addAll(Iterator<SootClass> classes) {
+    final List<SootClass> toAdd = new ArrayList<SootClass>();
+    while (classes.hasNext()) {
+      SootClass c = classes.next();
+      if (!c.isPhantom()) {
+        toAdd.add(c);
+      }
+    }
+
+    final ClassDef[] classDefs = new ClassDef[toAdd.size()];
+    int threadNum = Runtime.getRuntime().availableProcessors();
+    CountingThreadPoolExecutor executor
+        = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    for (int i = 0; i < classDefs.length; i++) {
+      final int idx = i;
+      executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          classDefs[idx] = toClassDef(toAdd.get(idx));
+        }
+
+      });
+    }
+
+    // Wait till all classes have been translated
+    try {
+      executor.awaitCompletion();
+      executor.shutdown();
+    } catch (InterruptedException e) {
+      // Something went horribly wrong
+      throw new RuntimeException("Could not wait for dex generator threads to finish: " + e.getMessage(), e);
+    }
+
+    // If something went wrong, we tell the world
+    if (executor.getException() != null) {
+      if (executor.getException() instanceof RuntimeException) {
+        throw (RuntimeException) executor.getException();
+      } else {
+        throw new RuntimeException(executor.getException());
+      }
+    }
+
+    // The pools of the dex builder are not thread-safe, so we intern the
+    // classes one after another
+    for (int i = 0; i < classDefs.length; i++) {
+      dexBuilder.internClass(classDefs[i]);
+      recordOriginalApk(toAdd.get(i));
+    }
+  }
+
+  private void recordOriginalApk(SootClass c) {
     // save original APK for this class, needed to copy all the other files
     // inside
     Map<String, File> dexClassIndex = SourceLocator.v().dexClassIndex();
@@ -27,11 +27,13 @@ import com.google.common.cache.CacheBuilder;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import soot.AnySubType;
 import soot.FastHierarchy;
@@ -42,6 +44,8 @@ import soot.Scene;
 import soot.Singletons;
 import soot.Unit;
 import soot.options.Options;
+import soot.util.BitSetIterator;
+import soot.util.BitVector;
 
 /**
  * <p>
@@ -98,10 +102,13 @@ public final class ThrowableSet {
   public static class Manager {
 
     /**
-     * This map stores all referenced <code>ThrowableSet</code>s.
+     * This map stores all referenced <code>ThrowableSet</code>s. Sets are interned with an atomic
+     * {@link ConcurrentMap#putIfAbsent(Object, Object)}, so that concurrent analyses never end up with two instances
+     * representing the same set.
      */
-    private final Map<ThrowableSet, ThrowableSet> registry
-        = CacheBuilder.newBuilder().weakValues().<ThrowableSet, ThrowableSet>build().asMap();
+    private final ConcurrentMap<ThrowableSet, ThrowableSet> registry
+        = CacheBuilder.newBuilder().weakValues().concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .<ThrowableSet, ThrowableSet>build().asMap();
 
     /**
      * <code>ThrowableSet</code> containing no exception classes.
@@ -289,8 +296,8 @@ public final class ThrowableSet {
       if (null != ref) {
         return ref;
       }
-      registry.put(result, result);
-      return result;
+      ref = registry.putIfAbsent(result, result);
+      return ref == null ? result : ref;
     }
 
     /**
@@ -343,23 +350,43 @@ public final class ThrowableSet {
    */
   private final Set<AnySubType> exceptionsExcluded;
 
+  /**
+   * The Scene-wide numbers of the types in <code>exceptionsIncluded</code> and <code>exceptionsExcluded</code>. They give
+   * constant-time membership tests and cheap equality checks when sets are interned.
+   */
+  private final BitVector includedBits;
+  private final BitVector excludedBits;
+  private final int hashCode;
+
   /**
    * A map from ({@link RefLikeType} \\union <code>ThrowableSet</code>) to <code>ThrowableSet</code>. If the mapping (k,v) is
    * in <code>memoizedAdds</code> and k is a <code>ThrowableSet</code>, then v is the set that results from adding all
    * elements in k to <code>this</code>. If (k,v) is in <code>memoizedAdds</code> and k is a {@link RefLikeType}, then v is
    * the set that results from adding k to <code>this</code>.
+   *
+   * <p>
+   * The map is created on the first add and may be read and updated by several threads at once.
+   * </p>
    */
-  private Map<Object, ThrowableSet> memoizedAdds;
+  private volatile ConcurrentMap<Object, ThrowableSet> memoizedAdds;
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<ThrowableSet, ConcurrentMap> MEMOIZED_ADDS_UPDATER
+      = AtomicReferenceFieldUpdater.newUpdater(ThrowableSet.class, ConcurrentMap.class, "memoizedAdds");
 
   private ThrowableSet getMemoizedAdds(Object key) {
-    return memoizedAdds == null ? null : memoizedAdds.get(key);
+    ConcurrentMap<Object, ThrowableSet> memo = memoizedAdds;
+    return memo == null ? null : memo.get(key);
   }
 
   private void addToMemoizedAdds(Object key, ThrowableSet value) {
-    if (memoizedAdds == null) {
-      memoizedAdds = new HashMap<Object, ThrowableSet>();
+    ConcurrentMap<Object, ThrowableSet> memo = memoizedAdds;
+    if (memo == null) {
+      // Most sets only ever see a handful of adds
+      MEMOIZED_ADDS_UPDATER.compareAndSet(this, null, new ConcurrentHashMap<Object, ThrowableSet>(4, 0.75f, 2));
+      memo = memoizedAdds;
     }
-    memoizedAdds.put(key, value);
+    memo.put(key, value);
   }
 
   /**
@@ -375,6 +402,19 @@ public final class ThrowableSet {
   private ThrowableSet(Set<RefLikeType> include, Set<AnySubType> exclude) {
     exceptionsIncluded = getImmutable(include);
     exceptionsExcluded = getImmutable(exclude);
+
+    includedBits = new BitVector();
+    excludedBits = new BitVector();
+    int hash = 0;
+    for (RefLikeType t : exceptionsIncluded) {
+      includedBits.set(t.getNumber());
+      hash += mix(t.getNumber());
+    }
+    for (AnySubType t : exceptionsExcluded) {
+      excludedBits.set(t.getNumber());
+      hash += 31 * mix(t.getNumber());
+    }
+    hashCode = hash;
     // We don't need to clone include and exclude to guarantee
     // immutability since ThrowableSet(Set,Set) is private to this
     // class, where it is only called (via
@@ -382,6 +422,14 @@ public final class ThrowableSet {
     // callers do not subsequently modify.
   }
 
+  /**
+   * Scrambles a type number so that the order-independent sum of the numbers of a set spreads well.
+   */
+  private static int mix(int number) {
+    int h = number * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
   private static <T> Set<T> getImmutable(Set<T> in) {
     if ((null == in) || in.isEmpty()) {
       return Collections.emptySet();
@@ -428,7 +476,7 @@ public final class ThrowableSet {
     if (INSTRUMENTING) {
       Manager.v().addsOfRefType++;
     }
-    if (this.exceptionsIncluded.contains(e)) {
+    if (this.includedBits.get(e.getNumber())) {
       if (INSTRUMENTING) {
         Manager.v().addsInclusionFromMap++;
         Manager.v().addsExclusionWithoutSearch++;
@@ -566,7 +614,7 @@ public final class ThrowableSet {
       }
     }
 
-    if (this.exceptionsIncluded.contains(e)) {
+    if (this.includedBits.get(e.getNumber())) {
       if (INSTRUMENTING) {
         Manager.v().addsInclusionFromMap++;
       }
@@ -656,7 +704,12 @@ public final class ThrowableSet {
         Manager.v().addsInclusionFromSearch++;
         Manager.v().addsExclusionWithoutSearch++;
       }
-      result = this.add(s.exceptionsIncluded);
+      if (s == this || isSubset(s.includedBits, this.includedBits)) {
+        // Nothing new, so spare the pairwise hierarchy checks
+        result = this;
+      } else {
+        result = this.add(s.exceptionsIncluded);
+      }
       addToMemoizedAdds(s, result);
     } else if (INSTRUMENTING) {
       Manager.v().addsInclusionFromMemo++;
@@ -1278,20 +1331,26 @@ public final class ThrowableSet {
    * A package-private method to provide unit tests with access to ThrowableSet's internals.
    */
   Map<Object, ThrowableSet> getMemoizedAdds() {
-    if (memoizedAdds == null) {
+    ConcurrentMap<Object, ThrowableSet> memo = memoizedAdds;
+    if (memo == null) {
       return Collections.emptyMap();
     } else {
-      return Collections.unmodifiableMap(memoizedAdds);
+      return Collections.unmodifiableMap(memo);
     }
   }
 
+  private static boolean isSubset(BitVector sub, BitVector sup) {
+    for (BitSetIterator it = sub.iterator(); it.hasNext();) {
+      if (!sup.get(it.next())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = (prime * result) + exceptionsIncluded.hashCode();
-    result = (prime * result) + exceptionsExcluded.hashCode();
-    return result;
+    return hashCode;
   }
 
   @Override
@@ -1307,6 +1366,7 @@ public final class ThrowableSet {
     }
     ThrowableSet other = (ThrowableSet) obj;
 
-    return exceptionsIncluded.equals(other.exceptionsIncluded) && exceptionsExcluded.equals(other.exceptionsExcluded);
+    // Types are numbered uniquely, so comparing the numbers is enough
+    return hashCode == other.hashCode && includedBits.equals(other.includedBits) && excludedBits.equals(other.excludedBits);
   }
 }
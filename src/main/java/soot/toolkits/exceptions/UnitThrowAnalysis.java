@@ -22,6 +22,7 @@ package soot.toolkits.exceptions;
  * #L%
  */
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
@@ -32,6 +33,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -269,10 +271,71 @@ public class UnitThrowAnalysis extends AbstractThrowAnalysis {
     return new ValueSwitch();
   }
 
+  /**
+   * The results of {@link #mightThrow(Unit)}, keyed by unit identity. Units are mutable, so each result is stored together
+   * with the values the unit referred to when it was computed and is only reused while they are unchanged.
+   */
+  private final Map<Unit, CachedThrowSet> unitToThrowSet
+      = CacheBuilder.newBuilder().weakKeys().<Unit, CachedThrowSet>build().asMap();
+
+  private static final class CachedThrowSet {
+    final Object[] fingerprint;
+    final ThrowableSet result;
+
+    CachedThrowSet(Object[] fingerprint, ThrowableSet result) {
+      this.fingerprint = fingerprint;
+      this.result = result;
+    }
+
+    boolean matches(Object[] other) {
+      if (fingerprint.length != other.length) {
+        return false;
+      }
+      for (int i = 0; i < fingerprint.length; i++) {
+        if (fingerprint[i] != other[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns the values in the boxes of the given unit, each followed by the part of its state the unit switch looks at and
+   * that can be changed in place, i.e. the type of a local, the method of an invocation or the type of a cast.
+   */
+  private static Object[] fingerprint(Unit u) {
+    List<ValueBox> boxes = u.getUseAndDefBoxes();
+    Object[] fingerprint = new Object[boxes.size() * 2];
+    int i = 0;
+    for (ValueBox vb : boxes) {
+      Value v = vb.getValue();
+      fingerprint[i++] = v;
+      if (v instanceof Local) {
+        fingerprint[i++] = v.getType();
+      } else if (v instanceof InvokeExpr) {
+        fingerprint[i++] = ((InvokeExpr) v).getMethodRef();
+      } else if (v instanceof CastExpr) {
+        fingerprint[i++] = ((CastExpr) v).getCastType();
+      } else {
+        fingerprint[i++] = null;
+      }
+    }
+    return fingerprint;
+  }
+
   public ThrowableSet mightThrow(Unit u) {
+    Object[] fingerprint = fingerprint(u);
+    CachedThrowSet cached = unitToThrowSet.get(u);
+    if (cached != null && cached.matches(fingerprint)) {
+      return cached.result;
+    }
+
     UnitSwitch sw = unitSwitch();
     u.apply(sw);
-    return sw.getResult();
+    ThrowableSet result = sw.getResult();
+    unitToThrowSet.put(u, new CachedThrowSet(fingerprint, result));
+    return result;
   }
 
   public ThrowableSet mightThrowImplicitly(ThrowInst t) {
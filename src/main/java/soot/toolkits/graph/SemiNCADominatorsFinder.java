@@ -0,0 +1,284 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dominators finder based on the semi-NCA algorithm of Georgiadis, a simplification of Lengauer-Tarjan that computes
+ * semidominators with path compression and then derives immediate dominators as nearest common ancestors in the DFS tree.
+ * Runs in near-linear time and memory, unlike the iterative flow analyses which keep a dominator set per node.
+ *
+ * <p>
+ * Graphs with several heads are handled through a virtual root whose successors are the heads, so a head has no immediate
+ * dominator.
+ * </p>
+ *
+ * <p>
+ * On nodes that are reachable from a head, the results are the same as those of {@link MHGDominatorsFinder}. Nodes that are
+ * not reachable from any head are dominated only by themselves and have no immediate dominator, and they do not dominate
+ * any other node. The iterative finders never refine the initial set of such a node, so they report every node of the
+ * graph as its dominator.
+ * </p>
+ */
+public class SemiNCADominatorsFinder<N> implements DominatorsFinder<N> {
+  protected DirectedGraph<N> graph;
+
+  /** Preorder number of each reachable node, starting at 1; 0 is the virtual root. */
+  protected Map<N, Integer> nodeToNumber;
+  /** Reachable nodes indexed by their preorder number. */
+  protected List<N> vertex;
+  /** Immediate dominator numbers, indexed by preorder number. */
+  protected int[] idom;
+  /** Preorder and postorder numbers in the dominator tree, for constant-time dominance queries. */
+  protected int[] domPre;
+  protected int[] domPost;
+
+  public SemiNCADominatorsFinder(DirectedGraph<N> graph) {
+    this.graph = graph;
+    final int size = graph.size();
+    this.nodeToNumber = new HashMap<N, Integer>(size * 2 + 1, 0.7f);
+    this.vertex = new ArrayList<N>(size + 1);
+    this.vertex.add(null);
+
+    int[] parent = new int[size + 1];
+    numberNodes(parent);
+    final int n = vertex.size() - 1;
+
+    boolean[] isHead = new boolean[n + 1];
+    for (N h : graph.getHeads()) {
+      Integer num = nodeToNumber.get(h);
+      if (num != null) {
+        isHead[num] = true;
+      }
+    }
+
+    int[] semi = new int[n + 1];
+    int[] label = new int[n + 1];
+    int[] ancestor = new int[n + 1];
+    int[] stack = new int[n + 1];
+    for (int i = 0; i <= n; i++) {
+      semi[i] = i;
+      label[i] = i;
+      ancestor[i] = parent[i];
+    }
+
+    // compute semidominators in reverse preorder
+    for (int w = n; w >= 1; w--) {
+      if (isHead[w]) {
+        semi[w] = 0;
+        continue;
+      }
+      int sw = parent[w];
+      for (N pred : graph.getPredsOf(vertex.get(w))) {
+        Integer v = nodeToNumber.get(pred);
+        if (v == null) {
+          continue;
+        }
+        int su = semi[eval(v, w + 1, ancestor, label, semi, stack)];
+        if (su < sw) {
+          sw = su;
+        }
+      }
+      semi[w] = sw;
+    }
+
+    // the immediate dominator is the nearest common ancestor of the parent and the semidominator
+    this.idom = new int[n + 1];
+    for (int w = 1; w <= n; w++) {
+      int d = parent[w];
+      while (d > semi[w]) {
+        d = idom[d];
+      }
+      idom[w] = d;
+    }
+
+    numberDominatorTree(n);
+  }
+
+  /**
+   * Numbers all nodes reachable from the heads in depth-first preorder and records their DFS parents.
+   */
+  private void numberNodes(int[] parent) {
+    List<Iterator<N>> iterators = new ArrayList<Iterator<N>>();
+    List<Integer> numbers = new ArrayList<Integer>();
+    for (N h : graph.getHeads()) {
+      if (nodeToNumber.containsKey(h)) {
+        continue;
+      }
+      int num = vertex.size();
+      nodeToNumber.put(h, num);
+      vertex.add(h);
+      parent[num] = 0;
+      iterators.add(graph.getSuccsOf(h).iterator());
+      numbers.add(num);
+      while (!iterators.isEmpty()) {
+        int top = iterators.size() - 1;
+        Iterator<N> it = iterators.get(top);
+        if (!it.hasNext()) {
+          iterators.remove(top);
+          numbers.remove(top);
+          continue;
+        }
+        N succ = it.next();
+        if (nodeToNumber.containsKey(succ)) {
+          continue;
+        }
+        int succNum = vertex.size();
+        nodeToNumber.put(succ, succNum);
+        vertex.add(succ);
+        parent[succNum] = numbers.get(top);
+        iterators.add(graph.getSuccsOf(succ).iterator());
+        numbers.add(succNum);
+      }
+    }
+  }
+
+  /**
+   * Returns the node with minimal semidominator on the compressed ancestor path of {@code v}, considering only the
+   * already processed nodes, i.e. those numbered at least {@code lastLinked}.
+   */
+  private static int eval(int v, int lastLinked, int[] ancestor, int[] label, int[] semi, int[] stack) {
+    if (ancestor[v] < lastLinked) {
+      return label[v];
+    }
+    int sp = 0;
+    int x = v;
+    do {
+      stack[sp++] = x;
+      x = ancestor[x];
+    } while (ancestor[x] >= lastLinked);
+
+    // compress the path, propagating the best label downwards
+    int p = x;
+    int pLabel = label[p];
+    while (sp > 0) {
+      x = stack[--sp];
+      ancestor[x] = ancestor[p];
+      if (semi[pLabel] < semi[label[x]]) {
+        label[x] = pLabel;
+      } else {
+        pLabel = label[x];
+      }
+      p = x;
+    }
+    return label[v];
+  }
+
+  /**
+   * Assigns pre- and postorder numbers to the dominator tree so that dominance reduces to interval containment.
+   */
+  private void numberDominatorTree(int n) {
+    // children lists in compressed form
+    int[] childStart = new int[n + 2];
+    for (int w = 1; w <= n; w++) {
+      childStart[idom[w] + 1]++;
+    }
+    for (int i = 1; i <= n + 1; i++) {
+      childStart[i] += childStart[i - 1];
+    }
+    int[] children = new int[n];
+    int[] fill = new int[n + 1];
+    for (int w = 1; w <= n; w++) {
+      int d = idom[w];
+      children[childStart[d] + fill[d]++] = w;
+    }
+
+    this.domPre = new int[n + 1];
+    this.domPost = new int[n + 1];
+    int[] stack = new int[n + 1];
+    int[] next = new int[n + 1];
+    int sp = 0;
+    int pre = 0;
+    int post = 0;
+    stack[sp++] = 0;
+    domPre[0] = pre++;
+    next[0] = childStart[0];
+    while (sp > 0) {
+      int top = stack[sp - 1];
+      if (next[top] < childStart[top + 1]) {
+        int c = children[next[top]++];
+        domPre[c] = pre++;
+        next[c] = childStart[c];
+        stack[sp++] = c;
+      } else {
+        domPost[top] = post++;
+        sp--;
+      }
+    }
+  }
+
+  @Override
+  public DirectedGraph<N> getGraph() {
+    return graph;
+  }
+
+  @Override
+  public List<N> getDominators(N node) {
+    Integer num = nodeToNumber.get(node);
+    if (num == null) {
+      return Collections.singletonList(node);
+    }
+    List<N> dominators = new ArrayList<N>();
+    for (int d = num; d != 0; d = idom[d]) {
+      dominators.add(vertex.get(d));
+    }
+    return dominators;
+  }
+
+  @Override
+  public N getImmediateDominator(N node) {
+    Integer num = nodeToNumber.get(node);
+    if (num == null) {
+      return null;
+    }
+    // the virtual root is not a node of the graph
+    return vertex.get(idom[num]);
+  }
+
+  @Override
+  public boolean isDominatedBy(N node, N dominator) {
+    Integer num = nodeToNumber.get(node);
+    Integer dom = nodeToNumber.get(dominator);
+    if (num == null || dom == null) {
+      return node.equals(dominator);
+    }
+    return domPre[dom] <= domPre[num] && domPost[num] <= domPost[dom];
+  }
+
+  @Override
+  public boolean isDominatedByAll(N node, Collection<N> dominators) {
+    for (N n : dominators) {
+      if (!isDominatedBy(node, n)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,349 @@
+package soot.toolkits.graph.pdg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.toolkits.graph.Block;
+import soot.toolkits.graph.BlockGraph;
+import soot.toolkits.graph.ExceptionalBlockGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.InverseGraph;
+import soot.toolkits.graph.SemiNCADominatorsFinder;
+import soot.toolkits.scalar.LocalDefs;
+
+/**
+ * A statement-level program dependence graph that is built in near-linear time, intended for slicing many methods.
+ *
+ * <p>
+ * Unlike {@link HashMutablePDG}, this graph does not compute regions. The post-dominators of the blocks are computed with
+ * {@link SemiNCADominatorsFinder} on the inverse block graph, and the control dependences are derived from them with the
+ * method of Ferrante, Ottenstein and Warren: for each edge A-&gt;B of the block graph, every block on the post-dominator
+ * tree path from B up to, but excluding, the immediate post-dominator of A is control-dependent on A. A unit is
+ * control-dependent on the branching unit, i.e. the tail, of each block its own block is control-dependent on. Data
+ * dependences connect each unit to the definitions of the locals it uses.
+ * </p>
+ *
+ * <p>
+ * A block from which no tail can be reached, e.g. in an infinite loop, is post-dominated only by itself, see
+ * {@link SemiNCADominatorsFinder}. It has no immediate post-dominator and is control-dependent on each of its
+ * predecessors. The iterative post-dominator finders would instead report every block as one of its post-dominators.
+ * </p>
+ *
+ * <p>
+ * Units and blocks are numbered, and all dependences are stored as compressed arrays of numbers. The graph is a snapshot,
+ * it is not updated when the body changes.
+ * </p>
+ */
+public class CompactProgramDependenceGraph {
+  protected final BlockGraph blockGraph;
+
+  /** The units of the body in chain order, indexed by their number. */
+  protected final Unit[] units;
+  protected final Map<Unit, Integer> unitToNumber;
+  /** The index of the block each unit belongs to. */
+  protected final int[] unitToBlock;
+
+  /** The blocks indexed by {@link Block#getIndexInMethod()}. */
+  protected final Block[] blocks;
+  /** The index of the immediate post-dominator of each block, or -1 if there is none. */
+  protected final int[] ipdom;
+
+  /** The blocks each block is control-dependent on, as ranges of {@code controlTargets}. */
+  protected int[] controlStart;
+  protected int[] controlTargets;
+
+  /** The units each unit depends on, through data or control, as ranges of {@code dependenceTargets}. */
+  protected int[] dependenceStart;
+  protected int[] dependenceTargets;
+  /** The number of data dependences at the start of each range, the rest are control dependences. */
+  protected int[] dataDependenceCount;
+
+  public CompactProgramDependenceGraph(Body body) {
+    this(new ExceptionalUnitGraph(body));
+  }
+
+  public CompactProgramDependenceGraph(ExceptionalUnitGraph unitGraph) {
+    this(new ExceptionalBlockGraph(unitGraph), LocalDefs.Factory.newLocalDefs(unitGraph));
+  }
+
+  /**
+   * @param blockGraph
+   *          the control flow graph; the branching unit of each block must be its tail, as it is for the block graphs
+   *          provided by Soot
+   * @param localDefs
+   *          the reaching definitions for the units of the same body
+   */
+  public CompactProgramDependenceGraph(BlockGraph blockGraph, LocalDefs localDefs) {
+    this.blockGraph = blockGraph;
+
+    final List<Block> blockList = blockGraph.getBlocks();
+    final int blockCount = blockList.size();
+    this.blocks = blockList.toArray(new Block[blockCount]);
+
+    final int unitCount = blockGraph.getBody().getUnits().size();
+    this.units = new Unit[unitCount];
+    this.unitToNumber = new HashMap<Unit, Integer>(unitCount * 2 + 1, 0.7f);
+    this.unitToBlock = new int[unitCount];
+    int n = 0;
+    for (Unit u : blockGraph.getBody().getUnits()) {
+      units[n] = u;
+      unitToNumber.put(u, n);
+      n++;
+    }
+    Arrays.fill(unitToBlock, -1);
+    for (Block b : blocks) {
+      for (Unit u : b) {
+        unitToBlock[unitToNumber.get(u)] = b.getIndexInMethod();
+      }
+    }
+
+    this.ipdom = new int[blockCount];
+    SemiNCADominatorsFinder<Block> pdom = new SemiNCADominatorsFinder<Block>(new InverseGraph<Block>(blockGraph));
+    for (Block b : blocks) {
+      Block d = pdom.getImmediateDominator(b);
+      ipdom[b.getIndexInMethod()] = d == null ? -1 : d.getIndexInMethod();
+    }
+
+    computeControlDependences();
+    computeDependences(localDefs);
+  }
+
+  /**
+   * Walks the post-dominator tree for each edge of the block graph, once to count and once to store the dependences.
+   */
+  private void computeControlDependences() {
+    final int blockCount = blocks.length;
+    int[] count = new int[blockCount + 1];
+    // the last source recorded for each block, to skip duplicates from repeated successors
+    int[] lastSource = new int[blockCount];
+
+    for (int pass = 0; pass < 2; pass++) {
+      Arrays.fill(lastSource, -1);
+      for (Block a : blocks) {
+        final int src = a.getIndexInMethod();
+        final int stop = ipdom[src];
+        for (Block b : a.getSuccs()) {
+          for (int x = b.getIndexInMethod(); x != -1 && x != stop; x = ipdom[x]) {
+            if (lastSource[x] == src) {
+              continue;
+            }
+            lastSource[x] = src;
+            if (pass == 0) {
+              count[x + 1]++;
+            } else {
+              controlTargets[count[x]++] = src;
+            }
+          }
+        }
+      }
+
+      if (pass == 0) {
+        for (int i = 0; i < blockCount; i++) {
+          count[i + 1] += count[i];
+        }
+        controlTargets = new int[count[blockCount]];
+      } else {
+        controlStart = new int[blockCount + 1];
+        System.arraycopy(count, 0, controlStart, 1, blockCount);
+      }
+    }
+  }
+
+  /**
+   * Combines the data dependences given by the reaching definitions with the control dependences of the blocks.
+   */
+  private void computeDependences(LocalDefs localDefs) {
+    final int unitCount = units.length;
+    dependenceStart = new int[unitCount + 1];
+    dataDependenceCount = new int[unitCount];
+    int[] targets = new int[unitCount * 2 + 1];
+    int size = 0;
+    // the last unit that recorded each dependence, to skip duplicates
+    int[] lastDependent = new int[unitCount];
+    Arrays.fill(lastDependent, -1);
+
+    for (int i = 0; i < unitCount; i++) {
+      Unit u = units[i];
+      dependenceStart[i] = size;
+
+      for (ValueBox box : u.getUseBoxes()) {
+        Value v = box.getValue();
+        if (!(v instanceof Local)) {
+          continue;
+        }
+        for (Unit def : localDefs.getDefsOfAt((Local) v, u)) {
+          Integer d = unitToNumber.get(def);
+          if (d == null || lastDependent[d] == i) {
+            continue;
+          }
+          lastDependent[d] = i;
+          if (size == targets.length) {
+            targets = Arrays.copyOf(targets, size * 2);
+          }
+          targets[size++] = d;
+        }
+      }
+      dataDependenceCount[i] = size - dependenceStart[i];
+
+      int b = unitToBlock[i];
+      if (b < 0) {
+        continue;
+      }
+      for (int k = controlStart[b]; k < controlStart[b + 1]; k++) {
+        int branch = unitToNumber.get(blocks[controlTargets[k]].getTail());
+        if (lastDependent[branch] == i) {
+          continue;
+        }
+        lastDependent[branch] = i;
+        if (size == targets.length) {
+          targets = Arrays.copyOf(targets, size * 2);
+        }
+        targets[size++] = branch;
+      }
+    }
+    dependenceStart[unitCount] = size;
+    dependenceTargets = Arrays.copyOf(targets, size);
+  }
+
+  public BlockGraph getBlockGraph() {
+    return blockGraph;
+  }
+
+  public Body getBody() {
+    return blockGraph.getBody();
+  }
+
+  /**
+   * @return the number of units in this graph
+   */
+  public int size() {
+    return units.length;
+  }
+
+  /**
+   * @return the unit with the given number
+   */
+  public Unit getUnit(int number) {
+    return units[number];
+  }
+
+  /**
+   * @return the number of the given unit, or -1 if the unit is not in this graph
+   */
+  public int getNumber(Unit u) {
+    Integer n = unitToNumber.get(u);
+    return n == null ? -1 : n;
+  }
+
+  /**
+   * @return the immediate post-dominator of the given block, or null if it has none
+   */
+  public Block getImmediatePostDominator(Block b) {
+    int d = ipdom[b.getIndexInMethod()];
+    return d < 0 ? null : blocks[d];
+  }
+
+  /**
+   * @return the blocks the given block is control-dependent on
+   */
+  public List<Block> getControlDependences(Block b) {
+    int i = b.getIndexInMethod();
+    List<Block> ret = new ArrayList<Block>(controlStart[i + 1] - controlStart[i]);
+    for (int k = controlStart[i]; k < controlStart[i + 1]; k++) {
+      ret.add(blocks[controlTargets[k]]);
+    }
+    return ret;
+  }
+
+  /**
+   * @return the branching units the given unit is control-dependent on
+   */
+  public List<Unit> getControlDependences(Unit u) {
+    int i = getNumber(u);
+    if (i < 0) {
+      return Collections.emptyList();
+    }
+    return toUnits(dependenceStart[i] + dataDependenceCount[i], dependenceStart[i + 1]);
+  }
+
+  /**
+   * @return the definitions of the locals used by the given unit
+   */
+  public List<Unit> getDataDependences(Unit u) {
+    int i = getNumber(u);
+    if (i < 0) {
+      return Collections.emptyList();
+    }
+    return toUnits(dependenceStart[i], dependenceStart[i] + dataDependenceCount[i]);
+  }
+
+  /**
+   * @return the numbers of the units the unit with the given number depends on, through data or control
+   */
+  public int[] getDependences(int number) {
+    return Arrays.copyOfRange(dependenceTargets, dependenceStart[number], dependenceStart[number + 1]);
+  }
+
+  /**
+   * @return the numbers of the branching units the unit with the given number is control-dependent on
+   */
+  public int[] getControlDependences(int number) {
+    return Arrays.copyOfRange(dependenceTargets, dependenceStart[number] + dataDependenceCount[number],
+        dependenceStart[number + 1]);
+  }
+
+  private List<Unit> toUnits(int from, int to) {
+    List<Unit> ret = new ArrayList<Unit>(to - from);
+    for (int k = from; k < to; k++) {
+      ret.add(units[dependenceTargets[k]]);
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < units.length; i++) {
+      sb.append(i).append(": ").append(units[i]).append(" <- ");
+      for (int k = dependenceStart[i]; k < dependenceStart[i + 1]; k++) {
+        if (k > dependenceStart[i]) {
+          sb.append(", ");
+        }
+        sb.append(k < dependenceStart[i] + dataDependenceCount[i] ? "d" : "c").append(dependenceTargets[k]);
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+}
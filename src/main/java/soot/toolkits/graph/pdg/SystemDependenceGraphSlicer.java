@@ -0,0 +1,514 @@
+package soot.toolkits.graph.pdg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Local;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.IdentityStmt;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.ParameterRef;
+import soot.jimple.ReturnStmt;
+import soot.jimple.Stmt;
+import soot.jimple.ThisRef;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.graph.ExceptionalBlockGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Computes backward slices over a system dependence graph made of the {@link CompactProgramDependenceGraph}s of the
+ * methods, connected through the call graph.
+ *
+ * <p>
+ * Slices are computed in the two phases of Horwitz, Reps and Binkley: the first phase ascends from formal parameters to the
+ * actual arguments at all call sites without descending into callees, the second phase descends from returned values into
+ * the callees without ascending again. Across a call, summaries record which parameters of a method, including the
+ * receiver, the returned value depends on. They are computed once per method and reused by all later slices.
+ * </p>
+ *
+ * <p>
+ * Many criteria are sliced in one traversal: each node is labelled with the set of criteria whose slice contains it, and a
+ * node is only visited again for the criteria that newly reach it. The dependence graphs, local definitions and summaries
+ * are kept between calls to {@link #slice(List)}.
+ * </p>
+ *
+ * <p>
+ * Only dependences through locals, parameters and returned values are tracked, not those through fields, arrays or
+ * exceptions. A call without explicit call graph edges depends on all the locals it uses.
+ * </p>
+ */
+public class SystemDependenceGraphSlicer {
+  // The phases of the slicing, see the class comment
+  private static final int ASCEND = 0;
+  private static final int DESCEND = 1;
+
+  protected final CallGraph callGraph;
+  protected final Map<SootMethod, MethodData> methodToData = new HashMap<SootMethod, MethodData>();
+
+  public SystemDependenceGraphSlicer(CallGraph callGraph) {
+    this.callGraph = callGraph;
+  }
+
+  /**
+   * The dependence information of a method. Node {@code i} with {@code i < size} is the unit numbered {@code i} in the
+   * PDG; for a call, node {@code size + i} is the call itself, on which its actual arguments are passed, while node
+   * {@code i} stands for the value it returns.
+   */
+  protected static class MethodData {
+    final SootMethod method;
+    final CompactProgramDependenceGraph pdg;
+    final LocalDefs localDefs;
+    final int size;
+    final int[] returns;
+
+    /** The parameters the returned value depends on; bit 0 is the receiver, bit i+1 the i-th parameter. */
+    BitSet summary;
+    /** The dependences of each node once the summaries of all callees are known. */
+    int[][] dependences;
+
+    MethodData(SootMethod method) {
+      this.method = method;
+      ExceptionalUnitGraph unitGraph = new ExceptionalUnitGraph(method.retrieveActiveBody());
+      this.localDefs = LocalDefs.Factory.newLocalDefs(unitGraph);
+      this.pdg = new CompactProgramDependenceGraph(new ExceptionalBlockGraph(unitGraph), localDefs);
+      this.size = pdg.size();
+
+      int count = 0;
+      int[] rets = new int[size];
+      for (int i = 0; i < size; i++) {
+        if (pdg.getUnit(i) instanceof ReturnStmt) {
+          rets[count++] = i;
+        }
+      }
+      this.returns = Arrays.copyOf(rets, count);
+    }
+  }
+
+  /**
+   * The labels of the nodes of one method during a batch of slices.
+   */
+  protected static class SliceState {
+    final MethodData data;
+    final BitSet[][] labels;
+    final BitSet[][] pending;
+
+    SliceState(MethodData data) {
+      this.data = data;
+      this.labels = new BitSet[2][2 * data.size];
+      this.pending = new BitSet[2][2 * data.size];
+    }
+  }
+
+  private static class Task {
+    final SliceState state;
+    final int node;
+    final int phase;
+
+    Task(SliceState state, int node, int phase) {
+      this.state = state;
+      this.node = node;
+      this.phase = phase;
+    }
+  }
+
+  /**
+   * @return the dependence graph of the given method, or null if the method has no body
+   */
+  public CompactProgramDependenceGraph getPDG(SootMethod m) {
+    MethodData md = getMethodData(m);
+    return md == null ? null : md.pdg;
+  }
+
+  protected MethodData getMethodData(SootMethod m) {
+    if (methodToData.containsKey(m)) {
+      return methodToData.get(m);
+    }
+    MethodData md = m.isConcrete() ? new MethodData(m) : null;
+    methodToData.put(m, md);
+    return md;
+  }
+
+  /**
+   * Computes the backward slice of a single unit.
+   *
+   * @return the units in the slice, by method
+   */
+  public Map<SootMethod, Set<Unit>> slice(SootMethod m, Unit u) {
+    return slice(Collections.singletonList(new Pair<SootMethod, Unit>(m, u))).get(0);
+  }
+
+  /**
+   * Computes the backward slices of the given units, each paired with its method, in one traversal.
+   *
+   * @return the units in the slice of each criterion by method, in the order of the criteria
+   * @throws IllegalArgumentException
+   *           if a unit is not in the body of the method it is paired with
+   */
+  public List<Map<SootMethod, Set<Unit>>> slice(List<Pair<SootMethod, Unit>> criteria) {
+    Map<MethodData, SliceState> states = new HashMap<MethodData, SliceState>();
+    ArrayDeque<Task> worklist = new ArrayDeque<Task>();
+
+    for (int k = 0; k < criteria.size(); k++) {
+      Pair<SootMethod, Unit> criterion = criteria.get(k);
+      MethodData md = getMethodData(criterion.getO1());
+      int x = md == null ? -1 : md.pdg.getNumber(criterion.getO2());
+      if (x < 0) {
+        throw new IllegalArgumentException("Unit " + criterion.getO2() + " is not in the body of " + criterion.getO1());
+      }
+
+      // the criterion itself depends on all the locals it uses
+      SliceState s = getState(states, md);
+      BitSet bits = new BitSet();
+      bits.set(k);
+      addLabels(worklist, s, x, ASCEND, bits);
+      for (int d : md.pdg.getDependences(x)) {
+        addLabels(worklist, s, d, ASCEND, bits);
+      }
+    }
+
+    while (!worklist.isEmpty()) {
+      process(worklist, states, worklist.poll());
+    }
+
+    List<Map<SootMethod, Set<Unit>>> ret = new ArrayList<Map<SootMethod, Set<Unit>>>(criteria.size());
+    for (int k = 0; k < criteria.size(); k++) {
+      ret.add(new HashMap<SootMethod, Set<Unit>>());
+    }
+    for (SliceState s : states.values()) {
+      MethodData md = s.data;
+      BitSet[] labels = s.labels[DESCEND];
+      for (int x = 0; x < labels.length; x++) {
+        if (labels[x] == null) {
+          continue;
+        }
+        Unit u = md.pdg.getUnit(x < md.size ? x : x - md.size);
+        for (int k = labels[x].nextSetBit(0); k >= 0; k = labels[x].nextSetBit(k + 1)) {
+          Set<Unit> units = ret.get(k).get(md.method);
+          if (units == null) {
+            units = new HashSet<Unit>();
+            ret.get(k).put(md.method, units);
+          }
+          units.add(u);
+        }
+      }
+    }
+    return ret;
+  }
+
+  private SliceState getState(Map<MethodData, SliceState> states, MethodData md) {
+    SliceState s = states.get(md);
+    if (s == null) {
+      s = new SliceState(md);
+      states.put(md, s);
+    }
+    return s;
+  }
+
+  /**
+   * Adds the given criteria to the labels of a node, and schedules the node for the ones it did not have yet. Nodes
+   * reached in the first phase are also reached in the second.
+   */
+  private void addLabels(ArrayDeque<Task> worklist, SliceState s, int node, int phase, BitSet bits) {
+    BitSet label = s.labels[phase][node];
+    if (label == null) {
+      label = new BitSet();
+      s.labels[phase][node] = label;
+    }
+    BitSet delta = (BitSet) bits.clone();
+    delta.andNot(label);
+    if (delta.isEmpty()) {
+      return;
+    }
+    label.or(delta);
+
+    BitSet pending = s.pending[phase][node];
+    if (pending == null) {
+      s.pending[phase][node] = delta;
+      worklist.add(new Task(s, node, phase));
+    } else {
+      pending.or(delta);
+    }
+
+    if (phase == ASCEND) {
+      addLabels(worklist, s, node, DESCEND, delta);
+    }
+  }
+
+  private void process(ArrayDeque<Task> worklist, Map<MethodData, SliceState> states, Task t) {
+    SliceState s = t.state;
+    MethodData md = s.data;
+    int x = t.node;
+    BitSet delta = s.pending[t.phase][x];
+    s.pending[t.phase][x] = null;
+
+    for (int d : getDependences(md, x)) {
+      addLabels(worklist, s, d, t.phase, delta);
+    }
+    if (x >= md.size) {
+      return;
+    }
+
+    Unit u = md.pdg.getUnit(x);
+    if (t.phase == ASCEND) {
+      // ascend from a formal parameter to the actual arguments at the call sites
+      if (!(u instanceof IdentityStmt)) {
+        return;
+      }
+      Value rhs = ((IdentityStmt) u).getRightOp();
+      if (!(rhs instanceof ParameterRef) && !(rhs instanceof ThisRef)) {
+        return;
+      }
+      for (Iterator<Edge> it = callGraph.edgesInto(md.method); it.hasNext();) {
+        Edge e = it.next();
+        if (!e.isExplicit()) {
+          continue;
+        }
+        MethodData caller = getMethodData(e.src());
+        int cx = caller == null ? -1 : caller.pdg.getNumber(e.srcUnit());
+        if (cx < 0) {
+          continue;
+        }
+        SliceState cs = getState(states, caller);
+        addLabels(worklist, cs, caller.size + cx, ASCEND, delta);
+
+        InvokeExpr ie = e.srcStmt().getInvokeExpr();
+        Value arg = null;
+        if (rhs instanceof ThisRef) {
+          if (ie instanceof InstanceInvokeExpr) {
+            arg = ((InstanceInvokeExpr) ie).getBase();
+          }
+        } else if (((ParameterRef) rhs).getIndex() < ie.getArgCount()) {
+          arg = ie.getArg(((ParameterRef) rhs).getIndex());
+        }
+        if (arg instanceof Local) {
+          for (Unit def : caller.localDefs.getDefsOfAt((Local) arg, e.srcUnit())) {
+            addLabels(worklist, cs, caller.pdg.getNumber(def), ASCEND, delta);
+          }
+        }
+      }
+    } else if (u instanceof AssignStmt && ((Stmt) u).containsInvokeExpr()) {
+      // descend from the returned value into the callees
+      for (Iterator<Edge> it = callGraph.edgesOutOf(u); it.hasNext();) {
+        Edge e = it.next();
+        if (!e.isExplicit()) {
+          continue;
+        }
+        MethodData callee = getMethodData(e.tgt());
+        if (callee == null) {
+          continue;
+        }
+        SliceState cs = getState(states, callee);
+        for (int r : callee.returns) {
+          addLabels(worklist, cs, r, DESCEND, delta);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the dependences of a node within its method, computing the summaries of all methods it may transitively call
+   * first.
+   */
+  private int[] getDependences(MethodData md, int node) {
+    if (md.summary == null) {
+      computeSummaries(md);
+    }
+    if (md.dependences == null) {
+      md.dependences = new int[2 * md.size][];
+    }
+    int[] ret = md.dependences[node];
+    if (ret == null) {
+      ret = computeDependences(md, node);
+      md.dependences[node] = ret;
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the dependences of a node within its method, based on the current summaries of the callees.
+   */
+  private int[] computeDependences(MethodData md, int node) {
+    int x = node < md.size ? node : node - md.size;
+    Stmt s = (Stmt) md.pdg.getUnit(x);
+    List<Edge> callees = s.containsInvokeExpr() ? getExplicitEdgesOutOf(s) : Collections.<Edge>emptyList();
+    if (callees.isEmpty()) {
+      return node < md.size ? md.pdg.getDependences(x) : new int[0];
+    }
+
+    InvokeExpr ie = s.getInvokeExpr();
+    Set<Local> used = new LinkedHashSet<Local>();
+    List<Integer> ret = new ArrayList<Integer>();
+    if (node >= md.size) {
+      // the call depends on its receiver, which selects the callee, and on the branches that reach it
+      for (int d : md.pdg.getControlDependences(x)) {
+        ret.add(d);
+      }
+      if (ie instanceof InstanceInvokeExpr) {
+        used.add((Local) ((InstanceInvokeExpr) ie).getBase());
+      }
+    } else {
+      // the returned value depends on the call and on the arguments the callees return a value from
+      ret.add(md.size + x);
+      Set<ValueBox> invokeBoxes = new HashSet<ValueBox>(ie.getUseBoxes());
+      for (ValueBox box : s.getUseBoxes()) {
+        if (box.getValue() instanceof Local && !invokeBoxes.contains(box)) {
+          used.add((Local) box.getValue());
+        }
+      }
+      BitSet params = new BitSet();
+      for (Edge e : callees) {
+        MethodData callee = getMethodData(e.tgt());
+        if (callee == null || callee.summary == null) {
+          params.set(1, ie.getArgCount() + 1);
+        } else {
+          params.or(callee.summary);
+        }
+      }
+      for (int i = 0; i < ie.getArgCount(); i++) {
+        if (params.get(i + 1) && ie.getArg(i) instanceof Local) {
+          used.add((Local) ie.getArg(i));
+        }
+      }
+    }
+
+    for (Local l : used) {
+      for (Unit def : md.localDefs.getDefsOfAt(l, s)) {
+        ret.add(md.pdg.getNumber(def));
+      }
+    }
+    int[] deps = new int[ret.size()];
+    for (int i = 0; i < deps.length; i++) {
+      deps[i] = ret.get(i);
+    }
+    return deps;
+  }
+
+  private List<Edge> getExplicitEdgesOutOf(Unit u) {
+    List<Edge> ret = new ArrayList<Edge>();
+    for (Iterator<Edge> it = callGraph.edgesOutOf(u); it.hasNext();) {
+      Edge e = it.next();
+      if (e.isExplicit()) {
+        ret.add(e);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Computes the summaries of the given method and of all methods it may transitively call that have no summary yet, as a
+   * fixed point over the call graph.
+   */
+  private void computeSummaries(MethodData root) {
+    Set<MethodData> scope = new LinkedHashSet<MethodData>();
+    ArrayDeque<MethodData> stack = new ArrayDeque<MethodData>();
+    scope.add(root);
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      MethodData md = stack.pop();
+      for (int i = 0; i < md.size; i++) {
+        Stmt s = (Stmt) md.pdg.getUnit(i);
+        if (!s.containsInvokeExpr()) {
+          continue;
+        }
+        for (Edge e : getExplicitEdgesOutOf(s)) {
+          MethodData callee = getMethodData(e.tgt());
+          if (callee != null && callee.summary == null && scope.add(callee)) {
+            stack.push(callee);
+          }
+        }
+      }
+    }
+
+    for (MethodData md : scope) {
+      md.summary = new BitSet();
+    }
+    ArrayDeque<MethodData> worklist = new ArrayDeque<MethodData>(scope);
+    Set<MethodData> inWorklist = new HashSet<MethodData>(scope);
+    while (!worklist.isEmpty()) {
+      MethodData md = worklist.poll();
+      inWorklist.remove(md);
+      BitSet summary = computeSummary(md);
+      if (summary.equals(md.summary)) {
+        continue;
+      }
+      md.summary = summary;
+      for (Iterator<Edge> it = callGraph.edgesInto(md.method); it.hasNext();) {
+        MethodData caller = methodToData.get(it.next().src());
+        if (caller != null && scope.contains(caller) && inWorklist.add(caller)) {
+          worklist.add(caller);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the parameters the values returned by the given method depend on, using the current summaries of its callees.
+   */
+  private BitSet computeSummary(MethodData md) {
+    BitSet summary = new BitSet();
+    BitSet visited = new BitSet(2 * md.size);
+    ArrayDeque<Integer> stack = new ArrayDeque<Integer>();
+    for (int r : md.returns) {
+      visited.set(r);
+      stack.push(r);
+    }
+    while (!stack.isEmpty()) {
+      int x = stack.pop();
+      if (x < md.size && md.pdg.getUnit(x) instanceof IdentityStmt) {
+        Value rhs = ((IdentityStmt) md.pdg.getUnit(x)).getRightOp();
+        if (rhs instanceof ThisRef) {
+          summary.set(0);
+        } else if (rhs instanceof ParameterRef) {
+          summary.set(((ParameterRef) rhs).getIndex() + 1);
+        }
+      }
+      for (int d : computeDependences(md, x)) {
+        if (!visited.get(d)) {
+          visited.set(d);
+          stack.push(d);
+        }
+      }
+    }
+    return summary;
+  }
+}
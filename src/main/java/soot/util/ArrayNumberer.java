@@ -29,13 +29,19 @@ import java.util.NoSuchElementException;
 /**
  * A class that numbers objects, so they can be placed in bitsets.
  *
+ * <p>
+ * Lookups by number and iteration do not lock. Adding an object locks the numberer, stores the object and then publishes
+ * the array through a volatile write, so a lookup always sees a fully initialized array. The array is only replaced by a
+ * larger copy, never changed at an index that is already in use.
+ * </p>
+ *
  * @author Ondrej Lhotak
  * @author xiao, generalize it.
  */
 
 public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E> {
-  protected E[] numberToObj;
-  protected int lastNumber;
+  protected volatile E[] numberToObj;
+  protected volatile int lastNumber;
 
   @SuppressWarnings("unchecked")
   public ArrayNumberer() {
@@ -52,17 +58,27 @@ public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E>
     numberToObj = Arrays.copyOf(numberToObj, n);
   }
 
-  public synchronized void add(E o) {
+  public void add(E o) {
     if (o.getNumber() != 0) {
       return;
     }
 
-    ++lastNumber;
-    if (lastNumber >= numberToObj.length) {
-      resize(numberToObj.length * 2);
+    synchronized (this) {
+      // Another thread may have numbered the same object in the meantime
+      if (o.getNumber() != 0) {
+        return;
+      }
+      int number = lastNumber + 1;
+      if (number >= numberToObj.length) {
+        resize(Math.max(numberToObj.length * 2, number + 1));
+      }
+      E[] objs = numberToObj;
+      objs[number] = o;
+      // Publish the stored object through the volatile field
+      numberToObj = objs;
+      lastNumber = number;
+      o.setNumber(number);
     }
-    numberToObj[lastNumber] = o;
-    o.setNumber(lastNumber);
   }
 
   public long get(E o) {
@@ -80,7 +96,8 @@ public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E>
     if (number == 0) {
       return null;
     }
-    E ret = numberToObj[(int) number];
+    E[] objs = numberToObj;
+    E ret = number < objs.length ? objs[(int) number] : null;
     if (ret == null) {
       throw new RuntimeException("no object with number " + number);
     }
@@ -96,7 +113,8 @@ public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E>
       int cur = 1;
 
       public final boolean hasNext() {
-        return cur <= lastNumber && cur < numberToObj.length && numberToObj[cur] != null;
+        E[] objs = numberToObj;
+        return cur <= lastNumber && cur < objs.length && objs[cur] != null;
       }
 
       public final E next() {
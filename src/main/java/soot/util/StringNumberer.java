@@ -24,25 +24,34 @@ package soot.util;
 
 import heros.ThreadSafe;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A class that numbers strings, so they can be placed in bitsets.
  *
+ * <p>
+ * Lookups of strings that have already been numbered do not lock. Only the first lookup of a new string locks the bin of
+ * the hash map that holds it, so concurrent lookups of different strings rarely contend.
+ * </p>
+ *
  * @author Ondrej Lhotak
  */
 
 @ThreadSafe
 public class StringNumberer extends ArrayNumberer<NumberedString> {
-  private Map<String, NumberedString> stringToNumbered = new HashMap<String, NumberedString>(1024);
+  private final ConcurrentMap<String, NumberedString> stringToNumbered = new ConcurrentHashMap<String, NumberedString>(1024);
 
-  public synchronized NumberedString findOrAdd(String s) {
+  public NumberedString findOrAdd(String s) {
     NumberedString ret = stringToNumbered.get(s);
     if (ret == null) {
-      ret = new NumberedString(s);
-      stringToNumbered.put(s, ret);
-      add(ret);
+      // The string must be numbered before any other thread can see it,
+      // since the hash code of a NumberedString depends on its number
+      ret = stringToNumbered.computeIfAbsent(s, k -> {
+        NumberedString ns = new NumberedString(k);
+        add(ns);
+        return ns;
+      });
     }
     return ret;
   }
@@ -0,0 +1,199 @@
+package soot.validation;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import soot.Body;
+import soot.ValueBox;
+import soot.options.Options;
+import soot.toolkits.exceptions.PedanticThrowAnalysis;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+
+/**
+ * Data about a body that is shared by all validators that run on it, such that the value boxes, the control flow graphs and
+ * the local definitions are only computed once per validation of the body.
+ *
+ * <p>
+ * {@link Body#validate(List)} opens a context for the body before running the validators and closes it afterwards. A
+ * validator gets the context of the body it validates with {@link #of(Body)}. If the validator is run on its own, this is a
+ * fresh context that is only used by this validator. Contexts are confined to the validating thread, so independent bodies
+ * can be validated concurrently.
+ * </p>
+ *
+ * <p>
+ * If the validate option is set, all validators are run on the bodies selected by the validate-sample option, and only the
+ * basic validators on the others. A body is selected based on the signature of its method, so the same bodies are fully
+ * validated after every phase and in every run.
+ * </p>
+ */
+public final class BodyValidationContext {
+
+  private static final ThreadLocal<BodyValidationContext> current = new ThreadLocal<BodyValidationContext>();
+
+  private final Body body;
+  private final BodyValidationContext outer;
+
+  /** the number of times this context has been reopened for the same body */
+  private int reopened = 0;
+
+  private List<ValueBox> useBoxes;
+  private List<ValueBox> defBoxes;
+  private List<ValueBox> useAndDefBoxes;
+  private UnitGraph pedanticGraph;
+  private UnitGraph briefGraph;
+  private LocalDefs localDefs;
+
+  private BodyValidationContext(Body body, BodyValidationContext outer) {
+    this.body = body;
+    this.outer = outer;
+  }
+
+  /**
+   * Opens a context for validating the given body on the current thread. If the body is already being validated on this
+   * thread, the enclosing context is returned. Every call must be matched by a call to {@link #close()}.
+   */
+  public static BodyValidationContext open(Body body) {
+    BodyValidationContext outer = current.get();
+    if (outer != null && outer.body == body) {
+      outer.reopened++;
+      return outer;
+    }
+    BodyValidationContext context = new BodyValidationContext(body, outer);
+    current.set(context);
+    return context;
+  }
+
+  /**
+   * Closes this context, or hands it back to the enclosing validation of the same body.
+   */
+  public void close() {
+    if (current.get() != this) {
+      throw new IllegalStateException("Validation contexts must be closed in reverse order of opening");
+    }
+    if (reopened > 0) {
+      reopened--;
+    } else if (outer == null) {
+      current.remove();
+    } else {
+      current.set(outer);
+    }
+  }
+
+  /**
+   * Returns the open context of the given body on the current thread, or a new context if the body is not being validated.
+   */
+  public static BodyValidationContext of(Body body) {
+    BodyValidationContext context = current.get();
+    if (context != null && context.body == body) {
+      return context;
+    }
+    return new BodyValidationContext(body, null);
+  }
+
+  /**
+   * Checks whether all validators, and not only the basic ones, should be run on the body of this context.
+   */
+  public boolean runAllValidators() {
+    final Options opts = Options.v();
+    if (opts.debug()) {
+      return true;
+    }
+    if (!opts.validate()) {
+      return false;
+    }
+    final int percent = opts.validate_sample();
+    if (percent < 0 || percent >= 100 || body.getMethod() == null) {
+      return true;
+    }
+    // Spread the signature hash codes, similar signatures often only differ
+    // in their last characters
+    int h = body.getMethod().getSignature().hashCode() * 0x9E3779B9;
+    return Math.floorMod(h ^ (h >>> 16), 100) < percent;
+  }
+
+  public Body getBody() {
+    return body;
+  }
+
+  public List<ValueBox> getUseBoxes() {
+    if (useBoxes == null) {
+      useBoxes = body.getUseBoxes();
+    }
+    return useBoxes;
+  }
+
+  public List<ValueBox> getDefBoxes() {
+    if (defBoxes == null) {
+      defBoxes = body.getDefBoxes();
+    }
+    return defBoxes;
+  }
+
+  public List<ValueBox> getUseAndDefBoxes() {
+    if (useAndDefBoxes == null) {
+      List<ValueBox> uses = getUseBoxes();
+      List<ValueBox> defs = getDefBoxes();
+      useAndDefBoxes = new ArrayList<ValueBox>(uses.size() + defs.size());
+      useAndDefBoxes.addAll(uses);
+      useAndDefBoxes.addAll(defs);
+    }
+    return useAndDefBoxes;
+  }
+
+  /**
+   * Returns an exceptional unit graph of the body that has edges to all exception handlers, even unreachable ones.
+   *
+   * @see PedanticThrowAnalysis
+   */
+  public UnitGraph getPedanticGraph() {
+    if (pedanticGraph == null) {
+      pedanticGraph = new ExceptionalUnitGraph(body, PedanticThrowAnalysis.v(), false);
+    }
+    return pedanticGraph;
+  }
+
+  /**
+   * Returns a unit graph of the body without exceptional edges.
+   */
+  public UnitGraph getBriefGraph() {
+    if (briefGraph == null) {
+      briefGraph = new BriefUnitGraph(body);
+    }
+    return briefGraph;
+  }
+
+  /**
+   * Returns the local definitions of the body on the {@link #getPedanticGraph() pedantic graph}.
+   */
+  public LocalDefs getLocalDefs() {
+    if (localDefs == null) {
+      localDefs = LocalDefs.Factory.newLocalDefs(getPedanticGraph(), true);
+    }
+    return localDefs;
+  }
+}
@@ -39,10 +39,7 @@ public enum LocalsValidator implements BodyValidator {
   @Override
   /** Verifies that each Local of getUseAndDefBoxes() is in this body's locals Chain. */
   public void validate(Body body, List<ValidationException> exception) {
-    for (ValueBox vb : body.getUseBoxes()) {
-      validateLocal(body, vb, exception);
-    }
-    for (ValueBox vb : body.getDefBoxes()) {
+    for (ValueBox vb : BodyValidationContext.of(body).getUseAndDefBoxes()) {
       validateLocal(body, vb, exception);
     }
   }
@@ -30,9 +30,6 @@ import soot.Local;
 import soot.Unit;
 import soot.Value;
 import soot.ValueBox;
-import soot.toolkits.exceptions.PedanticThrowAnalysis;
-import soot.toolkits.exceptions.ThrowAnalysis;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.LocalDefs;
 
@@ -73,9 +70,9 @@ public enum UsesValidator implements BodyValidator {
     // Note that unreachable traps can be removed by setting jb.uce's
     // "remove-unreachable-traps" option to true.
 
-    ThrowAnalysis throwAnalysis = PedanticThrowAnalysis.v();
-    UnitGraph g = new ExceptionalUnitGraph(body, throwAnalysis, false);
-    LocalDefs ld = LocalDefs.Factory.newLocalDefs(g, true);
+    BodyValidationContext context = BodyValidationContext.of(body);
+    UnitGraph g = context.getPedanticGraph();
+    LocalDefs ld = context.getLocalDefs();
 
     Collection<Local> locals = body.getLocals();
     for (Unit u : body.getUnits()) {
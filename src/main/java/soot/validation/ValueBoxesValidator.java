@@ -44,7 +44,7 @@ public enum ValueBoxesValidator implements BodyValidator {
   public void validate(Body body, List<ValidationException> exception) {
     Set<ValueBox> set = newSetFromMap(new IdentityHashMap<ValueBox, Boolean>());
 
-    for (ValueBox vb : body.getUseAndDefBoxes()) {
+    for (ValueBox vb : BodyValidationContext.of(body).getUseAndDefBoxes()) {
       if (set.add(vb)) {
         continue;
       }
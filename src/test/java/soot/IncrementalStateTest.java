@@ -0,0 +1,143 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soot.options.Options;
+
+/**
+ * Runs Soot twice on a small Jimple program and checks which classes the incremental state reports as affected in the
+ * second run
+ */
+public class IncrementalStateTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File input;
+  private File stateFile;
+
+  @Before
+  public void setUp() throws IOException {
+    input = tmp.newFolder("input");
+    stateFile = new File(tmp.getRoot(), "state");
+    // Base <- Derived, Other is independent of both
+    writeClass("Base", "java.lang.Object", "");
+    writeClass("Derived", "Base", "");
+    writeClass("Other", "java.lang.Object", "");
+  }
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  @Test
+  public void unchangedClassesAreNotAffected() throws IOException {
+    run();
+    assertTrue(stateFile.exists());
+    run();
+    assertAffected(false, "Base", "Derived", "Other");
+  }
+
+  @Test
+  public void changedClassAndItsDependentsAreAffected() throws IOException {
+    run();
+    writeClass("Base", "java.lang.Object", "    public static void added()\n    {\n        return;\n    }\n");
+    run();
+    assertAffected(true, "Base", "Derived");
+    assertAffected(false, "Other");
+  }
+
+  @Test
+  public void changedLeafClassIsTheOnlyAffectedOne() throws IOException {
+    run();
+    writeClass("Derived", "Base", "    public static void added()\n    {\n        return;\n    }\n");
+    run();
+    assertAffected(true, "Derived");
+    assertAffected(false, "Base", "Other");
+  }
+
+  @Test
+  public void stateOfUnsupportedFormatIsIgnored() throws IOException {
+    Files.write(stateFile.toPath(), Collections.singletonList("# soot incremental state"), StandardCharsets.UTF_8);
+    run();
+    assertAffected(true, "Base", "Derived", "Other");
+    List<String> lines = Files.readAllLines(stateFile.toPath(), StandardCharsets.UTF_8);
+    assertEquals("# soot incremental state v2", lines.get(0));
+  }
+
+  @Test
+  public void stateIsNotSavedWithoutRunningThePacks() {
+    setupSoot();
+    Scene.v().loadNecessaryClasses();
+    IncrementalState.v().computeAffectedClasses();
+    IncrementalState.v().save();
+    assertFalse(stateFile.exists());
+  }
+
+  private void writeClass(String name, String superclass, String members) throws IOException {
+    String jimple = "public class " + name + " extends " + superclass + "\n{\n" + members + "}\n";
+    Files.write(new File(input, name + ".jimple").toPath(), jimple.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void setupSoot() {
+    G.reset();
+    Options.v().set_src_prec(Options.src_prec_jimple);
+    Options.v().set_process_dir(Collections.singletonList(input.getAbsolutePath()));
+    Options.v().set_soot_classpath(input.getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_incremental_state(stateFile.getAbsolutePath());
+  }
+
+  private void run() {
+    setupSoot();
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().runPacks();
+    PackManager.v().writeOutput();
+  }
+
+  private static void assertAffected(boolean expected, String... classNames) {
+    for (String name : classNames) {
+      assertEquals(name, expected, IncrementalState.v().isAffected(Scene.v().getSootClass(name)));
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soot.options.Options;
+
+/**
+ * Writes class files into a jar, with the concurrent class file generation and with a single writer, and checks that both
+ * jars are equal and that a failing generator is reported
+ */
+public class JarOutputTest {
+
+  // More classes than the generators may have waiting for the writer on typical machines
+  private static final int CLASS_COUNT = 100;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File input;
+
+  @Before
+  public void setUp() throws IOException {
+    input = tmp.newFolder("input");
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      String jimple = "public class C" + i + " extends java.lang.Object\n{\n" + "    public static int f(int)\n    {\n"
+          + "        int i0;\n\n        i0 := @parameter0: int;\n\n        i0 = i0 + " + i + ";\n\n"
+          + "        return i0;\n    }\n}\n";
+      Files.write(new File(input, "C" + i + ".jimple").toPath(), jimple.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    G.reset();
+  }
+
+  /**
+   * Sets up Soot to write the jar with the given name, loads the input classes and runs the packs
+   */
+  private File runPacks(String name) {
+    File jar = new File(tmp.getRoot(), name);
+    G.reset();
+    Options.v().set_src_prec(Options.src_prec_jimple);
+    Options.v().set_process_dir(Collections.singletonList(input.getAbsolutePath()));
+    Options.v().set_soot_classpath(input.getAbsolutePath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_class);
+    Options.v().set_output_jar(true);
+    Options.v().set_output_dir(jar.getAbsolutePath());
+    Scene.v().loadNecessaryClasses();
+    PackManager.v().runPacks();
+    return jar;
+  }
+
+  /**
+   * Reads the names and contents of all entries of the given jar, in order
+   */
+  private static List<Object[]> readJar(File jar) throws IOException {
+    List<Object[]> ret = new ArrayList<Object[]>();
+    try (JarInputStream in = new JarInputStream(Files.newInputStream(jar.toPath()))) {
+      for (JarEntry entry; (entry = in.getNextJarEntry()) != null;) {
+        ret.add(new Object[] { entry.getName(), readFully(in) });
+      }
+    }
+    return ret;
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    for (int n; (n = in.read(buf)) > 0;) {
+      out.write(buf, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void concurrentJarEqualsSingleWriterJar() throws IOException {
+    File concurrentJar = runPacks("concurrent.jar");
+    PackManager.v().writeOutput();
+    List<Object[]> concurrent = readJar(concurrentJar);
+
+    File sequentialJar = runPacks("sequential.jar");
+    // Overriding writeClass makes the jar output go through it, one class after another
+    new PackManager(null) {
+      @Override
+      protected void writeClass(SootClass c) {
+        super.writeClass(c);
+      }
+    }.writeOutput();
+    List<Object[]> sequential = readJar(sequentialJar);
+
+    assertEquals(CLASS_COUNT, concurrent.size());
+    assertEquals(sequential.size(), concurrent.size());
+    for (int i = 0; i < concurrent.size(); i++) {
+      assertEquals(sequential.get(i)[0], concurrent.get(i)[0]);
+      assertArrayEquals((String) concurrent.get(i)[0], (byte[]) sequential.get(i)[1], (byte[]) concurrent.get(i)[1]);
+    }
+  }
+
+  @Test
+  public void generatorFailureIsReported() {
+    final IllegalStateException failure = new IllegalStateException("cannot generate C7");
+    runPacks("failing.jar");
+    try {
+      new PackManager(null) {
+        @Override
+        protected byte[] generateClassFile(SootClass c) {
+          if (c.getName().equals("C7")) {
+            throw failure;
+          }
+          return super.generateClassFile(c);
+        }
+      }.writeOutput();
+      fail("The generator failure was not reported");
+    } catch (IllegalStateException e) {
+      assertSame(failure, e);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package soot.asm;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import soot.G;
+import soot.Printer;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+
+/**
+ * Converts the methods of several test classes in different orders and on different threads, and checks that the reused
+ * scratch buffers of {@link AsmMethodSource} do not change the Jimple that is emitted.
+ */
+public class AsmMethodSourceTest {
+
+  private static final String[] TARGET_CLASSES = { "soot.asm.backend.targets.Dups", "soot.asm.backend.targets.TryCatch",
+      "soot.asm.backend.targets.ControlStructures", "soot.asm.backend.targets.Stores",
+      "soot.asm.backend.targets.Returns", "soot.asm.backend.targets.Monitor", "soot.asm.backend.targets.Arrays",
+      "soot.asm.backend.targets.LogicalOperations", "soot.jbco.targets.Obfuscatable" };
+
+  /**
+   * @return the Jimple of each method of the target classes, keyed by method signature
+   */
+  private static Map<String, String> convert(boolean reverse) throws Exception {
+    G.reset();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+
+    List<SootMethod> methods = new ArrayList<SootMethod>();
+    for (String name : TARGET_CLASSES) {
+      methods.addAll(Scene.v().getSootClass(name).getMethods());
+    }
+    if (reverse) {
+      Collections.reverse(methods);
+    }
+
+    Map<String, String> jimple = new TreeMap<String, String>();
+    for (SootMethod m : methods) {
+      if (!m.isConcrete()) {
+        continue;
+      }
+      StringWriter out = new StringWriter();
+      PrintWriter writer = new PrintWriter(out);
+      Printer.v().printTo(m.retrieveActiveBody(), writer);
+      writer.flush();
+      jimple.put(m.getSignature(), out.toString());
+    }
+    return jimple;
+  }
+
+  @Test
+  public void reusedBuffersDoNotChangeJimple() throws Exception {
+    final Map<String, String> inOrder = convert(false);
+
+    // A new thread starts with fresh buffers, and the reversed order reuses them for other methods
+    final List<Map<String, String>> reversed = new ArrayList<Map<String, String>>();
+    final Exception[] failure = new Exception[1];
+    Thread t = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          reversed.add(convert(true));
+        } catch (Exception e) {
+          failure[0] = e;
+        }
+      }
+    });
+    t.start();
+    t.join();
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+
+    assertEquals(inOrder, reversed.get(0));
+
+    // The switches, traps and dups made it into the bodies
+    String get = inOrder.get("<soot.asm.backend.targets.ControlStructures: java.util.List get(int)>");
+    assertTrue(get, get.contains("tableswitch") && get.contains("lookupswitch"));
+    String doSth = inOrder.get("<soot.asm.backend.targets.TryCatch: int doSth(java.lang.Object)>");
+    assertTrue(doSth, doSth.contains("catch java.lang.NullPointerException"));
+    String dup = inOrder.get("<soot.asm.backend.targets.Dups: java.lang.Object dup()>");
+    assertTrue(dup, dup.contains("new java.lang.Object") && dup.contains("specialinvoke"));
+  }
+
+  @Test
+  public void smallBuffersAreRetained() {
+    AsmMethodSource.Scratch buf = AsmMethodSource.Scratch.acquire(100);
+    buf.release(100);
+    assertSame(buf, AsmMethodSource.Scratch.acquire(50));
+    buf.release(50);
+  }
+
+  @Test
+  public void oversizedBuffersAreDropped() {
+    int size = AsmMethodSource.Scratch.MAX_RETAINED_SIZE * 4;
+    AsmMethodSource.Scratch buf = AsmMethodSource.Scratch.acquire(size);
+    assertTrue(buf.units.length >= size);
+    buf.release(size);
+
+    AsmMethodSource.Scratch next = AsmMethodSource.Scratch.acquire(10);
+    assertNotSame(buf, next);
+    assertTrue(next.units.length <= AsmMethodSource.Scratch.MAX_RETAINED_SIZE);
+    next.release(10);
+  }
+}
@@ -0,0 +1,149 @@
+package soot.baf.toolkits.base;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.PhaseOptions;
+import soot.Printer;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.baf.Baf;
+import soot.baf.BafBody;
+import soot.options.Options;
+
+/**
+ * Runs the load/store optimizer on the Baf bodies of several test classes and checks that the fast mode gives the same code
+ * as the default mode, and that a method whose time budget is used up keeps valid, unoptimized code.
+ */
+public class LoadStoreOptimizerTest {
+
+  private static final String[] TARGET_CLASSES = { "soot.jbco.targets.Obfuscatable",
+      "soot.jbco.targets.Obfuscatable$Account", "soot.asm.backend.targets.ControlStructures",
+      "soot.asm.backend.targets.Stores", "soot.asm.backend.targets.Arrays", "soot.asm.backend.targets.LogicalOperations",
+      "soot.asm.backend.targets.Dups" };
+
+  private List<SootMethod> methods;
+
+  @Before
+  public void setUp() throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+
+    methods = new ArrayList<SootMethod>();
+    for (String name : TARGET_CLASSES) {
+      for (SootMethod m : Scene.v().getSootClass(name).getMethods()) {
+        if (m.isConcrete()) {
+          m.retrieveActiveBody();
+          methods.add(m);
+        }
+      }
+    }
+  }
+
+  private static Map<String, String> options(String... extra) {
+    Map<String, String> options = new HashMap<String, String>(PhaseOptions.v().getPhaseOptions("bb.lso"));
+    options.put("enabled", "true");
+    for (String option : extra) {
+      String[] kv = option.split(":");
+      options.put(kv[0], kv[1]);
+    }
+    return options;
+  }
+
+  private static String print(Body b) {
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    Printer.v().printTo(b, writer);
+    writer.flush();
+    return out.toString();
+  }
+
+  /**
+   * @return the Baf of each method after the load/store optimization, keyed by method signature
+   */
+  private Map<String, String> optimize(LoadStoreOptimizer optimizer, Map<String, String> options) {
+    Map<String, String> result = new HashMap<String, String>();
+    for (SootMethod m : methods) {
+      BafBody baf = Baf.v().newBody(m.getActiveBody());
+      optimizer.transform(baf, "bb.lso", options);
+      baf.validate();
+      result.put(m.getSignature(), print(baf));
+    }
+    return result;
+  }
+
+  @Test
+  public void fastModeGivesSameCode() {
+    assertEquals(optimize(LoadStoreOptimizer.v(), options()), optimize(LoadStoreOptimizer.v(), options("fast:true")));
+    assertEquals(optimize(LoadStoreOptimizer.v(), options("inter:true", "sl2:true", "sll2:true")),
+        optimize(LoadStoreOptimizer.v(), options("inter:true", "sl2:true", "sll2:true", "fast:true")));
+  }
+
+  @Test
+  public void exhaustedBudgetKeepsUnoptimizedCode() {
+    // A clock that advances by a second whenever it is read, so the budget is used up at the first check
+    LoadStoreOptimizer slow = new LoadStoreOptimizer(null) {
+      private long now = 0;
+
+      @Override
+      protected long nanoTime() {
+        now += 1000000000L;
+        return now;
+      }
+    };
+
+    Map<String, String> unoptimized = new HashMap<String, String>();
+    for (SootMethod m : methods) {
+      unoptimized.put(m.getSignature(), print(Baf.v().newBody(m.getActiveBody())));
+    }
+    Map<String, String> optimized = optimize(LoadStoreOptimizer.v(), options());
+    assertFalse(optimized.equals(unoptimized));
+
+    assertEquals(unoptimized, optimize(slow, options("time-budget:1")));
+    assertEquals(unoptimized, optimize(slow, options("time-budget:1", "fast:true")));
+  }
+}
@@ -0,0 +1,125 @@
+package soot.jbco.bafTransformations;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Stack;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.BodyTransformer;
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.baf.Baf;
+import soot.baf.BafBody;
+import soot.jbco.Main;
+import soot.jbco.jimpleTransformations.CollectJimpleLocals;
+import soot.jbco.util.Rand;
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+
+/**
+ * Applies the jbco Baf transformations one after the other in pipeline mode and checks after each of them that the stack
+ * heights shared between the transformations are the ones computed from scratch.
+ */
+public class StackTypeHeightCalculatorTest {
+
+  private static final String TARGET_CLASS = "soot.jbco.targets.Obfuscatable";
+  private static final String[] TARGET_CLASSES
+      = { TARGET_CLASS, TARGET_CLASS + "$Account", TARGET_CLASS + "$Savings" };
+
+  private boolean pipeline;
+
+  @Before
+  public void setUp() throws IOException {
+    G.reset();
+    pipeline = Main.jbcoPipeline;
+    Main.jbcoPipeline = true;
+    Main.methods2JLocals.clear();
+    Main.methods2Baf2JLocals.clear();
+    Rand.setSeed(1);
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+  }
+
+  @After
+  public void tearDown() {
+    Main.jbcoPipeline = pipeline;
+    Main.methods2JLocals.clear();
+    Main.methods2Baf2JLocals.clear();
+  }
+
+  @Test
+  public void cachedHeightsMatchCalculatedHeights() {
+    BodyTransformer[] transformers = { new MoveLoadsAboveIfs(), new IfNullToTryCatch(), new WrapSwitchesInTrys(),
+        new FindDuplicateSequences(), new TryCatchCombiner() };
+    String[] phases = { MoveLoadsAboveIfs.name, IfNullToTryCatch.name, WrapSwitchesInTrys.name,
+        FindDuplicateSequences.name, TryCatchCombiner.name };
+
+    int checked = 0;
+    for (String name : TARGET_CLASSES) {
+      for (SootMethod m : Scene.v().getSootClass(name).getMethods()) {
+        if (!m.isConcrete()) {
+          continue;
+        }
+        JimpleBody jimple = (JimpleBody) m.retrieveActiveBody();
+        new CollectJimpleLocals().transform(jimple, CollectJimpleLocals.name);
+        BafBody baf = Baf.v().newBody(jimple);
+        m.setActiveBody(baf);
+        new Jimple2BafLocalBuilder().transform(baf, Jimple2BafLocalBuilder.name);
+
+        // the first lookup fills the cache which the transformations then share
+        StackTypeHeightCalculator.getStackHeights(baf, Main.methods2Baf2JLocals.get(m));
+        for (int i = 0; i < transformers.length; i++) {
+          transformers[i].transform(baf, phases[i]);
+
+          Map<Local, Local> bafToJLocals = Main.methods2Baf2JLocals.get(m);
+          Map<Unit, Stack<Type>> cached = StackTypeHeightCalculator.getStackHeights(baf, bafToJLocals);
+          Map<Unit, Stack<Type>> calculated = StackTypeHeightCalculator.calculateStackHeights(baf, bafToJLocals);
+          assertEquals(m.getSignature() + " after " + phases[i], calculated, cached);
+          checked++;
+        }
+      }
+    }
+    assertFalse(checked == 0);
+  }
+}
@@ -0,0 +1,131 @@
+package soot.jbco.jimpleTransformations;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import soot.G;
+import soot.Printer;
+import soot.Scene;
+import soot.SootClass;
+import soot.jbco.Main;
+import soot.jbco.util.BodyBuilder;
+import soot.jbco.util.Rand;
+import soot.options.Options;
+
+/**
+ * Renames the classes, methods and fields of {@link soot.jbco.targets.Obfuscatable} with and without the pipeline option,
+ * which updates the references in parallel, and checks that both give the same classes.
+ */
+public class ParallelRenamingTest {
+
+  private static final String TARGET_CLASS = "soot.jbco.targets.Obfuscatable";
+  private static final String[] TARGET_CLASSES
+      = { TARGET_CLASS, TARGET_CLASS + "$Account", TARGET_CLASS + "$Savings" };
+
+  @After
+  public void tearDown() {
+    Main.jbcoPipeline = false;
+    resetRenamers();
+  }
+
+  /**
+   * The renamers keep their state in static fields that {@link G#reset()} does not clear.
+   */
+  private static void resetRenamers() {
+    BodyBuilder.bodiesHaveBeenBuilt = false;
+    BodyBuilder.namesHaveBeenRetrieved = false;
+    BodyBuilder.nameList.clear();
+    FieldRenamer.namesToNotRename.clear();
+    FieldRenamer.oldToNewFieldNames.clear();
+    FieldRenamer.opaquePreds1ByClass.clear();
+    FieldRenamer.opaquePreds2ByClass.clear();
+    FieldRenamer.sootFieldsRenamed.clear();
+    FieldRenamer.opaquePairs = null;
+    FieldRenamer.handedOutPairs = null;
+    FieldRenamer.handedOutRunPairs = null;
+    FieldRenamer.rename_fields = false;
+  }
+
+  /**
+   * @return the Jimple of the renamed application classes, ordered by their new names
+   */
+  private static String rename(boolean pipeline) throws IOException {
+    G.reset();
+    resetRenamers();
+    Main.jbcoPipeline = pipeline;
+    Rand.setSeed(1);
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+    for (String name : TARGET_CLASSES) {
+      Scene.v().getSootClass(name).setApplicationClass();
+    }
+    Scene.v().setMainClass(Scene.v().getSootClass(TARGET_CLASS));
+
+    ClassRenamer.v().transform(ClassRenamer.name);
+    MethodRenamer.v().transform(MethodRenamer.name);
+    FieldRenamer.rename_fields = true;
+    new FieldRenamer().transform(FieldRenamer.name);
+
+    List<SootClass> classes = new ArrayList<SootClass>(Scene.v().getApplicationClasses());
+    classes.sort(Comparator.comparing(SootClass::getName));
+    StringWriter jimple = new StringWriter();
+    PrintWriter out = new PrintWriter(jimple);
+    for (SootClass sc : classes) {
+      Printer.v().printTo(sc, out);
+    }
+    out.flush();
+    return jimple.toString();
+  }
+
+  @Test
+  public void parallelAndSequentialRenamingAreEqual() throws IOException {
+    String sequential = rename(false);
+    String parallel = rename(true);
+    assertEquals(sequential, parallel);
+
+    // the fields were renamed, so none of the original names is left
+    assertFalse(sequential.contains(" balance;"));
+    assertFalse(sequential.contains(" label;"));
+  }
+}
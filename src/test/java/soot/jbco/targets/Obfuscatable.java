@@ -0,0 +1,143 @@
+package soot.jbco.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Fields, branches, null checks, switches and exception handlers for the jbco tests.
+ */
+public class Obfuscatable {
+  static int counter;
+  String label;
+  int[] values;
+
+  Obfuscatable(String label, int size) {
+    this.label = label;
+    this.values = new int[size];
+  }
+
+  static class Account {
+    long balance;
+    String owner;
+
+    Account(String owner) {
+      this.owner = owner;
+    }
+
+    void deposit(long amount) {
+      if (amount <= 0) {
+        throw new IllegalArgumentException("amount");
+      }
+      balance += amount;
+      counter++;
+    }
+
+    boolean withdraw(long amount) {
+      if (balance < amount) {
+        return false;
+      }
+      balance -= amount;
+      return true;
+    }
+  }
+
+  static class Savings extends Account {
+    int rate;
+
+    Savings(String owner, int rate) {
+      super(owner);
+      this.rate = rate;
+    }
+
+    void addInterest() {
+      deposit(balance * rate / 100 + 1);
+    }
+  }
+
+  int sum() {
+    int s = 0;
+    for (int i = 0; i < values.length; i++) {
+      s += values[i];
+    }
+    return s;
+  }
+
+  int describe(Object o) {
+    if (o == null) {
+      return -1;
+    }
+    if (o instanceof String) {
+      return ((String) o).length();
+    }
+    return o.hashCode() % 7;
+  }
+
+  String kind(int k) {
+    switch (k) {
+      case 0:
+        return "zero";
+      case 1:
+        return "one";
+      case 2:
+        return label;
+      case 10:
+        return "ten";
+      default:
+        return label == null ? "none" : label + k;
+    }
+  }
+
+  int parse(String s) {
+    try {
+      return Integer.parseInt(s);
+    } catch (NumberFormatException e) {
+      return values.length;
+    } finally {
+      counter++;
+    }
+  }
+
+  int guarded(String s, int k) {
+    int r = 0;
+    try {
+      r = kind(k).length() + parse(s);
+    } catch (IllegalStateException e) {
+      r = -2;
+    } catch (RuntimeException e) {
+      r = -3;
+    }
+    if (label != null && r > 0) {
+      r += label.length();
+    }
+    return r;
+  }
+
+  public static void main(String[] args) {
+    Obfuscatable o = new Obfuscatable(args.length > 0 ? args[0] : null, 4);
+    Savings a = new Savings("owner", 3);
+    a.deposit(o.parse("12"));
+    a.addInterest();
+    if (a.withdraw(o.sum() + o.describe(a.owner))) {
+      System.out.println(o.kind(counter) + o.guarded("7", 2));
+    }
+  }
+}
@@ -0,0 +1,405 @@
+package soot.jimple.binary;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.ArrayType;
+import soot.Body;
+import soot.BooleanType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.Modifier;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.SootResolver;
+import soot.Trap;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.UnknownType;
+import soot.Value;
+import soot.ValueBox;
+import soot.VoidType;
+import soot.jimple.ClassConstant;
+import soot.jimple.DoubleConstant;
+import soot.jimple.FieldRef;
+import soot.jimple.FloatConstant;
+import soot.jimple.IntConstant;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LongConstant;
+import soot.jimple.MethodHandle;
+import soot.jimple.NullConstant;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.jimple.parser.JimpleAST;
+import soot.options.Options;
+import soot.tagkit.IntegerConstantValueTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.SourceFileTag;
+import soot.tagkit.Tag;
+import soot.util.Chain;
+
+/**
+ * Writes classes in the binary Jimple format, reads them back and checks that the class, its fields, methods and bodies are
+ * unchanged.
+ */
+public class BinaryJimpleTest {
+
+  private static final String SAMPLE_CLASS = "soot.jimple.binary.fixtures.Sample";
+  private static final String MISSING_CLASS = "soot.jimple.binary.fixtures.Missing";
+
+  @Before
+  public void setUp() {
+    G.reset();
+    Options.v().set_allow_phantom_refs(true);
+    // Compare the bodies as they are stored, without the jb transformations
+    Options.v().setPhaseOption("jb", "enabled:false");
+  }
+
+  private static SootClass classRef(String name) {
+    return SootResolver.v().makeClassRef(name);
+  }
+
+  /**
+   * Builds a class that uses every kind of statement and constant, traps, and references into a phantom class.
+   */
+  private static SootClass buildSample() {
+    final Jimple j = Jimple.v();
+    SootClass missing = classRef(MISSING_CLASS);
+    missing.setPhantomClass();
+
+    SootClass sc = new SootClass(SAMPLE_CLASS, Modifier.PUBLIC | Modifier.FINAL);
+    sc.setSuperclass(classRef("java.lang.Object"));
+    sc.addInterface(classRef("java.lang.Runnable"));
+    sc.addTag(new SourceFileTag("Sample.java"));
+
+    SootField limit = new SootField("LIMIT", IntType.v(), Modifier.PUBLIC | Modifier.STATIC | Modifier.FINAL);
+    limit.addTag(new IntegerConstantValueTag(42));
+    sc.addField(limit);
+    SootField names = new SootField("names", ArrayType.v(RefType.v("java.lang.String"), 1), Modifier.PRIVATE);
+    sc.addField(names);
+
+    sc.addMethod(new SootMethod("clock", Collections.<Type>emptyList(), LongType.v(),
+        Modifier.PUBLIC | Modifier.STATIC | Modifier.NATIVE, Arrays.asList(classRef("java.io.IOException"))));
+
+    SootMethod run = new SootMethod("run", Collections.<Type>emptyList(), VoidType.v(), Modifier.PUBLIC);
+    sc.addMethod(run);
+    buildRun(j, run, missing);
+
+    SootMethod process = new SootMethod("process", Arrays.<Type>asList(names.getType(), IntType.v()), IntType.v(),
+        Modifier.PROTECTED | Modifier.SYNCHRONIZED);
+    sc.addMethod(process);
+    buildProcess(j, process, names.makeRef());
+
+    return sc;
+  }
+
+  private static void buildRun(Jimple j, SootMethod m, SootClass missing) {
+    JimpleBody b = j.newBody(m);
+    m.setActiveBody(b);
+    Chain<Local> locals = b.getLocals();
+    Local r0 = j.newLocal("r0", m.getDeclaringClass().getType());
+    Local i0 = j.newLocal("i0", IntType.v());
+    Local i1 = j.newLocal("i1", IntType.v());
+    Local i2 = j.newLocal("i2", IntType.v());
+    Local l0 = j.newLocal("l0", LongType.v());
+    Local f0 = j.newLocal("f0", FloatType.v());
+    Local d0 = j.newLocal("d0", DoubleType.v());
+    Local s0 = j.newLocal("s0", RefType.v("java.lang.String"));
+    Local c0 = j.newLocal("c0", RefType.v("java.lang.Class"));
+    Local o0 = j.newLocal("o0", RefType.v("java.lang.Object"));
+    Local h0 = j.newLocal("h0", RefType.v("java.lang.invoke.MethodHandle"));
+    Local t0 = j.newLocal("t0", RefType.v("java.lang.Throwable"));
+    locals.addAll(Arrays.asList(r0, i0, i1, i2, l0, f0, d0, s0, c0, o0, h0, t0));
+
+    SootFieldRef count = Scene.v().makeFieldRef(missing, "count", IntType.v(), true);
+    SootMethodRef log = Scene.v().makeMethodRef(missing, "log", Arrays.<Type>asList(RefType.v("java.lang.String")),
+        VoidType.v(), true);
+    SootMethodRef clock = Scene.v().makeMethodRef(m.getDeclaringClass(), "clock", Collections.<Type>emptyList(),
+        LongType.v(), true);
+
+    Unit ret = j.newReturnVoidStmt();
+    Unit add = j.newAssignStmt(i2, j.newAddExpr(i0, i1));
+    Unit exit = j.newExitMonitorStmt(r0);
+    Unit exitGoto = j.newGotoStmt(ret);
+    Unit handler = j.newIdentityStmt(t0, j.newCaughtExceptionRef());
+    Unit enter = j.newEnterMonitorStmt(r0);
+    Unit table = j.newTableSwitchStmt(i0, 0, 1, Arrays.asList(ret, add), exit);
+    Unit lookup = j.newLookupSwitchStmt(i1, Arrays.asList(IntConstant.v(-1), IntConstant.v(100)), Arrays.asList(ret, add),
+        exit);
+
+    Chain<Unit> units = b.getUnits();
+    units.add(j.newIdentityStmt(r0, j.newThisRef(m.getDeclaringClass().getType())));
+    units.add(j.newAssignStmt(i0, IntConstant.v(-7)));
+    units.add(j.newAssignStmt(l0, LongConstant.v(Long.MIN_VALUE)));
+    units.add(j.newAssignStmt(f0, FloatConstant.v(Float.NaN)));
+    units.add(j.newAssignStmt(f0, FloatConstant.v(-0.0f)));
+    units.add(j.newAssignStmt(d0, DoubleConstant.v(Double.NEGATIVE_INFINITY)));
+    units.add(j.newAssignStmt(d0, DoubleConstant.v(Double.MIN_VALUE)));
+    units.add(j.newAssignStmt(s0, StringConstant.v("multi\nline \u00e9 \ud83d\ude00")));
+    units.add(j.newAssignStmt(c0, ClassConstant.v("[Ljava/lang/String;")));
+    units.add(j.newAssignStmt(o0, NullConstant.v()));
+    units.add(j.newAssignStmt(h0, MethodHandle.v(clock, 6)));
+    units.add(j.newAssignStmt(i1, j.newStaticFieldRef(count)));
+    Unit invoke = j.newInvokeStmt(j.newStaticInvokeExpr(log, s0));
+    invoke.addTag(new LineNumberTag(17));
+    units.add(invoke);
+    units.add(enter);
+    units.add(table);
+    units.add(lookup);
+    units.add(exit);
+    units.add(exitGoto);
+    units.add(handler);
+    units.add(j.newExitMonitorStmt(r0));
+    units.add(j.newThrowStmt(t0));
+    units.add(add);
+    units.add(j.newIfStmt(j.newGeExpr(i2, IntConstant.v(0)), ret));
+    units.add(j.newAssignStmt(j.newStaticFieldRef(count), i2));
+    units.add(j.newNopStmt());
+    units.add(ret);
+
+    b.getTraps().add(j.newTrap(classRef("java.lang.Throwable"), table, exitGoto, handler));
+    b.getTraps().add(j.newTrap(missing, invoke, enter, handler));
+  }
+
+  private static void buildProcess(Jimple j, SootMethod m, SootFieldRef names) {
+    JimpleBody b = j.newBody(m);
+    m.setActiveBody(b);
+    RefType string = RefType.v("java.lang.String");
+    RefType charSequence = RefType.v("java.lang.CharSequence");
+    RefType builder = RefType.v("java.lang.StringBuilder");
+    Local r0 = j.newLocal("r0", m.getDeclaringClass().getType());
+    Local r1 = j.newLocal("r1", ArrayType.v(string, 1));
+    Local i0 = j.newLocal("i0", IntType.v());
+    Local i1 = j.newLocal("i1", IntType.v());
+    Local i2 = j.newLocal("i2", IntType.v());
+    Local i3 = j.newLocal("i3", IntType.v());
+    Local r2 = j.newLocal("r2", string);
+    Local z0 = j.newLocal("z0", BooleanType.v());
+    Local r3 = j.newLocal("r3", charSequence);
+    Local r4 = j.newLocal("r4", ArrayType.v(IntType.v(), 1));
+    Local r5 = j.newLocal("r5", ArrayType.v(IntType.v(), 2));
+    Local r6 = j.newLocal("r6", builder);
+    Local r7 = j.newLocal("r7", RefType.v("java.util.function.Supplier"));
+    Local u0 = j.newLocal("u0", UnknownType.v());
+    b.getLocals().addAll(Arrays.asList(r0, r1, i0, i1, i2, i3, r2, z0, r3, r4, r5, r6, r7, u0));
+
+    SootMethodRef init = Scene.v().makeMethodRef(builder.getSootClass(), "<init>", Arrays.<Type>asList(string),
+        VoidType.v(), false);
+    SootMethodRef builderLength = Scene.v().makeMethodRef(builder.getSootClass(), "length", Collections.<Type>emptyList(),
+        IntType.v(), false);
+    SootMethodRef length = Scene.v().makeMethodRef(charSequence.getSootClass(), "length", Collections.<Type>emptyList(),
+        IntType.v(), false);
+    SootMethodRef get = Scene.v().makeMethodRef(classRef(SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME), "get",
+        Arrays.<Type>asList(string), RefType.v("java.util.function.Supplier"), true);
+    SootMethodRef bootstrap = Scene.v().makeMethodRef(classRef("java.lang.invoke.LambdaMetafactory"), "metafactory",
+        Arrays.<Type>asList(RefType.v("java.lang.invoke.MethodHandles$Lookup"), string,
+            RefType.v("java.lang.invoke.MethodType")),
+        RefType.v("java.lang.invoke.CallSite"), true);
+
+    Chain<Unit> units = b.getUnits();
+    units.add(j.newIdentityStmt(r0, j.newThisRef(m.getDeclaringClass().getType())));
+    units.add(j.newIdentityStmt(r1, j.newParameterRef(r1.getType(), 0)));
+    units.add(j.newIdentityStmt(i0, j.newParameterRef(IntType.v(), 1)));
+    units.add(j.newAssignStmt(j.newInstanceFieldRef(r0, names), r1));
+    units.add(j.newAssignStmt(r1, j.newInstanceFieldRef(r0, names)));
+    units.add(j.newAssignStmt(i1, j.newLengthExpr(r1)));
+    units.add(j.newAssignStmt(i1, j.newNegExpr(i1)));
+    units.add(j.newAssignStmt(r2, j.newArrayRef(r1, i0)));
+    units.add(j.newAssignStmt(z0, j.newInstanceOfExpr(r2, charSequence)));
+    units.add(j.newAssignStmt(r3, j.newCastExpr(r2, charSequence)));
+    units.add(j.newAssignStmt(r4, j.newNewArrayExpr(IntType.v(), i1)));
+    units.add(j.newAssignStmt(r5, j.newNewMultiArrayExpr((ArrayType) r5.getType(), Arrays.asList(i0, i1))));
+    units.add(j.newAssignStmt(j.newArrayRef(r4, IntConstant.v(0)), i0));
+    units.add(j.newAssignStmt(r6, j.newNewExpr(builder)));
+    units.add(j.newInvokeStmt(j.newSpecialInvokeExpr(r6, init, r2)));
+    units.add(j.newAssignStmt(i2, j.newVirtualInvokeExpr(r6, builderLength)));
+    units.add(j.newAssignStmt(i3, j.newInterfaceInvokeExpr(r3, length)));
+    units.add(j.newAssignStmt(r7, j.newDynamicInvokeExpr(bootstrap,
+        Arrays.<Value>asList(StringConstant.v("x"), ClassConstant.v("()Ljava/lang/Object;")), get, Arrays.asList(r2))));
+    units.add(j.newAssignStmt(u0, r7));
+    units.add(j.newAssignStmt(i2, j.newMulExpr(i2, i3)));
+    units.add(j.newAssignStmt(i2, j.newCmpExpr(LongConstant.v(1), LongConstant.v(2))));
+    units.add(j.newAssignStmt(i2, j.newCmpgExpr(FloatConstant.v(1), FloatConstant.v(2))));
+    units.add(j.newAssignStmt(i2, j.newCmplExpr(DoubleConstant.v(1), DoubleConstant.v(2))));
+    units.add(j.newAssignStmt(i2, j.newUshrExpr(i2, IntConstant.v(3))));
+    units.add(j.newReturnStmt(i2));
+  }
+
+  private static SootClass roundTrip(SootClass sc) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new BinaryJimpleWriter(sc).write(bytes);
+
+    BinaryJimpleReader reader = new BinaryJimpleReader(bytes.toByteArray());
+    assertEquals(sc.getName(), reader.getClassName());
+    assertTrue(reader.getReferencedClasses().contains(sc.getName()));
+
+    SootClass read = new SootClass(sc.getName());
+    read.setResolvingLevel(SootClass.BODIES);
+    reader.readSkeleton(read);
+    for (SootMethod m : read.getMethods()) {
+      if (m.isConcrete()) {
+        m.retrieveActiveBody();
+      }
+    }
+    return read;
+  }
+
+  /**
+   * Describes the class line by line. Branch targets and trap ranges are given as unit indices.
+   */
+  private static List<String> describe(SootClass sc) {
+    List<String> ret = new ArrayList<String>();
+    ret.add(sc.getModifiers() + " " + sc.getName() + " " + describeTags(sc.getTags()));
+    ret.add("extends " + (sc.hasSuperclass() ? sc.getSuperclass().getName() : null));
+    for (SootClass i : sc.getInterfaces()) {
+      ret.add("implements " + i.getName());
+    }
+    for (SootField f : sc.getFields()) {
+      ret.add(f.getModifiers() + " " + f.getSignature() + " " + describeTags(f.getTags()));
+    }
+    for (SootMethod m : sc.getMethods()) {
+      ret.add(m.getModifiers() + " " + m.getSignature() + " throws " + m.getExceptions());
+      if (m.hasActiveBody()) {
+        describe(m.getActiveBody(), ret);
+      }
+    }
+    return ret;
+  }
+
+  private static void describe(Body b, List<String> ret) {
+    for (Local l : b.getLocals()) {
+      ret.add("  local " + l.getType() + " " + l.getName());
+    }
+
+    Map<Unit, Integer> index = new HashMap<Unit, Integer>();
+    for (Unit u : b.getUnits()) {
+      index.put(u, index.size());
+    }
+    for (Unit u : b.getUnits()) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("  ").append(index.get(u)).append(": ").append(u).append(' ').append(describeTags(u.getTags()));
+      for (UnitBox box : u.getUnitBoxes()) {
+        sb.append(" -> ").append(index.get(box.getUnit()));
+      }
+      for (ValueBox box : u.getUseAndDefBoxes()) {
+        Value v = box.getValue();
+        sb.append(" | ").append(v.getClass().getSimpleName()).append(' ').append(v.getType());
+        if (v instanceof MethodHandle) {
+          sb.append(" tag ").append(((MethodHandle) v).tag);
+        }
+      }
+      Stmt s = (Stmt) u;
+      if (s.containsInvokeExpr()) {
+        InvokeExpr ie = s.getInvokeExpr();
+        sb.append(" | static ").append(ie.getMethodRef().isStatic());
+      }
+      if (s.containsFieldRef()) {
+        FieldRef fr = s.getFieldRef();
+        sb.append(" | static ").append(fr.getFieldRef().isStatic());
+      }
+      ret.add(sb.toString());
+    }
+    for (Trap t : b.getTraps()) {
+      ret.add("  catch " + t.getException().getName() + " from " + index.get(t.getBeginUnit()) + " to "
+          + index.get(t.getEndUnit()) + " with " + index.get(t.getHandlerUnit()));
+    }
+  }
+
+  private static String describeTags(List<Tag> tags) {
+    List<String> ret = new ArrayList<String>();
+    for (Tag t : tags) {
+      ret.add(t.getName() + "=" + t);
+    }
+    return ret.toString();
+  }
+
+  @Test
+  public void sampleRoundTrip() throws IOException {
+    SootClass sc = buildSample();
+    SootClass read = roundTrip(sc);
+    assertEquals(describe(sc), describe(read));
+
+    assertFalse(read.getMethodByName("clock").hasActiveBody());
+    assertEquals(Arrays.asList("java.io.IOException"),
+        Arrays.asList(read.getMethodByName("clock").getExceptions().get(0).getName()));
+  }
+
+  @Test
+  public void constantsKeepTheirBits() throws IOException {
+    SootClass read = roundTrip(buildSample());
+    List<Value> constants = new ArrayList<Value>();
+    for (ValueBox box : read.getMethodByName("run").getActiveBody().getUseBoxes()) {
+      constants.add(box.getValue());
+    }
+    assertTrue(constants.contains(LongConstant.v(Long.MIN_VALUE)));
+    assertTrue(constants.contains(DoubleConstant.v(Double.MIN_VALUE)));
+    assertTrue(constants.contains(StringConstant.v("multi\nline \u00e9 \ud83d\ude00")));
+
+    boolean negativeZero = false, nan = false;
+    for (Value v : constants) {
+      if (v instanceof FloatConstant) {
+        float f = ((FloatConstant) v).value;
+        negativeZero |= Float.floatToRawIntBits(f) == Float.floatToRawIntBits(-0.0f);
+        nan |= Float.isNaN(f);
+      }
+    }
+    assertTrue(negativeZero);
+    assertTrue(nan);
+  }
+
+  @Test
+  public void parsedClassesRoundTrip() throws Exception {
+    for (String name : new String[] { "Shape", "Rectangle", "Control" }) {
+      SootClass sc = new JimpleAST(BinaryJimpleTest.class.getResourceAsStream("/soot/jimple/parser/" + name + ".jimple"))
+          .createSootClass();
+      assertEquals(name, describe(sc), describe(roundTrip(sc)));
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package soot.jimple.parser;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Trap;
+import soot.Unit;
+import soot.UnitBox;
+import soot.jimple.parser.parser.ParserException;
+import soot.options.Options;
+
+/**
+ * Parses Jimple files with both the SableCC parser and the {@link StreamingJimpleParser} and checks that they create the
+ * same classes and bodies.
+ */
+public class StreamingJimpleParserTest {
+
+  @Before
+  public void setUp() {
+    G.reset();
+    Options.v().set_allow_phantom_refs(true);
+  }
+
+  private static InputStream open(String fileName) {
+    InputStream in = StreamingJimpleParserTest.class.getResourceAsStream(fileName);
+    if (in == null) {
+      throw new RuntimeException("Missing test resource " + fileName);
+    }
+    return in;
+  }
+
+  /**
+   * Describes the class line by line. Branch targets and trap ranges are given as unit indices.
+   */
+  private static List<String> describe(SootClass sc) {
+    List<String> ret = new ArrayList<String>();
+    ret.add(sc.getModifiers() + " " + sc.getName());
+    ret.add("extends " + (sc.hasSuperclass() ? sc.getSuperclass().getName() : null));
+    for (SootClass i : sc.getInterfaces()) {
+      ret.add("implements " + i.getName());
+    }
+    for (SootField f : sc.getFields()) {
+      ret.add(f.getModifiers() + " " + f.getSignature());
+    }
+    for (SootMethod m : sc.getMethods()) {
+      ret.add(m.getModifiers() + " " + m.getSignature() + " throws " + m.getExceptions());
+      if (m.hasActiveBody()) {
+        describe(m.getActiveBody(), ret);
+      }
+    }
+    return ret;
+  }
+
+  private static void describe(Body b, List<String> ret) {
+    for (Local l : b.getLocals()) {
+      ret.add("  local " + l.getType() + " " + l.getName());
+    }
+
+    Map<Unit, Integer> index = new HashMap<Unit, Integer>();
+    for (Unit u : b.getUnits()) {
+      index.put(u, index.size());
+    }
+    for (Unit u : b.getUnits()) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("  ").append(index.get(u)).append(": ").append(u);
+      for (UnitBox box : u.getUnitBoxes()) {
+        sb.append(" -> ").append(index.get(box.getUnit()));
+      }
+      ret.add(sb.toString());
+    }
+    for (Trap t : b.getTraps()) {
+      ret.add("  catch " + t.getException().getName() + " from " + index.get(t.getBeginUnit()) + " to "
+          + index.get(t.getEndUnit()) + " with " + index.get(t.getHandlerUnit()));
+    }
+  }
+
+  private static void checkSameClass(String fileName) throws Exception {
+    SootClass expected = new JimpleAST(open(fileName)).createSootClass();
+    SootClass actual = new StreamingJimpleAST(open(fileName)).createSootClass();
+    assertEquals(describe(expected), describe(actual));
+  }
+
+  @Test
+  public void interfaceMatchesSableCC() throws Exception {
+    checkSameClass("Shape.jimple");
+  }
+
+  @Test
+  public void classMatchesSableCC() throws Exception {
+    checkSameClass("Rectangle.jimple");
+  }
+
+  @Test
+  public void controlFlowMatchesSableCC() throws Exception {
+    checkSameClass("Control.jimple");
+  }
+
+  @Test
+  public void bodiesAreParsedOnDemand() throws Exception {
+    SootClass expected = new JimpleAST(open("Control.jimple")).createSootClass();
+
+    StreamingJimpleAST ast = new StreamingJimpleAST(open("Control.jimple"));
+    SootClass actual = new SootClass(expected.getName());
+    ast.getSkeleton(actual);
+    assertTrue(ast.getCstPool().contains("java.lang.Runnable"));
+
+    for (SootMethod m : expected.getMethods()) {
+      SootMethod n = actual.getMethod(m.getSubSignature());
+      if (!m.hasActiveBody()) {
+        assertNull(ast.getBody(n));
+        continue;
+      }
+      List<String> expectedBody = new ArrayList<String>();
+      describe(m.getActiveBody(), expectedBody);
+      List<String> actualBody = new ArrayList<String>();
+      describe(ast.getBody(n), actualBody);
+      assertEquals(expectedBody, actualBody);
+    }
+  }
+
+  @Test
+  public void undeclaredLocalIsReportedWithPosition() throws IOException {
+    String source = "class A extends java.lang.Object\n{\n    void m()\n    {\n        x = 1;\n        return;\n    }\n}\n";
+    StreamingJimpleAST ast = new StreamingJimpleAST(new ByteArrayInputStream(source.getBytes("UTF-8")));
+    SootClass sc = new SootClass("A");
+    ast.getSkeleton(sc);
+    try {
+      ast.getBody(sc.getMethodByName("m"));
+      fail("The body uses an undeclared local");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof ParserException);
+      assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith("[5,"));
+      assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("did not find local: x"));
+    }
+  }
+}
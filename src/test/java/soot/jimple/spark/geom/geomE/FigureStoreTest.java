@@ -0,0 +1,127 @@
+package soot.jimple.spark.geom.geomE;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import soot.jimple.spark.geom.dataRep.RectangleNode;
+import soot.jimple.spark.geom.dataRep.SegmentNode;
+
+/**
+ * Spills the figures of pointers to a {@link FigureStore} and checks that they are paged back in unchanged.
+ */
+public class FigureStoreTest {
+
+  private static FullSensitiveNode newNode() {
+    FullSensitiveNode pn = new FullSensitiveNode(null);
+    pn.reconstruct();
+    return pn;
+  }
+
+  /**
+   * Builds a pointer that flows to two other pointers, with both kinds of figures.
+   */
+  private static FullSensitiveNode newSource(FullSensitiveNode q1, FullSensitiveNode q2) {
+    FullSensitiveNode pn = newNode();
+    pn.add_simple_constraint_3(q1, 1, 10, 5);
+    pn.add_simple_constraint_3(q1, 20, 40, 3);
+    pn.add_simple_constraint_4(q2, 1, 1, 7, 9);
+    pn.add_simple_constraint_3(q2, 100, 200, 1);
+    return pn;
+  }
+
+  private static List<String> describe(FullSensitiveNode pn, FullSensitiveNode... targets) {
+    List<String> ret = new ArrayList<String>();
+    for (FullSensitiveNode qn : targets) {
+      GeometricManager gm = pn.flowto.get(qn);
+      SegmentNode[] figures = gm.getFigures();
+      for (int i = 0; i < GeometricManager.Divisions; ++i) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(gm.getSizes()[i]).append(':');
+        for (SegmentNode p = figures[i]; p != null; p = p.next) {
+          sb.append(' ').append(p.I1).append(',').append(p.I2).append(',').append(p.L);
+          if (p instanceof RectangleNode) {
+            sb.append(',').append(((RectangleNode) p).L_prime);
+          }
+          sb.append(p.is_new ? "*" : "");
+        }
+        ret.add(sb.toString());
+      }
+    }
+    return ret;
+  }
+
+  @Test
+  public void spilledFiguresAreReadBack() {
+    FullSensitiveNode q1 = newNode(), q2 = newNode();
+    FullSensitiveNode pn = newSource(q1, q2);
+    List<String> expected = describe(pn, q1, q2);
+
+    FigureStore store = new FigureStore(0);
+    store.touch(pn);
+    store.spillColdFigures();
+    assertEquals(1, store.getNumberOfSpills());
+    assertNull(pn.flowto);
+
+    // Paging the figures back in happens on the next access
+    assertEquals(2, pn.num_of_diff_edges());
+    assertEquals(1, store.getNumberOfReloads());
+    assertEquals(expected, describe(pn, q1, q2));
+    store.close();
+  }
+
+  @Test
+  public void spilledFiguresSurviveClose() {
+    FullSensitiveNode q1 = newNode(), q2 = newNode();
+    FullSensitiveNode first = newSource(q1, q2);
+    FullSensitiveNode second = newSource(q2, q1);
+    List<String> expectedFirst = describe(first, q1, q2);
+    List<String> expectedSecond = describe(second, q1, q2);
+
+    FigureStore store = new FigureStore(0);
+    assertTrue(first.isSpillable());
+    first.spill(store);
+    store.close();
+
+    // The next spill goes to a new file
+    second.spill(store);
+    store.reset();
+
+    assertEquals(expectedFirst, describe(reload(first), q1, q2));
+    assertEquals(expectedSecond, describe(reload(second), q1, q2));
+    assertEquals(2, store.getNumberOfReloads());
+  }
+
+  private static FullSensitiveNode reload(FullSensitiveNode pn) {
+    assertNull(pn.flowto);
+    pn.num_of_diff_edges();
+    return pn;
+  }
+}
@@ -0,0 +1,130 @@
+package soot.jimple.spark.geom.geomPA;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
+
+/**
+ * Runs the geometric points-to analysis on {@link soot.jimple.spark.geom.geomPA.targets.Containers} with one and with
+ * several threads and checks that both give the same points-to sets.
+ */
+public class ParallelGeomPointsToTest {
+
+  private static final String TARGET_CLASS = "soot.jimple.spark.geom.geomPA.targets.Containers";
+  private static final String[] TARGET_CLASSES
+      = { TARGET_CLASS, TARGET_CLASS + "$Item", TARGET_CLASS + "$Box", TARGET_CLASS + "$Pair" };
+
+  /**
+   * @return the allocation sites each local of the target classes points to, keyed by method and local
+   */
+  private static Map<String, List<String>> pointsTo(int threads) throws IOException {
+    G.reset();
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().setPhaseOption("cg.spark", "on");
+    Options.v().setPhaseOption("cg.spark", "geom-pta:true");
+    Options.v().setPhaseOption("cg.spark", "geom-encoding:Geom");
+    Options.v().setPhaseOption("cg.spark", "geom-threads:" + threads);
+
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+    for (String name : TARGET_CLASSES) {
+      Scene.v().getSootClass(name).setApplicationClass();
+    }
+    Scene.v().setMainClass(Scene.v().getSootClass(TARGET_CLASS));
+
+    PackManager.v().getPack("cg").apply();
+    assertTrue(Scene.v().getPointsToAnalysis() instanceof GeomPointsTo);
+
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+    for (String name : TARGET_CLASSES) {
+      for (SootMethod m : Scene.v().getSootClass(name).getMethods()) {
+        if (!m.hasActiveBody()) {
+          continue;
+        }
+        for (Local l : m.getActiveBody().getLocals()) {
+          if (l.getType() instanceof RefLikeType) {
+            result.put(m.getSignature() + " " + l.getName(), allocationSites(l));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static List<String> allocationSites(Local l) {
+    final List<String> sites = new ArrayList<String>();
+    ((PointsToSetInternal) Scene.v().getPointsToAnalysis().reachingObjects(l)).forall(new P2SetVisitor() {
+      @Override
+      public void visit(Node n) {
+        AllocNode an = (AllocNode) n;
+        sites.add(an.getMethod() + " " + an.getNewExpr());
+      }
+    });
+    Collections.sort(sites);
+    return sites;
+  }
+
+  @Test
+  public void parallelAndSequentialPointsToSetsAreEqual() throws IOException {
+    Map<String, List<String>> sequential = pointsTo(1);
+    Map<String, List<String>> parallel = pointsTo(4);
+    assertEquals(sequential, parallel);
+
+    boolean found = false;
+    for (List<String> sites : sequential.values()) {
+      found |= !sites.isEmpty();
+    }
+    assertTrue("no points-to information was computed", found);
+  }
+}
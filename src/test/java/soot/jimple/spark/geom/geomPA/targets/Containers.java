@@ -0,0 +1,103 @@
+package soot.jimple.spark.geom.geomPA.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Objects flowing through fields, arrays, factories and several call sites, for the geometric points-to tests.
+ */
+public class Containers {
+  static class Item {
+    String name;
+
+    Item(String name) {
+      this.name = name;
+    }
+  }
+
+  static class Box {
+    Object content;
+    Box next;
+
+    void put(Object o) {
+      content = o;
+    }
+
+    Object get() {
+      return content;
+    }
+  }
+
+  static class Pair {
+    Object first;
+    Object second;
+
+    Pair(Object first, Object second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    Pair swap() {
+      return new Pair(second, first);
+    }
+  }
+
+  static Object identity(Object o) {
+    return o;
+  }
+
+  static Box wrap(Object o) {
+    Box b = new Box();
+    b.put(o);
+    return b;
+  }
+
+  static Box chain(int n) {
+    Box head = null;
+    for (int i = 0; i < n; i++) {
+      Box b = wrap(new Item("item" + i));
+      b.next = head;
+      head = b;
+    }
+    return head;
+  }
+
+  public static void main(String[] args) {
+    Item a = new Item("a");
+    Item b = new Item("b");
+    Box boxA = wrap(a);
+    Box boxB = wrap(identity(b));
+    Object fromA = boxA.get();
+    Object fromB = boxB.get();
+
+    Pair pair = new Pair(fromA, fromB);
+    Pair swapped = pair.swap();
+    Object first = swapped.first;
+
+    Object[] array = new Object[] { a, new Box(), pair };
+    Object element = identity(array[args.length]);
+
+    Box list = chain(args.length);
+    Object content = list == null ? element : list.get();
+    System.out.println(first + " " + content + " " + boxB.next);
+  }
+}
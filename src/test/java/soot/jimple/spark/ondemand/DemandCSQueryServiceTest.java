@@ -0,0 +1,236 @@
+package soot.jimple.spark.ondemand;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.PointsToSet;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.AssignStmt;
+import soot.jimple.Stmt;
+import soot.jimple.spark.pag.PAG;
+import soot.options.Options;
+
+/**
+ * Queries the points-to sets of {@link soot.jimple.spark.ondemand.targets.Aliasing} through a {@link DemandCSQueryService}
+ * and checks the refinement, the caching, the fallback to Spark and concurrent queries.
+ */
+public class DemandCSQueryServiceTest {
+
+  private static final String TARGET_CLASS = "soot.jimple.spark.ondemand.targets.Aliasing";
+
+  private static PAG pag;
+  /** the arguments of the two calls to id */
+  private static Local a;
+  private static Local b;
+  /** the values returned by the two calls to id */
+  private static Local x;
+  private static Local y;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    G.reset();
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().setPhaseOption("cg.spark", "on");
+
+    Scene.v().addBasicClass(TARGET_CLASS, SootClass.BODIES);
+    Scene.v().loadNecessaryClasses();
+    SootClass target = Scene.v().getSootClass(TARGET_CLASS);
+    target.setApplicationClass();
+    Scene.v().setMainClass(target);
+
+    PackManager.v().getPack("cg").apply();
+    pag = (PAG) Scene.v().getPointsToAnalysis();
+
+    List<AssignStmt> calls = new ArrayList<AssignStmt>();
+    SootMethod main = target.getMethodByName("main");
+    for (Unit u : main.retrieveActiveBody().getUnits()) {
+      Stmt s = (Stmt) u;
+      if (s.containsInvokeExpr() && s.getInvokeExpr().getMethodRef().name().equals("id")) {
+        calls.add((AssignStmt) s);
+      }
+    }
+    assertEquals(2, calls.size());
+    a = (Local) calls.get(0).getInvokeExpr().getArg(0);
+    x = (Local) calls.get(0).getLeftOp();
+    b = (Local) calls.get(1).getInvokeExpr().getArg(0);
+    y = (Local) calls.get(1).getLeftOp();
+  }
+
+  /**
+   * Counts the engines borrowed for refinement, i.e., the queries that are not answered from the cache
+   */
+  private static class CountingService extends DemandCSQueryService {
+    final AtomicInteger refinements = new AtomicInteger();
+
+    CountingService(int maxTraversal, int maxPasses) {
+      this(maxTraversal, maxPasses, 0);
+    }
+
+    CountingService(int maxTraversal, int maxPasses, long timeBudgetMillis) {
+      super(DemandCSQueryServiceTest.pag, maxTraversal, maxPasses, timeBudgetMillis);
+    }
+
+    @Override
+    protected DemandCSPointsTo acquireEngine() {
+      refinements.incrementAndGet();
+      return super.acquireEngine();
+    }
+  }
+
+  private static CountingService newService() {
+    return new CountingService(DemandCSPointsTo.DEFAULT_MAX_TRAVERSAL, DemandCSPointsTo.DEFAULT_MAX_PASSES);
+  }
+
+  @Test
+  public void refinesContextInsensitiveAliases() {
+    // Spark merges the objects passed through id
+    assertTrue(pag.reachingObjects(x).hasNonEmptyIntersection(pag.reachingObjects(y)));
+
+    DemandCSQueryService service = newService();
+    assertFalse(service.mayAlias(x, y));
+    assertTrue(service.mayAlias(x, a));
+    assertTrue(service.mayAlias(y, b));
+    assertFalse(service.mayAlias(x, b));
+  }
+
+  @Test
+  public void refinedSetsAreCached() {
+    CountingService service = newService();
+    PointsToSet first = service.reachingObjects(x);
+    assertTrue(first instanceof AllocAndContextSet);
+    assertEquals(1, service.refinements.get());
+
+    assertSame(first, service.reachingObjects(x));
+    assertEquals(1, service.refinements.get());
+
+    service.clearCache();
+    service.reachingObjects(x);
+    assertEquals(2, service.refinements.get());
+  }
+
+  @Test
+  public void fallsBackToSparkWhenOverBudget() {
+    // one node per pass is not enough to reach the allocation
+    CountingService service = new CountingService(1, 1);
+    PointsToSet result = service.reachingObjects(x);
+    assertTrue(result instanceof WrappedPointsToSet);
+    assertEquals(pag.reachingObjects(x).possibleTypes(), result.possibleTypes());
+    assertEquals(1, service.refinements.get());
+
+    // the failed query is not refined again
+    assertTrue(service.reachingObjects(x) instanceof WrappedPointsToSet);
+    assertEquals(1, service.refinements.get());
+    assertTrue(service.mayAlias(x, y));
+  }
+
+  @Test
+  public void timedOutQueriesAreRetried() {
+    // the clock lags behind by an hour on the first query, so that its deadline has already passed when it starts
+    final AtomicInteger lagging = new AtomicInteger(1);
+    CountingService service = new CountingService(DemandCSPointsTo.DEFAULT_MAX_TRAVERSAL,
+        DemandCSPointsTo.DEFAULT_MAX_PASSES, 1000) {
+      @Override
+      protected long nanoTime() {
+        long now = super.nanoTime();
+        return lagging.getAndSet(0) > 0 ? now - TimeUnit.HOURS.toNanos(1) : now;
+      }
+    };
+    assertTrue(service.reachingObjects(x) instanceof WrappedPointsToSet);
+    assertEquals(1, service.refinements.get());
+
+    // unlike a query over the traversal budget, the timed out query is refined again
+    assertTrue(service.reachingObjects(x) instanceof AllocAndContextSet);
+    assertEquals(2, service.refinements.get());
+  }
+
+  @Test
+  public void concurrentQueriesAgreeWithSequentialOnes() throws Exception {
+    final Local[] locals = { a, b, x, y };
+    DemandCSQueryService sequential = newService();
+    final boolean[][] expected = new boolean[locals.length][locals.length];
+    for (int i = 0; i < locals.length; i++) {
+      for (int j = 0; j < locals.length; j++) {
+        expected[i][j] = sequential.mayAlias(locals[i], locals[j]);
+      }
+    }
+
+    final DemandCSQueryService service = newService();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<boolean[][]>> futures = new ArrayList<Future<boolean[][]>>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(new Callable<boolean[][]>() {
+          @Override
+          public boolean[][] call() {
+            boolean[][] ret = new boolean[locals.length][locals.length];
+            for (int i = 0; i < locals.length; i++) {
+              for (int j = 0; j < locals.length; j++) {
+                ret[i][j] = service.mayAlias(locals[i], locals[j]);
+              }
+            }
+            return ret;
+          }
+        }));
+      }
+      for (Future<boolean[][]> f : futures) {
+        boolean[][] actual = f.get();
+        for (int i = 0; i < locals.length; i++) {
+          for (int j = 0; j < locals.length; j++) {
+            assertEquals(locals[i] + " and " + locals[j], expected[i][j], actual[i][j]);
+          }
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package soot.jimple.spark.ondemand.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Passes two objects through the same method, so that the context-insensitive points-to sets of the results alias while the
+ * context-sensitive ones do not.
+ */
+public class Aliasing {
+  static Object id(Object o) {
+    return o;
+  }
+
+  static void use(Object x, Object y) {
+  }
+
+  public static void main(String[] args) {
+    Object a = new Object();
+    Object b = new Object();
+    use(id(a), id(b));
+  }
+}
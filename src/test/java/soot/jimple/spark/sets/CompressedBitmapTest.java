@@ -0,0 +1,106 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+public class CompressedBitmapTest {
+
+  private static CompressedBitmap of(int... elements) {
+    return CompressedBitmap.of(elements, elements.length);
+  }
+
+  private static List<Integer> toList(CompressedBitmap b) {
+    final List<Integer> result = new ArrayList<Integer>();
+    b.forEach(new IntConsumer() {
+      public void accept(int e) {
+        result.add(e);
+      }
+    });
+    return result;
+  }
+
+  @Test
+  public void equalSetsAreShared() {
+    CompressedBitmap a = of(1, 5, 70000);
+    CompressedBitmap b = of(1, 5, 70000);
+    assertSame(a, b);
+    assertSame(a, of(1).union(of(5, 70000)));
+    assertSame(CompressedBitmap.EMPTY, of());
+  }
+
+  @Test
+  public void unionWithoutNewElementsReturnsSameBitmap() {
+    CompressedBitmap a = of(1, 2, 3, 100000);
+    assertSame(a, a.union(of(2, 100000)));
+    assertSame(a, a.union(CompressedBitmap.EMPTY));
+    assertSame(a, CompressedBitmap.EMPTY.union(a));
+  }
+
+  @Test
+  public void containsAndIterationOrder() {
+    CompressedBitmap a = of(3, 7).union(of(1, 65536, 65537));
+    assertEquals(5, a.cardinality());
+    assertTrue(a.contains(65536));
+    assertFalse(a.contains(2));
+    assertFalse(a.contains(131072));
+    assertEquals(Arrays.asList(1, 3, 7, 65536, 65537), toList(a));
+  }
+
+  @Test
+  public void denseContainers() {
+    int[] even = new int[3000];
+    int[] odd = new int[3000];
+    for (int i = 0; i < 3000; i++) {
+      even[i] = 2 * i;
+      odd[i] = 2 * i + 1;
+    }
+    CompressedBitmap a = CompressedBitmap.of(even, even.length);
+    CompressedBitmap b = a.union(CompressedBitmap.of(odd, odd.length));
+    assertEquals(6000, b.cardinality());
+    for (int i = 0; i < 6000; i++) {
+      assertTrue(b.contains(i));
+    }
+    assertFalse(b.contains(6000));
+
+    // The same contents built in a different order must yield the same
+    // bitmap
+    int[] all = new int[6000];
+    for (int i = 0; i < 6000; i++) {
+      all[i] = i;
+    }
+    assertSame(b, CompressedBitmap.of(all, all.length));
+    assertSame(b, b.union(a));
+  }
+
+}
@@ -0,0 +1,104 @@
+package soot.jimple.toolkits.annotation.purity;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+import soot.options.PurityOptions;
+
+/**
+ * Checks that the parallel bottom-up scheduling of {@link AbstractInterproceduralAnalysis} computes the same purity
+ * summaries as the sequential one on {@link soot.jimple.toolkits.annotation.purity.targets.Recursion}.
+ */
+public class ParallelPurityAnalysisTest {
+
+  private static final String TARGET_CLASS = "soot.jimple.toolkits.annotation.purity.targets.Recursion";
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    G.reset();
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().setPhaseOption("cg.spark", "on");
+
+    Scene.v().addBasicClass(TARGET_CLASS, SootClass.BODIES);
+    Scene.v().loadNecessaryClasses();
+    Scene.v().getSootClass(TARGET_CLASS).setApplicationClass();
+    Scene.v().setMainClass(Scene.v().getSootClass(TARGET_CLASS));
+
+    PackManager.v().getPack("cg").apply();
+  }
+
+  private static PurityInterproceduralAnalysis analyse(boolean parallel) {
+    SootMethod main = Scene.v().getMainMethod();
+    PurityOptions opts = new PurityOptions(
+        parallel ? Collections.singletonMap("parallel", "true") : Collections.<String, String>emptyMap());
+    return new PurityInterproceduralAnalysis(Scene.v().getCallGraph(), Collections.singletonList(main).iterator(), opts);
+  }
+
+  private static Set<SootMethod> analysedMethods(PurityInterproceduralAnalysis analysis) {
+    Set<SootMethod> ret = new HashSet<SootMethod>();
+    for (Iterator<SootMethod> it = analysis.getAnalysedMethods(); it.hasNext();) {
+      ret.add(it.next());
+    }
+    return ret;
+  }
+
+  @Test
+  public void parallelAndSequentialSummariesAreEqual() {
+    PurityInterproceduralAnalysis sequential = analyse(false);
+    PurityInterproceduralAnalysis parallel = analyse(true);
+
+    Set<SootMethod> methods = analysedMethods(sequential);
+    assertEquals(methods, analysedMethods(parallel));
+    SootClass target = Scene.v().getSootClass(TARGET_CLASS);
+    for (String name : new String[] { "build", "length", "setAll", "last", "isEven", "isOdd", "copy" }) {
+      assertTrue(name, methods.contains(target.getMethodByName(name)));
+    }
+
+    for (SootMethod m : methods) {
+      assertEquals(m.toString(), sequential.getSummaryFor(m), parallel.getSummaryFor(m));
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package soot.jimple.toolkits.annotation.purity.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Directly and mutually recursive methods that read, write and allocate objects, for the purity analysis tests.
+ */
+public class Recursion {
+  Recursion next;
+  int value;
+
+  static Recursion build(int n) {
+    Recursion r = new Recursion();
+    if (n > 0) {
+      r.next = build(n - 1);
+    }
+    return r;
+  }
+
+  static int length(Recursion r) {
+    return r == null ? 0 : 1 + length(r.next);
+  }
+
+  void setAll(int v) {
+    value = v;
+    if (next != null) {
+      next.setAll(v);
+    }
+  }
+
+  Recursion last() {
+    return next == null ? this : next.last();
+  }
+
+  static boolean isEven(Recursion r) {
+    return r == null || isOdd(r.next);
+  }
+
+  static boolean isOdd(Recursion r) {
+    return r != null && isEven(r.next);
+  }
+
+  static Recursion copy(Recursion r) {
+    if (r == null) {
+      return null;
+    }
+    Recursion c = new Recursion();
+    c.value = r.value;
+    c.next = copy(r.next);
+    return c;
+  }
+
+  public static void main(String[] args) {
+    Recursion r = build(args.length);
+    r.setAll(length(r));
+    r.last().value = isEven(r) ? 1 : 0;
+    copy(r).setAll(isOdd(r) ? 2 : 3);
+  }
+}
@@ -0,0 +1,179 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.VoidType;
+import soot.options.Options;
+import soot.util.NumberedString;
+
+/**
+ * Checks that dispatch through the {@link DispatchTables} finds the same targets as the superclass chain walk that
+ * {@link VirtualCalls#resolveNonSpecial(soot.RefType, NumberedString)} did before the tables existed.
+ */
+public class DispatchTablesTest {
+
+  private static final List<String> NAMES = Arrays.asList("foo", "bar", "baz", "qux", "late");
+
+  private SootClass base;
+  private SootClass mid;
+  private SootClass leaf;
+  private SootClass missing;
+  private SootClass child;
+
+  /**
+   * Creates the classes
+   *
+   * <pre>
+   * class Base { void foo() {...} void bar() {...} void baz() {...} }
+   * abstract class Mid extends Base { abstract void foo(); void bar() {...} }
+   * class Leaf extends Mid { void baz() {...} }
+   * phantom class Missing
+   * class Child extends Missing { void qux() {...} }
+   * </pre>
+   */
+  @Before
+  public void setUp() {
+    G.reset();
+    Options.v().set_allow_phantom_refs(true);
+    Scene.v().loadNecessaryClasses();
+
+    SootClass object = Scene.v().getObjectType().getSootClass();
+    base = addClass("dispatch.Base", Modifier.PUBLIC, object);
+    mid = addClass("dispatch.Mid", Modifier.PUBLIC | Modifier.ABSTRACT, base);
+    leaf = addClass("dispatch.Leaf", Modifier.PUBLIC, mid);
+    missing = addClass("dispatch.Missing", Modifier.PUBLIC, object);
+    missing.setPhantomClass();
+    child = addClass("dispatch.Child", Modifier.PUBLIC, missing);
+
+    addMethod(base, "foo", Modifier.PUBLIC);
+    addMethod(base, "bar", Modifier.PUBLIC);
+    addMethod(base, "baz", Modifier.PUBLIC);
+    addMethod(mid, "foo", Modifier.PUBLIC | Modifier.ABSTRACT);
+    addMethod(mid, "bar", Modifier.PUBLIC);
+    addMethod(leaf, "baz", Modifier.PUBLIC);
+    addMethod(child, "qux", Modifier.PUBLIC);
+  }
+
+  private static SootClass addClass(String name, int modifiers, SootClass superClass) {
+    SootClass sc = new SootClass(name, modifiers);
+    sc.setSuperclass(superClass);
+    Scene.v().addClass(sc);
+    return sc;
+  }
+
+  private static SootMethod addMethod(SootClass sc, String name, int modifiers) {
+    SootMethod m = new SootMethod(name, Collections.<Type>emptyList(), VoidType.v(), modifiers);
+    sc.addMethod(m);
+    return m;
+  }
+
+  private static NumberedString subSig(String name) {
+    return Scene.v().getSubSigNumberer().findOrAdd("void " + name + "()");
+  }
+
+  /**
+   * Resolves a call the way resolveNonSpecial did without dispatch tables, and without its memo
+   */
+  private static SootMethod walk(SootClass cls, NumberedString subSig) {
+    SootMethod m = cls.getMethodUnsafe(subSig);
+    if (m != null) {
+      return m.isConcrete() || m.isNative() || m.isPhantom() ? m : null;
+    }
+    SootClass c = cls.getSuperclassUnsafe();
+    return c == null ? null : walk(c, subSig);
+  }
+
+  private void assertSameAsWalk() {
+    for (SootClass cls : Arrays.asList(base, mid, leaf, missing, child)) {
+      for (String name : NAMES) {
+        NumberedString subSig = subSig(name);
+        assertSame(cls.getName() + "." + name, walk(cls, subSig),
+            VirtualCalls.v().resolveNonSpecial(cls.getType(), subSig));
+      }
+    }
+  }
+
+  @Test
+  public void abstractOverrides() {
+    assertSameAsWalk();
+    // Mid.foo() is abstract and hides Base.foo()
+    assertNull(VirtualCalls.v().resolveNonSpecial(leaf.getType(), subSig("foo")));
+    assertSame(mid.getMethodUnsafe(subSig("bar")), VirtualCalls.v().resolveNonSpecial(leaf.getType(), subSig("bar")));
+  }
+
+  @Test
+  public void phantomSuperclasses() {
+    assertSameAsWalk();
+
+    // methods may be added to phantom classes on the fly
+    SootMethod added = addMethod(missing, "late", Modifier.PUBLIC);
+    added.setPhantom(true);
+    assertSame(added, VirtualCalls.v().resolveNonSpecial(child.getType(), subSig("late")));
+    assertSameAsWalk();
+  }
+
+  @Test
+  public void methodsAddedAfterTablesAreBuilt() {
+    assertSameAsWalk();
+
+    SootMethod added = addMethod(base, "late", Modifier.PUBLIC);
+    assertSame(added, VirtualCalls.v().resolveNonSpecial(leaf.getType(), subSig("late")));
+    assertSameAsWalk();
+  }
+
+  @Test
+  public void methodsBecomingConcrete() {
+    assertSameAsWalk();
+
+    mid.setModifiers(Modifier.PUBLIC);
+    mid.getMethodUnsafe(subSig("foo")).setModifiers(Modifier.PUBLIC);
+    assertSameAsWalk();
+  }
+
+  @Test
+  public void clearDispatchTables() {
+    assertSameAsWalk();
+
+    // an added override of a target already in a table is only seen once the tables are cleared
+    SootMethod override = addMethod(leaf, "bar", Modifier.PUBLIC);
+    VirtualCalls.v().clearDispatchTables();
+    assertSame(override, VirtualCalls.v().resolveNonSpecial(leaf.getType(), subSig("bar")));
+    assertSameAsWalk();
+  }
+}
@@ -0,0 +1,107 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.options.Options;
+
+/**
+ * Builds the CHA call graph of {@link soot.jimple.toolkits.callgraph.targets.InterfaceDispatch} with and without the
+ * parallel option and checks that both have the same edges.
+ */
+public class ParallelCallGraphBuilderTest {
+
+  private static final String TARGET_CLASS = "soot.jimple.toolkits.callgraph.targets.InterfaceDispatch";
+  private static final String[] TARGET_CLASSES = { TARGET_CLASS, TARGET_CLASS + "$Shape", TARGET_CLASS + "$Named",
+      TARGET_CLASS + "$NamedShape", TARGET_CLASS + "$Polygon", TARGET_CLASS + "$AbstractPolygon",
+      TARGET_CLASS + "$Square", TARGET_CLASS + "$Triangle", TARGET_CLASS + "$Circle", TARGET_CLASS + "$Dot" };
+
+  /**
+   * @return the edges of the CHA call graph, each as source method, source statement, kind and target
+   */
+  private static Set<String> buildCallGraph(boolean parallel) throws IOException {
+    G.reset();
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().setPhaseOption("cg.cha", "parallel:" + parallel);
+
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+    for (String name : TARGET_CLASSES) {
+      Scene.v().getSootClass(name).setApplicationClass();
+    }
+    Scene.v().setMainClass(Scene.v().getSootClass(TARGET_CLASS));
+
+    PackManager.v().getPack("cg").apply();
+
+    Set<String> edges = new TreeSet<String>();
+    for (Iterator<Edge> it = Scene.v().getCallGraph().iterator(); it.hasNext();) {
+      Edge e = it.next();
+      edges.add(e.src() + " " + e.srcStmt() + " " + e.kind() + " " + e.tgt());
+    }
+    return edges;
+  }
+
+  @Test
+  public void parallelAndSequentialEdgesAreEqual() throws IOException {
+    Set<String> sequential = buildCallGraph(false);
+    Set<String> parallel = buildCallGraph(true);
+    assertEquals(sequential, parallel);
+
+    // the interface calls are resolved to all implementers, also through subinterfaces
+    assertTrue(containsEdge(sequential, "area()", TARGET_CLASS + "$AbstractPolygon: int area()"));
+    assertTrue(containsEdge(sequential, "area()", TARGET_CLASS + "$Circle: int area()"));
+    assertTrue(containsEdge(sequential, "area()", TARGET_CLASS + "$Dot: int area()"));
+    assertTrue(containsEdge(sequential, "name()", TARGET_CLASS + "$Triangle: java.lang.String name()"));
+    assertTrue(containsEdge(sequential, "corners()", TARGET_CLASS + "$Square: int corners()"));
+  }
+
+  private static boolean containsEdge(Set<String> edges, String call, String target) {
+    for (String e : edges) {
+      if (e.contains(call + ">") && e.endsWith("<" + target + ">")) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
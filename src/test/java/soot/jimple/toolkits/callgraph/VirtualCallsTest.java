@@ -0,0 +1,133 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.AnySubType;
+import soot.G;
+import soot.Modifier;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.options.Options;
+import soot.util.NumberedString;
+import soot.util.queue.ChunkedQueue;
+import soot.util.queue.QueueReader;
+
+/**
+ * Checks the resolution of calls on any subtype of an interface with library signature resolution, and that a memoized
+ * resolution finds the same targets as the first one.
+ */
+public class VirtualCallsTest {
+
+  private SootClass iface;
+  private SootMethod implementation;
+  private SootMethod bySignature;
+  private NumberedString subSig;
+
+  /**
+   * Creates the classes
+   *
+   * <pre>
+   * class A {}
+   * class B extends A {}
+   * interface I { A foo(B b); }
+   * class D implements I { A foo(B b) {...} }
+   * class C { B foo(A a) {...} }
+   * </pre>
+   *
+   * C does not implement I, but a library client may extend C and implement I, so that C.foo(A) overrides I.foo(B).
+   */
+  @Before
+  public void setUp() {
+    G.reset();
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().setPhaseOption("cg", "library:signature-resolution");
+    Scene.v().loadNecessaryClasses();
+
+    SootClass object = Scene.v().getObjectType().getSootClass();
+    SootClass a = addClass("sig.A", Modifier.PUBLIC, object);
+    SootClass b = addClass("sig.B", Modifier.PUBLIC, a);
+    iface = addClass("sig.I", Modifier.PUBLIC | Modifier.INTERFACE | Modifier.ABSTRACT, object);
+    SootClass d = addClass("sig.D", Modifier.PUBLIC, object);
+    d.addInterface(iface);
+    SootClass c = addClass("sig.C", Modifier.PUBLIC, object);
+
+    SootMethod declared = new SootMethod("foo", Collections.<Type>singletonList(b.getType()), a.getType(),
+        Modifier.PUBLIC | Modifier.ABSTRACT);
+    iface.addMethod(declared);
+    implementation = new SootMethod("foo", Collections.<Type>singletonList(b.getType()), a.getType(), Modifier.PUBLIC);
+    d.addMethod(implementation);
+    bySignature = new SootMethod("foo", Collections.<Type>singletonList(a.getType()), b.getType(), Modifier.PUBLIC);
+    c.addMethod(bySignature);
+    subSig = declared.getNumberedSubSignature();
+  }
+
+  private static SootClass addClass(String name, int modifiers, SootClass superClass) {
+    SootClass sc = new SootClass(name, modifiers);
+    sc.setSuperclass(superClass);
+    Scene.v().addClass(sc);
+    return sc;
+  }
+
+  private Set<SootMethod> resolve() {
+    ChunkedQueue<SootMethod> targets = new ChunkedQueue<SootMethod>();
+    QueueReader<SootMethod> reader = targets.reader();
+    RefType base = iface.getType();
+    VirtualCalls.v().resolve(AnySubType.v(base), base, subSig, implementation, targets);
+
+    Set<SootMethod> ret = new HashSet<SootMethod>();
+    while (reader.hasNext()) {
+      ret.add(reader.next());
+    }
+    return ret;
+  }
+
+  @Test
+  public void resolvesBySignature() {
+    Set<SootMethod> expected = new HashSet<SootMethod>();
+    expected.add(implementation);
+    expected.add(bySignature);
+
+    assertEquals(expected, resolve());
+  }
+
+  @Test
+  public void memoizedResolutionFindsSameTargets() {
+    Set<SootMethod> first = resolve();
+    Set<SootMethod> second = resolve();
+
+    assertEquals(2, first.size());
+    assertEquals(first, second);
+  }
+}
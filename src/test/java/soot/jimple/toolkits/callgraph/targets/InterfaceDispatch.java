@@ -0,0 +1,104 @@
+package soot.jimple.toolkits.callgraph.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Calls through interfaces with subinterfaces, several implementers and abstract classes, for the call graph tests.
+ */
+public class InterfaceDispatch {
+  interface Shape {
+    int area();
+  }
+
+  interface Named {
+    String name();
+  }
+
+  interface NamedShape extends Shape, Named {
+  }
+
+  interface Polygon extends NamedShape {
+    int corners();
+  }
+
+  static abstract class AbstractPolygon implements Polygon {
+    public String name() {
+      return "polygon";
+    }
+
+    public int area() {
+      return corners() * 10;
+    }
+  }
+
+  static class Square extends AbstractPolygon {
+    public int corners() {
+      return 4;
+    }
+  }
+
+  static class Triangle extends AbstractPolygon {
+    public int corners() {
+      return 3;
+    }
+
+    public String name() {
+      return "triangle";
+    }
+  }
+
+  static class Circle implements NamedShape {
+    public int area() {
+      return 3;
+    }
+
+    public String name() {
+      return "circle";
+    }
+  }
+
+  static class Dot implements Shape {
+    public int area() {
+      return 0;
+    }
+  }
+
+  public static void main(String[] args) {
+    Shape[] shapes = { new Square(), new Triangle(), new Circle(), new Dot() };
+    int total = 0;
+    for (Shape s : shapes) {
+      total += s.area();
+    }
+    total += describe(new Circle()).length();
+    total += corners(args.length > 0 ? new Square() : new Triangle());
+    System.out.println(total);
+  }
+
+  static String describe(Named n) {
+    return n.name();
+  }
+
+  static int corners(Polygon p) {
+    return p.corners() + p.name().length();
+  }
+}
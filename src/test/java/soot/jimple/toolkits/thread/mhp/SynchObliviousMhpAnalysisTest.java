@@ -0,0 +1,103 @@
+package soot.jimple.toolkits.thread.mhp;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+
+/**
+ * Checks the may-happen-in-parallel results for the threads of
+ * {@link soot.jimple.toolkits.thread.synchronization.targets.SharedCounters}.
+ */
+public class SynchObliviousMhpAnalysisTest {
+
+  private static final String TARGET_CLASS = "soot.jimple.toolkits.thread.synchronization.targets.SharedCounters";
+  private static final String[] TARGET_CLASSES
+      = { TARGET_CLASS, TARGET_CLASS + "$Hitter", TARGET_CLASS + "$Misser", TARGET_CLASS + "$Incrementer" };
+
+  private static MhpTester mhp;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    G.reset();
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().setPhaseOption("cg.spark", "on");
+
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+    for (String name : TARGET_CLASSES) {
+      Scene.v().getSootClass(name).setApplicationClass();
+    }
+    Scene.v().setMainClass(Scene.v().getSootClass(TARGET_CLASS));
+
+    PackManager.v().getPack("cg").apply();
+    mhp = new SynchObliviousMhpAnalysis();
+  }
+
+  private static SootMethod method(String className, String subSignature) {
+    return Scene.v().getSootClass(className).getMethod(subSignature);
+  }
+
+  @Test
+  public void differentThreadsMayHappenInParallel() {
+    SootMethod hitter = method(TARGET_CLASS + "$Hitter", "void run()");
+    SootMethod misser = method(TARGET_CLASS + "$Misser", "void run()");
+    SootMethod incrementer = method(TARGET_CLASS + "$Incrementer", "void run()");
+    SootMethod main = method(TARGET_CLASS, "void main(java.lang.String[])");
+
+    assertTrue(mhp.mayHappenInParallel(hitter, misser));
+    assertTrue(mhp.mayHappenInParallel(misser, hitter));
+    assertTrue(mhp.mayHappenInParallel(hitter, incrementer));
+    assertTrue(mhp.mayHappenInParallel(main, hitter));
+    assertTrue(mhp.mayHappenInParallel(main, incrementer));
+  }
+
+  @Test
+  public void mainThreadDoesNotRunInParallelWithItself() {
+    SootMethod main = method(TARGET_CLASS, "void main(java.lang.String[])");
+    SootMethod init = method(TARGET_CLASS, "void <init>()");
+
+    assertFalse(mhp.mayHappenInParallel(main, main));
+    assertFalse(mhp.mayHappenInParallel(main, init));
+  }
+}
@@ -0,0 +1,162 @@
+package soot.jimple.toolkits.thread.synchronization;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootClass;
+import soot.options.Options;
+
+/**
+ * Checks that the indexed interference computation of {@link CriticalSectionInterferenceGraph} finds the same groups and
+ * dependencies as the all-pairs search.
+ */
+public class CriticalSectionInterferenceGraphTest {
+
+  private static final String TARGET_CLASS = "soot.jimple.toolkits.thread.synchronization.targets.SharedCounters";
+  private static final String[] TARGET_CLASSES
+      = { TARGET_CLASS, TARGET_CLASS + "$Hitter", TARGET_CLASS + "$Misser", TARGET_CLASS + "$Incrementer" };
+
+  private static CriticalSectionInterferenceGraph allocatorGraph;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    G.reset();
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().setPhaseOption("cg.spark", "on");
+    Options.v().setPhaseOption("wjtp.tn", "enabled:true");
+
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+    for (String name : TARGET_CLASSES) {
+      Scene.v().getSootClass(name).setApplicationClass();
+    }
+    Scene.v().setMainClass(Scene.v().getSootClass(TARGET_CLASS));
+
+    PackManager.v().getPack("cg").apply();
+    LockAllocator.v().transform("wjtp.tn", PhaseOptions.v().getPhaseOptions("wjtp.tn"));
+    allocatorGraph = LockAllocator.v().getInterferenceGraph();
+  }
+
+  /**
+   * Computes the groups of fresh copies of the critical sections found by the lock allocator.
+   */
+  private static List<CriticalSection> computeGroups(boolean indexed) {
+    List<CriticalSection> copies = new ArrayList<CriticalSection>();
+    for (CriticalSection tn : allocatorGraph.criticalSections) {
+      CriticalSection copy = new CriticalSection(tn);
+      copy.setNumber = 0;
+      copy.group = null;
+      copy.edges = new HashSet<CriticalSectionDataDependency>();
+      copies.add(copy);
+    }
+    new CriticalSectionInterferenceGraph(copies, allocatorGraph.mhp, false, false, false, indexed);
+    return copies;
+  }
+
+  /**
+   * Maps each critical section to the indices of the sections in its group, or to null if it was deleted.
+   */
+  private static List<Set<Integer>> partition(List<CriticalSection> sections) {
+    List<Set<Integer>> ret = new ArrayList<Set<Integer>>();
+    for (CriticalSection tn : sections) {
+      if (tn.setNumber <= 0) {
+        ret.add(null);
+        continue;
+      }
+      Set<Integer> members = new TreeSet<Integer>();
+      for (int j = 0; j < sections.size(); j++) {
+        if (sections.get(j).setNumber == tn.setNumber) {
+          members.add(j);
+        }
+      }
+      ret.add(members);
+    }
+    return ret;
+  }
+
+  /**
+   * Maps each critical section to its dependencies, as the index and size of the other section.
+   */
+  private static List<Set<String>> dependencies(List<CriticalSection> sections) {
+    Map<CriticalSection, Integer> index = new IdentityHashMap<CriticalSection, Integer>();
+    for (int i = 0; i < sections.size(); i++) {
+      index.put(sections.get(i), i);
+    }
+    List<Set<String>> ret = new ArrayList<Set<String>>();
+    for (CriticalSection tn : sections) {
+      Set<String> edges = new TreeSet<String>();
+      for (CriticalSectionDataDependency dep : tn.edges) {
+        edges.add(index.get(dep.other) + ":" + dep.size);
+      }
+      ret.add(edges);
+    }
+    return ret;
+  }
+
+  @Test
+  public void fixtureHasInterferingSections() {
+    assertFalse(allocatorGraph.criticalSections.isEmpty());
+
+    boolean grouped = false;
+    for (Set<Integer> group : partition(computeGroups(false))) {
+      grouped |= group != null;
+    }
+    assertTrue("The fixture should have at least one group of interfering critical sections", grouped);
+  }
+
+  @Test
+  public void indexedGroupsMatchAllPairs() {
+    List<CriticalSection> allPairs = computeGroups(false);
+    List<CriticalSection> indexed = computeGroups(true);
+
+    assertEquals(partition(allPairs), partition(indexed));
+    assertEquals(dependencies(allPairs), dependencies(indexed));
+  }
+}
@@ -0,0 +1,91 @@
+package soot.jimple.toolkits.thread.synchronization.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Threads that update shared counters under different locks, for the lock allocation tests.
+ */
+public class SharedCounters {
+  static int hits;
+  static int misses;
+  static int total;
+  static final Object HITS_LOCK = new Object();
+  static final Object MISSES_LOCK = new Object();
+
+  int value;
+  final Object lock = new Object();
+
+  static class Hitter extends Thread {
+    @Override
+    public void run() {
+      for (int i = 0; i < 10; i++) {
+        synchronized (HITS_LOCK) {
+          hits++;
+        }
+      }
+    }
+  }
+
+  static class Misser extends Thread {
+    @Override
+    public void run() {
+      synchronized (MISSES_LOCK) {
+        misses++;
+      }
+      synchronized (HITS_LOCK) {
+        total = hits + misses;
+      }
+    }
+  }
+
+  static class Incrementer extends Thread {
+    final SharedCounters counters;
+
+    Incrementer(SharedCounters counters) {
+      this.counters = counters;
+    }
+
+    @Override
+    public void run() {
+      synchronized (counters.lock) {
+        counters.value++;
+      }
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    SharedCounters counters = new SharedCounters();
+    Thread[] threads = { new Hitter(), new Misser(), new Incrementer(counters), new Incrementer(counters) };
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    int value;
+    synchronized (counters.lock) {
+      value = counters.value;
+    }
+    System.out.println(value + total);
+  }
+}
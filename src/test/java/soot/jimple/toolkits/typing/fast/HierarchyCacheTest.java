@@ -0,0 +1,149 @@
+package soot.jimple.toolkits.typing.fast;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.Printer;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.options.Options;
+
+/**
+ * Checks that the fast type assigner gives the same types with and without the {@link HierarchyCache}, and that the memo
+ * does not survive a change of the class hierarchy or a reset.
+ */
+public class HierarchyCacheTest {
+
+  private static final String DISPATCH = "soot.jimple.toolkits.callgraph.targets.InterfaceDispatch";
+  private static final String[] TARGET_CLASSES = { DISPATCH, DISPATCH + "$AbstractPolygon", DISPATCH + "$Square",
+      DISPATCH + "$Triangle", DISPATCH + "$Circle", DISPATCH + "$Dot", "soot.jbco.targets.Obfuscatable",
+      "soot.jbco.targets.Obfuscatable$Account", "soot.jbco.targets.Obfuscatable$Savings",
+      "soot.jimple.spark.geom.geomPA.targets.Containers", "soot.asm.backend.targets.ControlStructures",
+      "soot.asm.backend.targets.TryCatch", "soot.asm.backend.targets.InstanceOfCasts" };
+
+  private static void loadClasses() throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+  }
+
+  /**
+   * @return the typed Jimple of each method of the target classes, keyed by method signature
+   */
+  private static Map<String, String> type(boolean cached) throws IOException {
+    loadClasses();
+    HierarchyCache.v().setEnabled(cached);
+
+    Map<String, String> jimple = new TreeMap<String, String>();
+    for (String name : TARGET_CLASSES) {
+      for (SootMethod m : Scene.v().getSootClass(name).getMethods()) {
+        if (!m.isConcrete()) {
+          continue;
+        }
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        Printer.v().printTo(m.retrieveActiveBody(), writer);
+        writer.flush();
+        jimple.put(m.getSignature(), out.toString());
+      }
+    }
+    return jimple;
+  }
+
+  @Test
+  public void typingMatchesWithAndWithoutCache() throws IOException {
+    Map<String, String> uncached = type(false);
+    Map<String, String> cached = type(true);
+    assertEquals(uncached, cached);
+  }
+
+  @Test
+  public void cacheIsDroppedWhenHierarchyChanges() throws IOException {
+    loadClasses();
+    HierarchyCache cache = HierarchyCache.v();
+    RefType square = RefType.v(DISPATCH + "$Square");
+    RefType triangle = RefType.v(DISPATCH + "$Triangle");
+    RefType polygon = RefType.v(DISPATCH + "$AbstractPolygon");
+
+    Collection<Type> lcas = BytecodeHierarchy.lcas_(square, triangle);
+    assertTrue(lcas.contains(polygon));
+    assertNotNull(cache.getLcas(square, triangle));
+    assertTrue(BytecodeHierarchy.ancestor_(polygon, square));
+    assertNotNull(cache.getAncestor(polygon, square));
+
+    // Adding a class builds a new hierarchy, so earlier answers are gone
+    SootClass hexagon = new SootClass(DISPATCH + "$Hexagon", Modifier.PUBLIC);
+    hexagon.setSuperclass(Scene.v().getSootClass(DISPATCH + "$AbstractPolygon"));
+    Scene.v().addClass(hexagon);
+    assertNull(cache.getLcas(square, triangle));
+    assertNull(cache.getAncestor(polygon, square));
+
+    assertTrue(BytecodeHierarchy.ancestor_(polygon, hexagon.getType()));
+    assertEquals(lcas, BytecodeHierarchy.lcas_(square, triangle));
+    assertTrue(BytecodeHierarchy.lcas_(square, hexagon.getType()).contains(polygon));
+
+    // The same holds if the hierarchy is released without changes
+    Scene.v().releaseFastHierarchy();
+    assertNull(cache.getLcas(square, triangle));
+  }
+
+  @Test
+  public void cacheIsDroppedOnReset() throws IOException {
+    loadClasses();
+    HierarchyCache cache = HierarchyCache.v();
+    RefType square = RefType.v(DISPATCH + "$Square");
+    RefType triangle = RefType.v(DISPATCH + "$Triangle");
+    BytecodeHierarchy.lcas_(square, triangle);
+    assertNotNull(cache.getLcas(square, triangle));
+
+    loadClasses();
+    assertNotSame(cache, HierarchyCache.v());
+    assertNull(HierarchyCache.v().getLcas(RefType.v(DISPATCH + "$Square"), RefType.v(DISPATCH + "$Triangle")));
+  }
+}
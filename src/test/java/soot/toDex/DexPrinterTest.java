@@ -0,0 +1,108 @@
+package soot.toDex;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+
+/**
+ * Translates several test classes into dex code one by one and concurrently, and checks that the dex files are identical.
+ */
+public class DexPrinterTest {
+
+  private static final String[] TARGET_CLASSES = { "soot.jbco.targets.Obfuscatable",
+      "soot.jbco.targets.Obfuscatable$Account", "soot.jbco.targets.Obfuscatable$Savings",
+      "soot.asm.backend.targets.ControlStructures", "soot.asm.backend.targets.TryCatch", "soot.asm.backend.targets.Arrays",
+      "soot.asm.backend.targets.Stores", "soot.asm.backend.targets.LogicalOperations", "soot.asm.backend.targets.Dups",
+      "soot.asm.backend.targets.Monitor" };
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private List<SootClass> loadClasses() throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_dex);
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+
+    List<SootClass> classes = new ArrayList<SootClass>();
+    for (String name : TARGET_CLASSES) {
+      SootClass c = Scene.v().getSootClass(name);
+      for (SootMethod m : c.getMethods()) {
+        if (m.isConcrete()) {
+          m.retrieveActiveBody();
+        }
+      }
+      classes.add(c);
+    }
+    return classes;
+  }
+
+  private List<File> write(DexPrinter printer, String name) throws IOException {
+    File dir = tmp.newFolder(name);
+    return printer.dexBuilder.writeTo(dir.getPath());
+  }
+
+  @Test
+  public void parallelAndSequentialDexAreEqual() throws IOException {
+    DexPrinter sequential = new DexPrinter();
+    for (SootClass c : loadClasses()) {
+      sequential.add(c);
+    }
+    List<File> expected = write(sequential, "sequential");
+
+    DexPrinter parallel = new DexPrinter();
+    parallel.addAll(loadClasses().iterator());
+    List<File> actual = write(parallel, "parallel");
+
+    assertFalse(expected.isEmpty());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getName(), actual.get(i).getName());
+      assertArrayEquals(expected.get(i).getName(), Files.readAllBytes(expected.get(i).toPath()),
+          Files.readAllBytes(actual.get(i).toPath()));
+    }
+  }
+}
@@ -27,13 +27,19 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import junit.framework.AssertionFailedError;
 
@@ -1515,6 +1521,115 @@ public class ThrowableSetTest {
 		assertTrue(bothPhantoms == bothPhantoms2);
 	}
 
+	@Test
+	public void test_15_InternedAdds() throws Exception {
+		ThrowableSet arithmetic = mgr.EMPTY.add(util.ARITHMETIC_EXCEPTION);
+		ThrowableSet nullPointer = mgr.EMPTY.add(util.NULL_POINTER_EXCEPTION);
+
+		// Equal results of add() are the same instance, whatever the order.
+		ThrowableSet both = arithmetic.add(util.NULL_POINTER_EXCEPTION);
+		assertTrue(both == nullPointer.add(util.ARITHMETIC_EXCEPTION));
+		assertTrue(both == arithmetic.add(nullPointer));
+		assertTrue(both == nullPointer.add(arithmetic));
+		assertTrue(both == both.add(arithmetic));
+
+		ThrowableSet anyRuntime = mgr.EMPTY.add(AnySubType.v(util.RUNTIME_EXCEPTION));
+		assertTrue(anyRuntime == anyRuntime.add(util.ARITHMETIC_EXCEPTION));
+		assertTrue(anyRuntime == both.add(AnySubType.v(util.RUNTIME_EXCEPTION)));
+		assertTrue(anyRuntime == anyRuntime.add(both));
+
+		// Concurrent adds of the same types in different orders
+		// also agree on one instance.
+		final RefType[] types = new RefType[] {
+				util.ARITHMETIC_EXCEPTION, util.ARRAY_STORE_EXCEPTION,
+				util.CLASS_CAST_EXCEPTION, util.ILLEGAL_MONITOR_STATE_EXCEPTION,
+				util.NEGATIVE_ARRAY_SIZE_EXCEPTION, util.NULL_POINTER_EXCEPTION,
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<ThrowableSet>> futures = new ArrayList<Future<ThrowableSet>>();
+			for (int t = 0; t < types.length; t++) {
+				final int start = t;
+				futures.add(executor.submit(new Callable<ThrowableSet>() {
+					@Override
+					public ThrowableSet call() {
+						ThrowableSet s = mgr.EMPTY;
+						for (int i = 0; i < types.length; i++) {
+							s = s.add(types[(start + i) % types.length]);
+						}
+						return s;
+					}
+				}));
+			}
+			ThrowableSet first = futures.get(0).get();
+			for (Future<ThrowableSet> f : futures) {
+				assertTrue(first == f.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void test_16_InternedRemoves() {
+		ThrowableSet arithmetic = mgr.EMPTY.add(util.ARITHMETIC_EXCEPTION);
+		ThrowableSet nullPointer = mgr.EMPTY.add(util.NULL_POINTER_EXCEPTION);
+		ThrowableSet both = arithmetic.add(nullPointer);
+
+		// Equal results of remove() are the same instance as equal
+		// results of add().
+		assertTrue(arithmetic == both.remove(nullPointer));
+		assertTrue(nullPointer == both.remove(arithmetic));
+		assertTrue(mgr.EMPTY == both.remove(both));
+		assertTrue(both == both.remove(mgr.EMPTY));
+		assertTrue(both == both.remove(mgr.EMPTY.add(util.CLASS_CAST_EXCEPTION)));
+		assertTrue(both == both.remove(nullPointer).add(nullPointer));
+
+		// The results of whichCatchableAs() are interned as well.
+		ThrowableSet anyRuntime = mgr.EMPTY.add(AnySubType.v(util.RUNTIME_EXCEPTION));
+		ThrowableSet.Pair pair0 = anyRuntime.whichCatchableAs(util.ARITHMETIC_EXCEPTION);
+		ThrowableSet.Pair pair1 = anyRuntime.whichCatchableAs(util.ARITHMETIC_EXCEPTION);
+		assertTrue(pair0.getCaught() == pair1.getCaught());
+		assertTrue(pair0.getUncaught() == pair1.getUncaught());
+	}
+
+	@Test
+	public void test_17_Equality() {
+		ThrowableSet arithmetic = mgr.EMPTY.add(util.ARITHMETIC_EXCEPTION);
+		ThrowableSet both = arithmetic.add(util.NULL_POINTER_EXCEPTION);
+		ThrowableSet same = mgr.EMPTY.add(util.NULL_POINTER_EXCEPTION).add(util.ARITHMETIC_EXCEPTION);
+
+		// Equal sets are equal and have equal hash codes.
+		assertEquals(both, same);
+		assertEquals(both.hashCode(), same.hashCode());
+		assertEquals(both, both);
+
+		// Different sets are not equal.
+		assertFalse(both.equals(arithmetic));
+		assertFalse(arithmetic.equals(both));
+		assertFalse(both.equals(mgr.EMPTY));
+		assertFalse(both.equals(null));
+		assertFalse(both.equals(util.ARITHMETIC_EXCEPTION));
+
+		// A type and AnySubType of it are different members.
+		ThrowableSet anyArithmetic = mgr.EMPTY.add(AnySubType.v(util.ARITHMETIC_EXCEPTION));
+		assertFalse(arithmetic.equals(anyArithmetic));
+
+		// Sets with the same included types but different excluded
+		// types are not equal.
+		ThrowableSet anyRuntime = mgr.EMPTY.add(AnySubType.v(util.RUNTIME_EXCEPTION));
+		ThrowableSet uncaught = anyRuntime.whichCatchableAs(util.ARITHMETIC_EXCEPTION).getUncaught();
+		assertFalse(anyRuntime.equals(uncaught));
+		assertFalse(uncaught.equals(anyRuntime));
+		assertEquals(uncaught, anyRuntime.whichCatchableAs(util.ARITHMETIC_EXCEPTION).getUncaught());
+
+		// Equal pairs of sets are equal.
+		assertEquals(anyRuntime.whichCatchableAs(util.ARITHMETIC_EXCEPTION),
+				anyRuntime.whichCatchableAs(util.ARITHMETIC_EXCEPTION));
+		assertFalse(anyRuntime.whichCatchableAs(util.ARITHMETIC_EXCEPTION)
+				.equals(anyRuntime.whichCatchableAs(util.NULL_POINTER_EXCEPTION)));
+	}
+
 	void printAllSets() {
 		for (ThrowableSet s : mgr.getThrowableSets()) {
 			System.err.println(s.toString());
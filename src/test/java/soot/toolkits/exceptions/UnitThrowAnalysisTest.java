@@ -23,6 +23,7 @@ package soot.toolkits.exceptions;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -55,12 +56,14 @@ import soot.Value;
 import soot.VoidType;
 import soot.grimp.Grimp;
 import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
 import soot.jimple.DivExpr;
 import soot.jimple.DoubleConstant;
 import soot.jimple.FloatConstant;
 import soot.jimple.IfStmt;
 import soot.jimple.InstanceFieldRef;
 import soot.jimple.IntConstant;
+import soot.jimple.InvokeStmt;
 import soot.jimple.Jimple;
 import soot.jimple.LongConstant;
 import soot.jimple.RemExpr;
@@ -1270,4 +1273,85 @@ public class UnitThrowAnalysisTest {
 		expectedCatch.add(utility.EXCEPTION);
 		assertEquals(expectedCatch, utility.catchableSubset(unitAnalysis.mightThrow(i)));
 	}
+
+	/**
+	 * Computes what the given unit might throw without the cache of
+	 * the analysis.
+	 */
+	private static ThrowableSet uncachedMightThrow(UnitThrowAnalysis analysis, Unit u) {
+		UnitThrowAnalysis.UnitSwitch sw = analysis.unitSwitch();
+		u.apply(sw);
+		return sw.getResult();
+	}
+
+	private void assertCachedMatchesUncached(UnitThrowAnalysis analysis, Unit u) {
+		ThrowableSet uncached = uncachedMightThrow(analysis, u);
+		assertEquals(u.toString(), uncached, analysis.mightThrow(u));
+		// The second query is answered from the cache.
+		assertEquals(u.toString(), uncached, analysis.mightThrow(u));
+	}
+
+	@Test
+	public void testCachedInvokeFieldAndArrayStmts() {
+		Local array = Jimple.v().newLocal("array", ArrayType.v(RefType.v("java.lang.Object"), 1));
+		Local object = Jimple.v().newLocal("object", RefType.v("java.lang.Object"));
+		Local index = Jimple.v().newLocal("index", IntType.v());
+		List<Stmt> stmts = Arrays.asList(new Stmt[] {
+				// invocations
+				Jimple.v().newInvokeStmt(floatStaticInvoke),
+				Jimple.v().newInvokeStmt(floatVirtualInvoke),
+				Jimple.v().newAssignStmt(floatLocal, floatVirtualInvoke),
+				// field accesses
+				Jimple.v().newAssignStmt(floatLocal, floatInstanceFieldRef),
+				Jimple.v().newAssignStmt(floatInstanceFieldRef, floatConstant),
+				Jimple.v().newAssignStmt(floatLocal, floatStaticFieldRef),
+				Jimple.v().newAssignStmt(floatStaticFieldRef, floatLocal),
+				// array accesses
+				Jimple.v().newAssignStmt(object, Jimple.v().newArrayRef(array, index)),
+				Jimple.v().newAssignStmt(Jimple.v().newArrayRef(array, index), object),
+				Jimple.v().newAssignStmt(index, Jimple.v().newLengthExpr(array)),
+				Jimple.v().newAssignStmt(array, Jimple.v().newNewArrayExpr(RefType.v("java.lang.Object"), index)),
+		});
+		for (Stmt s : stmts) {
+			assertCachedMatchesUncached(unitAnalysis, s);
+			assertCachedMatchesUncached(immaculateAnalysis, s);
+		}
+	}
+
+	@Test
+	public void testCachedStmtsChangedInPlace() {
+		Local array = Jimple.v().newLocal("array", ArrayType.v(RefType.v("java.lang.Object"), 1));
+		Local object = Jimple.v().newLocal("object", RefType.v("java.lang.Object"));
+		Local index = Jimple.v().newLocal("index", IntType.v());
+
+		// invoke: a static call becomes a virtual one, which might
+		// also throw a NullPointerException
+		InvokeStmt invoke = Jimple.v().newInvokeStmt(floatStaticInvoke);
+		ThrowableSet before = immaculateAnalysis.mightThrow(invoke);
+		invoke.setInvokeExpr(floatVirtualInvoke);
+		assertCachedMatchesUncached(immaculateAnalysis, invoke);
+		assertFalse(before.equals(immaculateAnalysis.mightThrow(invoke)));
+
+		// field access: an instance field becomes a static one
+		AssignStmt field = Jimple.v().newAssignStmt(floatLocal, floatInstanceFieldRef);
+		before = unitAnalysis.mightThrow(field);
+		field.setRightOp(floatStaticFieldRef);
+		assertCachedMatchesUncached(unitAnalysis, field);
+		assertFalse(before.equals(unitAnalysis.mightThrow(field)));
+
+		// array load: the array access is replaced by a local
+		AssignStmt load = Jimple.v().newAssignStmt(object, Jimple.v().newArrayRef(array, index));
+		before = unitAnalysis.mightThrow(load);
+		load.setRightOp(Jimple.v().newLocal("other", RefType.v("java.lang.Object")));
+		assertCachedMatchesUncached(unitAnalysis, load);
+		assertFalse(before.equals(unitAnalysis.mightThrow(load)));
+
+		// array store: once the array holds primitives, the store can
+		// no longer throw an ArrayStoreException
+		AssignStmt store = Jimple.v().newAssignStmt(Jimple.v().newArrayRef(array, index), object);
+		before = unitAnalysis.mightThrow(store);
+		array.setType(ArrayType.v(IntType.v(), 1));
+		assertCachedMatchesUncached(unitAnalysis, store);
+		assertFalse(before.equals(unitAnalysis.mightThrow(store)));
+	}
 }
@@ -26,9 +26,12 @@ package soot.toolkits.graph;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -249,6 +252,149 @@ public class TestDominance {
         kids = kid_ids(m);
         assertThat(kids.size(), is(0));
     }
+
+    private static Set<Integer> ids(Collection<Node> nodes) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Node n : nodes) {
+            ids.add(n.id);
+        }
+        return ids;
+    }
+
+    private static int id(Node n) {
+        return n == null ? -1 : n.id;
+    }
+
+    /**
+     * Checks that the semi-NCA finder agrees with the iterative finder on all nodes that are reachable from a head. The
+     * iterative finder reports every node as a dominator of an unreachable node, the semi-NCA finder only the node itself.
+     */
+    private static void assertSameDominators(DirectedGraph<Node> g, Node... unreachable) {
+        MHGDominatorsFinder<Node> expected = new MHGDominatorsFinder<Node>(g);
+        SemiNCADominatorsFinder<Node> actual = new SemiNCADominatorsFinder<Node>(g);
+        Set<Node> unreachableNodes = new HashSet<Node>(Arrays.asList(unreachable));
+        List<Node> all = new ArrayList<Node>();
+        for (Node n : g) {
+            all.add(n);
+        }
+
+        for (Node n : all) {
+            if (unreachableNodes.contains(n)) {
+                assertThat(ids(actual.getDominators(n)), is(Collections.singleton(n.id)));
+                assertThat(id(actual.getImmediateDominator(n)), is(-1));
+                assertThat(ids(expected.getDominators(n)), is(ids(all)));
+                continue;
+            }
+            assertThat(ids(actual.getDominators(n)), is(ids(expected.getDominators(n))));
+            assertThat(id(actual.getImmediateDominator(n)), is(id(expected.getImmediateDominator(n))));
+            for (Node d : all) {
+                if (!unreachableNodes.contains(d)) {
+                    assertThat(actual.isDominatedBy(n, d), is(expected.isDominatedBy(n, d)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void TestSemiNCAReducible() {
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        Node n4 = new Node(4);
+        Node n5 = new Node(5);
+        Node n6 = new Node(6);
+        Node n7 = new Node(7);
+        Node n8 = new Node(8);
+        // nested loops 2-7 and 3-5, with an exit from each loop
+        n1.addkid(n2);
+        n2.addkid(n3).addkid(n8);
+        n3.addkid(n4).addkid(n6);
+        n4.addkid(n5);
+        n5.addkid(n3).addkid(n7);
+        n6.addkid(n5);
+        n7.addkid(n2);
+        assertSameDominators(new Graph(n1));
+    }
+
+    @Test
+    public void TestSemiNCAAcyclic() {
+        Node x = new Node(4);
+        Node n = new Node(1).addkid((new Node(2)).addkid(x)).addkid((new Node(3)).addkid(x));
+        assertSameDominators(new Graph(n));
+    }
+
+    @Test
+    public void TestSemiNCAIrreducible() {
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        Node n4 = new Node(4);
+        Node n5 = new Node(5);
+        Node n6 = new Node(6);
+        // the loop 2-3 has two entries, and so has the loop 4-5 inside it
+        n1.addkid(n2).addkid(n3);
+        n2.addkid(n3).addkid(n4);
+        n3.addkid(n2).addkid(n5);
+        n4.addkid(n5).addkid(n6);
+        n5.addkid(n4).addkid(n2);
+        assertSameDominators(new Graph(n1));
+
+        SemiNCADominatorsFinder<Node> finder = new SemiNCADominatorsFinder<Node>(new Graph(n1));
+        assertThat(id(finder.getImmediateDominator(n2)), is(1));
+        assertThat(id(finder.getImmediateDominator(n3)), is(1));
+        assertThat(id(finder.getImmediateDominator(n6)), is(4));
+    }
+
+    @Test
+    public void TestSemiNCAMultiHead() {
+        final Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        Node n4 = new Node(4);
+        Node n5 = new Node(5);
+        final Node n6 = new Node(6);
+        // head 6 is also reachable from head 1
+        n1.addkid(n2).addkid(n6);
+        n2.addkid(n4);
+        n6.addkid(n3);
+        n3.addkid(n4);
+        n4.addkid(n5);
+        n5.addkid(n3);
+        Graph g = new Graph(n1) {
+            @Override
+            public List<Node> getHeads() {
+                return Arrays.asList(n1, n6);
+            }
+        };
+        assertSameDominators(g);
+
+        SemiNCADominatorsFinder<Node> finder = new SemiNCADominatorsFinder<Node>(g);
+        assertThat(ids(finder.getDominators(n6)), is(Collections.singleton(6)));
+        assertThat(finder.getImmediateDominator(n6), is((Node) null));
+        assertThat(ids(finder.getDominators(n4)), is(Collections.singleton(4)));
+    }
+
+    @Test
+    public void TestSemiNCAUnreachable() {
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        Node u1 = new Node(4);
+        Node u2 = new Node(5);
+        // 4 and 5 form a cycle that branches into the reachable part
+        n1.addkid(n2);
+        n2.addkid(n3);
+        u1.addkid(u2);
+        u2.addkid(u1).addkid(n2);
+        assertSameDominators(new Graph(n1), u1, u2);
+
+        SemiNCADominatorsFinder<Node> finder = new SemiNCADominatorsFinder<Node>(new Graph(n1));
+        assertThat(finder.isDominatedBy(u1, u1), is(true));
+        assertThat(finder.isDominatedBy(u1, n1), is(false));
+        assertThat(finder.isDominatedBy(n2, u2), is(false));
+        assertThat(new ArrayList<Node>(finder.getDominators(n3)), is(Arrays.asList(n3, n2, n1)));
+        assertThat(kid_ids(new DominatorTree<Node>(finder).getDode(u1)), is(empty()));
+    }
 }
 
 class Graph implements DirectedGraph<Node> {
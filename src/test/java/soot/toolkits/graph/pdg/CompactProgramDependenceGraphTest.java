@@ -0,0 +1,293 @@
+package soot.toolkits.graph.pdg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.RefType;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.toolkits.graph.Block;
+import soot.toolkits.graph.BriefBlockGraph;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+
+/**
+ * Checks the control and data dependences of {@link CompactProgramDependenceGraph} on small bodies, and compares the
+ * control dependences with those of {@link HashMutablePDG} where the latter computes them as well.
+ */
+public class CompactProgramDependenceGraphTest {
+
+  private final Jimple j = Jimple.v();
+  private JimpleBody body;
+  private Local x;
+  private Local y;
+  private Unit param;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    SootClass sc = new SootClass("Sample", Modifier.PUBLIC);
+    SootMethod m = new SootMethod("m", Collections.<Type>singletonList(IntType.v()), IntType.v(),
+        Modifier.PUBLIC | Modifier.STATIC);
+    sc.addMethod(m);
+    body = j.newBody(m);
+    m.setActiveBody(body);
+    x = local("x", IntType.v());
+    y = local("y", IntType.v());
+    param = add(j.newIdentityStmt(x, j.newParameterRef(IntType.v(), 0)));
+  }
+
+  /**
+   * <pre>
+   * if (x &gt; 0) y = 1; else y = 2;
+   * return y;
+   * </pre>
+   */
+  @Test
+  public void ifElse() {
+    Unit elseStmt = j.newAssignStmt(y, IntConstant.v(2));
+    Unit ret = j.newReturnStmt(y);
+    Unit branch = add(j.newIfStmt(j.newLeExpr(x, IntConstant.v(0)), elseStmt));
+    Unit thenStmt = add(j.newAssignStmt(y, IntConstant.v(1)));
+    Unit thenGoto = add(j.newGotoStmt(ret));
+    add(elseStmt);
+    add(ret);
+
+    CompactProgramDependenceGraph pdg = compactPDG();
+    assertDependences(pdg.getControlDependences(param));
+    assertDependences(pdg.getControlDependences(branch));
+    assertDependences(pdg.getControlDependences(thenStmt), branch);
+    assertDependences(pdg.getControlDependences(thenGoto), branch);
+    assertDependences(pdg.getControlDependences(elseStmt), branch);
+    assertDependences(pdg.getControlDependences(ret));
+
+    assertDependences(pdg.getDataDependences(branch), param);
+    assertDependences(pdg.getDataDependences(thenStmt));
+    assertDependences(pdg.getDataDependences(ret), thenStmt, elseStmt);
+
+    assertSameControlDependencesAsHashMutablePDG(pdg);
+  }
+
+  /**
+   * <pre>
+   * y = 0;
+   * while (x &gt; 0) { y = y + x; x = x - 1; }
+   * return y;
+   * </pre>
+   */
+  @Test
+  public void loop() {
+    Unit ret = j.newReturnStmt(y);
+    Unit init = add(j.newAssignStmt(y, IntConstant.v(0)));
+    Unit header = add(j.newIfStmt(j.newLeExpr(x, IntConstant.v(0)), ret));
+    Unit sum = add(j.newAssignStmt(y, j.newAddExpr(y, x)));
+    Unit decrement = add(j.newAssignStmt(x, j.newSubExpr(x, IntConstant.v(1))));
+    Unit backEdge = add(j.newGotoStmt(header));
+    add(ret);
+
+    CompactProgramDependenceGraph pdg = compactPDG();
+    assertDependences(pdg.getControlDependences(init));
+    // the header decides whether it is executed again
+    assertDependences(pdg.getControlDependences(header), header);
+    assertDependences(pdg.getControlDependences(sum), header);
+    assertDependences(pdg.getControlDependences(decrement), header);
+    assertDependences(pdg.getControlDependences(backEdge), header);
+    assertDependences(pdg.getControlDependences(ret));
+
+    assertDependences(pdg.getDataDependences(header), param, decrement);
+    assertDependences(pdg.getDataDependences(sum), init, sum, param, decrement);
+    assertDependences(pdg.getDataDependences(decrement), param, decrement);
+    assertDependences(pdg.getDataDependences(ret), init, sum);
+  }
+
+  /**
+   * <pre>
+   * if (x &lt; 0) return 0;
+   * y = x;
+   * return y;
+   * </pre>
+   */
+  @Test
+  public void earlyReturn() {
+    Unit rest = j.newAssignStmt(y, x);
+    Unit branch = add(j.newIfStmt(j.newGeExpr(x, IntConstant.v(0)), rest));
+    Unit early = add(j.newReturnStmt(IntConstant.v(0)));
+    add(rest);
+    Unit ret = add(j.newReturnStmt(y));
+
+    CompactProgramDependenceGraph pdg = compactPDG();
+    assertDependences(pdg.getControlDependences(branch));
+    assertDependences(pdg.getControlDependences(early), branch);
+    assertDependences(pdg.getControlDependences(rest), branch);
+    assertDependences(pdg.getControlDependences(ret), branch);
+
+    assertDependences(pdg.getDataDependences(early));
+    assertDependences(pdg.getDataDependences(rest), param);
+    assertDependences(pdg.getDataDependences(ret), rest);
+
+    assertSameControlDependencesAsHashMutablePDG(pdg);
+  }
+
+  /**
+   * <pre>
+   * if (x == 0) throw new RuntimeException();
+   * return x;
+   * </pre>
+   */
+  @Test
+  public void throwStatement() {
+    Local e = local("e", RefType.v("java.lang.RuntimeException"));
+    Unit ret = j.newReturnStmt(x);
+    Unit branch = add(j.newIfStmt(j.newNeExpr(x, IntConstant.v(0)), ret));
+    Unit alloc = add(j.newAssignStmt(e, j.newNewExpr(RefType.v("java.lang.RuntimeException"))));
+    Unit throwStmt = add(j.newThrowStmt(e));
+    add(ret);
+
+    CompactProgramDependenceGraph pdg = compactPDG();
+    assertDependences(pdg.getControlDependences(branch));
+    assertDependences(pdg.getControlDependences(alloc), branch);
+    assertDependences(pdg.getControlDependences(throwStmt), branch);
+    // the throw is an exit of its own, so the return is not reached on every path either
+    assertDependences(pdg.getControlDependences(ret), branch);
+
+    assertDependences(pdg.getDataDependences(throwStmt), alloc);
+    assertDependences(pdg.getDataDependences(ret), param);
+
+    assertSameControlDependencesAsHashMutablePDG(pdg);
+  }
+
+  /**
+   * <pre>
+   * if (x != 0) for (;;) x = x + 1;
+   * return x;
+   * </pre>
+   */
+  @Test
+  public void infiniteLoop() {
+    Unit spin = j.newAssignStmt(x, j.newAddExpr(x, IntConstant.v(1)));
+    Unit branch = add(j.newIfStmt(j.newEqExpr(x, IntConstant.v(0)), spin));
+    Unit ret = add(j.newReturnStmt(x));
+    add(spin);
+    Unit backEdge = add(j.newGotoStmt(spin));
+
+    CompactProgramDependenceGraph pdg = compactPDG();
+    Block loop = blockOf(pdg, spin);
+    assertNull(pdg.getImmediatePostDominator(loop));
+    assertEquals(new HashSet<Block>(Arrays.asList(blockOf(pdg, branch), loop)),
+        new HashSet<Block>(pdg.getControlDependences(loop)));
+
+    assertDependences(pdg.getControlDependences(branch));
+    assertDependences(pdg.getControlDependences(ret));
+    assertDependences(pdg.getControlDependences(spin), branch, backEdge);
+    assertDependences(pdg.getControlDependences(backEdge), branch, backEdge);
+
+    assertDependences(pdg.getDataDependences(ret), param);
+    assertDependences(pdg.getDataDependences(spin), param, spin);
+  }
+
+  private Local local(String name, Type type) {
+    Local l = j.newLocal(name, type);
+    body.getLocals().add(l);
+    return l;
+  }
+
+  private Unit add(Unit u) {
+    body.getUnits().add(u);
+    return u;
+  }
+
+  private CompactProgramDependenceGraph compactPDG() {
+    BriefUnitGraph unitGraph = new BriefUnitGraph(body);
+    return new CompactProgramDependenceGraph(new BriefBlockGraph(unitGraph), LocalDefs.Factory.newLocalDefs(unitGraph));
+  }
+
+  private static Block blockOf(CompactProgramDependenceGraph pdg, Unit u) {
+    for (Block b : pdg.getBlockGraph()) {
+      for (Unit v : b) {
+        if (v == u) {
+          return b;
+        }
+      }
+    }
+    throw new AssertionError(u + " is in no block");
+  }
+
+  private static void assertDependences(List<Unit> actual, Unit... expected) {
+    assertEquals(expected.length, actual.size());
+    assertEquals(new HashSet<Unit>(Arrays.asList(expected)), new HashSet<Unit>(actual));
+  }
+
+  /**
+   * Compares the blocks each block is control-dependent on. In a {@link HashMutablePDG}, a block is control-dependent on
+   * the conditional blocks the region containing it depends on. The block graphs of both are built from the same body and
+   * thus have the same block numbers.
+   */
+  private void assertSameControlDependencesAsHashMutablePDG(CompactProgramDependenceGraph compact) {
+    HashMutablePDG pdg = new HashMutablePDG(new BriefUnitGraph(body));
+    List<Block> blocks = pdg.getBlockGraph().getBlocks();
+    List<Block> compactBlocks = compact.getBlockGraph().getBlocks();
+    assertEquals(compactBlocks.size(), blocks.size());
+
+    for (Block b : blocks) {
+      PDGNode node = pdg.getPDGNode(b);
+      Set<Integer> expected = new TreeSet<Integer>();
+      for (PDGNode region : pdg) {
+        if (region.getType() != PDGNode.Type.REGION || !region.getDependents().contains(node)) {
+          continue;
+        }
+        for (PDGNode cond : pdg) {
+          if (cond.getType() == PDGNode.Type.CFGNODE && cond.getDependents().contains(region)) {
+            expected.add(((Block) cond.getNode()).getIndexInMethod());
+          }
+        }
+      }
+
+      Set<Integer> actual = new TreeSet<Integer>();
+      for (Block d : compact.getControlDependences(compactBlocks.get(b.getIndexInMethod()))) {
+        actual.add(d.getIndexInMethod());
+      }
+      assertEquals(b.toShortString(), expected, actual);
+    }
+  }
+}
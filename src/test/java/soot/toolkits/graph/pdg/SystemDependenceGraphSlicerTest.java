@@ -0,0 +1,192 @@
+package soot.toolkits.graph.pdg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.ReturnStmt;
+import soot.jimple.Stmt;
+import soot.options.Options;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Slices the calls to {@code sink} in {@link soot.toolkits.graph.pdg.targets.Slicing} and checks that the slices follow
+ * recursion, ignored arguments and virtual calls, and that slicing many criteria at once gives the same slices as slicing
+ * them one at a time.
+ */
+public class SystemDependenceGraphSlicerTest {
+
+  private static final String TARGET_CLASS = "soot.toolkits.graph.pdg.targets.Slicing";
+  private static final String[] TARGET_CLASSES
+      = { TARGET_CLASS, TARGET_CLASS + "$Shape", TARGET_CLASS + "$Square", TARGET_CLASS + "$Circle" };
+
+  private static SootClass target;
+  private static SootMethod main;
+  private static SootMethod factorial;
+  private static List<Pair<SootMethod, Unit>> criteria;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    G.reset();
+
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().setPhaseOption("cg.spark", "on");
+
+    for (String name : TARGET_CLASSES) {
+      Scene.v().addBasicClass(name, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+    for (String name : TARGET_CLASSES) {
+      Scene.v().getSootClass(name).setApplicationClass();
+    }
+    target = Scene.v().getSootClass(TARGET_CLASS);
+    Scene.v().setMainClass(target);
+
+    PackManager.v().getPack("cg").apply();
+
+    main = target.getMethodByName("main");
+    factorial = target.getMethodByName("factorial");
+    criteria = new ArrayList<Pair<SootMethod, Unit>>();
+    for (Unit sink : invokesOf(main, "sink")) {
+      criteria.add(new Pair<SootMethod, Unit>(main, sink));
+    }
+    assertEquals(3, criteria.size());
+    // overlaps with the slice of the first sink
+    criteria.add(new Pair<SootMethod, Unit>(factorial, returnOf(factorial)));
+  }
+
+  private static List<Unit> invokesOf(SootMethod m, String calleeName) {
+    List<Unit> ret = new ArrayList<Unit>();
+    for (Unit u : m.retrieveActiveBody().getUnits()) {
+      Stmt s = (Stmt) u;
+      if (s.containsInvokeExpr() && s.getInvokeExpr().getMethodRef().name().equals(calleeName)) {
+        ret.add(u);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return the return statement of the given method that returns a local
+   */
+  private static Unit returnOf(SootMethod m) {
+    for (Unit u : m.retrieveActiveBody().getUnits()) {
+      if (u instanceof ReturnStmt && ((ReturnStmt) u).getOp() instanceof Local) {
+        return u;
+      }
+    }
+    throw new AssertionError(m + " returns no local");
+  }
+
+  private static SootMethod method(String className, String name) {
+    return Scene.v().getSootClass(className).getMethodByName(name);
+  }
+
+  private static boolean contains(Map<SootMethod, Set<Unit>> slice, SootMethod m, Unit u) {
+    Set<Unit> units = slice.get(m);
+    return units != null && units.contains(u);
+  }
+
+  @Test
+  public void recursion() {
+    Map<SootMethod, Set<Unit>> slice = new SystemDependenceGraphSlicer(Scene.v().getCallGraph()).slice(main,
+        criteria.get(0).getO2());
+    assertTrue(contains(slice, factorial, invokesOf(factorial, "factorial").get(0)));
+    assertTrue(slice.containsKey(method(TARGET_CLASS, "first")));
+    assertTrue(contains(slice, main, invokesOf(main, "first").get(0)));
+    assertFalse(slice.containsKey(method(TARGET_CLASS, "firstOf")));
+  }
+
+  @Test
+  public void ignoredArgument() {
+    Map<SootMethod, Set<Unit>> slice = new SystemDependenceGraphSlicer(Scene.v().getCallGraph()).slice(main,
+        criteria.get(1).getO2());
+    assertTrue(slice.containsKey(method(TARGET_CLASS, "firstOf")));
+    assertTrue(contains(slice, main, invokesOf(main, "first").get(1)));
+    assertFalse(contains(slice, main, invokesOf(main, "second").get(0)));
+    assertFalse(slice.containsKey(method(TARGET_CLASS, "second")));
+  }
+
+  @Test
+  public void virtualCallWithTwoTargets() {
+    Map<SootMethod, Set<Unit>> slice = new SystemDependenceGraphSlicer(Scene.v().getCallGraph()).slice(main,
+        criteria.get(2).getO2());
+    assertTrue(slice.containsKey(method(TARGET_CLASS + "$Square", "area")));
+    assertTrue(slice.containsKey(method(TARGET_CLASS + "$Circle", "area")));
+    assertTrue(slice.containsKey(method(TARGET_CLASS, "side")));
+    assertTrue(slice.containsKey(method(TARGET_CLASS, "radius")));
+    assertTrue(contains(slice, main, invokesOf(main, "third").get(0)));
+    assertFalse(slice.containsKey(factorial));
+  }
+
+  @Test
+  public void batchedSlicesEqualSingleSlices() {
+    SystemDependenceGraphSlicer batch = new SystemDependenceGraphSlicer(Scene.v().getCallGraph());
+    List<Map<SootMethod, Set<Unit>>> slices = batch.slice(criteria);
+    assertEquals(criteria.size(), slices.size());
+
+    // the slices of the first two sinks overlap in the body of first()
+    SootMethod first = method(TARGET_CLASS, "first");
+    Unit firstReturn = first.retrieveActiveBody().getUnits().getLast();
+    assertTrue(contains(slices.get(0), first, firstReturn));
+    assertTrue(contains(slices.get(1), first, firstReturn));
+
+    for (int k = 0; k < criteria.size(); k++) {
+      Pair<SootMethod, Unit> criterion = criteria.get(k);
+      SystemDependenceGraphSlicer single = new SystemDependenceGraphSlicer(Scene.v().getCallGraph());
+      assertEquals("criterion " + k, single.slice(criterion.getO1(), criterion.getO2()), slices.get(k));
+      // the summaries kept from the batch give the same slices
+      assertEquals("criterion " + k, batch.slice(criterion.getO1(), criterion.getO2()), slices.get(k));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void criterionOutsideItsMethod() {
+    new SystemDependenceGraphSlicer(Scene.v().getCallGraph())
+        .slice(Arrays.asList(new Pair<SootMethod, Unit>(main, returnOf(factorial))));
+  }
+}
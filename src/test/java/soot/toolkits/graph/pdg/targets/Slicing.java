@@ -0,0 +1,86 @@
+package soot.toolkits.graph.pdg.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Calls through recursion, a method that ignores one of its arguments and a virtual call with two targets, for the
+ * slicing tests. The argument of each call to {@link #sink(int)} is a slicing criterion.
+ */
+public class Slicing {
+  interface Shape {
+    int area(int scale);
+  }
+
+  static class Square implements Shape {
+    public int area(int scale) {
+      return scale * side();
+    }
+  }
+
+  static class Circle implements Shape {
+    public int area(int scale) {
+      return scale * radius();
+    }
+  }
+
+  public static void main(String[] args) {
+    sink(factorial(first()));
+    sink(firstOf(first(), second()));
+    Shape s = args.length > 0 ? new Square() : new Circle();
+    sink(s.area(third()));
+  }
+
+  static int factorial(int n) {
+    if (n <= 1) {
+      return 1;
+    }
+    return n * factorial(n - 1);
+  }
+
+  static int firstOf(int a, int b) {
+    return a;
+  }
+
+  static int first() {
+    return 1;
+  }
+
+  static int second() {
+    return 2;
+  }
+
+  static int third() {
+    return 3;
+  }
+
+  static int side() {
+    return 4;
+  }
+
+  static int radius() {
+    return 5;
+  }
+
+  static void sink(int value) {
+  }
+}
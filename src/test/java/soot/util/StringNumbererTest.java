@@ -0,0 +1,103 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class StringNumbererTest {
+
+  @Test
+  public void findOrAddReturnsSameInstance() {
+    StringNumberer numberer = new StringNumberer();
+    NumberedString a = numberer.findOrAdd("void main(java.lang.String[])");
+    NumberedString b = numberer.findOrAdd("void main(java.lang.String[])");
+    assertSame(a, b);
+    assertEquals(1, a.getNumber());
+    assertSame(a, numberer.get(1));
+    assertSame(a, numberer.find("void main(java.lang.String[])"));
+    assertNull(numberer.find("void run()"));
+  }
+
+  @Test
+  public void numbersSurviveResizing() {
+    StringNumberer numberer = new StringNumberer();
+    for (int i = 0; i < 5000; i++) {
+      numberer.findOrAdd("s" + i);
+    }
+    assertEquals(5000, numberer.size());
+    for (int i = 0; i < 5000; i++) {
+      NumberedString ns = numberer.find("s" + i);
+      assertEquals(i + 1, ns.getNumber());
+      assertSame(ns, numberer.get(i + 1));
+    }
+
+    int count = 0;
+    for (Iterator<NumberedString> it = numberer.iterator(); it.hasNext(); it.next()) {
+      count++;
+    }
+    assertEquals(5000, count);
+  }
+
+  @Test
+  public void concurrentFindOrAdd() throws InterruptedException {
+    final StringNumberer numberer = new StringNumberer();
+    final int numStrings = 10000;
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < numStrings; i++) {
+            numberer.findOrAdd("s" + i);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    // Every string must have been numbered exactly once
+    assertEquals(numStrings, numberer.size());
+    Set<Integer> numbers = new HashSet<Integer>();
+    for (int i = 0; i < numStrings; i++) {
+      NumberedString ns = numberer.find("s" + i);
+      assertTrue(ns.getNumber() > 0);
+      assertTrue(numbers.add(ns.getNumber()));
+      assertSame(ns, numberer.get(ns.getNumber()));
+    }
+    assertFalse(numbers.contains(0));
+  }
+
+}
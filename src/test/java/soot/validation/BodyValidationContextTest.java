@@ -0,0 +1,201 @@
+package soot.validation;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.PatchingChain;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.validation.FieldRefValidator;
+import soot.jimple.validation.IdentityStatementsValidator;
+import soot.jimple.validation.IdentityValidator;
+import soot.jimple.validation.InvokeArgumentValidator;
+import soot.jimple.validation.JimpleTrapValidator;
+import soot.jimple.validation.MethodValidator;
+import soot.jimple.validation.NewValidator;
+import soot.jimple.validation.ReturnStatementsValidator;
+import soot.jimple.validation.TypesValidator;
+import soot.options.Options;
+
+/**
+ * Checks that validators sharing a {@link BodyValidationContext} report what they report on their own, and that the
+ * validate-sample option selects the requested fraction of the bodies.
+ */
+public class BodyValidationContextTest {
+
+  /** The validators of a {@link JimpleBody}, in the order {@link JimpleBody#validate(List)} runs them. */
+  private static final BodyValidator[] VALIDATORS = { LocalsValidator.v(), TrapsValidator.v(), UnitBoxesValidator.v(),
+      UsesValidator.v(), ValueBoxesValidator.v(), CheckTypesValidator.v(), CheckVoidLocalesValidator.v(),
+      CheckEscapingValidator.v(), IdentityStatementsValidator.v(), TypesValidator.v(), ReturnStatementsValidator.v(),
+      InvokeArgumentValidator.v(), FieldRefValidator.v(), NewValidator.v(), JimpleTrapValidator.v(),
+      IdentityValidator.v(), MethodValidator.v() };
+
+  private SootClass target;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_validate(true);
+    Scene.v().loadNecessaryClasses();
+
+    target = new SootClass("validation.Target", Modifier.PUBLIC);
+    target.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
+    Scene.v().addClass(target);
+  }
+
+  private SootMethod newMethod(String name) {
+    SootMethod m = new SootMethod(name, Collections.emptyList(), VoidType.v(), Modifier.PUBLIC | Modifier.STATIC);
+    target.addMethod(m);
+    return m;
+  }
+
+  /**
+   * Builds a body that allocates an object without calling its constructor, assigns to a local that is not in the local
+   * chain and uses a local that is never defined.
+   */
+  private JimpleBody newBrokenBody() {
+    SootMethod m = newMethod("broken");
+    JimpleBody body = Jimple.v().newBody(m);
+    m.setActiveBody(body);
+
+    RefType object = RefType.v("java.lang.Object");
+    Local allocated = Jimple.v().newLocal("allocated", object);
+    Local missing = Jimple.v().newLocal("missing", IntType.v());
+    Local undefined = Jimple.v().newLocal("undefined", object);
+    body.getLocals().add(allocated);
+    body.getLocals().add(undefined);
+
+    PatchingChain<Unit> units = body.getUnits();
+    units.add(Jimple.v().newAssignStmt(allocated, Jimple.v().newNewExpr(object)));
+    units.add(Jimple.v().newAssignStmt(missing, IntConstant.v(1)));
+    units.add(Jimple.v().newInvokeStmt(Jimple.v().newVirtualInvokeExpr(undefined,
+        Scene.v().makeMethodRef(object.getSootClass(), "hashCode", Collections.emptyList(), IntType.v(), false))));
+    units.add(Jimple.v().newInvokeStmt(Jimple.v().newVirtualInvokeExpr(allocated,
+        Scene.v().makeMethodRef(object.getSootClass(), "hashCode", Collections.emptyList(), IntType.v(), false))));
+    units.add(Jimple.v().newReturnVoidStmt());
+    return body;
+  }
+
+  private static List<String> describe(List<ValidationException> exceptions) {
+    List<String> ret = new ArrayList<String>();
+    for (ValidationException e : exceptions) {
+      ret.add(e.getConcerned() + ": " + e.getMessage());
+    }
+    return ret;
+  }
+
+  @Test
+  public void sharedContextReportsSameExceptions() {
+    JimpleBody body = newBrokenBody();
+
+    // Run on their own, the validators compute the graphs and value boxes themselves
+    List<ValidationException> separate = new ArrayList<ValidationException>();
+    for (BodyValidator validator : VALIDATORS) {
+      validator.validate(body, separate);
+    }
+
+    List<ValidationException> shared = new ArrayList<ValidationException>();
+    body.validate(shared);
+
+    assertFalse(separate.isEmpty());
+    assertEquals(describe(separate), describe(shared));
+  }
+
+  @Test
+  public void contextIsClosedAfterValidation() {
+    JimpleBody body = newBrokenBody();
+    body.validate(new ArrayList<ValidationException>());
+
+    // A context that is not open is not shared with later validations
+    assertFalse(BodyValidationContext.of(body) == BodyValidationContext.of(body));
+
+    BodyValidationContext context = BodyValidationContext.open(body);
+    try {
+      assertTrue(BodyValidationContext.of(body) == context);
+    } finally {
+      context.close();
+    }
+  }
+
+  private Set<String> sample(List<Body> bodies, int percent) {
+    Options.v().set_validate_sample(percent);
+    Set<String> selected = new HashSet<String>();
+    for (Body b : bodies) {
+      if (BodyValidationContext.of(b).runAllValidators()) {
+        selected.add(b.getMethod().getSignature());
+      }
+    }
+    return selected;
+  }
+
+  @Test
+  public void samplingSelectsRequestedFraction() {
+    List<Body> bodies = new ArrayList<Body>();
+    for (int i = 0; i < 2000; i++) {
+      SootMethod m = newMethod("method" + i);
+      bodies.add(Jimple.v().newBody(m));
+    }
+
+    assertEquals(0, sample(bodies, 0).size());
+    assertEquals(bodies.size(), sample(bodies, 100).size());
+    assertEquals(bodies.size(), sample(bodies, -1).size());
+
+    Set<String> tenPercent = sample(bodies, 10);
+    assertTrue("selected " + tenPercent.size(), tenPercent.size() >= 100 && tenPercent.size() <= 300);
+    Set<String> halfOfThem = sample(bodies, 50);
+    assertTrue("selected " + halfOfThem.size(), halfOfThem.size() >= 800 && halfOfThem.size() <= 1200);
+
+    // The same bodies are selected every time, and a larger sample contains a smaller one
+    assertEquals(tenPercent, sample(bodies, 10));
+    assertTrue(halfOfThem.containsAll(tenPercent));
+
+    // The debug option validates all bodies
+    Options.v().set_debug(true);
+    assertEquals(bodies.size(), sample(bodies, 10).size());
+  }
+}